@@ -0,0 +1,200 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.commons.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Implements an output stream that compresses data in blocks. Data are
+ * buffered until flush() is called, then written as one block. Each block is
+ * compressed with the most recent data written as the preset dictionary, so
+ * compression across small blocks approaches that of a continuous stream while
+ * each flush still delivers complete data to the reader. Blocks that do not
+ * compress are stored as is. Blocks use raw deflate without zlib headers or
+ * checksums, as these would dominate the size of small blocks. Use
+ * BlockInflaterInputStream to read.
+ * <p>
+ * Block format: byte type (0 stored, 1 deflated), int data length, int stored
+ * length, followed by stored bytes.
+ */
+public class BlockDeflaterOutputStream extends OutputStream
+{
+    /** Block containing uncompressed data. */
+    static final byte                   BLOCK_STORED            = 0;
+
+    /** Block containing deflated data. */
+    static final byte                   BLOCK_DEFLATED          = 1;
+
+    /** Default dictionary size, which is the maximum deflate window. */
+    public static final int             DEFAULT_DICTIONARY_SIZE = 32768;
+
+    private final DataOutputStream      out;
+    private final Deflater              deflater;
+    private final DeflateDictionary     dictionary;
+    private final ByteArrayOutputStream pending                 = new ByteArrayOutputStream();
+    private byte[]                      compressed              = new byte[1024];
+
+    private volatile long               dataBytes               = 0;
+    private volatile long               storedBytes             = 0;
+
+    /**
+     * Creates a stream with the default dictionary size.
+     * 
+     * @param out Stream to receive compressed blocks
+     * @param level Deflater compression level
+     */
+    public BlockDeflaterOutputStream(OutputStream out, int level)
+    {
+        this(out, level, DEFAULT_DICTIONARY_SIZE);
+    }
+
+    /**
+     * Creates a stream.
+     * 
+     * @param out Stream to receive compressed blocks
+     * @param level Deflater compression level
+     * @param dictionarySize Number of recent bytes to use as a dictionary,
+     *            which must match the reader
+     */
+    public BlockDeflaterOutputStream(OutputStream out, int level,
+            int dictionarySize)
+    {
+        this.out = new DataOutputStream(out);
+        this.deflater = new Deflater(level, true);
+        this.dictionary = new DeflateDictionary(dictionarySize);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see java.io.OutputStream#write(int)
+     */
+    public void write(int b)
+    {
+        pending.write(b);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see java.io.OutputStream#write(byte[], int, int)
+     */
+    public void write(byte[] b, int off, int len)
+    {
+        pending.write(b, off, len);
+    }
+
+    /**
+     * Writes buffered data as a block and flushes the underlying stream.
+     * 
+     * @see java.io.OutputStream#flush()
+     */
+    public void flush() throws IOException
+    {
+        if (pending.size() > 0)
+        {
+            byte[] data = pending.toByteArray();
+            pending.reset();
+            writeBlock(data);
+        }
+        out.flush();
+    }
+
+    /**
+     * Flushes remaining data and closes the underlying stream.
+     * 
+     * @see java.io.OutputStream#close()
+     */
+    public void close() throws IOException
+    {
+        try
+        {
+            flush();
+            out.close();
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    /** Returns the number of bytes written to this stream. */
+    public long getDataBytes()
+    {
+        return dataBytes;
+    }
+
+    /**
+     * Returns the number of bytes written to the underlying stream, including
+     * block headers.
+     */
+    public long getStoredBytes()
+    {
+        return storedBytes;
+    }
+
+    // Compress and write a block, falling back to storing the data if it
+    // does not compress.
+    private void writeBlock(byte[] data) throws IOException
+    {
+        deflater.reset();
+        if (dictionary.getLength() > 0)
+            deflater.setDictionary(dictionary.getBytes(), 0, dictionary
+                    .getLength());
+        deflater.setInput(data);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished() && length < data.length)
+        {
+            if (length == compressed.length)
+            {
+                byte[] larger = new byte[compressed.length * 2];
+                System.arraycopy(compressed, 0, larger, 0, length);
+                compressed = larger;
+            }
+            length += deflater.deflate(compressed, length, compressed.length
+                    - length);
+        }
+
+        if (deflater.finished() && length < data.length)
+        {
+            out.writeByte(BLOCK_DEFLATED);
+            out.writeInt(data.length);
+            out.writeInt(length);
+            out.write(compressed, 0, length);
+        }
+        else
+        {
+            out.writeByte(BLOCK_STORED);
+            out.writeInt(data.length);
+            out.writeInt(data.length);
+            out.write(data);
+            length = data.length;
+        }
+
+        dictionary.update(data, 0, data.length);
+        dataBytes += data.length;
+        storedBytes += length + 9;
+    }
+}
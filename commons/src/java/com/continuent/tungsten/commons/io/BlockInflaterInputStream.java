@@ -0,0 +1,213 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.commons.io;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Implements an input stream that reads blocks written by
+ * BlockDeflaterOutputStream. Readers must use the same dictionary size as the
+ * writer.
+ */
+public class BlockInflaterInputStream extends InputStream
+{
+    private final DataInputStream   in;
+    private final Inflater          inflater    = new Inflater(true);
+    private final DeflateDictionary dictionary;
+    private byte[]                  stored      = new byte[1024];
+    private byte[]                  block       = new byte[1024];
+    private int                     position    = 0;
+    private int                     limit       = 0;
+
+    private volatile long           dataBytes   = 0;
+    private volatile long           storedBytes = 0;
+
+    /**
+     * Creates a stream with the default dictionary size.
+     */
+    public BlockInflaterInputStream(InputStream in)
+    {
+        this(in, BlockDeflaterOutputStream.DEFAULT_DICTIONARY_SIZE);
+    }
+
+    /**
+     * Creates a stream.
+     * 
+     * @param in Stream containing compressed blocks
+     * @param dictionarySize Dictionary size used by the writer
+     */
+    public BlockInflaterInputStream(InputStream in, int dictionarySize)
+    {
+        this.in = new DataInputStream(in);
+        this.dictionary = new DeflateDictionary(dictionarySize);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see java.io.InputStream#read()
+     */
+    public int read() throws IOException
+    {
+        if (position >= limit && !readBlock())
+            return -1;
+        return block[position++] & 0xFF;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see java.io.InputStream#read(byte[], int, int)
+     */
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (len == 0)
+            return 0;
+        if (position >= limit && !readBlock())
+            return -1;
+        int count = Math.min(len, limit - position);
+        System.arraycopy(block, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    /**
+     * Returns the number of bytes remaining in the current block or, if the
+     * block is used up, the number of compressed bytes available in the
+     * underlying stream. A positive value therefore means a read will not wait
+     * for the writer, though it may wait for the rest of a block to arrive.
+     * 
+     * @see java.io.InputStream#available()
+     */
+    public int available() throws IOException
+    {
+        if (position < limit)
+            return limit - position;
+        else
+            return in.available();
+    }
+
+    /**
+     * Closes the underlying stream.
+     * 
+     * @see java.io.InputStream#close()
+     */
+    public void close() throws IOException
+    {
+        try
+        {
+            in.close();
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+
+    /** Returns the number of bytes read from this stream. */
+    public long getDataBytes()
+    {
+        return dataBytes;
+    }
+
+    /**
+     * Returns the number of bytes read from the underlying stream, including
+     * block headers.
+     */
+    public long getStoredBytes()
+    {
+        return storedBytes;
+    }
+
+    // Read the next block, returning false at end of stream.
+    private boolean readBlock() throws IOException
+    {
+        int type = in.read();
+        if (type < 0)
+            return false;
+        int dataLength = in.readInt();
+        int storedLength = in.readInt();
+        if (dataLength < 0 || storedLength < 0)
+            throw new IOException("Invalid compressed block header: dataLength="
+                    + dataLength + " storedLength=" + storedLength);
+        if (block.length < dataLength)
+            block = new byte[dataLength];
+
+        if (type == BlockDeflaterOutputStream.BLOCK_STORED)
+        {
+            in.readFully(block, 0, dataLength);
+        }
+        else if (type == BlockDeflaterOutputStream.BLOCK_DEFLATED)
+        {
+            if (stored.length < storedLength)
+                stored = new byte[storedLength];
+            in.readFully(stored, 0, storedLength);
+            inflate(storedLength, dataLength);
+        }
+        else
+            throw new IOException("Invalid compressed block type: " + type);
+
+        dictionary.update(block, 0, dataLength);
+        dataBytes += dataLength;
+        storedBytes += storedLength + 9;
+        position = 0;
+        limit = dataLength;
+        return true;
+    }
+
+    // Inflate a deflated block into the block buffer.
+    private void inflate(int storedLength, int dataLength) throws IOException
+    {
+        // Raw deflate does not request a dictionary, so we always supply it.
+        inflater.reset();
+        if (dictionary.getLength() > 0)
+            inflater.setDictionary(dictionary.getBytes(), 0, dictionary
+                    .getLength());
+        inflater.setInput(stored, 0, storedLength);
+        try
+        {
+            int length = 0;
+            while (length < dataLength)
+            {
+                int count = inflater.inflate(block, length, dataLength - length);
+                if (count == 0
+                        && (inflater.finished() || inflater.needsInput()))
+                {
+                    throw new EOFException(
+                            "Compressed block ended early: expected="
+                                    + dataLength + " actual=" + length);
+                }
+                length += count;
+            }
+        }
+        catch (DataFormatException e)
+        {
+            IOException ioe = new IOException("Invalid compressed block: "
+                    + e.getMessage());
+            ioe.initCause(e);
+            throw ioe;
+        }
+    }
+}
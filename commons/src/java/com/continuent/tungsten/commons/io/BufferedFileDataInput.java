@@ -40,7 +40,7 @@ import org.apache.log4j.Logger;
  * 
  * @author <a href="mailto:robert.hodges@continuent.com">Robert Hodges</a>
  */
-public class BufferedFileDataInput
+public class BufferedFileDataInput implements FileDataInput
 {
     private static Logger       logger = Logger.getLogger(BufferedFileDataInput.class);
     // Read parameters.
@@ -192,8 +192,13 @@ public class BufferedFileDataInput
     public void seek(long seekBytes) throws FileNotFoundException, IOException,
             InterruptedException
     {
-        fileInput = new FileInputStream(file);
-        fileChannel = fileInput.getChannel();
+        // Open the file on first use. Later seeks reposition the existing
+        // channel so that we do not leak a file descriptor on every call.
+        if (fileInput == null)
+        {
+            fileInput = new FileInputStream(file);
+            fileChannel = fileInput.getChannel();
+        }
 
         try
         {
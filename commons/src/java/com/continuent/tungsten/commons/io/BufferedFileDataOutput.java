@@ -170,6 +170,20 @@ public class BufferedFileDataOutput
         //fileOutput.getFD().sync();
     }
 
+    /**
+     * Forces flushed file contents to storage. Unlike fsync(), this always
+     * issues a sync call, so callers should batch as many writes as possible
+     * behind each call. Buffered data are not flushed, which lets the sync run
+     * while other threads continue to write. The file must not be closed or
+     * truncated until the call returns.
+     * 
+     * @throws IOException Thrown if sync fails
+     */
+    public void force() throws IOException
+    {
+        fileOutput.getChannel().force(false);
+    }
+
     /**
      * Truncate the file to the provided length. Performs an automatic fsync and
      * reopens the file.
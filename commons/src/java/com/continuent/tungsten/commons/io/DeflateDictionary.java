@@ -0,0 +1,72 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.commons.io;
+
+/**
+ * Holds the most recent bytes passed through a block compression stream.
+ * Writer and reader keep identical copies and use them as the preset
+ * dictionary for each block, which lets small blocks refer back to data in
+ * earlier blocks.
+ */
+class DeflateDictionary
+{
+    private final byte[] bytes;
+    private int          length = 0;
+
+    /**
+     * Creates a dictionary that retains up to size bytes.
+     */
+    DeflateDictionary(int size)
+    {
+        bytes = new byte[size];
+    }
+
+    /** Returns the dictionary bytes, which are valid up to getLength(). */
+    byte[] getBytes()
+    {
+        return bytes;
+    }
+
+    /** Returns the number of valid bytes in the dictionary. */
+    int getLength()
+    {
+        return length;
+    }
+
+    /**
+     * Appends data, discarding the oldest bytes if the dictionary is full.
+     */
+    void update(byte[] data, int offset, int len)
+    {
+        if (bytes.length == 0)
+            return;
+        if (len >= bytes.length)
+        {
+            System.arraycopy(data, offset + len - bytes.length, bytes, 0,
+                    bytes.length);
+            length = bytes.length;
+            return;
+        }
+        int keep = Math.min(length, bytes.length - len);
+        System.arraycopy(bytes, length - keep, bytes, 0, keep);
+        System.arraycopy(data, offset, bytes, keep, len);
+        length = keep + len;
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.commons.io;
+
+import java.io.IOException;
+
+/**
+ * Denotes a class that reads typed data from a file with support for
+ * positioning, mark/reset, and waiting for data written by another process to
+ * appear. This allows log readers to switch between buffered and
+ * memory-mapped file access.
+ */
+public interface FileDataInput
+{
+    /** Returns the current offset position. */
+    public long getOffset();
+
+    /**
+     * Returns the number of bytes available for non-blocking read.
+     */
+    public long available() throws IOException;
+
+    /**
+     * Waits for a specified number of bytes to be available for a non-blocking
+     * read.
+     * 
+     * @param requested Number of bytes to read
+     * @param waitMillis Milliseconds to wait before timeout
+     * @return Number of bytes available for non-blocking read
+     */
+    public long waitAvailable(int requested, int waitMillis)
+            throws IOException, InterruptedException;
+
+    /** Mark stream to read up to limit. */
+    public void mark(int readLimit);
+
+    /** Reset stream back to last mark. */
+    public void reset() throws IOException, InterruptedException;
+
+    /** Skip requested number of bytes and return number actually skipped. */
+    public long skip(long bytes) throws IOException;
+
+    /** Seek to a specific offset in the file. */
+    public void seek(long seekBytes) throws IOException, InterruptedException;
+
+    /** Reads a single byte. */
+    public byte readByte() throws IOException;
+
+    /** Reads a single short. */
+    public short readShort() throws IOException;
+
+    /** Read a single integer. */
+    public int readInt() throws IOException;
+
+    /** Reads a single long. */
+    public long readLong() throws IOException;
+
+    /** Reads a full byte array completely. */
+    public void readFully(byte[] bytes) throws IOException;
+
+    /** Reads len bytes into a byte array starting at position start. */
+    public void readFully(byte[] bytes, int start, int len) throws IOException;
+
+    /** Close and release all resources. */
+    public void close();
+}
@@ -0,0 +1,305 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.commons.io;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Reads data from a file through a read-only memory mapping. The mapping covers
+ * the file as it exists when opened and is never extended, so this class is
+ * meant for files that are no longer written. Use BufferedFileDataInput to
+ * follow a file that is still growing. Data may be returned as slices of the
+ * mapping, which avoids copying into heap buffers. Files larger than 2GB cannot
+ * be mapped.
+ * <p>
+ * Touching a mapped page beyond the end of a file that has been truncated
+ * underneath the reader makes the JVM throw InternalError, possibly well after
+ * the access. Each read therefore checks the file size first, so that
+ * truncation shows up as an IOException instead. Truncation that races with a
+ * read may still surface as InternalError.
+ */
+public class MappedFileDataInput implements FileDataInput
+{
+    private static Logger    logger       = Logger.getLogger(MappedFileDataInput.class);
+
+    // Read parameters.
+    private File             file;
+
+    // Variables to control reading.
+    private RandomAccessFile raf;
+    private FileChannel      fileChannel;
+    private MappedByteBuffer buffer;
+    private int              markPosition = -1;
+
+    /**
+     * Creates instance positioned on start of file.
+     * 
+     * @param file File from which to read
+     * @throws IOException Thrown if the file cannot be opened or mapped
+     */
+    public MappedFileDataInput(File file) throws IOException
+    {
+        this.file = file;
+        raf = new RandomAccessFile(file, "r");
+        fileChannel = raf.getChannel();
+        try
+        {
+            map();
+        }
+        catch (IOException e)
+        {
+            close();
+            throw e;
+        }
+    }
+
+    // Map the entire current file.
+    private void map() throws IOException
+    {
+        long size = fileChannel.size();
+        if (size > Integer.MAX_VALUE)
+        {
+            throw new IOException("File is too large to map into memory: file="
+                    + file.getName() + " size=" + size);
+        }
+        buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        if (logger.isDebugEnabled())
+            logger.debug("Mapped file: name=" + file.getName() + " size="
+                    + size);
+    }
+
+    // Fail if the file is now shorter than the part we are about to read.
+    private void checkTruncated(int bytes) throws IOException
+    {
+        long size = fileChannel.size();
+        if (size < buffer.position() + bytes)
+        {
+            throw new IOException("Mapped file was truncated: file="
+                    + file.getName() + " offset=" + buffer.position()
+                    + " mappedSize=" + buffer.capacity() + " size=" + size);
+        }
+    }
+
+    /**
+     * Returns the current offset position.
+     */
+    public long getOffset()
+    {
+        return buffer.position();
+    }
+
+    /**
+     * Returns the number of bytes left in the mapping.
+     */
+    public long available() throws IOException
+    {
+        return buffer.remaining();
+    }
+
+    /**
+     * Returns the number of bytes left in the mapping. There is no wait as the
+     * mapping does not grow.
+     * 
+     * @param requested Number of bytes to read
+     * @param waitMillis Ignored
+     * @return Number of bytes available for non-blocking read
+     */
+    public long waitAvailable(int requested, int waitMillis)
+            throws IOException, InterruptedException
+    {
+        return buffer.remaining();
+    }
+
+    /**
+     * Mark stream to read up to limit. The limit does not apply as the entire
+     * mapping is always available.
+     */
+    public void mark(int readLimit)
+    {
+        markPosition = buffer.position();
+    }
+
+    /**
+     * Reset stream back to last mark.
+     */
+    public void reset() throws IOException
+    {
+        if (markPosition < 0)
+            throw new IOException("Mark is not set: file=" + file.getName());
+        buffer.position(markPosition);
+        markPosition = -1;
+    }
+
+    /**
+     * Skip requested number of bytes.
+     * 
+     * @return Number of bytes actually skipped
+     */
+    public long skip(long bytes) throws IOException
+    {
+        int skipped = (int) Math.min(bytes, available());
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    /**
+     * Seek to a specific offset in the file.
+     * 
+     * @param seekBytes Number of bytes from start of file
+     * @throws IOException Thrown if offset is beyond the end of the mapping
+     * @throws InterruptedException Thrown if thread is interrupted
+     */
+    public void seek(long seekBytes) throws IOException, InterruptedException
+    {
+        if (seekBytes > buffer.capacity())
+        {
+            throw new IOException("Seek beyond end of file: file="
+                    + file.getName() + " offset=" + seekBytes + " size="
+                    + buffer.capacity());
+        }
+        buffer.position((int) seekBytes);
+        markPosition = -1;
+    }
+
+    // Ensure the requested number of bytes are mapped and still in the file.
+    private void ensureAvailable(int bytes) throws IOException
+    {
+        if (buffer.remaining() < bytes)
+        {
+            throw new EOFException("Read past end of file: file="
+                    + file.getName() + " offset=" + buffer.position()
+                    + " requested=" + bytes);
+        }
+        checkTruncated(bytes);
+    }
+
+    /** Reads a single byte. */
+    public byte readByte() throws IOException
+    {
+        ensureAvailable(1);
+        return buffer.get();
+    }
+
+    /** Reads a single short. */
+    public short readShort() throws IOException
+    {
+        ensureAvailable(2);
+        return buffer.getShort();
+    }
+
+    /** Read a single integer. */
+    public int readInt() throws IOException
+    {
+        ensureAvailable(4);
+        return buffer.getInt();
+    }
+
+    /** Reads a single long. */
+    public long readLong() throws IOException
+    {
+        ensureAvailable(8);
+        return buffer.getLong();
+    }
+
+    /**
+     * Reads a full byte array completely.
+     */
+    public void readFully(byte[] bytes) throws IOException
+    {
+        readFully(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Reads a full byte array completely.
+     * 
+     * @param bytes Buffer into which to read
+     * @param start Starting byte position
+     * @param len Number of bytes to read
+     */
+    public void readFully(byte[] bytes, int start, int len) throws IOException
+    {
+        ensureAvailable(len);
+        buffer.get(bytes, start, len);
+    }
+
+    /**
+     * Returns a read-only buffer on the next len bytes of the file and advances
+     * past them. The buffer shares the mapping, so no data are copied. The
+     * caller may see InternalError if the file is truncated while it reads the
+     * buffer.
+     * 
+     * @param len Number of bytes to return
+     */
+    public ByteBuffer readBuffer(int len) throws IOException
+    {
+        ensureAvailable(len);
+        ByteBuffer slice = buffer.slice();
+        slice.limit(len);
+        buffer.position(buffer.position() + len);
+        return slice;
+    }
+
+    /** Close and release all resources. */
+    public void close()
+    {
+        try
+        {
+            if (fileChannel != null)
+                fileChannel.close();
+            if (raf != null)
+                raf.close();
+        }
+        catch (IOException e)
+        {
+            logger.warn("Unable to close mapped file reader: file="
+                    + file.getName() + " exception=" + e.getMessage());
+        }
+        fileChannel = null;
+        raf = null;
+
+        // The mapping itself is released when the buffer is garbage
+        // collected.
+        buffer = null;
+    }
+
+    /**
+     * Print contents of the reader.
+     */
+    public String toString()
+    {
+        StringBuffer sb = new StringBuffer();
+        sb.append(this.getClass().getSimpleName());
+        sb.append(" file=").append(file.getName());
+        if (buffer != null)
+        {
+            sb.append(" size=").append(buffer.capacity());
+            sb.append(" offset=").append(buffer.position());
+        }
+        return sb.toString();
+    }
+}
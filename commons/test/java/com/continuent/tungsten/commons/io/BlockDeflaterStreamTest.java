@@ -0,0 +1,178 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+package com.continuent.tungsten.commons.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import junit.framework.TestCase;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Before;
+
+/**
+ * Test capabilities for block compression streams.
+ * 
+ * @version 1.0
+ */
+public class BlockDeflaterStreamTest extends TestCase
+{
+    private static Logger logger = Logger
+                                         .getLogger(BlockDeflaterStreamTest.class);
+
+    /**
+     * Setup.
+     * 
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception
+    {
+        logger.info("Test starting");
+    }
+
+    /**
+     * Teardown.
+     * 
+     * @throws java.lang.Exception
+     */
+    @After
+    public void tearDown() throws Exception
+    {
+    }
+
+    /**
+     * Confirm that values written in many small blocks are read back exactly
+     * and that repeated content compresses well because each block can refer
+     * to earlier blocks through the dictionary.
+     */
+    public void testSmallBlocks() throws Exception
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        BlockDeflaterOutputStream bdos = new BlockDeflaterOutputStream(baos,
+                Deflater.BEST_SPEED);
+        DataOutputStream dos = new DataOutputStream(bdos);
+        for (int i = 0; i < 1000; i++)
+        {
+            dos.writeInt(i);
+            dos.writeUTF("INSERT INTO test.wide_table (id, name, address) VALUES");
+            dos.flush();
+        }
+        dos.close();
+
+        double ratio = (double) bdos.getDataBytes() / bdos.getStoredBytes();
+        logger.info("Compression ratio: " + ratio);
+        assertTrue("Expect dictionary to give a good ratio: " + ratio,
+                ratio > 3.0);
+
+        BlockInflaterInputStream bis = new BlockInflaterInputStream(
+                new ByteArrayInputStream(baos.toByteArray()));
+        DataInputStream dis = new DataInputStream(bis);
+        for (int i = 0; i < 1000; i++)
+        {
+            assertEquals("Int value", i, dis.readInt());
+            assertEquals("String value",
+                    "INSERT INTO test.wide_table (id, name, address) VALUES",
+                    dis.readUTF());
+        }
+        assertEquals("End of stream", -1, dis.read());
+        assertEquals("Data bytes match", bdos.getDataBytes(), bis
+                .getDataBytes());
+        assertEquals("Stored bytes match", bdos.getStoredBytes(), bis
+                .getStoredBytes());
+        dis.close();
+    }
+
+    /**
+     * Confirm that random data, which does not compress, is stored as is and
+     * that blocks larger than the dictionary are read back exactly.
+     */
+    public void testIncompressibleBlocks() throws Exception
+    {
+        Random random = new Random(1);
+        byte[][] blocks = new byte[10][];
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        BlockDeflaterOutputStream bdos = new BlockDeflaterOutputStream(baos,
+                Deflater.DEFAULT_COMPRESSION, 1024);
+        for (int i = 0; i < blocks.length; i++)
+        {
+            blocks[i] = new byte[100 + i * 1000];
+            random.nextBytes(blocks[i]);
+            bdos.write(blocks[i], 0, blocks[i].length);
+            bdos.flush();
+        }
+        bdos.close();
+        assertTrue("Stored bytes include headers",
+                bdos.getStoredBytes() > bdos.getDataBytes());
+
+        DataInputStream dis = new DataInputStream(new BlockInflaterInputStream(
+                new ByteArrayInputStream(baos.toByteArray()), 1024));
+        for (int i = 0; i < blocks.length; i++)
+        {
+            byte[] data = new byte[blocks[i].length];
+            dis.readFully(data);
+            for (int j = 0; j < data.length; j++)
+                assertEquals("Block " + i + " byte " + j, blocks[i][j], data[j]);
+        }
+        assertEquals("End of stream", -1, dis.read());
+        dis.close();
+    }
+
+    /**
+     * Confirm that mixed compressible and incompressible blocks keep writer and
+     * reader dictionaries in step.
+     */
+    public void testMixedBlocks() throws Exception
+    {
+        Random random = new Random(2);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        BlockDeflaterOutputStream bdos = new BlockDeflaterOutputStream(baos,
+                Deflater.BEST_SPEED, 4096);
+        for (int i = 0; i < 200; i++)
+        {
+            byte[] data = new byte[random.nextInt(3000)];
+            if (i % 3 == 0)
+                random.nextBytes(data);
+            else
+            {
+                for (int j = 0; j < data.length; j++)
+                    data[j] = (byte) ('a' + (j % 7));
+            }
+            expected.write(data);
+            bdos.write(data);
+            bdos.flush();
+        }
+        bdos.close();
+
+        byte[] expectedBytes = expected.toByteArray();
+        byte[] actual = new byte[expectedBytes.length];
+        DataInputStream dis = new DataInputStream(new BlockInflaterInputStream(
+                new ByteArrayInputStream(baos.toByteArray()), 4096));
+        dis.readFully(actual);
+        assertEquals("End of stream", -1, dis.read());
+        for (int i = 0; i < actual.length; i++)
+            assertEquals("Byte " + i, expectedBytes[i], actual[i]);
+    }
+}
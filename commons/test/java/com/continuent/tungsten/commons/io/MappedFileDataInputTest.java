@@ -0,0 +1,261 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.commons.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import junit.framework.TestCase;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Before;
+
+/**
+ * Test capabilities for memory-mapped reads from files.
+ * 
+ * @version 1.0
+ */
+public class MappedFileDataInputTest extends TestCase
+{
+    private static Logger logger = Logger
+                                         .getLogger(MappedFileDataInputTest.class);
+
+    /**
+     * Setup.
+     * 
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception
+    {
+        logger.info("Test starting");
+    }
+
+    /**
+     * Teardown.
+     * 
+     * @throws java.lang.Exception
+     */
+    @After
+    public void tearDown() throws Exception
+    {
+    }
+
+    /**
+     * Confirm that we can open a mapped file and correctly extract standard
+     * byte, short, int, long, and byte array values.
+     */
+    public void testInputRead() throws Exception
+    {
+        File f = this.initFile("testMappedInputRead");
+        DataOutputStream dos = new DataOutputStream(new FileOutputStream(f));
+        dos.writeByte(Byte.MIN_VALUE);
+        dos.writeShort(Short.MAX_VALUE);
+        dos.writeInt(Integer.MIN_VALUE);
+        dos.writeLong(Long.MAX_VALUE);
+        byte[] byteArray = new byte[10];
+        for (int i = 0; i < byteArray.length; i++)
+            byteArray[i] = (byte) i;
+        dos.write(byteArray);
+        dos.close();
+
+        MappedFileDataInput mfdi = new MappedFileDataInput(f);
+        assertEquals("byte", Byte.MIN_VALUE, mfdi.readByte());
+        assertEquals("short", Short.MAX_VALUE, mfdi.readShort());
+        assertEquals("int", Integer.MIN_VALUE, mfdi.readInt());
+        assertEquals("long", Long.MAX_VALUE, mfdi.readLong());
+        assertEquals("Should be at offset 15", 15, mfdi.getOffset());
+        byte[] myBytes = new byte[10];
+        mfdi.readFully(myBytes);
+        for (int i = 0; i < byteArray.length; i++)
+            assertEquals("byte: " + i, byteArray[i], myBytes[i]);
+
+        // Reading past the end fails.
+        try
+        {
+            mfdi.readByte();
+            throw new Exception("Able to read past end of file");
+        }
+        catch (EOFException e)
+        {
+        }
+        mfdi.close();
+    }
+
+    /**
+     * Confirm that buffers returned from the mapping contain the expected
+     * data, do not disturb the reader, and can be read as streams.
+     */
+    public void testReadBuffer() throws Exception
+    {
+        File f = this.initFile("testMappedReadBuffer");
+        writeAscendingIntFile(f, 1000);
+
+        MappedFileDataInput mfdi = new MappedFileDataInput(f);
+        assertEquals("first int", 0, mfdi.readInt());
+        ByteBuffer bb = mfdi.readBuffer(400);
+        assertEquals("offset after buffer", 404, mfdi.getOffset());
+        assertEquals("next int", 101, mfdi.readInt());
+
+        assertEquals("buffer size", 400, bb.remaining());
+        DataInputStream dis = new DataInputStream(new ByteBufferInputStream(
+                bb.duplicate()));
+        for (int i = 1; i <= 100; i++)
+            assertEquals("buffer int", i, dis.readInt());
+        assertEquals("stream exhausted", -1, dis.read());
+        assertEquals("buffer position unchanged", 400, bb.remaining());
+        mfdi.close();
+    }
+
+    /**
+     * Confirm that seek and mark/reset move to the expected positions.
+     */
+    public void testSeekMarkReset() throws Exception
+    {
+        File f = this.initFile("testMappedSeekMarkReset");
+        writeAscendingIntFile(f, 10000);
+
+        MappedFileDataInput mfdi = new MappedFileDataInput(f);
+        for (int i = 9999; i >= 0; i -= 7)
+        {
+            mfdi.seek(i * 4);
+            mfdi.mark(8);
+            assertEquals("seek int", i, mfdi.readInt());
+            mfdi.reset();
+            assertEquals("reset offset", i * 4, mfdi.getOffset());
+            assertEquals("reread int", i, mfdi.readInt());
+        }
+
+        try
+        {
+            mfdi.seek(40001);
+            throw new Exception("Able to seek past end of file");
+        }
+        catch (IOException e)
+        {
+        }
+        mfdi.close();
+    }
+
+    /**
+     * Confirm that the mapping covers the file as it was when opened and does
+     * not grow as data are appended.
+     */
+    public void testFixedMapping() throws Exception
+    {
+        File f = this.initFile("testMappedFixedMapping");
+        writeAscendingIntFile(f, 100);
+
+        MappedFileDataInput mfdi = new MappedFileDataInput(f);
+        DataOutputStream dos = new DataOutputStream(new FileOutputStream(f,
+                true));
+        dos.writeInt(100);
+        dos.close();
+
+        mfdi.seek(99 * 4);
+        assertEquals("last mapped int", 99, mfdi.readInt());
+        assertEquals("no data after mapping", 0, mfdi.available());
+        assertEquals("no wait for data", 0, mfdi.waitAvailable(4, 10000));
+        try
+        {
+            mfdi.readInt();
+            throw new Exception("Able to read past end of mapping");
+        }
+        catch (EOFException e)
+        {
+        }
+        mfdi.close();
+    }
+
+    /**
+     * Confirm that truncating a file while a mapped reader is open makes reads
+     * of the lost data fail with an IOException.
+     */
+    public void testTruncation() throws Exception
+    {
+        File f = this.initFile("testMappedTruncation");
+        writeAscendingIntFile(f, 10000);
+
+        MappedFileDataInput mfdi = new MappedFileDataInput(f);
+        assertEquals("first int", 0, mfdi.readInt());
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        raf.setLength(400);
+        raf.close();
+
+        // Data before the truncation point can still be read.
+        assertEquals("int before truncation", 1, mfdi.readInt());
+        try
+        {
+            mfdi.readBuffer(400);
+            throw new Exception("Able to map data of truncated file");
+        }
+        catch (IOException e)
+        {
+        }
+        try
+        {
+            mfdi.readFully(new byte[400]);
+            throw new Exception("Able to copy data of truncated file");
+        }
+        catch (IOException e)
+        {
+        }
+        mfdi.seek(400);
+        try
+        {
+            mfdi.readInt();
+            throw new Exception("Able to read int of truncated file");
+        }
+        catch (IOException e)
+        {
+        }
+        mfdi.close();
+    }
+
+    // Initialize a test file by clearing and return the File instance.
+    private File initFile(String name)
+    {
+        File f = new File(name);
+        if (f.exists())
+            f.delete();
+        return f;
+    }
+
+    // Writes a file filled with ascending int values up to a specified value.
+    // The resulting file is 4 * n bytes long. The last int value is n - 1.
+    private void writeAscendingIntFile(File f, int n) throws IOException
+    {
+        FileOutputStream fos = new FileOutputStream(f);
+        BufferedOutputStream bos = new BufferedOutputStream(fos);
+        DataOutputStream dos = new DataOutputStream(bos);
+
+        for (int i = 0; i < n; i++)
+            dos.writeInt(i);
+        dos.close();
+    }
+}
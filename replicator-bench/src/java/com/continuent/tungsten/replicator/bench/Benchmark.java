@@ -0,0 +1,51 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.bench;
+
+/**
+ * Denotes a benchmark of a single operation. The runner calls setUp() once,
+ * then calls execute() repeatedly for warmup and measurement iterations, and
+ * finally calls tearDown(). Implementations should do all allocation of test
+ * data in setUp() so that measurements cover only the operation itself.
+ *
+ * @version 1.0
+ */
+public interface Benchmark
+{
+    /**
+     * Returns the benchmark name, which identifies results in saved baselines.
+     * Names are dot-separated with the component first, e.g.,
+     * "serializer.serialize.rows-10".
+     */
+    public String getName();
+
+    /** Prepares data and resources for the benchmark. */
+    public void setUp() throws Exception;
+
+    /**
+     * Executes a single operation. The return value must depend on the result
+     * of the operation; the runner consumes it so that the compiler cannot
+     * eliminate the work as dead code.
+     */
+    public long execute() throws Exception;
+
+    /** Releases resources allocated by setUp(). */
+    public void tearDown() throws Exception;
+}
@@ -0,0 +1,105 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.bench;
+
+/**
+ * Holds throughput measured in each iteration of a benchmark and computes
+ * summary statistics.
+ *
+ * @version 1.0
+ */
+public class BenchmarkResult
+{
+    private final String   name;
+    private final double[] opsPerSec;
+
+    /**
+     * Creates a new result.
+     *
+     * @param name Benchmark name
+     * @param opsPerSec Operations per second for each measured iteration
+     */
+    public BenchmarkResult(String name, double[] opsPerSec)
+    {
+        this.name = name;
+        this.opsPerSec = opsPerSec;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getIterations()
+    {
+        return opsPerSec.length;
+    }
+
+    /** Returns mean operations per second across iterations. */
+    public double getMean()
+    {
+        double sum = 0;
+        for (double value : opsPerSec)
+            sum += value;
+        return sum / opsPerSec.length;
+    }
+
+    /** Returns the sample standard deviation of operations per second. */
+    public double getStdDev()
+    {
+        if (opsPerSec.length < 2)
+            return 0;
+        double mean = getMean();
+        double sum = 0;
+        for (double value : opsPerSec)
+            sum += (value - mean) * (value - mean);
+        return Math.sqrt(sum / (opsPerSec.length - 1));
+    }
+
+    /** Returns the lowest operations per second of any iteration. */
+    public double getMin()
+    {
+        double min = Double.MAX_VALUE;
+        for (double value : opsPerSec)
+            min = Math.min(min, value);
+        return min;
+    }
+
+    /** Returns the highest operations per second of any iteration. */
+    public double getMax()
+    {
+        double max = 0;
+        for (double value : opsPerSec)
+            max = Math.max(max, value);
+        return max;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see java.lang.Object#toString()
+     */
+    public String toString()
+    {
+        return String.format("%-40s %14.0f ops/s +- %5.1f%% (min=%.0f max=%.0f)",
+                name, getMean(), 100 * getStdDev() / getMean(), getMin(),
+                getMax());
+    }
+}
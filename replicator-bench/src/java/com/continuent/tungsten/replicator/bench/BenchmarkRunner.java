@@ -0,0 +1,339 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.bench;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+import com.continuent.tungsten.replicator.storage.QueueFactory;
+
+/**
+ * Runs replicator benchmarks and optionally saves results or compares them
+ * against a saved baseline. Each benchmark runs a number of warmup iterations
+ * to let the JIT compile hot code, followed by measured iterations, each of
+ * which calls the benchmark operation repeatedly for a fixed time. Results
+ * are reported as operations per second.
+ * <p>
+ * Saved results are a properties file that maps benchmark names to mean
+ * operations per second. When a baseline is given, the runner reports the
+ * change for each benchmark and exits with status 1 if any benchmark is slower
+ * than the baseline by more than the threshold percentage. Baselines are only
+ * comparable when taken on the same host and JVM.
+ * 
+ * <pre><code>
+ * Usage: BenchmarkRunner [options]
+ *   -include regex   Run benchmarks whose names match (default: all)
+ *   -warmup n        Warmup iterations (default: 3)
+ *   -iterations n    Measured iterations (default: 5)
+ *   -time millis     Duration of each iteration (default: 1000)
+ *   -save file       Save results to file
+ *   -baseline file   Compare results with a previously saved file
+ *   -threshold pct   Percentage slowdown reported as regression (default: 10)
+ *   -list            List benchmarks and exit
+ * </code></pre>
+ *
+ * @version 1.0
+ */
+public class BenchmarkRunner
+{
+    // Consumes benchmark return values so work is not optimized away.
+    private static volatile long sink;
+
+    private Pattern              include    = Pattern.compile(".*");
+    private int                  warmup     = 3;
+    private int                  iterations = 5;
+    private long                 timeMillis = 1000;
+    private double               threshold  = 10;
+    private File                 saveFile;
+    private File                 baselineFile;
+
+    /**
+     * Returns all benchmarks in the order they run.
+     */
+    public static List<Benchmark> createBenchmarks()
+    {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+        // THL serialization of statements and of row changes of varying
+        // widths.
+        for (int length : new int[]{100, 1000, 10000})
+        {
+            benchmarks.add(new SerializerBenchmark(false, 0, length));
+            benchmarks.add(new SerializerBenchmark(true, 0, length));
+        }
+        for (int columns : new int[]{5, 20, 100})
+        {
+            benchmarks.add(new SerializerBenchmark(false, 10, columns));
+            benchmarks.add(new SerializerBenchmark(true, 10, columns));
+        }
+
+        // Reading row changes of a large fragment, all at once and one at a
+        // time.
+        benchmarks.add(new FragmentBenchmark(false, 100, 10, 20));
+        benchmarks.add(new FragmentBenchmark(true, 100, 10, 20));
+
+        // Log file writes and reads plus the record checksum.
+        for (int length : new int[]{100, 1000, 10000})
+        {
+            benchmarks.add(new LogFileBenchmark(false, length));
+            benchmarks.add(new LogFileBenchmark(true, length));
+            benchmarks.add(new LogRecordCrcBenchmark(length));
+        }
+
+        // Parallel queue store with each queue type.
+        benchmarks.add(new ParallelQueueStoreBenchmark(QueueFactory.LINKED));
+        benchmarks.add(new ParallelQueueStoreBenchmark(QueueFactory.RING));
+
+        // SQL generation in the JDBC applier.
+        for (int columns : new int[]{5, 20, 100})
+        {
+            benchmarks.add(new JdbcApplierBenchmark("insert", columns));
+            benchmarks.add(new JdbcApplierBenchmark("update", columns));
+            benchmarks.add(new JdbcApplierBenchmark("delete", columns));
+        }
+
+        // Binlog row parsing.
+        for (int columns : new int[]{5, 20, 100})
+            benchmarks.add(new RowsLogEventBenchmark(10, columns));
+
+        return benchmarks;
+    }
+
+    /**
+     * Main method to run benchmarks from the command line.
+     */
+    public static void main(String[] argv) throws Exception
+    {
+        BenchmarkRunner runner = new BenchmarkRunner();
+        try
+        {
+            for (int i = 0; i < argv.length; i++)
+            {
+                String arg = argv[i];
+                if ("-include".equals(arg))
+                    runner.include = Pattern.compile(argv[++i]);
+                else if ("-warmup".equals(arg))
+                    runner.warmup = Integer.parseInt(argv[++i]);
+                else if ("-iterations".equals(arg))
+                    runner.iterations = Integer.parseInt(argv[++i]);
+                else if ("-time".equals(arg))
+                    runner.timeMillis = Long.parseLong(argv[++i]);
+                else if ("-threshold".equals(arg))
+                    runner.threshold = Double.parseDouble(argv[++i]);
+                else if ("-save".equals(arg))
+                    runner.saveFile = toFile(argv[++i]);
+                else if ("-baseline".equals(arg))
+                    runner.baselineFile = toFile(argv[++i]);
+                else if ("-list".equals(arg))
+                {
+                    for (Benchmark benchmark : createBenchmarks())
+                        println(benchmark.getName());
+                    return;
+                }
+                else
+                {
+                    usage();
+                    System.exit(2);
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            println("Invalid arguments: " + e.getMessage());
+            usage();
+            System.exit(2);
+        }
+
+        if (runner.run())
+            System.exit(0);
+        else
+            System.exit(1);
+    }
+
+    /**
+     * Runs selected benchmarks, then saves and compares results as requested.
+     *
+     * @return False if any benchmark regressed against the baseline
+     */
+    public boolean run() throws Exception
+    {
+        Properties baseline = null;
+        if (baselineFile != null)
+            baseline = load(baselineFile);
+
+        List<BenchmarkResult> results = new ArrayList<BenchmarkResult>();
+        for (Benchmark benchmark : createBenchmarks())
+        {
+            if (!include.matcher(benchmark.getName()).find())
+                continue;
+            BenchmarkResult result = run(benchmark);
+            println(result.toString());
+            results.add(result);
+        }
+
+        if (saveFile != null)
+        {
+            save(saveFile, results);
+            println("Saved results: " + saveFile);
+        }
+
+        boolean ok = true;
+        if (baseline != null)
+        {
+            println("");
+            println("Comparison with baseline: " + baselineFile);
+            for (BenchmarkResult result : results)
+            {
+                String value = baseline.getProperty(result.getName());
+                if (value == null)
+                {
+                    println(String.format("%-40s %14s", result.getName(),
+                            "(no baseline)"));
+                    continue;
+                }
+                double base = Double.parseDouble(value);
+                double change = 100 * (result.getMean() - base) / base;
+                boolean regressed = change < -threshold;
+                println(String.format("%-40s %14.0f -> %14.0f ops/s %+7.1f%%%s",
+                        result.getName(), base, result.getMean(), change,
+                        regressed ? "  REGRESSION" : ""));
+                if (regressed)
+                    ok = false;
+            }
+        }
+        return ok;
+    }
+
+    /**
+     * Runs a single benchmark.
+     */
+    public BenchmarkResult run(Benchmark benchmark) throws Exception
+    {
+        System.gc();
+        benchmark.setUp();
+        try
+        {
+            for (int i = 0; i < warmup; i++)
+                iterate(benchmark);
+            double[] opsPerSec = new double[iterations];
+            for (int i = 0; i < iterations; i++)
+                opsPerSec[i] = iterate(benchmark);
+            return new BenchmarkResult(benchmark.getName(), opsPerSec);
+        }
+        finally
+        {
+            benchmark.tearDown();
+        }
+    }
+
+    // Calls the benchmark until the iteration time elapses and returns
+    // operations per second.
+    private double iterate(Benchmark benchmark) throws Exception
+    {
+        long consumed = 0;
+        long ops = 0;
+        long start = System.nanoTime();
+        long end = start + timeMillis * 1000000;
+        long now;
+        do
+        {
+            consumed ^= benchmark.execute();
+            ops++;
+            now = System.nanoTime();
+        }
+        while (now < end);
+        sink ^= consumed;
+        return ops / ((now - start) / 1000000000.0);
+    }
+
+    // Saves mean throughput for each benchmark.
+    private void save(File file, List<BenchmarkResult> results)
+            throws IOException
+    {
+        Properties props = new Properties();
+        for (BenchmarkResult result : results)
+            props.setProperty(result.getName(), Double.toString(result
+                    .getMean()));
+        OutputStream out = new FileOutputStream(file);
+        try
+        {
+            props.store(out, "Replicator benchmark results: java.version="
+                    + System.getProperty("java.version") + " os.arch="
+                    + System.getProperty("os.arch") + " processors="
+                    + Runtime.getRuntime().availableProcessors());
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    // Loads previously saved results.
+    private Properties load(File file) throws IOException
+    {
+        Properties props = new Properties();
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            props.load(in);
+        }
+        finally
+        {
+            in.close();
+        }
+        return props;
+    }
+
+    // Returns a file or null if the name is empty, which allows build scripts
+    // to pass unset options.
+    private static File toFile(String name)
+    {
+        if (name == null || name.trim().length() == 0)
+            return null;
+        else
+            return new File(name);
+    }
+
+    private static void usage()
+    {
+        println("Usage: BenchmarkRunner [options]");
+        println("  -include regex   Run benchmarks whose names match (default: all)");
+        println("  -warmup n        Warmup iterations (default: 3)");
+        println("  -iterations n    Measured iterations (default: 5)");
+        println("  -time millis     Duration of each iteration (default: 1000)");
+        println("  -save file       Save results to file");
+        println("  -baseline file   Compare results with a previously saved file");
+        println("  -threshold pct   Percentage slowdown reported as regression (default: 10)");
+        println("  -list            List benchmarks and exit");
+    }
+
+    private static void println(String msg)
+    {
+        System.out.println(msg);
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.bench;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+
+import com.continuent.tungsten.replicator.dbms.DBMSData;
+import com.continuent.tungsten.replicator.dbms.OneRowChange;
+import com.continuent.tungsten.replicator.dbms.RowChangeData;
+import com.continuent.tungsten.replicator.dbms.StatementData;
+import com.continuent.tungsten.replicator.event.DBMSEvent;
+import com.continuent.tungsten.replicator.event.ReplDBMSEvent;
+import com.continuent.tungsten.replicator.thl.THLEvent;
+
+/**
+ * Generates synthetic replication events for benchmarks. Row changes use a
+ * table whose columns alternate between INT and VARCHAR, which are the most
+ * common column types, and whose first column is the primary key.
+ *
+ * @version 1.0
+ */
+public class EventGenerator
+{
+    /** Schema name of generated events. */
+    public static final String SCHEMA         = "bench";
+
+    /** Table name of generated row changes. */
+    public static final String TABLE          = "t1";
+
+    /** Length of string values in generated row changes. */
+    public static final int    VARCHAR_LENGTH = 32;
+
+    /**
+     * Generates an event containing a single SQL statement.
+     *
+     * @param seqno Sequence number of the event
+     * @param length Approximate length of the statement in characters
+     */
+    public static ReplDBMSEvent statementEvent(long seqno, int length)
+    {
+        StringBuffer sb = new StringBuffer("insert into " + SCHEMA + "."
+                + TABLE + " values (" + seqno + ", '");
+        while (sb.length() < length - 2)
+            sb.append((char) ('a' + sb.length() % 26));
+        sb.append("')");
+        return makeEvent(seqno, new StatementData(sb.toString()));
+    }
+
+    /**
+     * Generates an event containing a single row change of inserts.
+     *
+     * @param seqno Sequence number of the event
+     * @param rows Number of rows
+     * @param columns Number of columns in each row
+     */
+    public static ReplDBMSEvent rowEvent(long seqno, int rows, int columns)
+    {
+        RowChangeData rowChanges = new RowChangeData();
+        rowChanges.appendOneRowChange(rowChange(
+                RowChangeData.ActionType.INSERT, rows, columns));
+        return makeEvent(seqno, rowChanges);
+    }
+
+    /**
+     * Generates an event containing many row changes of deletes, like a
+     * fragment of a large delete transaction from the MySQL extractor, which
+     * writes a row change per binlog rows event.
+     *
+     * @param seqno Sequence number of the event
+     * @param rowChanges Number of row changes
+     * @param rows Number of rows in each row change
+     * @param columns Number of columns in each row
+     */
+    public static ReplDBMSEvent fragmentEvent(long seqno, int rowChanges,
+            int rows, int columns)
+    {
+        RowChangeData data = new RowChangeData();
+        for (int i = 0; i < rowChanges; i++)
+            data.appendOneRowChange(rowChange(RowChangeData.ActionType.DELETE,
+                    rows, columns));
+        return makeEvent(seqno, data);
+    }
+
+    /**
+     * Generates a row change. Inserts have column values only, deletes have
+     * key values only, and updates have both, as in events from the MySQL
+     * extractor.
+     *
+     * @param action Type of row change
+     * @param rows Number of rows
+     * @param columns Number of columns in each row
+     */
+    public static OneRowChange rowChange(RowChangeData.ActionType action,
+            int rows, int columns)
+    {
+        OneRowChange rowChange = new OneRowChange(SCHEMA, TABLE, action);
+        boolean hasColumns = (action != RowChangeData.ActionType.DELETE);
+        boolean hasKeys = (action != RowChangeData.ActionType.INSERT);
+
+        for (int c = 0; c < columns; c++)
+        {
+            if (hasColumns)
+                rowChange.getColumnSpec().add(columnSpec(rowChange, c));
+            if (hasKeys)
+                rowChange.getKeySpec().add(columnSpec(rowChange, c));
+        }
+
+        for (int r = 0; r < rows; r++)
+        {
+            if (hasColumns)
+                rowChange.getColumnValues().add(columnValues(rowChange, r,
+                        columns));
+            if (hasKeys)
+                rowChange.getKeyValues().add(columnValues(rowChange, r,
+                        columns));
+        }
+        return rowChange;
+    }
+
+    /**
+     * Wraps an event for storage in the log.
+     */
+    public static THLEvent thlEvent(ReplDBMSEvent event)
+    {
+        return new THLEvent("mysql-bin.000001:" + event.getSeqno(), event);
+    }
+
+    /**
+     * Returns the SQL type of a column in generated row changes.
+     */
+    public static int columnType(int index)
+    {
+        return (index % 2 == 0) ? Types.INTEGER : Types.VARCHAR;
+    }
+
+    /**
+     * Returns a string value of the given length for generated rows.
+     */
+    public static String stringValue(int row, int column, int length)
+    {
+        StringBuffer sb = new StringBuffer(length);
+        for (int i = 0; i < length; i++)
+            sb.append((char) ('a' + (row + column + i) % 26));
+        return sb.toString();
+    }
+
+    // Creates a column spec.
+    private static OneRowChange.ColumnSpec columnSpec(OneRowChange rowChange,
+            int index)
+    {
+        OneRowChange.ColumnSpec spec = rowChange.new ColumnSpec();
+        spec.setIndex(index + 1);
+        spec.setName("c" + (index + 1));
+        spec.setType(columnType(index));
+        if (columnType(index) == Types.VARCHAR)
+            spec.setLength(VARCHAR_LENGTH);
+        return spec;
+    }
+
+    // Creates the column values of a single row.
+    private static ArrayList<OneRowChange.ColumnVal> columnValues(
+            OneRowChange rowChange, int row, int columns)
+    {
+        ArrayList<OneRowChange.ColumnVal> values = new ArrayList<OneRowChange.ColumnVal>(
+                columns);
+        for (int c = 0; c < columns; c++)
+        {
+            OneRowChange.ColumnVal value = rowChange.new ColumnVal();
+            if (columnType(c) == Types.INTEGER)
+                value.setValue(new Integer(row * columns + c));
+            else
+                value.setValue(stringValue(row, c, VARCHAR_LENGTH));
+            values.add(value);
+        }
+        return values;
+    }
+
+    // Wraps data in a replication event.
+    private static ReplDBMSEvent makeEvent(long seqno, DBMSData data)
+    {
+        ArrayList<DBMSData> dataList = new ArrayList<DBMSData>();
+        dataList.add(data);
+        DBMSEvent dbmsEvent = new DBMSEvent("mysql-bin.000001:" + seqno,
+                dataList, new Timestamp(System.currentTimeMillis()));
+        return new ReplDBMSEvent(seqno, dbmsEvent);
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Iterator;
+
+import com.continuent.tungsten.replicator.dbms.OneRowChange;
+import com.continuent.tungsten.replicator.dbms.RowChangeData;
+import com.continuent.tungsten.replicator.event.ReplDBMSEvent;
+import com.continuent.tungsten.replicator.thl.THLEvent;
+import com.continuent.tungsten.replicator.thl.serializer.ProtobufSerializer;
+
+/**
+ * Measures reading the row changes of a large fragment as an applier does.
+ * Streaming reads decode one row change at a time through
+ * RowChangeData.rowChangeIterator(), so that only the serialized fragment and
+ * the current row change are in memory. Other reads decode the full list of
+ * row changes, as filters do.
+ *
+ * @version 1.0
+ */
+public class FragmentBenchmark implements Benchmark
+{
+    private final boolean      streaming;
+    private final int          rowChanges;
+    private final int          rows;
+    private final int          columns;
+
+    private ProtobufSerializer serializer;
+    private byte[]             bytes;
+
+    /**
+     * Creates a new benchmark.
+     *
+     * @param streaming If true decode row changes one at a time
+     * @param rowChanges Number of row changes in the fragment
+     * @param rows Number of rows in each row change
+     * @param columns Number of columns in each row
+     */
+    public FragmentBenchmark(boolean streaming, int rowChanges, int rows,
+            int columns)
+    {
+        this.streaming = streaming;
+        this.rowChanges = rowChanges;
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#getName()
+     */
+    public String getName()
+    {
+        return "serializer.fragment." + (streaming ? "stream" : "list")
+                + ".rows-" + rowChanges + "x" + rows + "x" + columns;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#setUp()
+     */
+    public void setUp() throws Exception
+    {
+        serializer = new ProtobufSerializer();
+        ReplDBMSEvent replEvent = EventGenerator.fragmentEvent(1, rowChanges,
+                rows, columns);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.serializeEvent(EventGenerator.thlEvent(replEvent), out);
+        bytes = out.toByteArray();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#execute()
+     */
+    public long execute() throws Exception
+    {
+        THLEvent event = serializer.deserializeEvent(new ByteArrayInputStream(
+                bytes));
+        RowChangeData data = (RowChangeData) ((ReplDBMSEvent) event
+                .getReplEvent()).getData().get(0);
+        long count = 0;
+        if (streaming)
+        {
+            Iterator<OneRowChange> iterator = data.rowChangeIterator();
+            while (iterator.hasNext())
+                count += iterator.next().getKeyValues().size();
+        }
+        else
+        {
+            for (OneRowChange rowChange : data.getRowChanges())
+                count += rowChange.getKeyValues().size();
+        }
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#tearDown()
+     */
+    public void tearDown() throws Exception
+    {
+        serializer = null;
+        bytes = null;
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.bench;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+import com.continuent.tungsten.replicator.applier.JdbcApplier;
+import com.continuent.tungsten.replicator.database.MySQLDatabase;
+import com.continuent.tungsten.replicator.dbms.OneRowChange;
+import com.continuent.tungsten.replicator.dbms.RowChangeData;
+
+/**
+ * Measures construction of prepared statement SQL for row changes in the JDBC
+ * applier. The applier uses a MySQL dialect but does not connect to a
+ * database.
+ *
+ * @version 1.0
+ */
+public class JdbcApplierBenchmark implements Benchmark
+{
+    private final String                      action;
+    private final int                         columns;
+
+    private StatementApplier                  applier;
+    private OneRowChange                      rowChange;
+    private ArrayList<OneRowChange.ColumnVal> keyValues;
+    private ArrayList<OneRowChange.ColumnVal> colValues;
+
+    /**
+     * Creates a new benchmark.
+     *
+     * @param action Row change type, one of "insert", "update", or "delete"
+     * @param columns Number of columns in the table
+     */
+    public JdbcApplierBenchmark(String action, int columns)
+    {
+        this.action = action;
+        this.columns = columns;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#getName()
+     */
+    public String getName()
+    {
+        return "jdbcapplier.statement." + action + "-" + columns;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#setUp()
+     */
+    public void setUp() throws Exception
+    {
+        applier = new StatementApplier();
+        rowChange = EventGenerator.rowChange(RowChangeData.ActionType
+                .valueOf(action.toUpperCase()), 1, columns);
+        if (rowChange.getKeyValues().size() > 0)
+            keyValues = rowChange.getKeyValues().get(0);
+        if (rowChange.getColumnValues().size() > 0)
+            colValues = rowChange.getColumnValues().get(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#execute()
+     */
+    public long execute() throws Exception
+    {
+        StringBuffer stmt = applier.constructStatement(rowChange.getAction(),
+                rowChange.getSchemaName(), rowChange.getTableName(),
+                rowChange.getColumnSpec(), rowChange.getKeySpec(), keyValues,
+                colValues);
+        return stmt.length();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#tearDown()
+     */
+    public void tearDown() throws Exception
+    {
+        applier = null;
+        rowChange = null;
+        keyValues = null;
+        colValues = null;
+    }
+
+    // Applier that generates SQL without a database connection.
+    private static class StatementApplier extends JdbcApplier
+    {
+        StatementApplier() throws SQLException
+        {
+            conn = new MySQLDatabase();
+        }
+
+        protected StringBuffer constructStatement(
+                RowChangeData.ActionType action, String schemaName,
+                String tableName, ArrayList<OneRowChange.ColumnSpec> columns,
+                ArrayList<OneRowChange.ColumnSpec> keys,
+                ArrayList<OneRowChange.ColumnVal> keyValues,
+                ArrayList<OneRowChange.ColumnVal> colValues)
+        {
+            return super.constructStatement(action, schemaName, tableName,
+                    columns, keys, keyValues, colValues);
+        }
+    }
+}
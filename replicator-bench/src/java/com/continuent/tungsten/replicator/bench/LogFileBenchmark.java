@@ -0,0 +1,158 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.bench;
+
+import java.io.File;
+
+import com.continuent.tungsten.replicator.thl.log.LogFile;
+import com.continuent.tungsten.replicator.thl.log.LogRecord;
+
+/**
+ * Measures writing and reading records in a log file. Writes go through the
+ * log file buffer without flushing, as the disk log flushes once per commit
+ * interval rather than per record. Writes start a new file whenever the
+ * current one reaches the maximum size and reads reopen the file at its end,
+ * so a run uses bounded disk space.
+ *
+ * @version 1.0
+ */
+public class LogFileBenchmark implements Benchmark
+{
+    // Maximum log file size in bytes.
+    private static final int LOG_FILE_SIZE = 64 * 1024 * 1024;
+
+    // Records to write for the read benchmark.
+    private static final int READ_RECORDS  = 10000;
+
+    private final boolean    read;
+    private final int        length;
+
+    private File             dir;
+    private File             file;
+    private LogFile          logFile;
+    private LogRecord        record;
+
+    /**
+     * Creates a new benchmark.
+     *
+     * @param read If true measure reads, otherwise writes
+     * @param length Length of record data in bytes
+     */
+    public LogFileBenchmark(boolean read, int length)
+    {
+        this.read = read;
+        this.length = length;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#getName()
+     */
+    public String getName()
+    {
+        return "logfile." + (read ? "read" : "write") + "." + length;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#setUp()
+     */
+    public void setUp() throws Exception
+    {
+        dir = File.createTempFile("bench-logfile", "");
+        dir.delete();
+        dir.mkdirs();
+        file = new File(dir, "thl.data.0000000001");
+
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++)
+            bytes[i] = (byte) i;
+        record = new LogRecord(-1, bytes, LogRecord.CRC_TYPE_32,
+                LogRecord.computeCrc32(bytes));
+
+        createFile();
+        if (read)
+        {
+            for (int i = 0; i < READ_RECORDS; i++)
+                logFile.writeRecord(record, 0);
+            logFile.flush();
+            logFile.close();
+            openFileForRead();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#execute()
+     */
+    public long execute() throws Exception
+    {
+        if (read)
+        {
+            LogRecord result = logFile.readRecord(0);
+            if (result.isEmpty())
+            {
+                // Start over at the beginning of the file.
+                logFile.close();
+                openFileForRead();
+                result = logFile.readRecord(0);
+            }
+            return result.getCrc();
+        }
+        else
+        {
+            if (logFile.writeRecord(record, LOG_FILE_SIZE))
+            {
+                logFile.close();
+                file.delete();
+                createFile();
+            }
+            return record.getCrc();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#tearDown()
+     */
+    public void tearDown() throws Exception
+    {
+        if (logFile != null)
+            logFile.close();
+        file.delete();
+        dir.delete();
+    }
+
+    private void createFile() throws Exception
+    {
+        logFile = new LogFile(file);
+        logFile.create(1);
+    }
+
+    private void openFileForRead() throws Exception
+    {
+        logFile = new LogFile(file);
+        logFile.openRead();
+    }
+}
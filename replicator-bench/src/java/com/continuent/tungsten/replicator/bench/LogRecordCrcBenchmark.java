@@ -0,0 +1,86 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.bench;
+
+import com.continuent.tungsten.replicator.thl.log.LogRecord;
+
+/**
+ * Measures CRC-32 computation on log record data, which occurs when records
+ * are written and again when they are read.
+ *
+ * @version 1.0
+ */
+public class LogRecordCrcBenchmark implements Benchmark
+{
+    private final int length;
+    private byte[]    bytes;
+
+    /**
+     * Creates a new benchmark.
+     *
+     * @param length Length of record data in bytes
+     */
+    public LogRecordCrcBenchmark(int length)
+    {
+        this.length = length;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#getName()
+     */
+    public String getName()
+    {
+        return "logrecord.crc32." + length;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#setUp()
+     */
+    public void setUp() throws Exception
+    {
+        bytes = new byte[length];
+        for (int i = 0; i < length; i++)
+            bytes[i] = (byte) i;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#execute()
+     */
+    public long execute() throws Exception
+    {
+        return LogRecord.computeCrc32(bytes);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#tearDown()
+     */
+    public void tearDown() throws Exception
+    {
+        bytes = null;
+    }
+}
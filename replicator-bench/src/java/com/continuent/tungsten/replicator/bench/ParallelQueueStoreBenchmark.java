@@ -0,0 +1,101 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.bench;
+
+import com.continuent.tungsten.replicator.event.ReplDBMSEvent;
+import com.continuent.tungsten.replicator.event.ReplEvent;
+import com.continuent.tungsten.replicator.storage.parallel.ParallelQueueStore;
+
+/**
+ * Measures the cost of passing an event through a parallel queue store, which
+ * includes partitioning, queue operations, and bookkeeping of the active
+ * store size. Each operation puts one event and gets it back on the same
+ * thread so that results do not depend on thread scheduling.
+ *
+ * @version 1.0
+ */
+public class ParallelQueueStoreBenchmark implements Benchmark
+{
+    private final String       queueType;
+
+    private ParallelQueueStore store;
+    private ReplDBMSEvent      event;
+
+    /**
+     * Creates a new benchmark.
+     *
+     * @param queueType Queue type of the store
+     */
+    public ParallelQueueStoreBenchmark(String queueType)
+    {
+        this.queueType = queueType;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#getName()
+     */
+    public String getName()
+    {
+        return "parallelqueue.putget." + queueType;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#setUp()
+     */
+    public void setUp() throws Exception
+    {
+        store = new ParallelQueueStore();
+        store.setName("bench");
+        store.setMaxSize(100);
+        store.setPartitions(1);
+        store.setSyncEnabled(false);
+        store.setQueueType(queueType);
+        store.configure(null);
+        store.prepare(null);
+        event = EventGenerator.statementEvent(1, 100);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#execute()
+     */
+    public long execute() throws Exception
+    {
+        store.put(0, event);
+        ReplEvent result = store.get(0);
+        return result.getSeqno();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#tearDown()
+     */
+    public void tearDown() throws Exception
+    {
+        store.release(null);
+        store = null;
+    }
+}
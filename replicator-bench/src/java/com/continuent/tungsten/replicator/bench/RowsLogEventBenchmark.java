@@ -0,0 +1,223 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.bench;
+
+import java.io.ByteArrayOutputStream;
+
+import com.continuent.tungsten.replicator.dbms.RowChangeData;
+import com.continuent.tungsten.replicator.extractor.mysql.FormatDescriptionLogEvent;
+import com.continuent.tungsten.replicator.extractor.mysql.MysqlBinlog;
+import com.continuent.tungsten.replicator.extractor.mysql.TableMapLogEvent;
+import com.continuent.tungsten.replicator.extractor.mysql.WriteRowsLogEvent;
+
+/**
+ * Measures parsing of MySQL row events by the extractor. The benchmark builds
+ * binary table map and write rows events in the MySQL 5.1 binlog format for a
+ * table whose columns alternate between INT and VARCHAR. Each operation
+ * decodes the write rows event and extracts its rows into a row change, as
+ * the extractor does for every row event.
+ *
+ * @version 1.0
+ */
+public class RowsLogEventBenchmark implements Benchmark
+{
+    // Table ID shared by the table map and rows events.
+    private static final long         TABLE_ID = 42;
+
+    private final int                 rows;
+    private final int                 columns;
+
+    private FormatDescriptionLogEvent descriptionEvent;
+    private TableMapLogEvent          tableMap;
+    private byte[]                    rowsBuffer;
+
+    /**
+     * Creates a new benchmark.
+     *
+     * @param rows Number of rows in the event
+     * @param columns Number of columns in the table
+     */
+    public RowsLogEventBenchmark(int rows, int columns)
+    {
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#getName()
+     */
+    public String getName()
+    {
+        return "rowslogevent.write.rows-" + rows + "x" + columns;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#setUp()
+     */
+    public void setUp() throws Exception
+    {
+        descriptionEvent = new FormatDescriptionLogEvent(4);
+        byte[] tableMapBuffer = buildTableMapEvent();
+        tableMap = new TableMapLogEvent(tableMapBuffer, tableMapBuffer.length,
+                descriptionEvent);
+        rowsBuffer = buildWriteRowsEvent();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#execute()
+     */
+    public long execute() throws Exception
+    {
+        WriteRowsLogEvent event = new WriteRowsLogEvent(rowsBuffer,
+                rowsBuffer.length, descriptionEvent, false);
+        RowChangeData rowChanges = new RowChangeData();
+        event.processExtractedEvent(rowChanges, tableMap);
+        return rowChanges.getRowChanges().get(0).getColumnValues().size();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#tearDown()
+     */
+    public void tearDown() throws Exception
+    {
+        descriptionEvent = null;
+        tableMap = null;
+        rowsBuffer = null;
+    }
+
+    // Returns the MySQL type of a column.
+    private static int mysqlType(int index)
+    {
+        return (index % 2 == 0)
+                ? MysqlBinlog.MYSQL_TYPE_LONG
+                : MysqlBinlog.MYSQL_TYPE_VARCHAR;
+    }
+
+    // Builds a table map event.
+    private byte[] buildTableMapEvent()
+    {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        // Post-header: table ID and flags.
+        writeLittleEndian(body, TABLE_ID, 6);
+        writeLittleEndian(body, 0, 2);
+
+        // Schema and table names, each with a length and trailing null.
+        writeName(body, EventGenerator.SCHEMA);
+        writeName(body, EventGenerator.TABLE);
+
+        // Column types followed by metadata, which only VARCHAR columns have.
+        body.write(columns);
+        for (int c = 0; c < columns; c++)
+            body.write(mysqlType(c));
+        ByteArrayOutputStream metadata = new ByteArrayOutputStream();
+        for (int c = 0; c < columns; c++)
+        {
+            if (mysqlType(c) == MysqlBinlog.MYSQL_TYPE_VARCHAR)
+                writeLittleEndian(metadata, EventGenerator.VARCHAR_LENGTH, 2);
+        }
+        body.write(metadata.size());
+        body.write(metadata.toByteArray(), 0, metadata.size());
+
+        // Nullable columns bit-field.
+        writeBitField(body, columns, false);
+
+        return buildEvent(MysqlBinlog.TABLE_MAP_EVENT, body.toByteArray());
+    }
+
+    // Builds a write rows event.
+    private byte[] buildWriteRowsEvent()
+    {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        // Post-header: table ID and flags.
+        writeLittleEndian(body, TABLE_ID, 6);
+        writeLittleEndian(body, 0, 2);
+
+        // Column count and used columns bit-field.
+        body.write(columns);
+        writeBitField(body, columns, true);
+
+        // Rows, each a null bit-field followed by values.
+        for (int r = 0; r < rows; r++)
+        {
+            writeBitField(body, columns, false);
+            for (int c = 0; c < columns; c++)
+            {
+                if (mysqlType(c) == MysqlBinlog.MYSQL_TYPE_LONG)
+                    writeLittleEndian(body, r * columns + c, 4);
+                else
+                {
+                    byte[] value = EventGenerator.stringValue(r, c,
+                            EventGenerator.VARCHAR_LENGTH).getBytes();
+                    body.write(value.length);
+                    body.write(value, 0, value.length);
+                }
+            }
+        }
+
+        return buildEvent(MysqlBinlog.WRITE_ROWS_EVENT, body.toByteArray());
+    }
+
+    // Prefixes an event body with the common header.
+    private byte[] buildEvent(int type, byte[] body)
+    {
+        int length = descriptionEvent.commonHeaderLength + body.length;
+        ByteArrayOutputStream event = new ByteArrayOutputStream(length);
+        writeLittleEndian(event, System.currentTimeMillis() / 1000, 4);
+        event.write(type);
+        writeLittleEndian(event, 1, 4);
+        writeLittleEndian(event, length, 4);
+        writeLittleEndian(event, 0, 4);
+        writeLittleEndian(event, 0, 2);
+        event.write(body, 0, body.length);
+        return event.toByteArray();
+    }
+
+    private static void writeName(ByteArrayOutputStream out, String name)
+    {
+        byte[] bytes = name.getBytes();
+        out.write(bytes.length);
+        out.write(bytes, 0, bytes.length);
+        out.write(0);
+    }
+
+    private static void writeBitField(ByteArrayOutputStream out, int bits,
+            boolean set)
+    {
+        for (int i = 0; i < (bits + 7) / 8; i++)
+            out.write(set ? 0xFF : 0);
+    }
+
+    private static void writeLittleEndian(ByteArrayOutputStream out,
+            long value, int bytes)
+    {
+        for (int i = 0; i < bytes; i++)
+            out.write((int) (value >>> (8 * i)) & 0xFF);
+    }
+}
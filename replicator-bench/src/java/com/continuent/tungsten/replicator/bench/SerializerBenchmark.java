@@ -0,0 +1,129 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import com.continuent.tungsten.replicator.event.ReplDBMSEvent;
+import com.continuent.tungsten.replicator.thl.THLEvent;
+import com.continuent.tungsten.replicator.thl.serializer.ProtobufSerializer;
+
+/**
+ * Measures protobuf serialization and deserialization of THL events, which
+ * occurs on every log write and read.
+ *
+ * @version 1.0
+ */
+public class SerializerBenchmark implements Benchmark
+{
+    private final boolean         deserialize;
+    private final int             rows;
+    private final int             width;
+
+    private ProtobufSerializer    serializer;
+    private THLEvent              event;
+    private ByteArrayOutputStream out;
+    private byte[]                bytes;
+
+    /**
+     * Creates a new benchmark.
+     *
+     * @param deserialize If true measure deserialization, otherwise
+     *            serialization
+     * @param rows Number of rows in a row change event or 0 for a statement
+     *            event
+     * @param width Number of columns for row changes or statement length
+     */
+    public SerializerBenchmark(boolean deserialize, int rows, int width)
+    {
+        this.deserialize = deserialize;
+        this.rows = rows;
+        this.width = width;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#getName()
+     */
+    public String getName()
+    {
+        String op = deserialize ? "deserialize" : "serialize";
+        if (rows == 0)
+            return "serializer." + op + ".stmt-" + width;
+        else
+            return "serializer." + op + ".rows-" + rows + "x" + width;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#setUp()
+     */
+    public void setUp() throws Exception
+    {
+        serializer = new ProtobufSerializer();
+        ReplDBMSEvent replEvent;
+        if (rows == 0)
+            replEvent = EventGenerator.statementEvent(1, width);
+        else
+            replEvent = EventGenerator.rowEvent(1, rows, width);
+        event = EventGenerator.thlEvent(replEvent);
+
+        out = new ByteArrayOutputStream();
+        serializer.serializeEvent(event, out);
+        bytes = out.toByteArray();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#execute()
+     */
+    public long execute() throws Exception
+    {
+        if (deserialize)
+        {
+            THLEvent result = serializer
+                    .deserializeEvent(new ByteArrayInputStream(bytes));
+            return result.getSeqno();
+        }
+        else
+        {
+            out.reset();
+            serializer.serializeEvent(event, out);
+            return out.size();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see com.continuent.tungsten.replicator.bench.Benchmark#tearDown()
+     */
+    public void tearDown() throws Exception
+    {
+        serializer = null;
+        event = null;
+        out = null;
+        bytes = null;
+    }
+}
@@ -18,6 +18,25 @@ replicator.applier.dbms.stageLoadScript=${replicator.home.dir}/samples/scripts/b
 replicator.applier.dbms.stageMergeScript=${replicator.home.dir}/samples/scripts/batch/@{SERVICE.BATCH_LOAD_TEMPLATE}-merge.sql
 replicator.applier.dbms.cleanUpFiles=false
 
+# Collapse changes to each primary key in memory before writing CSV files.
+# Rows are written out early once their estimated size passes the limit.
+replicator.applier.dbms.stagePreMerge=false
+replicator.applier.dbms.stagePreMergeBytes=67108864
+
+# Number of tables to load and merge at the same time when committing a
+# batch. Each load thread uses its own connection.  Load connections commit 
+# before the position is updated, so a failure in between applies the batch 
+# again.  Values above 1 require idempotent merge scripts, such as the 
+# scripts in samples/scripts/batch. 
+replicator.applier.dbms.stageLoadThreads=1
+
+# Set stageLoadMode=copy to stream staged data through the driver's COPY 
+# API instead of reading CSV files on the server (PostgreSQL, Greenplum and 
+# Vertica).  Requires a load script that ends with COPY ... FROM STDIN, such 
+# as *-copy-load.sql.  Data above the buffer size per table go to a file. 
+replicator.applier.dbms.stageLoadMode=file
+replicator.applier.dbms.stageCopyBufferBytes=16777216
+
 # Included to provide default pkey for tables that omit such.  This is not 
 # a good practice in general. 
 #replicator.applier.dbms.stagePkeyColumn=id
@@ -6,3 +6,9 @@ replicator.applier.dbms.connectString=${replicator.global.db.host}:${replicator.
 # Auto-indexing will add indexes to MongoDB collections corresponding to keys
 # in row updates.  This boosts performance considerably. 
 replicator.applier.dbms.autoIndex=true
+
+# Bulk writes send up to bulkWriteSize row changes to MongoDB together and
+# may hold writes and commit positions for up to bulkWriteDelay milliseconds.
+# The defaults write each row as it arrives and each commit position at once.
+replicator.applier.dbms.bulkWriteSize=1
+replicator.applier.dbms.bulkWriteDelay=0
@@ -3,4 +3,15 @@ replicator.applier.dbms.host=${replicator.global.db.host}
 replicator.applier.dbms.port=${replicator.global.db.port}
 replicator.applier.dbms.user=${replicator.global.db.user}
 replicator.applier.dbms.password=${replicator.global.db.password}
-replicator.applier.dbms.ignoreSessionVars=autocommit
\ No newline at end of file
+replicator.applier.dbms.ignoreSessionVars=autocommit
+
+# How trep_commit_seqno positions are written: update (default), batch or 
+# writebehind.  batch appends the position update to the last statement of 
+# a transaction to save a round trip.  It needs multi-statement support, 
+# which only MySQL Connector/J offers with allowMultiQueries=true in the 
+# url; the Drizzle driver used above falls back to update. 
+replicator.applier.dbms.commitSeqnoMode=update
+
+# Minimum time in milliseconds between position writes in writebehind mode. 
+# A held position is also written after an interval without commits. 
+replicator.applier.dbms.commitSeqnoInterval=1000
@@ -21,6 +21,17 @@ replicator.extractor.dbms.usingBytesForString=@{REPL_MYSQL_USE_BYTES_FOR_STRING}
 # will occur.  1M bytes is a good size for most installations.
 replicator.extractor.dbms.transaction_frag_size=1000000
 
+# Number of threads that decode rows of row events in parallel with reading
+# the binlog.  Row changes are still emitted in binlog order.  0 decodes rows
+# on the extractor thread, which is sufficient unless extraction of large
+# row-based transactions is CPU bound.
+replicator.extractor.dbms.rowDecoderThreads=0
+
+# If true, row values are extracted into columnar containers instead of one
+# object per column value, which lowers garbage and speeds up serialization
+# into the THL.  Filters that read row values still see ordinary lists.
+replicator.extractor.dbms.useColumnarRows=false
+
 # When using relay logs we download from the master into binlog_dir.  This
 # is used for off-board replication.
 replicator.extractor.dbms.useRelayLogs=@{EXTRACTOR.REPL_DISABLE_RELAY_LOGS}
@@ -5,4 +5,15 @@ replicator.extractor.dbms.database=@{REPL_POSTGRESQL_DBNAME}
 replicator.extractor.dbms.slonySchema=_@{SERVICE.DEPLOYMENT_SERVICE}
 replicator.extractor.dbms.port=${replicator.global.extract.db.port}
 replicator.extractor.dbms.user=${replicator.global.extract.db.user}
-replicator.extractor.dbms.password=${replicator.global.extract.db.password}
\ No newline at end of file
+replicator.extractor.dbms.password=${replicator.global.extract.db.password}
+# Set fetchSize above 0 to read the Slony log in batches through a
+# server-side cursor in a separate thread, up to fetchQueueSize transactions
+# ahead of extraction.  An idle log is polled with a wait that grows from
+# minPollInterval to maxPollInterval milliseconds.  If a trigger on the
+# master issues NOTIFY on notifyChannel when log rows are added, the
+# extractor listens on it and reads new rows as soon as they appear. 
+replicator.extractor.dbms.fetchSize=0
+replicator.extractor.dbms.fetchQueueSize=100
+#replicator.extractor.dbms.notifyChannel=tungsten_slony_log
+replicator.extractor.dbms.minPollInterval=10
+replicator.extractor.dbms.maxPollInterval=1000
@@ -0,0 +1,4 @@
+# Load script for PostgreSQL and Greenplum that streams staged data from 
+# the replicator.  Use with stageLoadMode=copy.  The last command receives 
+# the data.  Unquoted empty values load as NULL. 
+COPY %%STAGE_TABLE%% FROM STDIN WITH CSV
@@ -0,0 +1,4 @@
+# Load script for Vertica that streams staged data from the replicator. 
+# Use with stageLoadMode=copy.  The last command receives the data. 
+COPY %%STAGE_TABLE%% FROM STDIN 
+  DIRECT NULL 'null' DELIMITER ',' ENCLOSED BY '"'
@@ -1,8 +1,11 @@
 # Merge script for Vertica. 
 #
-# Delete rows.  This query applies all deletes that match, need it or not. 
+# Delete rows.  This query deletes every key in the stage table, including 
+# keys that are only inserted.  Vertica does not enforce primary keys, so 
+# this keeps the merge idempotent when a batch is applied again after a 
+# partial commit. 
 DELETE FROM %%BASE_TABLE%% WHERE %%BASE_PKEY%% IN 
-  (SELECT %%STAGE_PKEY%% FROM %%STAGE_TABLE%% WHERE tungsten_opcode = 'D')
+  (SELECT %%STAGE_PKEY%% FROM %%STAGE_TABLE%%)
 
 # Insert rows.  This query loads each inserted row provided that the 
 # insert is (a) the last insert processed and (b) is not followed by a 
@@ -24,6 +24,7 @@ package com.continuent.tungsten.replicator.applier;
 
 import org.apache.log4j.Logger;
 
+import com.continuent.tungsten.commons.config.TungstenProperties;
 import com.continuent.tungsten.replicator.ReplicatorException;
 import com.continuent.tungsten.replicator.consistency.ConsistencyException;
 import com.continuent.tungsten.replicator.event.DBMSEmptyEvent;
@@ -39,7 +40,7 @@ import com.continuent.tungsten.replicator.plugin.PluginContext;
  * @author <a href="mailto:robert.hodges@continuent.com">Robert Hodges</a>
  * @version 1.0
  */
-public class ApplierWrapper implements ParallelApplier
+public class ApplierWrapper implements ParallelApplier, ApplierStatusProvider
 {
     private static Logger logger = Logger.getLogger(ApplierWrapper.class);
     private RawApplier    applier;
@@ -60,6 +61,20 @@ public class ApplierWrapper implements ParallelApplier
         return applier;
     }
 
+    /**
+     * Returns status of the wrapped applier or null if it does not report
+     * status.
+     * 
+     * @see com.continuent.tungsten.replicator.applier.ApplierStatusProvider#status()
+     */
+    public TungstenProperties status()
+    {
+        if (applier instanceof ApplierStatusProvider)
+            return ((ApplierStatusProvider) applier).status();
+        else
+            return null;
+    }
+
     /**
      * {@inheritDoc}
      * 
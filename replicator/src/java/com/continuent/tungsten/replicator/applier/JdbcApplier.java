@@ -25,6 +25,7 @@ package com.continuent.tungsten.replicator.applier;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.sql.BatchUpdateException;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -35,12 +36,18 @@ import java.sql.Types;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import org.apache.log4j.Logger;
 
+import com.continuent.tungsten.commons.config.TungstenProperties;
 import com.continuent.tungsten.replicator.ReplicatorException;
 import com.continuent.tungsten.replicator.conf.ReplicatorRuntime;
 import com.continuent.tungsten.replicator.consistency.ConsistencyCheck;
@@ -48,9 +55,12 @@ import com.continuent.tungsten.replicator.consistency.ConsistencyCheckFactory;
 import com.continuent.tungsten.replicator.consistency.ConsistencyException;
 import com.continuent.tungsten.replicator.consistency.ConsistencyTable;
 import com.continuent.tungsten.replicator.database.Column;
+import com.continuent.tungsten.replicator.database.DBMS;
 import com.continuent.tungsten.replicator.database.Database;
 import com.continuent.tungsten.replicator.database.DatabaseFactory;
 import com.continuent.tungsten.replicator.database.MySQLOperationMatcher;
+import com.continuent.tungsten.replicator.database.PreparedStatementCache;
+import com.continuent.tungsten.replicator.database.PreparedStatementCache.CachedStatement;
 import com.continuent.tungsten.replicator.database.SqlOperation;
 import com.continuent.tungsten.replicator.database.SqlOperationMatcher;
 import com.continuent.tungsten.replicator.database.Table;
@@ -84,10 +94,23 @@ import com.continuent.tungsten.replicator.thl.THLManagerCtrl;
  * @author <a href="mailto:teemu.ollakka@continuent.com">Teemu Ollakka</a>
  * @version 1.0
  */
-public class JdbcApplier implements RawApplier
+public class JdbcApplier implements RawApplier, ApplierStatusProvider
 {
     static Logger                     logger               = Logger.getLogger(JdbcApplier.class);
 
+    /** Writes the position with a separate update in each transaction. */
+    public static final String        SEQNO_UPDATE         = "update";
+
+    /**
+     * Sends the position in the same query string as the last statement of a
+     * transaction where possible. Requires MySQL Connector/J with
+     * allowMultiQueries=true.
+     */
+    public static final String        SEQNO_BATCH          = "batch";
+
+    /** Writes positions after commit at most once per interval. */
+    public static final String        SEQNO_WRITE_BEHIND   = "writebehind";
+
     protected int                     taskId               = 0;
     protected ReplicatorRuntime       runtime              = null;
     protected String                  driver               = null;
@@ -124,12 +147,45 @@ public class JdbcApplier implements RawApplier
      */
     protected int                     maxSQLLogLength      = 1000;
 
+    // Row change batching. Rows of a row change that share a statement are
+    // sent in JDBC batches of up to batchSize rows. Inserts on databases that
+    // support it are instead sent as multi-row inserts of up to maxInsertRows
+    // rows and maxBindParameters bound values. A value of 1 for either size
+    // applies one row per statement execution.
+    protected int                     batchSize            = 1;
+    protected int                     maxInsertRows        = 1;
+    protected int                     maxBindParameters    = 32767;
+
+    // Maximum number of row change statements to keep prepared. A value of 0
+    // prepares statements each time they are used.
+    protected int                     statementCacheSize   = 0;
+
+    // Persistence of trep_commit_seqno positions. See setCommitSeqnoMode().
+    protected String                  commitSeqnoMode      = SEQNO_UPDATE;
+    protected long                    commitSeqnoInterval  = 1000;
+
     private TableMetadataCache        tableMetadataCache;
+    protected PreparedStatementCache  statementCache;
 
     private boolean                   transactionStarted   = false;
 
     private ReplDBMSHeader            lastProcessedEvent   = null;
 
+    // Position update to append to the next statement in batch mode and
+    // whether the last statement included it.
+    private String                    commitSeqnoSQL       = null;
+    private boolean                   commitSeqnoSent      = false;
+    private long                      commitSeqnoBatched   = 0;
+
+    // Position of the open transaction in write-behind mode, which is
+    // recorded once the transaction commits.
+    private ReplDBMSHeader            uncommittedHeader    = null;
+    private long                      uncommittedLatency;
+
+    // Background write of held positions in write-behind mode, so that an
+    // idle applier does not leave a stale position.
+    private ScheduledExecutorService  commitSeqnoFlusher;
+
     private Hashtable<Integer, File>  fileTable;
 
     protected HashMap<String, String> currentOptions;
@@ -181,6 +237,97 @@ public class JdbcApplier implements RawApplier
         this.ignoreSessionVars = ignoreSessionVars;
     }
 
+    /**
+     * Sets the maximum number of rows to send in a single JDBC batch when
+     * applying row changes.
+     */
+    public void setBatchSize(int batchSize)
+    {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the maximum number of rows in a multi-row insert. Values greater
+     * than 1 enable multi-row inserts on databases that support them.
+     */
+    public void setMaxInsertRows(int maxInsertRows)
+    {
+        this.maxInsertRows = maxInsertRows;
+    }
+
+    /**
+     * Sets the maximum number of bound values in a multi-row insert. The
+     * default is the PostgreSQL protocol limit.
+     */
+    public void setMaxBindParameters(int maxBindParameters)
+    {
+        this.maxBindParameters = maxBindParameters;
+    }
+
+    /**
+     * Sets the maximum number of row change statements to keep prepared. The
+     * default of 0 prepares statements each time they are used. On MySQL with
+     * Connector/J, cached statements are prepared on the server.
+     */
+    public void setStatementCacheSize(int statementCacheSize)
+    {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * Sets how positions in trep_commit_seqno are written. "update", the
+     * default, writes the position with a separate statement in each
+     * transaction. "batch" sends the position in the same query string as the
+     * last statement of a transaction, which saves a round trip for
+     * statement-based transactions on MySQL. It requires MySQL Connector/J
+     * with allowMultiQueries=true in the url; other drivers and databases
+     * fall back to "update", as do row-based transactions. "writebehind"
+     * writes positions after transactions commit, at most once every
+     * commitSeqnoInterval milliseconds, and writes the last held position
+     * after an interval without commits. It is meant for non-transactional
+     * targets, where transactions since the last written position are applied
+     * again after a crash.
+     */
+    public void setCommitSeqnoMode(String commitSeqnoMode)
+    {
+        this.commitSeqnoMode = commitSeqnoMode;
+    }
+
+    /**
+     * Sets the minimum time in milliseconds between position writes in
+     * write-behind mode.
+     */
+    public void setCommitSeqnoInterval(long commitSeqnoInterval)
+    {
+        this.commitSeqnoInterval = commitSeqnoInterval;
+    }
+
+    /**
+     * Returns prepared statement cache and position update statistics.
+     * 
+     * @see com.continuent.tungsten.replicator.applier.ApplierStatusProvider#status()
+     */
+    public TungstenProperties status()
+    {
+        TungstenProperties props = new TungstenProperties();
+        props.setString("commitSeqnoMode", commitSeqnoMode);
+        CommitSeqnoTable table = commitSeqnoTable;
+        if (table != null)
+            props.setLong("commitSeqnoUpdates", table.getUpdateCount());
+        props.setLong("commitSeqnoBatched", commitSeqnoBatched);
+        PreparedStatementCache cache = statementCache;
+        if (cache == null)
+            props.setInt("statementCacheCapacity", 0);
+        else
+        {
+            props.setInt("statementCacheCapacity", cache.getCapacity());
+            props.setInt("statementCacheSize", cache.size());
+            props.setLong("statementCacheHits", cache.getHits());
+            props.setLong("statementCacheMisses", cache.getMisses());
+        }
+        return props;
+    }
+
     /**
      * Trim whitespace. Needed, because of different DBMS policies on returning
      * trailing whitespace from char(x) fields (PostgreSQL) or not (MySQL).
@@ -561,15 +708,26 @@ public class JdbcApplier implements RawApplier
 
             applySessionVariables(options);
 
-            if (data.getQuery() != null)
-                statement.addBatch(data.getQuery());
-            else
-                statement.addBatch(new String(data.getQueryAsBytes()));
+            String query = data.getQuery();
+            if (query == null)
+                query = new String(data.getQueryAsBytes());
+
+            // Send the transaction position along if requested. Drivers send
+            // each batch entry separately, so the update must be part of the
+            // same multi-statement string to share the round trip.
+            boolean sendsCommitSeqno = (commitSeqnoSQL != null);
+            if (sendsCommitSeqno)
+            {
+                query = appendStatement(query, commitSeqnoSQL);
+                commitSeqnoSQL = null;
+            }
+            statement.addBatch(query);
 
             statement.setEscapeProcessing(false);
             try
             {
                 updateCount = statement.executeBatch();
+                commitSeqnoSent = sendsCommitSeqno;
             }
             catch (SQLWarning e)
             {
@@ -631,6 +789,19 @@ public class JdbcApplier implements RawApplier
         }
     }
 
+    // Returns a multi-statement string that runs the query and then the
+    // given statement. A trailing comment or semicolon of the query must not
+    // swallow or empty the next statement.
+    private String appendStatement(String query, String next)
+    {
+        int end = query.length();
+        while (end > 0
+                && (Character.isWhitespace(query.charAt(end - 1)) || query
+                        .charAt(end - 1) == ';'))
+            end--;
+        return query.substring(0, end) + "\n;" + next;
+    }
+
     /**
      * applySetTimestamp adds to the batch the query used to change the server
      * timestamp, if needed and if possible (if the database support such a
@@ -799,7 +970,7 @@ public class JdbcApplier implements RawApplier
      *            used.
      * @return Constructed SQL statement with "?" instead of real values.
      */
-    private StringBuffer constructStatement(RowChangeData.ActionType action,
+    protected StringBuffer constructStatement(RowChangeData.ActionType action,
             String schemaName, String tableName,
             ArrayList<OneRowChange.ColumnSpec> columns,
             ArrayList<OneRowChange.ColumnSpec> keys,
@@ -918,6 +1089,7 @@ public class JdbcApplier implements RawApplier
     protected void applyOneRowChangePrepared(OneRowChange oneRowChange)
             throws ReplicatorException
     {
+        CachedStatement entry = null;
         PreparedStatement prepStatement = null;
 
         try
@@ -939,65 +1111,144 @@ public class JdbcApplier implements RawApplier
         ArrayList<OneRowChange.ColumnSpec> columns = oneRowChange
                 .getColumnSpec();
 
+        // Rows applied by the statement currently executing, which we report
+        // if it fails.
+        int firstRow = 0;
+        int lastRow = 0;
+
         try
         {
             ArrayList<ArrayList<OneRowChange.ColumnVal>> keyValues = oneRowChange
                     .getKeyValues();
             ArrayList<ArrayList<OneRowChange.ColumnVal>> columnValues = oneRowChange
                     .getColumnValues();
+            int rowCount = Math.max(columnValues.size(), keyValues.size());
             int updateCount = 0;
 
+            boolean multiRowInsert = maxInsertRows > 1
+                    && oneRowChange.getAction() == RowChangeData.ActionType.INSERT
+                    && columns.size() > 0 && conn.supportsMultiRowInsert();
+
             int row = 0;
-            for (row = 0; row < columnValues.size() || row < keyValues.size(); row++)
+            while (row < rowCount)
             {
-                if (row == 0
-                        || needNewSQLStatement(row, keyValues, key,
+                // Find the following rows that can use the same SQL statement.
+                int groupEnd = row + 1;
+                while (groupEnd < rowCount
+                        && !needNewSQLStatement(groupEnd, keyValues, key,
                                 columnValues, columns))
-                {
-                    ArrayList<OneRowChange.ColumnVal> keyValuesOfThisRow = null;
-                    if (keyValues.size() > 0)
-                        keyValuesOfThisRow = keyValues.get(row);
+                    groupEnd++;
+                runtime.getMonitor().incrementEvents(columnValues.size());
 
-                    // Construct separate SQL for every row, because there might
-                    // be NULLs in keys in which case SQL is different
-                    // (TREP-276).
-                    ArrayList<OneRowChange.ColumnVal> colValuesOfThisRow = null;
-                    if (columnValues.size() > 0)
-                        colValuesOfThisRow = columnValues.get(row);
-
-                    stmt = constructStatement(oneRowChange.getAction(),
-                            oneRowChange.getSchemaName(),
-                            oneRowChange.getTableName(), columns, key,
-                            keyValuesOfThisRow, colValuesOfThisRow);
+                if (multiRowInsert)
+                {
+                    // Insert as many rows per statement as limits allow.
+                    // Statements are prepared again only when the number of
+                    // rows changes. Only full-size statements are cached, so
+                    // that each remainder size does not take a cache entry.
+                    int rowsPerInsert = Math.max(1, Math.min(maxInsertRows,
+                            maxBindParameters / columns.size()));
+                    int preparedRows = 0;
+                    while (row < groupEnd)
+                    {
+                        int rows = Math.min(rowsPerInsert, groupEnd - row);
+                        firstRow = row;
+                        lastRow = row + rows - 1;
+                        if (rows != preparedRows)
+                        {
+                            stmt = constructMultiRowInsert(
+                                    oneRowChange.getSchemaName(),
+                                    oneRowChange.getTableName(), columns,
+                                    columnValues, row, rows);
+                            entry = prepareRowChangeStatement(
+                                    oneRowChange, stmt, entry,
+                                    rows == rowsPerInsert);
+                            prepStatement = entry.getStatement();
+                            preparedRows = rows;
+                        }
 
-                    runtime.getMonitor().incrementEvents(columnValues.size());
-                    prepStatement = conn.prepareStatement(stmt.toString());
+                        int bindLoc = 1;
+                        for (int i = row; i < row + rows; i++)
+                        {
+                            bindLoc = bindColumnValues(prepStatement,
+                                    columnValues.get(i), bindLoc, columns,
+                                    false);
+                        }
+                        updateCount += executeUpdate(prepStatement, stmt);
+                        row += rows;
+                    }
+                    continue;
                 }
 
-                int bindLoc = 1; /* Start binding at index 1 */
+                ArrayList<OneRowChange.ColumnVal> keyValuesOfThisRow = null;
+                if (keyValues.size() > 0)
+                    keyValuesOfThisRow = keyValues.get(row);
 
-                /* bind column values */
+                // Construct separate SQL for every row, because there might
+                // be NULLs in keys in which case SQL is different
+                // (TREP-276).
+                ArrayList<OneRowChange.ColumnVal> colValuesOfThisRow = null;
                 if (columnValues.size() > 0)
-                {
-                    bindLoc = bindColumnValues(prepStatement,
-                            columnValues.get(row), bindLoc, columns, false);
-                }
-                /* bind key values */
-                if (keyValues.size() > 0)
-                {
-                    bindLoc = bindColumnValues(prepStatement,
-                            keyValues.get(row), bindLoc, key, true);
-                }
+                    colValuesOfThisRow = columnValues.get(row);
 
-                try
+                stmt = constructStatement(oneRowChange.getAction(),
+                        oneRowChange.getSchemaName(),
+                        oneRowChange.getTableName(), columns, key,
+                        keyValuesOfThisRow, colValuesOfThisRow);
+                entry = prepareRowChangeStatement(oneRowChange, stmt, entry,
+                        true);
+                prepStatement = entry.getStatement();
+
+                if (batchSize > 1)
                 {
-                    updateCount += prepStatement.executeUpdate();
+                    // Send rows in batches.
+                    while (row < groupEnd)
+                    {
+                        int rows = Math.min(batchSize, groupEnd - row);
+                        firstRow = row;
+                        lastRow = row + rows - 1;
+                        for (int i = row; i < row + rows; i++)
+                        {
+                            bindRow(prepStatement, i, columnValues, columns,
+                                    keyValues, key);
+                            prepStatement.addBatch();
+                        }
+                        try
+                        {
+                            int[] counts = prepStatement.executeBatch();
+                            for (int count : counts)
+                            {
+                                if (count > 0)
+                                    updateCount += count;
+                            }
+                        }
+                        catch (SQLWarning e)
+                        {
+                            String msg = "While applying SQL event:\n"
+                                    + stmt.toString() + "\nWarning: "
+                                    + e.getMessage();
+                            logger.warn(msg);
+                        }
+                        catch (BatchUpdateException e)
+                        {
+                            // Narrow the report to the row that failed.
+                            firstRow = lastRow = row
+                                    + Math.min(rows - 1, getFailedIndex(e));
+                            throw e;
+                        }
+                        row += rows;
+                    }
                 }
-                catch (SQLWarning e)
+                else
                 {
-                    String msg = "While applying SQL event:\n"
-                            + stmt.toString() + "\nWarning: " + e.getMessage();
-                    logger.warn(msg);
+                    // Send rows one at a time.
+                    for (; row < groupEnd; row++)
+                    {
+                        firstRow = lastRow = row;
+                        bindRow(prepStatement, row, columnValues, columns,
+                                keyValues, key);
+                        updateCount += executeUpdate(prepStatement, stmt);
+                    }
                 }
             }
 
@@ -1009,22 +1260,161 @@ public class JdbcApplier implements RawApplier
         }
         catch (SQLException e)
         {
+            // Do not reuse a statement that failed, as it may have been
+            // prepared against an old version of the table.
+            if (entry != null && entry.isCached())
+                statementCache.invalidate(oneRowChange.getSchemaName(),
+                        oneRowChange.getTableName(), entry.getSql());
             ApplierException applierException = new ApplierException(e);
             applierException.setExtraData(logFailedRowChangeSQL(stmt,
-                    oneRowChange));
+                    oneRowChange, firstRow, lastRow));
             throw applierException;
         }
         finally
         {
-            if (prepStatement != null)
+            releaseStatement(entry);
+        }
+    }
+
+    /**
+     * Returns a prepared statement for a row change. Statements come from the
+     * statement cache if it is enabled, which keys them on the SQL text as
+     * this captures the action, columns, keys, and null pattern of the rows.
+     * The previous statement is closed unless it is cached.
+     * 
+     * @param oneRowChange Row change to which the statement applies
+     * @param stmt SQL statement template
+     * @param previous Previous statement, which may be null
+     * @param cacheable If false, the statement is prepared without using the
+     *            statement cache
+     */
+    protected CachedStatement prepareRowChangeStatement(
+            OneRowChange oneRowChange, StringBuffer stmt,
+            CachedStatement previous, boolean cacheable) throws SQLException
+    {
+        String sql = stmt.toString();
+        if (previous != null && previous.getSql().equals(sql))
+            return previous;
+        releaseStatement(previous);
+
+        if (statementCache == null || !cacheable)
+            return new CachedStatement(sql, conn.prepareStatement(sql), false);
+
+        String schema = oneRowChange.getSchemaName();
+        String table = oneRowChange.getTableName();
+        CachedStatement entry = statementCache.retrieve(schema, table, sql);
+        if (entry == null)
+        {
+            entry = statementCache.store(schema, table, sql, sql,
+                    conn.prepareReusableStatement(sql));
+        }
+        return entry;
+    }
+
+    // Closes a statement unless it belongs to the statement cache.
+    private static void releaseStatement(CachedStatement entry)
+    {
+        if (entry != null && !entry.isCached())
+            closeStatement(entry.getStatement());
+    }
+
+    /**
+     * Constructs a SQL statement template that inserts several rows.
+     * 
+     * @param schemaName Database name to work on.
+     * @param tableName Table name to work on.
+     * @param columns Columns to INSERT.
+     * @param columnValues Column values of all rows in the row change.
+     * @param firstRow Index of the first row to insert
+     * @param rows Number of rows to insert
+     * @return Constructed SQL statement with "?" instead of real values.
+     */
+    protected StringBuffer constructMultiRowInsert(String schemaName,
+            String tableName, ArrayList<OneRowChange.ColumnSpec> columns,
+            ArrayList<ArrayList<OneRowChange.ColumnVal>> columnValues,
+            int firstRow, int rows)
+    {
+        StringBuffer stmt = constructStatement(
+                RowChangeData.ActionType.INSERT, schemaName, tableName,
+                columns, null, null, columnValues.get(firstRow));
+        for (int row = firstRow + 1; row < firstRow + rows; row++)
+        {
+            stmt.append(" , ( ");
+            printColumnSpec(stmt, columns, null, columnValues.get(row),
+                    PrintMode.PLACE_HOLDER, " , ");
+            stmt.append(" ) ");
+        }
+        return stmt;
+    }
+
+    // Binds column values followed by key values of a row.
+    private void bindRow(PreparedStatement prepStatement, int row,
+            ArrayList<ArrayList<OneRowChange.ColumnVal>> columnValues,
+            ArrayList<OneRowChange.ColumnSpec> columns,
+            ArrayList<ArrayList<OneRowChange.ColumnVal>> keyValues,
+            ArrayList<OneRowChange.ColumnSpec> key) throws SQLException
+    {
+        int bindLoc = 1; /* Start binding at index 1 */
+
+        /* bind column values */
+        if (columnValues.size() > 0)
+        {
+            bindLoc = bindColumnValues(prepStatement, columnValues.get(row),
+                    bindLoc, columns, false);
+        }
+        /* bind key values */
+        if (keyValues.size() > 0)
+        {
+            bindLoc = bindColumnValues(prepStatement, keyValues.get(row),
+                    bindLoc, key, true);
+        }
+    }
+
+    // Executes a prepared statement and returns the update count, logging
+    // warnings.
+    private int executeUpdate(PreparedStatement prepStatement,
+            StringBuffer stmt) throws SQLException
+    {
+        try
+        {
+            return prepStatement.executeUpdate();
+        }
+        catch (SQLWarning e)
+        {
+            String msg = "While applying SQL event:\n" + stmt.toString()
+                    + "\nWarning: " + e.getMessage();
+            logger.warn(msg);
+            return 0;
+        }
+    }
+
+    // Returns the index of the failed statement in a batch. Drivers either
+    // stop at the first failure, in which case update counts cover only the
+    // statements that succeeded, or mark failed statements.
+    static int getFailedIndex(BatchUpdateException e)
+    {
+        int[] counts = e.getUpdateCounts();
+        if (counts == null)
+            return 0;
+        for (int i = 0; i < counts.length; i++)
+        {
+            if (counts[i] == Statement.EXECUTE_FAILED)
+                return i;
+        }
+        return counts.length;
+    }
+
+    // Closes a prepared statement, ignoring errors.
+    private static void closeStatement(PreparedStatement prepStatement)
+    {
+        if (prepStatement != null)
+        {
+            try
+            {
+                prepStatement.close();
+            }
+            catch (SQLException ignore)
             {
-                try
-                {
-                    prepStatement.close();
-                }
-                catch (SQLException ignore)
-                {
-                }
             }
         }
     }
@@ -1035,10 +1425,12 @@ public class JdbcApplier implements RawApplier
      * 
      * @see #maxSQLLogLength
      * @param stmt SQL template for PreparedStatement
+     * @param firstRow Index of the first row applied by the statement
+     * @param lastRow Index of the last row applied by the statement
      * @return
      */
     private String logFailedRowChangeSQL(StringBuffer stmt,
-            OneRowChange oneRowChange)
+            OneRowChange oneRowChange, int firstRow, int lastRow)
     {
         // TODO: use THLManagerCtrl for logging exact failing SQL after
         // branch thl_meta is merged into HEAD. Now this duplicates
@@ -1054,8 +1446,8 @@ public class JdbcApplier implements RawApplier
                     .getColumnValues();
             String log = "Failing statement : " + stmt.toString()
                     + "\nArguments:";
-            for (int row = 0; row < columnValues.size()
-                    || row < keyValues.size(); row++)
+            for (int row = firstRow; row <= lastRow
+                    && (row < columnValues.size() || row < keyValues.size()); row++)
             {
                 log += "\n - ROW# = " + row;
                 // Print column values.
@@ -1124,9 +1516,11 @@ public class JdbcApplier implements RawApplier
             }
         }
 
-        for (OneRowChange row : data.getRowChanges())
+        // Row changes may be decoded as we go, so we do not hold on to them.
+        Iterator<OneRowChange> rows = data.rowChangeIterator();
+        while (rows.hasNext())
         {
-            applyOneRowChangePrepared(row);
+            applyOneRowChangePrepared(rows.next());
         }
     }
 
@@ -1137,8 +1531,8 @@ public class JdbcApplier implements RawApplier
      *      com.continuent.tungsten.replicator.event.ReplDBMSHeader, boolean,
      *      boolean)
      */
-    public void apply(DBMSEvent event, ReplDBMSHeader header, boolean doCommit,
-            boolean doRollback) throws ReplicatorException,
+    public synchronized void apply(DBMSEvent event, ReplDBMSHeader header,
+            boolean doCommit, boolean doRollback) throws ReplicatorException,
             ConsistencyException
     {
         boolean transactionCommitted = false;
@@ -1212,6 +1606,12 @@ public class JdbcApplier implements RawApplier
             else
             {
                 ArrayList<DBMSData> data = event.getData();
+                DBMSData lastData = null;
+                commitSeqnoSent = false;
+                if (doCommit && !doRollback
+                        && SEQNO_BATCH.equals(commitSeqnoMode)
+                        && commitSeqnoTable != null && data.size() > 0)
+                    lastData = data.get(data.size() - 1);
                 for (DBMSData dataElem : data)
                 {
                     if (dataElem instanceof RowChangeData)
@@ -1237,7 +1637,21 @@ public class JdbcApplier implements RawApplier
                     else if (dataElem instanceof StatementData)
                     {
                         StatementData sdata = (StatementData) dataElem;
-                        applyStatementData(sdata);
+
+                        // Send the position with the last statement of a
+                        // committing transaction if possible.
+                        if (dataElem == lastData)
+                            commitSeqnoSQL = commitSeqnoTable
+                                    .getUpdateLastCommitSeqnoSQL(taskId,
+                                            header, appliedLatency);
+                        try
+                        {
+                            applyStatementData(sdata);
+                        }
+                        finally
+                        {
+                            commitSeqnoSQL = null;
+                        }
 
                         // Check for table metadata cache invalidation.
                         String query = sdata.getQuery();
@@ -1253,6 +1667,14 @@ public class JdbcApplier implements RawApplier
                                 logger.debug("Table metadata invalidation: stmt="
                                         + query + " invalidated=" + invalidated);
                         }
+                        if (statementCache != null)
+                        {
+                            invalidated = statementCache.invalidate(
+                                    sqlOperation, sdata.getDefaultSchema());
+                            if (invalidated > 0 && logger.isDebugEnabled())
+                                logger.debug("Prepared statement invalidation: stmt="
+                                        + query + " invalidated=" + invalidated);
+                        }
                     }
                     else if (dataElem instanceof RowIdData)
                     {
@@ -1261,7 +1683,13 @@ public class JdbcApplier implements RawApplier
                 }
             }
 
-            if (doCommit)
+            if (commitSeqnoSent)
+            {
+                // Position was sent with the last statement.
+                commitSeqnoSent = false;
+                commitSeqnoBatched++;
+            }
+            else if (doCommit)
             {
                 updateCommitSeqno(header, appliedLatency);
             }
@@ -1363,7 +1791,8 @@ public class JdbcApplier implements RawApplier
      * 
      * @see com.continuent.tungsten.replicator.applier.RawApplier#commit()
      */
-    public void commit() throws ReplicatorException, InterruptedException
+    public synchronized void commit() throws ReplicatorException,
+            InterruptedException
     {
         // If there's nothing to commit, go back.
         if (this.lastProcessedEvent == null || !this.transactionStarted)
@@ -1396,7 +1825,7 @@ public class JdbcApplier implements RawApplier
      * 
      * @see com.continuent.tungsten.replicator.applier.RawApplier#rollback()
      */
-    public void rollback() throws InterruptedException
+    public synchronized void rollback() throws InterruptedException
     {
         try
         {
@@ -1523,6 +1952,13 @@ public class JdbcApplier implements RawApplier
     {
         if (commitSeqnoTable == null)
             return;
+        if (SEQNO_WRITE_BEHIND.equals(commitSeqnoMode))
+        {
+            // Record the position once the transaction commits.
+            uncommittedHeader = header;
+            uncommittedLatency = appliedLatency;
+            return;
+        }
         if (logger.isDebugEnabled())
             logger.debug("Updating commit seqno to " + header.getSeqno());
         commitSeqnoTable.updateLastCommitSeqno(taskId, header, appliedLatency);
@@ -1533,7 +1969,8 @@ public class JdbcApplier implements RawApplier
      * 
      * @see com.continuent.tungsten.replicator.applier.RawApplier#getLastEvent()
      */
-    public ReplDBMSHeader getLastEvent() throws ReplicatorException
+    public synchronized ReplDBMSHeader getLastEvent()
+            throws ReplicatorException
     {
         if (commitSeqnoTable == null)
             return null;
@@ -1574,6 +2011,7 @@ public class JdbcApplier implements RawApplier
         catch (SQLException e)
         {
             logger.error("Failed to commit : " + e);
+            uncommittedHeader = null;
             throw e;
         }
         finally
@@ -1582,6 +2020,16 @@ public class JdbcApplier implements RawApplier
             // Switch connection back to autocommit
             conn.setAutoCommit(true);
         }
+
+        // In write-behind mode, record the position now that its data is
+        // committed. Writes happen outside the transaction.
+        if (uncommittedHeader != null)
+        {
+            ReplDBMSHeader header = uncommittedHeader;
+            uncommittedHeader = null;
+            commitSeqnoTable.recordLastCommitSeqno(taskId, header,
+                    uncommittedLatency);
+        }
     }
 
     /**
@@ -1591,6 +2039,7 @@ public class JdbcApplier implements RawApplier
      */
     private void rollbackTransaction() throws SQLException
     {
+        uncommittedHeader = null;
         try
         {
             conn.rollback();
@@ -1664,6 +2113,8 @@ public class JdbcApplier implements RawApplier
             }
 
             tableMetadataCache = new TableMetadataCache(5000);
+            if (statementCacheSize > 0)
+                statementCache = new PreparedStatementCache(statementCacheSize);
 
             // Set up heartbeat table.
             heartbeatTable = new HeartbeatTable(
@@ -1682,6 +2133,17 @@ public class JdbcApplier implements RawApplier
                     runtime.getTungstenTableType(), false);
             commitSeqnoTable.prepare(taskId);
             lastProcessedEvent = commitSeqnoTable.lastCommitSeqno(taskId);
+            if (SEQNO_WRITE_BEHIND.equals(commitSeqnoMode))
+            {
+                commitSeqnoTable.setWriteBehindMillis(commitSeqnoInterval);
+                startCommitSeqnoFlusher();
+            }
+            else if (SEQNO_BATCH.equals(commitSeqnoMode)
+                    && !supportsMultiStatements())
+            {
+                logger.warn("commitSeqnoMode=batch requires MySQL Connector/J with allowMultiQueries=true in the url; using separate updates");
+                commitSeqnoMode = SEQNO_UPDATE;
+            }
 
         }
         catch (SQLException e)
@@ -1692,6 +2154,62 @@ public class JdbcApplier implements RawApplier
         }
     }
 
+    // Start a thread that writes held positions once per interval.
+    private void startCommitSeqnoFlusher()
+    {
+        if (commitSeqnoInterval <= 0)
+            return;
+        final String threadName = "commit-seqno-flush-" + taskId;
+        commitSeqnoFlusher = Executors
+                .newSingleThreadScheduledExecutor(new ThreadFactory()
+                {
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread t = new Thread(r, threadName);
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        commitSeqnoFlusher.scheduleWithFixedDelay(new Runnable()
+        {
+            public void run()
+            {
+                flushCommitSeqno();
+            }
+        }, commitSeqnoInterval, commitSeqnoInterval, TimeUnit.MILLISECONDS);
+    }
+
+    // Write a held position unless a transaction is open, in which case the
+    // applier is busy and writes positions itself as transactions commit.
+    // Failures are left for the next write to report.
+    private synchronized void flushCommitSeqno()
+    {
+        if (commitSeqnoTable == null || transactionStarted)
+            return;
+        try
+        {
+            commitSeqnoTable.flushLastCommitSeqno();
+        }
+        catch (SQLException e)
+        {
+            logger.warn("Unable to write held commit seqno: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns true if the connection accepts several statements in one query
+     * string. This holds for MySQL Connector/J URLs that set
+     * allowMultiQueries=true. Drizzle does not request multi-statement support
+     * from the server.
+     */
+    protected boolean supportsMultiStatements()
+    {
+        if (conn.getType() != DBMS.MYSQL || url == null
+                || !url.startsWith("jdbc:mysql://"))
+            return false;
+        return url.toLowerCase().matches(".*[?&]allowmultiqueries=true(&.*)?");
+    }
+
     /**
      * {@inheritDoc}
      * 
@@ -1708,6 +2226,14 @@ public class JdbcApplier implements RawApplier
         {
             ignoreSessionPattern = Pattern.compile(ignoreSessionVars);
         }
+        if (!SEQNO_UPDATE.equals(commitSeqnoMode)
+                && !SEQNO_BATCH.equals(commitSeqnoMode)
+                && !SEQNO_WRITE_BEHIND.equals(commitSeqnoMode))
+        {
+            throw new ReplicatorException(
+                    "Unknown commitSeqnoMode; must be update, batch, or writebehind: "
+                            + commitSeqnoMode);
+        }
     }
 
     /**
@@ -1717,15 +2243,42 @@ public class JdbcApplier implements RawApplier
      */
     public void release(PluginContext context) throws ReplicatorException
     {
-        if (commitSeqnoTable != null)
+        if (commitSeqnoFlusher != null)
         {
-            commitSeqnoTable.release();
-            commitSeqnoTable = null;
+            commitSeqnoFlusher.shutdownNow();
+            commitSeqnoFlusher = null;
+        }
+        synchronized (this)
+        {
+            if (commitSeqnoTable != null)
+            {
+                // Write any position held back by write-behind so that a
+                // clean restart does not apply transactions again.
+                try
+                {
+                    commitSeqnoTable.flushLastCommitSeqno();
+                }
+                catch (SQLException e)
+                {
+                    logger.warn("Unable to write last commit seqno on release: "
+                            + e.getMessage());
+                }
+                commitSeqnoTable.release();
+                commitSeqnoTable = null;
+            }
         }
 
         currentOptions = null;
 
         statement = null;
+
+        // Close cached statements before their connection.
+        if (statementCache != null)
+        {
+            statementCache.invalidateAll();
+            statementCache = null;
+        }
+
         if (conn != null)
         {
             conn.close();
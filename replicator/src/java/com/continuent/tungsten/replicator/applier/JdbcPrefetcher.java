@@ -32,6 +32,7 @@ import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.regex.Matcher;
@@ -1019,9 +1020,10 @@ public class JdbcPrefetcher implements RawApplier
             }
         }
 
-        for (OneRowChange row : data.getRowChanges())
+        Iterator<OneRowChange> rows = data.rowChangeIterator();
+        while (rows.hasNext())
         {
-            prefetchOneRowChangePrepared(row);
+            prefetchOneRowChangePrepared(rows.next());
         }
     }
 
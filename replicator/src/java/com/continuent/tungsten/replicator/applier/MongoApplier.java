@@ -24,15 +24,24 @@ package com.continuent.tungsten.replicator.applier;
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 
+import com.continuent.tungsten.commons.config.TungstenProperties;
 import com.continuent.tungsten.replicator.ReplicatorException;
 import com.continuent.tungsten.replicator.consistency.ConsistencyException;
-import com.continuent.tungsten.replicator.database.Table;
-import com.continuent.tungsten.replicator.database.TableMetadataCache;
 import com.continuent.tungsten.replicator.dbms.DBMSData;
 import com.continuent.tungsten.replicator.dbms.LoadDataFileFragment;
 import com.continuent.tungsten.replicator.dbms.OneRowChange;
@@ -52,35 +61,83 @@ import com.mongodb.DB;
 import com.mongodb.DBCollection;
 import com.mongodb.DBObject;
 import com.mongodb.Mongo;
+import com.mongodb.MongoException;
+import com.mongodb.WriteConcern;
 
 /**
  * Implements an applier for MongoDB. This class handles only row updates, as
  * SQL statements are meaningless in MongoDB. We use a local version of the
  * Tungsten trep_commit_seqno table to keep track of updates.
+ * <p/>
+ * Writes are queued per collection and sent together when bulkWriteSize
+ * writes are pending or the oldest pending write or commit is older than
+ * bulkWriteDelay milliseconds. Consecutive inserts into a collection go out
+ * as a single batch insert. Updates and deletes change one document per row,
+ * as keys of tables without a primary key need not be unique. Each flush ends
+ * with a safe write of the last committed position, which confirms the writes
+ * before it. A crash may lose up to one flush of writes, which are applied
+ * again on restart.
  * 
  * @author <a href="mailto:robert.hodges@continuent.com">Robert Hodges</a>
  * @version 1.0
  */
-public class MongoApplier implements RawApplier
+public class MongoApplier implements RawApplier, ApplierStatusProvider
 {
-    private static Logger      logger        = Logger.getLogger(MongoApplier.class);
+    private static Logger                 logger         = Logger.getLogger(MongoApplier.class);
 
     // Task management information.
-    private int                taskId;
-    private String             serviceSchema;
+    private int                           taskId;
+    private String                        serviceSchema;
 
     // Latest event.
-    private ReplDBMSHeader     latestHeader;
+    private ReplDBMSHeader                latestHeader;
 
     // Parameters for the applier.
-    private String             connectString = null;
-    private boolean            autoIndex     = false;
+    private String                        connectString  = null;
+    private boolean                       autoIndex      = false;
+    private int                           bulkWriteSize  = 1;
+    private long                          bulkWriteDelay = 0;
 
     // Private connection management.
-    private Mongo              m;
+    private Mongo                         m;
+
+    // Collections we have seen, with their pending writes.
+    private Map<String, CollectionWriter> collections    = new HashMap<String, CollectionWriter>();
+
+    // Pending writes and position, which are sent on the next flush.
+    private Set<CollectionWriter>         pendingWriters = new LinkedHashSet<CollectionWriter>();
+    private int                           pendingCount;
+    private long                          pendingSince;
+    private ReplDBMSHeader                pendingHeader;
+
+    // Background flush of delayed writes and its last failure, if any.
+    private ScheduledExecutorService      flusher;
+    private ReplicatorException           flushFailure;
+
+    // Statistics.
+    private long                          flushCount;
+    private long                          insertCount;
+    private long                          updateCount;
+    private long                          removeCount;
+
+    // A queued write on a collection. Inserts hold a list of documents so
+    // that consecutive inserts can be sent as one.
+    static class WriteOp
+    {
+        ActionType     action;
+        List<DBObject> docs;
+        DBObject       query;
+        DBObject       doc;
+    }
 
-    // Table metadata to support auto-indexing.
-    private TableMetadataCache tableMetadataCache;
+    // A collection with its index status and queued writes.
+    static class CollectionWriter
+    {
+        String              name;
+        DBCollection        coll;
+        boolean             indexed;
+        LinkedList<WriteOp> ops = new LinkedList<WriteOp>();
+    }
 
     /** Set the MongoDB connect string, e.g., "myhost:27071". */
     public void setConnectString(String connectString)
@@ -97,6 +154,43 @@ public class MongoApplier implements RawApplier
         this.autoIndex = autoIndex;
     }
 
+    /**
+     * Sets the number of pending writes at which writes are sent to MongoDB.
+     * The default of 1 sends each row as it arrives.
+     */
+    public void setBulkWriteSize(int bulkWriteSize)
+    {
+        this.bulkWriteSize = bulkWriteSize;
+    }
+
+    /**
+     * Sets the maximum milliseconds that writes and commit positions may be
+     * held before they are sent to MongoDB. The default of 0 sends them on
+     * every commit.
+     */
+    public void setBulkWriteDelay(long bulkWriteDelay)
+    {
+        this.bulkWriteDelay = bulkWriteDelay;
+    }
+
+    /**
+     * Returns bulk write settings and counters.
+     * 
+     * @see com.continuent.tungsten.replicator.applier.ApplierStatusProvider#status()
+     */
+    public synchronized TungstenProperties status()
+    {
+        TungstenProperties props = new TungstenProperties();
+        props.setInt("bulkWriteSize", bulkWriteSize);
+        props.setLong("bulkWriteDelay", bulkWriteDelay);
+        props.setInt("pendingWrites", pendingCount);
+        props.setLong("flushes", flushCount);
+        props.setLong("inserts", insertCount);
+        props.setLong("updates", updateCount);
+        props.setLong("removes", removeCount);
+        return props;
+    }
+
     /**
      * Applies row updates to MongoDB. Statements are discarded. {@inheritDoc}
      * 
@@ -105,10 +199,11 @@ public class MongoApplier implements RawApplier
      *      boolean)
      */
     @Override
-    public void apply(DBMSEvent event, ReplDBMSHeader header, boolean doCommit,
-            boolean doRollback) throws ReplicatorException,
+    public synchronized void apply(DBMSEvent event, ReplDBMSHeader header,
+            boolean doCommit, boolean doRollback) throws ReplicatorException,
             ConsistencyException, InterruptedException
     {
+        checkFlushFailure();
         ArrayList<DBMSData> dbmsDataValues = event.getData();
 
         // Iterate through values inferring the database name.
@@ -122,8 +217,10 @@ public class MongoApplier implements RawApplier
             else if (dbmsData instanceof RowChangeData)
             {
                 RowChangeData rd = (RowChangeData) dbmsData;
-                for (OneRowChange orc : rd.getRowChanges())
+                Iterator<OneRowChange> rowChanges = rd.rowChangeIterator();
+                while (rowChanges.hasNext())
                 {
+                    OneRowChange orc = rowChanges.next();
                     // Get the action as well as the schema & table name.
                     ActionType action = orc.getAction();
                     String schema = orc.getSchemaName();
@@ -137,9 +234,8 @@ public class MongoApplier implements RawApplier
                     // Process the action.
                     if (action.equals(ActionType.INSERT))
                     {
-                        // Connect to the schema and collection.
-                        DB db = m.getDB(schema);
-                        DBCollection coll = db.getCollection(table);
+                        // Find the collection.
+                        CollectionWriter writer = getCollectionWriter(orc);
 
                         // Fetch column names.
                         List<ColumnSpec> colSpecs = orc.getColumnSpec();
@@ -147,10 +243,10 @@ public class MongoApplier implements RawApplier
                         // Make a document and insert for each row.
                         Iterator<ArrayList<ColumnVal>> colValues = orc
                                 .getColumnValues().iterator();
-                        BasicDBObject doc = new BasicDBObject();
                         while (colValues.hasNext())
                         {
                             ArrayList<ColumnVal> row = colValues.next();
+                            BasicDBObject doc = new BasicDBObject();
                             for (int i = 0; i < row.size(); i++)
                             {
                                 String name = colSpecs.get(i).getName();
@@ -160,20 +256,17 @@ public class MongoApplier implements RawApplier
                                 else
                                     doc.put(name, value.toString());
                             }
+                            if (logger.isDebugEnabled())
+                                logger.debug("Adding document: doc="
+                                        + doc.toString());
+                            queueInsert(writer, doc);
                         }
-                        if (logger.isDebugEnabled())
-                            logger.debug("Adding document: doc="
-                                    + doc.toString());
-                        coll.insert(doc);
                     }
                     else if (action.equals(ActionType.UPDATE))
                     {
-                        // Connect to the schema and collection.
-                        DB db = m.getDB(schema);
-                        DBCollection coll = db.getCollection(table);
-
-                        // Ensure required indexes are present.
-                        ensureIndexes(coll, orc);
+                        // Find the collection and ensure required indexes are
+                        // present.
+                        CollectionWriter writer = getCollectionWriter(orc);
 
                         // Fetch key and column names.
                         List<ColumnSpec> keySpecs = orc.getKeySpec();
@@ -215,27 +308,14 @@ public class MongoApplier implements RawApplier
                                 logger.debug("Updating document: query="
                                         + query + " doc=" + doc);
                             }
-                            DBObject updatedRow = coll
-                                    .findAndModify(query, doc);
-                            if (logger.isDebugEnabled())
-                            {
-                                if (updatedRow == null)
-                                    logger.debug("Unable to find document for update: query="
-                                            + query);
-                                else
-                                    logger.debug("Documented updated: doc="
-                                            + doc);
-                            }
+                            queueUpdate(writer, query, doc);
                         }
                     }
                     else if (action.equals(ActionType.DELETE))
                     {
-                        // Connect to the schema and collection.
-                        DB db = m.getDB(schema);
-                        DBCollection coll = db.getCollection(table);
-
-                        // Ensure required indexes are present.
-                        ensureIndexes(coll, orc);
+                        // Find the collection and ensure required indexes are
+                        // present.
+                        CollectionWriter writer = getCollectionWriter(orc);
 
                         List<ColumnSpec> keySpecs = orc.getKeySpec();
                         ArrayList<ArrayList<OneRowChange.ColumnVal>> keyValues = orc
@@ -263,15 +343,7 @@ public class MongoApplier implements RawApplier
                                 logger.debug("Deleting document: query="
                                         + query);
                             }
-                            DBObject deletedRow = coll.findAndRemove(query);
-                            if (logger.isDebugEnabled())
-                            {
-                                if (deletedRow == null)
-                                    logger.debug("Unable to find document for delete");
-                                else
-                                    logger.debug("Documented deleted: doc="
-                                            + deletedRow);
-                            }
+                            queueRemove(writer, query);
                         }
                     }
                     else
@@ -279,6 +351,10 @@ public class MongoApplier implements RawApplier
                         logger.warn("Unrecognized action type: " + action);
                         return;
                     }
+
+                    // Send writes if we have enough of them.
+                    if (pendingCount >= bulkWriteSize)
+                        flush();
                 }
             }
             else if (dbmsData instanceof LoadDataFileFragment)
@@ -304,63 +380,193 @@ public class MongoApplier implements RawApplier
             commit();
     }
 
-    // Ensure that a collection has required indexes.
-    private void ensureIndexes(DBCollection coll, OneRowChange orc)
+    // Returns the writer for the collection of a row change, creating it and
+    // ensuring required indexes the first time keys are seen.
+    private CollectionWriter getCollectionWriter(OneRowChange orc)
     {
-        // If we have not seen this table before, check whether it
-        // needs an index.
-        if (autoIndex)
+        String schema = orc.getSchemaName();
+        String table = orc.getTableName();
+        String name = schema + "." + table;
+        CollectionWriter writer = collections.get(name);
+        if (writer == null)
         {
-            String schema = orc.getSchemaName();
-            String table = orc.getTableName();
-            Table t = tableMetadataCache.retrieve(schema, table);
-            if (t == null)
-            {
-                if (logger.isDebugEnabled())
-                {
-                    logger.debug("Ensuring index exists on collection: db="
-                            + schema + " collection=" + table);
-                }
+            writer = new CollectionWriter();
+            writer.name = name;
+            writer.coll = getCollection(schema, table);
+            collections.put(name, writer);
+        }
+        if (autoIndex && !writer.indexed)
+            ensureIndexes(writer, orc);
+        return writer;
+    }
 
-                // Compute required index keys and ensure they
-                // exist in MongoDB.
-                List<ColumnSpec> keySpecs = orc.getKeySpec();
-                if (keySpecs.size() > 0)
-                {
-                    BasicDBObjectBuilder builder = BasicDBObjectBuilder.start();
-                    for (ColumnSpec keySpec : keySpecs)
-                    {
-                        builder.add(keySpec.getName(), 1);
-                    }
-                    coll.ensureIndex(builder.get());
-                }
+    /**
+     * Returns a MongoDB collection.
+     */
+    protected DBCollection getCollection(String schema, String table)
+    {
+        return m.getDB(schema).getCollection(table);
+    }
 
-                // Note that we have processed the table.
-                t = new Table(schema, table);
-                tableMetadataCache.store(t);
+    // Ensure that a collection has required indexes. Row changes without
+    // keys leave the check for a later change.
+    private void ensureIndexes(CollectionWriter writer, OneRowChange orc)
+    {
+        // Compute required index keys and ensure they exist in MongoDB.
+        List<ColumnSpec> keySpecs = orc.getKeySpec();
+        if (keySpecs.size() > 0)
+        {
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Ensuring index exists on collection: db="
+                        + orc.getSchemaName() + " collection="
+                        + orc.getTableName());
             }
+            BasicDBObjectBuilder builder = BasicDBObjectBuilder.start();
+            for (ColumnSpec keySpec : keySpecs)
+            {
+                builder.add(keySpec.getName(), 1);
+            }
+            writer.coll.ensureIndex(builder.get());
+
+            // Note that we have processed the collection.
+            writer.indexed = true;
+        }
+    }
+
+    // Queue an insert, adding to the previous write if it is an insert.
+    private void queueInsert(CollectionWriter writer, DBObject doc)
+    {
+        WriteOp last = writer.ops.isEmpty() ? null : writer.ops.getLast();
+        if (last == null || last.action != ActionType.INSERT)
+        {
+            last = new WriteOp();
+            last.action = ActionType.INSERT;
+            last.docs = new ArrayList<DBObject>();
+            writer.ops.add(last);
+        }
+        last.docs.add(doc);
+        addPending(writer);
+    }
+
+    // Queue an update of the first document matching the query.
+    private void queueUpdate(CollectionWriter writer, DBObject query,
+            DBObject doc)
+    {
+        WriteOp op = new WriteOp();
+        op.action = ActionType.UPDATE;
+        op.query = query;
+        op.doc = doc;
+        writer.ops.add(op);
+        addPending(writer);
+    }
+
+    // Queue a remove of the first document matching the query.
+    private void queueRemove(CollectionWriter writer, DBObject query)
+    {
+        WriteOp op = new WriteOp();
+        op.action = ActionType.DELETE;
+        op.query = query;
+        writer.ops.add(op);
+        addPending(writer);
+    }
+
+    // Note a pending write.
+    private void addPending(CollectionWriter writer)
+    {
+        if (pendingCount == 0 && pendingHeader == null)
+            pendingSince = System.currentTimeMillis();
+        pendingWriters.add(writer);
+        pendingCount++;
+    }
+
+    // Send pending writes to MongoDB followed by the last committed position.
+    // Pending writes are dropped if sending fails, as they are applied again
+    // from the last committed position on restart.
+    private void flush() throws ReplicatorException
+    {
+        if (pendingCount == 0 && pendingHeader == null)
+            return;
+
+        try
+        {
+            sendWrites(pendingWriters, pendingHeader);
+            flushCount++;
+        }
+        catch (MongoException e)
+        {
+            throw new ReplicatorException("Unable to write to MongoDB", e);
+        }
+        finally
+        {
+            for (CollectionWriter writer : pendingWriters)
+                writer.ops.clear();
+            pendingWriters.clear();
+            pendingCount = 0;
+            pendingHeader = null;
         }
     }
 
     /**
-     * {@inheritDoc}
+     * Sends the queued writes of each collection in order, followed by the
+     * commit position if not null. The position is written safely on the same
+     * connection, which confirms the writes before it.
      * 
-     * @see com.continuent.tungsten.replicator.applier.RawApplier#commit()
+     * @param writers Collections with queued writes, in order of first write
+     * @param header Commit position or null
      */
-    @Override
-    public void commit() throws ReplicatorException, InterruptedException
+    protected void sendWrites(Collection<CollectionWriter> writers,
+            ReplDBMSHeader header)
     {
-        // If we don't have a last header, there is nothing to be done.
-        if (latestHeader == null)
+        DB serviceDb = m.getDB(serviceSchema);
+        serviceDb.requestStart();
+        try
         {
-            if (logger.isDebugEnabled())
-                logger.debug("Unable to commit; last header is null");
-            return;
+            for (CollectionWriter writer : writers)
+            {
+                for (WriteOp op : writer.ops)
+                    write(writer.coll, op);
+            }
+            if (header != null)
+                updateCommitSeqno(serviceDb, header);
         }
+        finally
+        {
+            serviceDb.requestDone();
+        }
+    }
 
-        // Connect to the schema and collection.
-        DB db = m.getDB(serviceSchema);
-        DBCollection trepCommitSeqno = db.getCollection("trep_commit_seqno");
+    // Send a single queued write.
+    private void write(DBCollection coll, WriteOp op)
+    {
+        if (op.action == ActionType.INSERT)
+        {
+            coll.insert(op.docs);
+            insertCount += op.docs.size();
+        }
+        else if (op.action == ActionType.UPDATE)
+        {
+            coll.update(op.query, op.doc);
+            updateCount++;
+        }
+        else
+        {
+            // A row deletes only one of the documents its key matches. The
+            // driver has no remove limited to one document, so this waits for
+            // a reply.
+            DBObject deletedRow = coll.findAndRemove(op.query);
+            if (logger.isDebugEnabled() && deletedRow == null)
+                logger.debug("Unable to find document for delete: query="
+                        + op.query);
+            removeCount++;
+        }
+    }
+
+    // Update trep_commit_seqno with a safe write.
+    private void updateCommitSeqno(DB serviceDb, ReplDBMSHeader header)
+    {
+        DBCollection trepCommitSeqno = serviceDb
+                .getCollection("trep_commit_seqno");
 
         // Construct query.
         DBObject query = new BasicDBObject();
@@ -369,27 +575,81 @@ public class MongoApplier implements RawApplier
         // Construct update.
         BasicDBObject doc = new BasicDBObject();
         doc.put("task_id", taskId);
-        doc.put("seqno", latestHeader.getSeqno());
+        doc.put("seqno", header.getSeqno());
         // Short seems to cast to Integer in MongoDB.
-        doc.put("fragno", latestHeader.getFragno());
-        doc.put("last_frag", latestHeader.getLastFrag());
-        doc.put("source_id", latestHeader.getSourceId());
-        doc.put("epoch_number", latestHeader.getEpochNumber());
-        doc.put("event_id", latestHeader.getEventId());
-        doc.put("extract_timestamp", latestHeader.getExtractedTstamp()
-                .getTime());
+        doc.put("fragno", header.getFragno());
+        doc.put("last_frag", header.getLastFrag());
+        doc.put("source_id", header.getSourceId());
+        doc.put("epoch_number", header.getEpochNumber());
+        doc.put("event_id", header.getEventId());
+        doc.put("extract_timestamp", header.getExtractedTstamp().getTime());
 
         // Update trep_commit_seqno.
-        DBObject updatedDoc = trepCommitSeqno.findAndModify(query, null, null,
-                false, doc, true, true);
+        trepCommitSeqno.update(query, doc, true, false, WriteConcern.SAFE);
         if (logger.isDebugEnabled())
+            logger.debug("Trep_commit_seqno updated: doc=" + doc);
+    }
+
+    // Flush delayed writes from the background thread.
+    private synchronized void flushDelayed()
+    {
+        if (flushFailure != null || m == null)
+            return;
+        if (pendingCount == 0 && pendingHeader == null)
+            return;
+        if (System.currentTimeMillis() - pendingSince < bulkWriteDelay)
+            return;
+        try
         {
-            if (updatedDoc == null)
-                logger.debug("Unable to update/insert trep_commit_seqno: query="
-                        + query + " doc=" + doc);
-            else
-                logger.debug("Trep_commit_seqno updated: updatedDoc="
-                        + updatedDoc);
+            flush();
+        }
+        catch (ReplicatorException e)
+        {
+            logger.error("Unable to flush delayed writes to MongoDB", e);
+            flushFailure = e;
+        }
+    }
+
+    // Throw the failure of a background flush, if any.
+    private void checkFlushFailure() throws ReplicatorException
+    {
+        if (flushFailure != null)
+        {
+            ReplicatorException e = flushFailure;
+            flushFailure = null;
+            throw e;
+        }
+    }
+
+    /**
+     * Records the commit position, which is written with the next flush.
+     * Writes are sent now unless bulk writes may be delayed.
+     * 
+     * @see com.continuent.tungsten.replicator.applier.RawApplier#commit()
+     */
+    @Override
+    public synchronized void commit() throws ReplicatorException,
+            InterruptedException
+    {
+        checkFlushFailure();
+
+        // If we don't have a last header, there is nothing to be done.
+        if (latestHeader == null)
+        {
+            if (logger.isDebugEnabled())
+                logger.debug("Unable to commit; last header is null");
+            return;
+        }
+
+        // Hold the position for the next flush.
+        if (pendingCount == 0 && pendingHeader == null)
+            pendingSince = System.currentTimeMillis();
+        pendingHeader = latestHeader;
+
+        if (pendingCount >= bulkWriteSize
+                || System.currentTimeMillis() - pendingSince >= bulkWriteDelay)
+        {
+            flush();
         }
     }
 
@@ -399,9 +659,12 @@ public class MongoApplier implements RawApplier
      * @see com.continuent.tungsten.replicator.applier.RawApplier#getLastEvent()
      */
     @Override
-    public ReplDBMSHeader getLastEvent() throws ReplicatorException,
-            InterruptedException
+    public synchronized ReplDBMSHeader getLastEvent()
+            throws ReplicatorException, InterruptedException
     {
+        // Write out anything pending so that we read the latest position.
+        flush();
+
         // Connect to the schema and collection.
         DB db = m.getDB(serviceSchema);
         DBCollection trepCommitSeqno = db.getCollection("trep_commit_seqno");
@@ -450,7 +713,8 @@ public class MongoApplier implements RawApplier
     @Override
     public void rollback() throws InterruptedException
     {
-        // Does nothing for now.
+        // Does nothing for now. As before, writes already queued are still
+        // sent, but the position is not advanced.
     }
 
     /**
@@ -474,6 +738,12 @@ public class MongoApplier implements RawApplier
             InterruptedException
     {
         this.serviceSchema = "tungsten_" + context.getServiceName();
+        if (bulkWriteSize < 1)
+        {
+            throw new ReplicatorException(
+                    "Property bulkWriteSize must be 1 or greater: "
+                            + bulkWriteSize);
+        }
     }
 
     /**
@@ -506,8 +776,30 @@ public class MongoApplier implements RawApplier
                             + this.connectString, e);
         }
 
-        // Initialize table metadata cache.
-        tableMetadataCache = new TableMetadataCache(5000);
+        // Start a thread to send delayed writes if we are idle.
+        if (bulkWriteDelay > 0)
+        {
+            logger.info("Using bulk writes: bulkWriteSize=" + bulkWriteSize
+                    + " bulkWriteDelay=" + bulkWriteDelay);
+            final String threadName = "mongo-flush-" + taskId;
+            flusher = Executors
+                    .newSingleThreadScheduledExecutor(new ThreadFactory()
+                    {
+                        public Thread newThread(Runnable r)
+                        {
+                            Thread t = new Thread(r, threadName);
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+            flusher.scheduleWithFixedDelay(new Runnable()
+            {
+                public void run()
+                {
+                    flushDelayed();
+                }
+            }, bulkWriteDelay, bulkWriteDelay, TimeUnit.MILLISECONDS);
+        }
     }
 
     /**
@@ -519,14 +811,40 @@ public class MongoApplier implements RawApplier
     public void release(PluginContext context) throws ReplicatorException,
             InterruptedException
     {
-        // Close connection to MongoDB.
-        if (m != null)
+        // Stop the flush thread.
+        if (flusher != null)
         {
-            m.close();
-            m = null;
+            flusher.shutdownNow();
+            flusher = null;
         }
 
-        // Release table cache.
-        tableMetadataCache.invalidateAll();
+        synchronized (this)
+        {
+            // Send writes that are still pending.
+            if (flushFailure == null)
+            {
+                try
+                {
+                    flush();
+                }
+                catch (ReplicatorException e)
+                {
+                    logger.warn("Unable to flush pending writes to MongoDB", e);
+                }
+            }
+
+            // Close connection to MongoDB.
+            if (m != null)
+            {
+                m.close();
+                m = null;
+            }
+
+            // Release collection cache.
+            collections.clear();
+            pendingWriters.clear();
+            pendingCount = 0;
+            pendingHeader = null;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,245 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.applier.batch;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.log4j.Logger;
+
+import com.continuent.tungsten.replicator.ReplicatorException;
+import com.continuent.tungsten.replicator.database.Database;
+
+/**
+ * Loads tables concurrently, one thread per connection. Each table borrows an
+ * idle connection for its load, and the connections stay in a transaction
+ * until the caller commits or rolls them back. Once a table fails, tables
+ * that have not started are skipped. Callers must commit the connections
+ * before recording the position of the loaded data, as a failure between the
+ * two commits applies the data again.
+ *
+ * @version 1.0
+ */
+public class ParallelTableLoader<T>
+{
+    private static Logger                 logger      = Logger.getLogger(ParallelTableLoader.class);
+
+    /**
+     * Loads a single table on a connection.
+     */
+    public interface TableLoader<T>
+    {
+        public void load(T table, Database conn, Statement statement)
+                throws ReplicatorException;
+    }
+
+    // Connection used to load tables.
+    private static class LoadConnection
+    {
+        Database  conn;
+        Statement statement;
+    }
+
+    private final TableLoader<T>          loader;
+    private final List<LoadConnection>    connections = new ArrayList<LoadConnection>();
+    private BlockingQueue<LoadConnection> idleConnections;
+    private ExecutorService               executor;
+    private volatile boolean              failed;
+
+    /**
+     * Creates a new loader.
+     *
+     * @param name Prefix of the names of load threads
+     * @param loader Loads each table
+     * @param conns Open connections not in auto-commit mode, one per thread,
+     *            which the loader closes on release
+     */
+    public ParallelTableLoader(final String name, TableLoader<T> loader,
+            List<Database> conns) throws SQLException
+    {
+        this.loader = loader;
+        idleConnections = new ArrayBlockingQueue<LoadConnection>(conns.size());
+        for (Database conn : conns)
+        {
+            LoadConnection loadConn = new LoadConnection();
+            loadConn.conn = conn;
+            connections.add(loadConn);
+            loadConn.statement = conn.createStatement();
+            idleConnections.add(loadConn);
+        }
+
+        executor = Executors.newFixedThreadPool(conns.size(),
+                new ThreadFactory()
+                {
+                    private int count = 0;
+
+                    public synchronized Thread newThread(Runnable r)
+                    {
+                        Thread t = new Thread(r, name + "-" + count++);
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+    }
+
+    /**
+     * Loads tables concurrently and waits for all of them, so that no load is
+     * still running when connections are committed or rolled back.
+     *
+     * @return Number of tables loaded
+     * @throws ReplicatorException The first failure of a table
+     */
+    public int load(Collection<T> tables) throws ReplicatorException,
+            InterruptedException
+    {
+        failed = false;
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (final T table : tables)
+        {
+            futures.add(executor.submit(new Callable<Object>()
+            {
+                public Object call() throws Exception
+                {
+                    // Skip remaining tables once one has failed.
+                    if (failed)
+                        return null;
+                    LoadConnection loadConn = idleConnections.take();
+                    try
+                    {
+                        loader.load(table, loadConn.conn, loadConn.statement);
+                    }
+                    catch (Exception e)
+                    {
+                        failed = true;
+                        throw e;
+                    }
+                    finally
+                    {
+                        idleConnections.put(loadConn);
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        // Wait for all tables and report the first failure.
+        int loadCount = 0;
+        ReplicatorException failure = null;
+        try
+        {
+            for (Future<?> future : futures)
+            {
+                try
+                {
+                    future.get();
+                    loadCount++;
+                }
+                catch (ExecutionException e)
+                {
+                    if (failure != null)
+                        continue;
+                    Throwable cause = e.getCause();
+                    if (cause instanceof ReplicatorException)
+                        failure = (ReplicatorException) cause;
+                    else
+                        failure = new ReplicatorException(
+                                "Unexpected failure while loading tables",
+                                cause);
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            failed = true;
+            throw e;
+        }
+
+        if (failure != null)
+            throw failure;
+        return loadCount;
+    }
+
+    /**
+     * Commits the transactions of all connections.
+     */
+    public void commit() throws ReplicatorException
+    {
+        for (LoadConnection loadConn : connections)
+        {
+            try
+            {
+                loadConn.conn.commit();
+            }
+            catch (SQLException e)
+            {
+                throw new ReplicatorException(
+                        "Unable to commit parallel load transaction", e);
+            }
+        }
+    }
+
+    /**
+     * Rolls back the transactions of all connections, logging failures.
+     */
+    public void rollback()
+    {
+        for (LoadConnection loadConn : connections)
+        {
+            try
+            {
+                loadConn.conn.rollback();
+            }
+            catch (SQLException e)
+            {
+                logger.info("Unable to roll back parallel load transaction");
+                if (logger.isDebugEnabled())
+                    logger.debug("Transaction rollback error", e);
+            }
+        }
+    }
+
+    /**
+     * Stops load threads and closes connections.
+     */
+    public void release()
+    {
+        if (executor != null)
+        {
+            executor.shutdownNow();
+            executor = null;
+        }
+        for (LoadConnection loadConn : connections)
+        {
+            loadConn.conn.close();
+        }
+        connections.clear();
+    }
+}
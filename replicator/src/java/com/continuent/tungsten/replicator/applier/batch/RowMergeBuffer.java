@@ -0,0 +1,298 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.applier.batch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.continuent.tungsten.replicator.database.Table;
+import com.continuent.tungsten.replicator.dbms.OneRowChange.ColumnSpec;
+import com.continuent.tungsten.replicator.dbms.OneRowChange.ColumnVal;
+
+/**
+ * Collapses row changes of a batch to the final image of each primary key
+ * before they are written to CSV files. The merge scripts delete every key
+ * that has a delete row and insert the insert row with the highest row ID
+ * per key, so a key needs at most one delete row followed by one insert row.
+ * Keys are returned in the order of their latest change, which keeps the
+ * result correct even if merge scripts use fewer key columns than the
+ * buffer.
+ * <p/>
+ * The buffer estimates the memory held by row images. Once the estimate
+ * passes the limit, clients should write out buffered rows, which is safe
+ * at any point because later rows for the same key get higher row IDs.
+ * Instances are not thread-safe.
+ * 
+ * @version 1.0
+ */
+public class RowMergeBuffer
+{
+    /**
+     * Merged changes of a single key.
+     */
+    public static class MergedRow
+    {
+        private long                 deleteSeqno = -1;
+        private List<ColumnSpec>     deleteSpecs;
+        private ArrayList<ColumnVal> deleteValues;
+        private long                 insertSeqno = -1;
+        private List<ColumnSpec>     insertSpecs;
+        private ArrayList<ColumnVal> insertValues;
+        private long                 size;
+
+        /** Returns the seqno of the latest delete. */
+        public long getDeleteSeqno()
+        {
+            return deleteSeqno;
+        }
+
+        /** Returns specs of the delete image. */
+        public List<ColumnSpec> getDeleteSpecs()
+        {
+            return deleteSpecs;
+        }
+
+        /** Returns the delete image or null if the key was not deleted. */
+        public ArrayList<ColumnVal> getDeleteValues()
+        {
+            return deleteValues;
+        }
+
+        /** Returns the seqno of the final insert. */
+        public long getInsertSeqno()
+        {
+            return insertSeqno;
+        }
+
+        /** Returns specs of the final insert image. */
+        public List<ColumnSpec> getInsertSpecs()
+        {
+            return insertSpecs;
+        }
+
+        /** Returns the final insert image or null if the key ends deleted. */
+        public ArrayList<ColumnVal> getInsertValues()
+        {
+            return insertValues;
+        }
+    }
+
+    // Primary key values with value-based equality.
+    private static class RowKey
+    {
+        private final Object[] values;
+        private final int      hash;
+
+        RowKey(Object[] values)
+        {
+            this.values = values;
+            this.hash = Arrays.deepHashCode(values);
+        }
+
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof RowKey))
+                return false;
+            return Arrays.deepEquals(values, ((RowKey) o).values);
+        }
+    }
+
+    // Buffered rows of one table in order of latest change.
+    private static class TableBuffer
+    {
+        Table                            metadata;
+        LinkedHashMap<RowKey, MergedRow> rows = new LinkedHashMap<RowKey, MergedRow>();
+    }
+
+    // Rough per-row and per-value overhead of buffered images in bytes.
+    private static final int         ROW_OVERHEAD   = 64;
+    private static final int         VALUE_OVERHEAD = 24;
+
+    private final long               maxBytes;
+    private Map<String, TableBuffer> tables         = new LinkedHashMap<String, TableBuffer>();
+    private long                     bytes;
+    private long                     changeCount;
+
+    /**
+     * Creates a new buffer.
+     * 
+     * @param maxBytes Estimated memory size at which the buffer is full
+     */
+    public RowMergeBuffer(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Adds a delete of a key.
+     * 
+     * @param table Table metadata
+     * @param key Primary key values
+     * @param seqno Seqno of the change
+     * @param specs Column specs of the image
+     * @param values Key image to write as the delete row
+     */
+    public void delete(Table table, Object[] key, long seqno,
+            List<ColumnSpec> specs, ArrayList<ColumnVal> values)
+    {
+        MergedRow row = touch(table, key);
+        bytes -= row.size;
+        if (row.deleteValues == null)
+        {
+            row.deleteSpecs = specs;
+            row.deleteValues = values;
+        }
+        row.deleteSeqno = seqno;
+        row.insertSpecs = null;
+        row.insertValues = null;
+        row.insertSeqno = -1;
+        row.size = ROW_OVERHEAD + estimate(row.deleteValues);
+        bytes += row.size;
+    }
+
+    /**
+     * Adds an insert of a key, which replaces any earlier insert image.
+     * 
+     * @param table Table metadata
+     * @param key Primary key values
+     * @param seqno Seqno of the change
+     * @param specs Column specs of the image
+     * @param values Row image to write as the insert row
+     */
+    public void insert(Table table, Object[] key, long seqno,
+            List<ColumnSpec> specs, ArrayList<ColumnVal> values)
+    {
+        MergedRow row = touch(table, key);
+        bytes -= row.size;
+        row.insertSpecs = specs;
+        row.insertValues = values;
+        row.insertSeqno = seqno;
+        row.size = ROW_OVERHEAD + estimate(row.deleteValues)
+                + estimate(row.insertValues);
+        bytes += row.size;
+    }
+
+    /**
+     * Returns true if the estimated size has reached the limit.
+     */
+    public boolean isFull()
+    {
+        return bytes >= maxBytes;
+    }
+
+    /** Returns the estimated memory size of buffered rows. */
+    public long getSize()
+    {
+        return bytes;
+    }
+
+    /** Returns the number of changes added since the buffer was cleared. */
+    public long getChangeCount()
+    {
+        return changeCount;
+    }
+
+    /**
+     * Returns the tables that have buffered rows.
+     */
+    public List<Table> getTables()
+    {
+        List<Table> list = new ArrayList<Table>(tables.size());
+        for (TableBuffer buffer : tables.values())
+            list.add(buffer.metadata);
+        return list;
+    }
+
+    /**
+     * Removes and returns the buffered rows of a table in the order in which
+     * they must be written.
+     * 
+     * @param table Table metadata
+     * @return Merged rows, which are empty if the table has no buffered rows
+     */
+    public List<MergedRow> remove(Table table)
+    {
+        TableBuffer buffer = tables.remove(table.fullyQualifiedName());
+        if (buffer == null)
+            return new ArrayList<MergedRow>();
+
+        List<MergedRow> list = new ArrayList<MergedRow>(buffer.rows.values());
+        for (MergedRow row : list)
+            bytes -= row.size;
+        return list;
+    }
+
+    /**
+     * Discards all buffered rows.
+     */
+    public void clear()
+    {
+        tables.clear();
+        bytes = 0;
+        changeCount = 0;
+    }
+
+    // Returns the row for a key, moving it to the end of the table order.
+    private MergedRow touch(Table table, Object[] key)
+    {
+        String name = table.fullyQualifiedName();
+        TableBuffer buffer = tables.get(name);
+        if (buffer == null)
+        {
+            buffer = new TableBuffer();
+            buffer.metadata = table;
+            tables.put(name, buffer);
+        }
+
+        RowKey rowKey = new RowKey(key);
+        MergedRow row = buffer.rows.remove(rowKey);
+        if (row == null)
+            row = new MergedRow();
+        buffer.rows.put(rowKey, row);
+        changeCount++;
+        return row;
+    }
+
+    // Estimates the memory held by a row image.
+    private static long estimate(ArrayList<ColumnVal> values)
+    {
+        if (values == null)
+            return 0;
+        long size = 0;
+        for (ColumnVal columnVal : values)
+        {
+            size += VALUE_OVERHEAD;
+            Object value = columnVal.getValue();
+            if (value instanceof String)
+                size += ((String) value).length() * 2;
+            else if (value instanceof byte[])
+                size += ((byte[]) value).length;
+        }
+        return size;
+    }
+}
@@ -28,6 +28,8 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
 import java.sql.SQLException;
@@ -42,13 +44,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import org.apache.log4j.Logger;
 
+import com.continuent.tungsten.commons.config.TungstenProperties;
 import com.continuent.tungsten.commons.csv.CsvException;
 import com.continuent.tungsten.commons.csv.CsvWriter;
 import com.continuent.tungsten.replicator.ReplicatorException;
+import com.continuent.tungsten.replicator.applier.ApplierStatusProvider;
 import com.continuent.tungsten.replicator.applier.RawApplier;
 import com.continuent.tungsten.replicator.consistency.ConsistencyException;
 import com.continuent.tungsten.replicator.consistency.ConsistencyTable;
@@ -80,19 +85,19 @@ import com.continuent.tungsten.replicator.thl.CommitSeqnoTable;
  * @author <a href="mailto:robert.hodges@continuent.com">Robert Hodges</a>
  * @version 1.0
  */
-public class SimpleBatchApplier implements RawApplier
+public class SimpleBatchApplier implements RawApplier, ApplierStatusProvider
 {
-    private static Logger  logger            = Logger.getLogger(SimpleBatchApplier.class);
+    private static Logger  logger             = Logger.getLogger(SimpleBatchApplier.class);
 
     /**
      * Denotes an insert operation.
      */
-    public static String   INSERT            = "I";
+    public static String   INSERT             = "I";
 
     /**
      * Denotes a delete operation.
      */
-    public static String   DELETE            = "D";
+    public static String   DELETE             = "D";
 
     // Task management information.
     private int            taskId;
@@ -108,12 +113,17 @@ public class SimpleBatchApplier implements RawApplier
     protected String       stageMergeScript;
     protected String       stageSchemaPrefix;
     protected String       stageTablePrefix;
-    protected String       stageColumnPrefix = "tungsten_";
+    protected String       stageColumnPrefix    = "tungsten_";
     protected String       stagePkeyColumn;
-    protected boolean      cleanUpFiles      = true;
-    protected String       charset           = "UTF-8";
-    protected String       timezone          = "GMT-0:00";
-    protected LoadMismatch onLoadMismatch    = LoadMismatch.fail;
+    protected boolean      cleanUpFiles         = true;
+    protected String       charset              = "UTF-8";
+    protected String       timezone             = "GMT-0:00";
+    protected LoadMismatch onLoadMismatch       = LoadMismatch.fail;
+    protected boolean      stagePreMerge        = false;
+    protected long         stagePreMergeBytes   = 64 * 1024 * 1024;
+    protected int          stageLoadThreads     = 1;
+    protected LoadMode     stageLoadMode        = LoadMode.file;
+    protected long         stageCopyBufferBytes = 16 * 1024 * 1024;
 
     // Load file directory for this task.
     private File           stageDir;
@@ -127,28 +137,59 @@ public class SimpleBatchApplier implements RawApplier
         fail, warn
     };
 
+    // Enum to set how staged data reach the DBMS. Files are read by the load
+    // script, while copy streams data through the driver's COPY API.
+    enum LoadMode
+    {
+        file, copy
+    };
+
     // Batch CSV file information. When using staging the
     // stage table metadata field is filled in. Otherwise it is null.
     class CsvInfo
     {
-        String    schema;
-        String    table;
-        Table     baseTableMetadata;
-        Table     stageTableMetadata;
-        File      file;
-        CsvWriter writer;
+        String          schema;
+        String          table;
+        Table           baseTableMetadata;
+        Table           stageTableMetadata;
+        File            file;
+        CsvWriter       writer;
+        StageDataBuffer buffer;
     }
 
     // Open CVS files in current transaction.
     private Map<String, CsvInfo>        openCsvFiles         = new TreeMap<String, CsvInfo>();
 
+    // Rows merged by key before writing to CSV files, if enabled.
+    private RowMergeBuffer              mergeBuffer;
+
     // Cached load commands.
     private SqlScriptGenerator          loadScriptGenerator  = new SqlScriptGenerator();
-    private Map<String, List<String>>   loadScripts          = new HashMap<String, List<String>>();
+    private Map<String, List<String>>   loadScripts          = new ConcurrentHashMap<String, List<String>>();
 
     // Cached merge commands.
     private SqlScriptGenerator          mergeScriptGenerator = new SqlScriptGenerator();
-    private Map<String, List<String>>   mergeScripts         = new HashMap<String, List<String>>();
+    private Map<String, List<String>>   mergeScripts         = new ConcurrentHashMap<String, List<String>>();
+
+    // Threads and connections to load and merge tables in parallel, if
+    // enabled.
+    private ParallelTableLoader<CsvInfo> parallelLoader;
+
+    // Load and merge timings for each table, plus timing of the last batch.
+    private Map<String, TableLoadStats> tableLoadStats       = new TreeMap<String, TableLoadStats>();
+    private long                        batchCount;
+    private long                        lastBatchLoadMillis;
+    private int                         lastBatchTableCount;
+
+    // Cumulative load and merge statistics for a single table.
+    class TableLoadStats
+    {
+        long loads;
+        long rows;
+        long loadMillis;
+        long mergeMillis;
+        long lastMillis;
+    }
 
     // Latest event.
     private ReplDBMSHeader              latestHeader;
@@ -253,6 +294,85 @@ public class SimpleBatchApplier implements RawApplier
         this.onLoadMismatch = LoadMismatch.valueOf(onLoadMismatchString);
     }
 
+    /**
+     * If true, collapse row changes to the final image of each primary key
+     * in memory before writing them to CSV files.
+     */
+    public synchronized void setStagePreMerge(boolean stagePreMerge)
+    {
+        this.stagePreMerge = stagePreMerge;
+    }
+
+    /**
+     * Sets the estimated memory size of rows held for pre-merge, after which
+     * rows are written out to CSV files.
+     */
+    public synchronized void setStagePreMergeBytes(long stagePreMergeBytes)
+    {
+        this.stagePreMergeBytes = stagePreMergeBytes;
+    }
+
+    /**
+     * Sets the number of tables to load and merge concurrently at commit, each
+     * on its own connection. A value of 1 loads tables one at a time on the
+     * main connection. Higher values commit loaded tables before the position,
+     * so merge scripts must give the same result when a batch is applied
+     * again.
+     */
+    public synchronized void setStageLoadThreads(int stageLoadThreads)
+    {
+        this.stageLoadThreads = stageLoadThreads;
+    }
+
+    /**
+     * Sets how staged data are loaded. "file" runs the load script on CSV
+     * files, while "copy" streams CSV data to the last command of the load
+     * script, which must be a COPY from STDIN.
+     */
+    public synchronized void setStageLoadMode(String stageLoadMode)
+    {
+        this.stageLoadMode = LoadMode.valueOf(stageLoadMode);
+    }
+
+    /**
+     * Sets the bytes of staged data held in memory per table in copy mode,
+     * after which data are written to a file and streamed from there.
+     */
+    public synchronized void setStageCopyBufferBytes(long stageCopyBufferBytes)
+    {
+        this.stageCopyBufferBytes = stageCopyBufferBytes;
+    }
+
+    /**
+     * Returns load and merge timings for the tables loaded so far.
+     * 
+     * @see com.continuent.tungsten.replicator.applier.ApplierStatusProvider#status()
+     */
+    public TungstenProperties status()
+    {
+        TungstenProperties props = new TungstenProperties();
+        props.setInt("stageLoadThreads", stageLoadThreads);
+        props.setString("stageLoadMode", stageLoadMode.toString());
+        synchronized (tableLoadStats)
+        {
+            props.setLong("batchCount", batchCount);
+            props.setInt("lastBatchTables", lastBatchTableCount);
+            props.setDouble("lastBatchLoadTime", lastBatchLoadMillis / 1000.0);
+            for (String name : tableLoadStats.keySet())
+            {
+                TableLoadStats stats = tableLoadStats.get(name);
+                String prefix = "table." + name + ".";
+                props.setLong(prefix + "loads", stats.loads);
+                props.setLong(prefix + "rows", stats.rows);
+                props.setDouble(prefix + "loadTime", stats.loadMillis / 1000.0);
+                props.setDouble(prefix + "mergeTime",
+                        stats.mergeMillis / 1000.0);
+                props.setDouble(prefix + "lastTime", stats.lastMillis / 1000.0);
+            }
+        }
+        return props;
+    }
+
     /**
      * Applies row updates using a batch loading scheme. Statements are
      * discarded. {@inheritDoc}
@@ -283,8 +403,10 @@ public class SimpleBatchApplier implements RawApplier
             else if (dbmsData instanceof RowChangeData)
             {
                 RowChangeData rd = (RowChangeData) dbmsData;
-                for (OneRowChange orc : rd.getRowChanges())
+                Iterator<OneRowChange> rowChanges = rd.rowChangeIterator();
+                while (rowChanges.hasNext())
                 {
+                    OneRowChange orc = rowChanges.next();
                     // Get the action as well as the schema & table name.
                     ActionType action = orc.getAction();
                     String schema = orc.getSchemaName();
@@ -310,7 +432,7 @@ public class SimpleBatchApplier implements RawApplier
                                 table, colSpecs, keySpecs);
 
                         // Insert each column into the CSV file.
-                        writeValues(seqno, tableMetadata, colSpecs, colValues,
+                        stageValues(seqno, tableMetadata, colSpecs, colValues,
                                 INSERT);
                     }
                     else if (action.equals(ActionType.UPDATE))
@@ -328,9 +450,9 @@ public class SimpleBatchApplier implements RawApplier
                                 table, colSpecs, keySpecs);
 
                         // Write keys for deletion and columns for insert.
-                        writeValues(seqno, tableMetadata, keySpecs, keyValues,
+                        stageValues(seqno, tableMetadata, keySpecs, keyValues,
                                 DELETE);
-                        writeValues(seqno, tableMetadata, colSpecs, colValues,
+                        stageValues(seqno, tableMetadata, colSpecs, colValues,
                                 INSERT);
                     }
                     else if (action.equals(ActionType.DELETE))
@@ -346,7 +468,7 @@ public class SimpleBatchApplier implements RawApplier
                                 table, keySpecs, keySpecs);
 
                         // Insert each column into the CSV file.
-                        writeValues(seqno, tableMetadata, keySpecs, keyValues,
+                        stageValues(seqno, tableMetadata, keySpecs, keyValues,
                                 DELETE);
                     }
                     else
@@ -395,22 +517,37 @@ public class SimpleBatchApplier implements RawApplier
             return;
         }
 
-        // Flush open CSV files now so that data become visible in case we
-        // abort.
+        // Write out merged rows, then flush open CSV files now so that data
+        // become visible in case we abort.
+        if (mergeBuffer != null)
+        {
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Writing merged rows: changes="
+                        + mergeBuffer.getChangeCount() + " estimated_bytes="
+                        + mergeBuffer.getSize());
+            }
+            writeMergedRows();
+            mergeBuffer.clear();
+        }
         for (CsvInfo info : openCsvFiles.values())
         {
             flush(info);
         }
 
         // Load each open CSV file.
+        long loadStart = System.currentTimeMillis();
         int loadCount = 0;
-        for (CsvInfo info : openCsvFiles.values())
+        if (parallelLoader == null)
         {
-            clearStageTable(info);
-            load(info);
-            mergeFromStageTable(info);
-            loadCount++;
+            for (CsvInfo info : openCsvFiles.values())
+            {
+                loadAndMerge(info, conn, statement);
+                loadCount++;
+            }
         }
+        else
+            loadCount = parallelLoader.load(openCsvFiles.values());
 
         // Make sure the loaded CSV files match the total open files.
         if (loadCount != openCsvFiles.size())
@@ -420,6 +557,18 @@ public class SimpleBatchApplier implements RawApplier
                             + loadCount + " total=" + openCsvFiles.size());
         }
 
+        // Commit tables loaded on separate connections. This happens before
+        // the position update, so a failure in between applies the batch
+        // again on restart. Merge scripts must therefore be idempotent.
+        if (parallelLoader != null)
+            parallelLoader.commit();
+        synchronized (tableLoadStats)
+        {
+            batchCount++;
+            lastBatchTableCount = loadCount;
+            lastBatchLoadMillis = System.currentTimeMillis() - loadStart;
+        }
+
         // Update trep_commit_seqno.
         try
         {
@@ -481,9 +630,13 @@ public class SimpleBatchApplier implements RawApplier
             if (logger.isDebugEnabled())
                 logger.debug("Transaction rollback error", e);
         }
+        if (parallelLoader != null)
+            parallelLoader.rollback();
 
-        // Clear the CSV file cache.
+        // Clear the CSV file cache and merged rows.
         openCsvFiles.clear();
+        if (mergeBuffer != null)
+            mergeBuffer.clear();
 
         // Clear the load directories.
         try
@@ -528,6 +681,12 @@ public class SimpleBatchApplier implements RawApplier
         assertNotNull(stageColumnPrefix, "stageRowIdColumn");
         assertNotNull(stageLoadScript, "stageLoadScript");
         assertNotNull(stageMergeScript, "stageMergeScript");
+        if (stageLoadThreads < 1)
+        {
+            throw new ReplicatorException(
+                    "Property stageLoadThreads must be 1 or greater: "
+                            + stageLoadThreads);
+        }
 
         // Get metadata schema.
         metadataSchema = context.getReplicatorSchemaName();
@@ -584,6 +743,14 @@ public class SimpleBatchApplier implements RawApplier
                     + outputCharset.toString());
         }
 
+        // Set up merging of rows by key if desired.
+        if (stagePreMerge)
+        {
+            logger.info("Pre-merging rows by key: stagePreMergeBytes="
+                    + stagePreMergeBytes);
+            mergeBuffer = new RowMergeBuffer(stagePreMergeBytes);
+        }
+
         // Initialize script generators for load and merge operations.
         loadScriptGenerator = initializeGenerator(stageLoadScript);
         mergeScriptGenerator = initializeGenerator(stageMergeScript);
@@ -643,6 +810,14 @@ public class SimpleBatchApplier implements RawApplier
             // Ensure we are not in auto-commit mode.
             conn.setAutoCommit(false);
 
+            // Ensure we can stream data if desired.
+            if (stageLoadMode == LoadMode.copy && !conn.supportsCopyIn())
+            {
+                throw new ReplicatorException(
+                        "Property stageLoadMode=copy is not supported for this database type: "
+                                + conn.getType());
+            }
+
         }
         catch (SQLException e)
         {
@@ -652,39 +827,101 @@ public class SimpleBatchApplier implements RawApplier
         }
 
         // If a start-up script is present, execute that now.
-        if (startupScript != null)
-        {
-            // Parse script.
-            SqlScriptGenerator generator = initializeGenerator(this.startupScript);
-            List<String> startCommands = generator
-                    .getParameterizedScript(new HashMap<String, String>());
+        runStartupScript(statement);
+
+        // Set up connections and threads for parallel load if desired.
+        if (stageLoadThreads > 1)
+            prepareParallelLoad();
+    }
+
+    // Executes the start-up script, if any, on a connection.
+    private void runStartupScript(Statement stmt) throws ReplicatorException
+    {
+        if (startupScript == null)
+            return;
 
-            // Execute commands.
-            for (String startCommand : startCommands)
+        // Parse script.
+        SqlScriptGenerator generator = initializeGenerator(this.startupScript);
+        List<String> startCommands = generator
+                .getParameterizedScript(new HashMap<String, String>());
+
+        // Execute commands.
+        for (String startCommand : startCommands)
+        {
+            if (logger.isDebugEnabled())
             {
+                logger.debug("Executing start command: " + startCommand);
+            }
+            try
+            {
+                long start = System.currentTimeMillis();
+                stmt.executeUpdate(startCommand);
+                double interval = (System.currentTimeMillis() - start) / 1000.0;
                 if (logger.isDebugEnabled())
                 {
-                    logger.debug("Executing start command: " + startCommand);
+                    logger.debug("Execution completed: duration=" + interval
+                            + "s");
                 }
+            }
+            catch (SQLException e)
+            {
+                ReplicatorException re = new ReplicatorException(
+                        "Unable to execute load command", e);
+                re.setExtraData(startCommand);
+                throw re;
+            }
+        }
+    }
+
+    // Opens connections and starts threads to load tables in parallel.
+    private void prepareParallelLoad() throws ReplicatorException
+    {
+        logger.info("Loading tables in parallel: stageLoadThreads="
+                + stageLoadThreads);
+        List<Database> loadConns = new ArrayList<Database>();
+        try
+        {
+            for (int i = 0; i < stageLoadThreads; i++)
+            {
+                Database loadConn = DatabaseFactory.createDatabase(url, user,
+                        password);
+                loadConns.add(loadConn);
+                loadConn.connect(false);
+                loadConn.setAutoCommit(false);
+                Statement loadStatement = loadConn.createStatement();
                 try
                 {
-                    long start = System.currentTimeMillis();
-                    statement.executeUpdate(startCommand);
-                    double interval = (System.currentTimeMillis() - start) / 1000.0;
-                    if (logger.isDebugEnabled())
-                    {
-                        logger.debug("Execution completed: duration="
-                                + interval + "s");
-                    }
+                    runStartupScript(loadStatement);
                 }
-                catch (SQLException e)
+                finally
                 {
-                    ReplicatorException re = new ReplicatorException(
-                            "Unable to execute load command", e);
-                    re.setExtraData(startCommand);
-                    throw re;
+                    loadStatement.close();
                 }
             }
+            parallelLoader = new ParallelTableLoader<CsvInfo>("batch-load-"
+                    + taskId, new ParallelTableLoader.TableLoader<CsvInfo>()
+            {
+                public void load(CsvInfo info, Database db, Statement stmt)
+                        throws ReplicatorException
+                {
+                    loadAndMerge(info, db, stmt);
+                }
+            }, loadConns);
+        }
+        catch (SQLException e)
+        {
+            for (Database loadConn : loadConns)
+                loadConn.close();
+            String message = String.format(
+                    "Failed to open load connection using url=%s, user=%s",
+                    url, user);
+            throw new ReplicatorException(message, e);
+        }
+        catch (ReplicatorException e)
+        {
+            for (Database loadConn : loadConns)
+                loadConn.close();
+            throw e;
         }
     }
 
@@ -750,6 +987,13 @@ public class SimpleBatchApplier implements RawApplier
             fullMetadataCache = null;
         }
 
+        // Stop load threads and close their connections.
+        if (parallelLoader != null)
+        {
+            parallelLoader.release();
+            parallelLoader = null;
+        }
+
         // Release our connection. This prevents all manner of trouble.
         if (conn != null)
         {
@@ -830,8 +1074,10 @@ public class SimpleBatchApplier implements RawApplier
         CsvInfo info = this.openCsvFiles.get(key);
         if (info == null)
         {
-            // Generate file name.
+            // Generate file name. When streaming data, the file is only used
+            // if data do not fit in memory.
             File file = new File(this.stageDir, key + ".csv");
+            StageDataBuffer buffer = null;
 
             // Pick the right table to use. For staging tables, we
             // need to use the stage metadata instead of going direct
@@ -845,7 +1091,14 @@ public class SimpleBatchApplier implements RawApplier
             try
             {
                 // Generate a CSV writer on the file.
-                FileOutputStream outputStream = new FileOutputStream(file);
+                OutputStream outputStream;
+                if (stageLoadMode == LoadMode.copy)
+                {
+                    buffer = new StageDataBuffer(file, stageCopyBufferBytes);
+                    outputStream = buffer;
+                }
+                else
+                    outputStream = new FileOutputStream(file);
                 OutputStreamWriter streamWriter = new OutputStreamWriter(
                         outputStream, outputCharset);
                 BufferedWriter output = new BufferedWriter(streamWriter);
@@ -872,6 +1125,7 @@ public class SimpleBatchApplier implements RawApplier
                 info.stageTableMetadata = stageTableMetadata;
                 info.file = file;
                 info.writer = writer;
+                info.buffer = buffer;
                 openCsvFiles.put(key, info);
             }
             catch (CsvException e)
@@ -888,6 +1142,115 @@ public class SimpleBatchApplier implements RawApplier
         return info;
     }
 
+    // Stage values either directly into a CSV file or, if pre-merge is
+    // enabled, into the merge buffer.
+    private void stageValues(long seqno, Table tableMetadata,
+            List<ColumnSpec> colSpecs,
+            ArrayList<ArrayList<ColumnVal>> colValues, String opcode)
+            throws ReplicatorException
+    {
+        if (mergeBuffer == null)
+        {
+            writeValues(seqno, tableMetadata, colSpecs, colValues, opcode);
+            return;
+        }
+
+        int[] keyIndexes = getKeyIndexes(tableMetadata, colSpecs);
+        if (keyIndexes == null)
+        {
+            // Without a key we cannot merge. Write out rows merged so far
+            // for this table so that CSV order matches the change order.
+            writeMergedRows(tableMetadata);
+            writeValues(seqno, tableMetadata, colSpecs, colValues, opcode);
+            return;
+        }
+
+        for (ArrayList<ColumnVal> row : colValues)
+        {
+            Object[] key = new Object[keyIndexes.length];
+            for (int i = 0; i < keyIndexes.length; i++)
+                key[i] = row.get(keyIndexes[i]).getValue();
+            if (INSERT.equals(opcode))
+                mergeBuffer.insert(tableMetadata, key, seqno, colSpecs, row);
+            else
+                mergeBuffer.delete(tableMetadata, key, seqno, colSpecs, row);
+        }
+
+        // Spill to CSV files if we are holding too much in memory.
+        if (mergeBuffer.isFull())
+        {
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Merge buffer is full, writing to CSV files: "
+                        + "estimated_bytes=" + mergeBuffer.getSize());
+            }
+            writeMergedRows();
+        }
+    }
+
+    // Returns the position of each primary key column in column specs or
+    // null if the table has no known key or a key column is missing.
+    private int[] getKeyIndexes(Table tableMetadata, List<ColumnSpec> colSpecs)
+    {
+        Key primaryKey = tableMetadata.getPrimaryKey();
+        if (primaryKey == null || primaryKey.getColumns().size() == 0)
+            return null;
+
+        List<Column> keyColumns = primaryKey.getColumns();
+        int[] keyIndexes = new int[keyColumns.size()];
+        for (int i = 0; i < keyIndexes.length; i++)
+        {
+            String keyName = keyColumns.get(i).getName();
+            keyIndexes[i] = -1;
+            for (int j = 0; j < colSpecs.size(); j++)
+            {
+                if (keyName != null
+                        && keyName.equals(colSpecs.get(j).getName()))
+                {
+                    keyIndexes[i] = j;
+                    break;
+                }
+            }
+            if (keyIndexes[i] < 0)
+                return null;
+        }
+        return keyIndexes;
+    }
+
+    // Write merged rows of all tables into CSV files.
+    private void writeMergedRows() throws ReplicatorException
+    {
+        for (Table tableMetadata : mergeBuffer.getTables())
+            writeMergedRows(tableMetadata);
+    }
+
+    // Write merged rows of a table into its CSV file. Each key gets its
+    // delete row before its insert row so that the insert has the higher
+    // row ID.
+    private void writeMergedRows(Table tableMetadata)
+            throws ReplicatorException
+    {
+        List<RowMergeBuffer.MergedRow> rows = mergeBuffer
+                .remove(tableMetadata);
+        if (rows.size() == 0)
+            return;
+
+        CsvInfo info = getCsvWriter(tableMetadata);
+        for (RowMergeBuffer.MergedRow row : rows)
+        {
+            if (row.getDeleteValues() != null)
+            {
+                writeRow(info, row.getDeleteSeqno(), row.getDeleteSpecs(),
+                        row.getDeleteValues(), DELETE);
+            }
+            if (row.getInsertValues() != null)
+            {
+                writeRow(info, row.getInsertSeqno(), row.getInsertSpecs(),
+                        row.getInsertValues(), INSERT);
+            }
+        }
+    }
+
     // Write values into a CSV file.
     private void writeValues(long seqno, Table tableMetadata,
             List<ColumnSpec> colSpecs,
@@ -895,31 +1258,39 @@ public class SimpleBatchApplier implements RawApplier
             throws ReplicatorException
     {
         CsvInfo info = getCsvWriter(tableMetadata);
+
+        // Iterate over updates.
+        Iterator<ArrayList<ColumnVal>> colIterator = colValues.iterator();
+        while (colIterator.hasNext())
+        {
+            writeRow(info, seqno, colSpecs, colIterator.next(), opcode);
+        }
+    }
+
+    // Write a single row into a CSV file.
+    private void writeRow(CsvInfo info, long seqno, List<ColumnSpec> colSpecs,
+            ArrayList<ColumnVal> row, String opcode)
+            throws ReplicatorException
+    {
         CsvWriter csv = info.writer;
 
         try
         {
-            // Iterate over updates.
-            Iterator<ArrayList<ColumnVal>> colIterator = colValues.iterator();
-            while (colIterator.hasNext())
+            // Insert the sequence number and opcode.
+            int csvIndex = 1;
+            csv.put(csvIndex++, new Long(seqno).toString());
+            csv.put(csvIndex++, opcode);
+
+            // Now add the row data.
+            for (int i = 0; i < row.size(); i++)
             {
-                // Insert the sequence number and opcode.
-                int csvIndex = 1;
-                csv.put(csvIndex++, new Long(seqno).toString());
-                csv.put(csvIndex++, opcode);
-
-                // Now add the row data.
-                ArrayList<ColumnVal> row = colIterator.next();
-                for (int i = 0; i < row.size(); i++)
-                {
-                    ColumnVal columnVal = row.get(i);
-                    ColumnSpec columnSpec = colSpecs.get(i);
-                    String value = getCsvString(columnVal, columnSpec);
-                    int colIdx = columnSpec.getIndex();
-                    csv.put(colIdx + 2, value);
-                }
-                csv.write();
+                ColumnVal columnVal = row.get(i);
+                ColumnSpec columnSpec = colSpecs.get(i);
+                String value = getCsvString(columnVal, columnSpec);
+                int colIdx = columnSpec.getIndex();
+                csv.put(colIdx + 2, value);
             }
+            csv.write();
         }
         catch (CsvException e)
         {
@@ -976,8 +1347,39 @@ public class SimpleBatchApplier implements RawApplier
         }
     }
 
-    // Load an open CSV file.
-    private void load(CsvInfo info) throws ReplicatorException
+    // Clear the stage table, then load and merge an open CSV file using the
+    // given connection, recording timings for the table.
+    private void loadAndMerge(CsvInfo info, Database db, Statement stmt)
+            throws ReplicatorException
+    {
+        long start = System.currentTimeMillis();
+        clearStageTable(info, stmt);
+        load(info, db, stmt);
+        long loaded = System.currentTimeMillis();
+        mergeFromStageTable(info, stmt);
+        long merged = System.currentTimeMillis();
+
+        String name = info.baseTableMetadata.fullyQualifiedName();
+        synchronized (tableLoadStats)
+        {
+            TableLoadStats stats = tableLoadStats.get(name);
+            if (stats == null)
+            {
+                stats = new TableLoadStats();
+                tableLoadStats.put(name, stats);
+            }
+            stats.loads++;
+            stats.rows += info.writer.getRowCount();
+            stats.loadMillis += loaded - start;
+            stats.mergeMillis += merged - loaded;
+            stats.lastMillis = merged - start;
+        }
+    }
+
+    // Load an open CSV file. In copy mode the last load command streams the
+    // staged data.
+    private void load(CsvInfo info, Database db, Statement stmt)
+            throws ReplicatorException
     {
         if (logger.isDebugEnabled())
         {
@@ -1008,7 +1410,12 @@ public class SimpleBatchApplier implements RawApplier
             try
             {
                 long start = System.currentTimeMillis();
-                int rows = statement.executeUpdate(loadCommand);
+                long rows;
+                if (info.buffer != null
+                        && commandCount + 1 == loadCommands.size())
+                    rows = copyIn(info, db, loadCommand);
+                else
+                    rows = stmt.executeUpdate(loadCommand);
                 commandCount++;
                 double interval = (System.currentTimeMillis() - start) / 1000.0;
                 if (logger.isDebugEnabled())
@@ -1066,16 +1473,73 @@ public class SimpleBatchApplier implements RawApplier
             }
         }
 
-        // Delete the load file if we are done with it.
-        if (cleanUpFiles && !info.file.delete())
+        // Delete the load file if we are done with it. In copy mode data
+        // are discarded in any case and the file exists only if data spilled.
+        if (info.buffer != null)
+        {
+            try
+            {
+                if (!info.buffer.release())
+                {
+                    logger.warn("Unable to delete load file: "
+                            + info.file.getAbsolutePath());
+                }
+            }
+            catch (IOException e)
+            {
+                logger.warn("Unable to release staged data: "
+                        + info.file.getAbsolutePath(), e);
+            }
+        }
+        else if (cleanUpFiles && !info.file.delete())
         {
             logger.warn("Unable to delete load file: "
                     + info.file.getAbsolutePath());
         }
     }
 
-    // Load an open CSV file.
-    private void clearStageTable(CsvInfo info) throws ReplicatorException
+    // Stream staged data of an open CSV file through a COPY command.
+    private long copyIn(CsvInfo info, Database db, String copyCommand)
+            throws SQLException, ReplicatorException
+    {
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Streaming staged data: bytes="
+                    + info.buffer.getSize() + " spilled="
+                    + info.buffer.isSpilled());
+        }
+        InputStream data = null;
+        try
+        {
+            data = info.buffer.getInputStream();
+            return db.copyIn(copyCommand, data);
+        }
+        catch (IOException e)
+        {
+            ReplicatorException re = new ReplicatorException(
+                    "Unable to stream staged data for table: "
+                            + info.baseTableMetadata.fullyQualifiedName(), e);
+            re.setExtraData(copyCommand);
+            throw re;
+        }
+        finally
+        {
+            if (data != null)
+            {
+                try
+                {
+                    data.close();
+                }
+                catch (IOException e)
+                {
+                }
+            }
+        }
+    }
+
+    // Clear the stage table of an open CSV file.
+    private void clearStageTable(CsvInfo info, Statement stmt)
+            throws ReplicatorException
     {
         Table table = info.stageTableMetadata;
         if (logger.isDebugEnabled())
@@ -1091,7 +1555,7 @@ public class SimpleBatchApplier implements RawApplier
         }
         try
         {
-            int rowsLoaded = statement.executeUpdate(delete);
+            int rowsLoaded = stmt.executeUpdate(delete);
             if (logger.isDebugEnabled())
             {
                 logger.debug("Rows deleted: " + rowsLoaded);
@@ -1146,8 +1610,9 @@ public class SimpleBatchApplier implements RawApplier
         return pkey;
     }
 
-    // Load an open CSV file.
-    private void mergeFromStageTable(CsvInfo info) throws ReplicatorException
+    // Merge an open CSV file from its stage table into the base table.
+    private void mergeFromStageTable(CsvInfo info, Statement stmt)
+            throws ReplicatorException
     {
         Table base = info.baseTableMetadata;
         Table stage = info.stageTableMetadata;
@@ -1177,7 +1642,7 @@ public class SimpleBatchApplier implements RawApplier
             try
             {
                 long start = System.currentTimeMillis();
-                int rows = statement.executeUpdate(command);
+                int rows = stmt.executeUpdate(command);
                 double interval = (System.currentTimeMillis() - start) / 1000.0;
                 if (logger.isDebugEnabled())
                 {
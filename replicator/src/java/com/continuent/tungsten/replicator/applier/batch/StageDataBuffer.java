@@ -0,0 +1,184 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.applier.batch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Holds staged data for a single table in memory so that it can be streamed
+ * to the DBMS without a temporary file. Once the data grow past the memory
+ * limit, they are moved to the given file and further writes go there. The
+ * data are read back with {@link #getInputStream()} after the buffer is
+ * closed. Instances are not thread-safe.
+ *
+ * @version 1.0
+ */
+public class StageDataBuffer extends OutputStream
+{
+    // Byte array output stream that can read back its data without a copy.
+    private static class MemoryBuffer extends ByteArrayOutputStream
+    {
+        MemoryBuffer()
+        {
+            super(8192);
+        }
+
+        InputStream getInputStream()
+        {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+
+    private final File   file;
+    private final long   maxMemory;
+    private MemoryBuffer memory = new MemoryBuffer();
+    private OutputStream fileOutput;
+    private long         size;
+    private boolean      closed;
+
+    /**
+     * Creates a new buffer.
+     *
+     * @param file File to receive data that do not fit in memory
+     * @param maxMemory Maximum number of bytes to hold in memory
+     */
+    public StageDataBuffer(File file, long maxMemory)
+    {
+        this.file = file;
+        this.maxMemory = maxMemory;
+    }
+
+    /** Returns the number of bytes written. */
+    public long getSize()
+    {
+        return size;
+    }
+
+    /** Returns true if data have been moved to the file. */
+    public boolean isSpilled()
+    {
+        return fileOutput != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see java.io.OutputStream#write(int)
+     */
+    public void write(int b) throws IOException
+    {
+        ensureCapacity(1);
+        if (fileOutput == null)
+            memory.write(b);
+        else
+            fileOutput.write(b);
+        size++;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see java.io.OutputStream#write(byte[], int, int)
+     */
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        ensureCapacity(len);
+        if (fileOutput == null)
+            memory.write(b, off, len);
+        else
+            fileOutput.write(b, off, len);
+        size += len;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see java.io.OutputStream#flush()
+     */
+    public void flush() throws IOException
+    {
+        if (fileOutput != null)
+            fileOutput.flush();
+    }
+
+    /**
+     * Closes the buffer, after which data may be read.
+     *
+     * @see java.io.OutputStream#close()
+     */
+    public void close() throws IOException
+    {
+        if (closed)
+            return;
+        closed = true;
+        if (fileOutput != null)
+            fileOutput.close();
+    }
+
+    /**
+     * Returns a stream to read the buffered data, which callers must close.
+     */
+    public InputStream getInputStream() throws IOException
+    {
+        if (!closed)
+            throw new IOException("Stage buffer must be closed before reading");
+        if (memory != null)
+            return memory.getInputStream();
+        else
+            return new BufferedInputStream(new FileInputStream(file));
+    }
+
+    /**
+     * Discards buffered data, including the file if data were moved there.
+     *
+     * @return False if the file could not be deleted
+     */
+    public boolean release() throws IOException
+    {
+        close();
+        memory = null;
+        if (fileOutput != null && file.exists())
+            return file.delete();
+        else
+            return true;
+    }
+
+    // Moves data to the file if adding bytes would pass the memory limit.
+    private void ensureCapacity(int len) throws IOException
+    {
+        if (closed)
+            throw new IOException("Stage buffer is closed");
+        if (fileOutput == null && memory.size() + (long) len > maxMemory)
+        {
+            fileOutput = new BufferedOutputStream(new FileOutputStream(file));
+            memory.writeTo(fileOutput);
+            memory = null;
+        }
+    }
+}
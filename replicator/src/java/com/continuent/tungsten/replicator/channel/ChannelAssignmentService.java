@@ -217,6 +217,30 @@ public class ChannelAssignmentService implements PipelineService
         }
     }
 
+    /**
+     * Moves an existing shard to another channel.
+     * 
+     * @param shardId Shard name
+     * @param channel New channel number
+     * @throws ReplicatorException Thrown if there is an error accessing
+     *             database
+     */
+    public synchronized void updateChannelAssignment(String shardId,
+            int channel) throws ReplicatorException
+    {
+        try
+        {
+            channelTable.update(conn, shardId, channel);
+            assignments.put(shardId, channel);
+        }
+        catch (SQLException e)
+        {
+            throw new ReplicatorException(
+                    "Unable to access channel assignment table; ensure it is defined",
+                    e);
+        }
+    }
+
     /**
      * Looks up a channel assignment for a shard. This creates a new assignment
      * if required.
@@ -115,6 +115,24 @@ public class ShardChannelTable
         return database.insert(channelTable);
     }
 
+    /**
+     * Update the channel of an existing shard/channel assignment.
+     */
+    public int update(Database database, String shardName, int channelNumber)
+            throws SQLException
+    {
+        ArrayList<Column> whereClause = new ArrayList<Column>();
+        ArrayList<Column> values = new ArrayList<Column>();
+
+        shardId.setValue(shardName);
+        whereClause.add(shardId);
+
+        channel.setValue(channelNumber);
+        values.add(channel);
+
+        return database.update(channelTable, whereClause, values);
+    }
+
     /**
      * Drop all channel definitions.
      */
@@ -197,6 +197,12 @@ public class ReplicatorConf
     public static final String   THL_PROTOCOL_DEFAULT                  = "com.continuent.tungsten.replicator.thl.Connector";
     public static final String   THL_PROTOCOL_BUFFER_SIZE              = "replicator.thl.protocol.buffer_size";
     public static final String   THL_PROTOCOL_BUFFER_SIZE_DEFAULT      = "0";
+    public static final String   THL_PROTOCOL_VERSION                  = "replicator.thl.protocol.version";
+    public static final String   THL_PROTOCOL_VERSION_DEFAULT          = "3";
+    public static final String   THL_PROTOCOL_WINDOW                   = "replicator.thl.protocol.window";
+    public static final String   THL_PROTOCOL_WINDOW_DEFAULT           = "1000";
+    public static final String   THL_PROTOCOL_COMPRESSION              = "replicator.thl.protocol.compression";
+    public static final String   THL_PROTOCOL_COMPRESSION_DEFAULT      = "none";
 
     static public final String   MONITOR_DETAIL_ENABLED                = "replicator.monitor.detail_enabled";
 
@@ -325,6 +325,12 @@ public class ReplicatorRuntime implements PluginContext
 
         assertPropertyDefault(ReplicatorConf.THL_PROTOCOL_BUFFER_SIZE,
                 ReplicatorConf.THL_PROTOCOL_BUFFER_SIZE_DEFAULT);
+        assertPropertyDefault(ReplicatorConf.THL_PROTOCOL_VERSION,
+                ReplicatorConf.THL_PROTOCOL_VERSION_DEFAULT);
+        assertPropertyDefault(ReplicatorConf.THL_PROTOCOL_WINDOW,
+                ReplicatorConf.THL_PROTOCOL_WINDOW_DEFAULT);
+        assertPropertyDefault(ReplicatorConf.THL_PROTOCOL_COMPRESSION,
+                ReplicatorConf.THL_PROTOCOL_COMPRESSION_DEFAULT);
 
         // Set default for resource JDBC URL so that unit tests run properly.
         // This value is normally set in the replicator properties.
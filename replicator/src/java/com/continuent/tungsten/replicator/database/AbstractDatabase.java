@@ -22,6 +22,8 @@
 
 package com.continuent.tungsten.replicator.database;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.Blob;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -594,6 +596,29 @@ public abstract class AbstractDatabase implements Database
         return false;
     }
 
+    public boolean supportsMultiRowInsert()
+    {
+        return false;
+    }
+
+    public boolean supportsCopyIn()
+    {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see com.continuent.tungsten.replicator.database.Database#copyIn(java.lang.String,
+     *      java.io.InputStream)
+     */
+    public long copyIn(String copyCommand, InputStream data)
+            throws SQLException, IOException
+    {
+        throw new UnsupportedOperationException(
+                "COPY streaming is not supported for this database type");
+    }
+
     /**
      * {@inheritDoc}
      * 
@@ -658,6 +683,18 @@ public abstract class AbstractDatabase implements Database
         return dbConn.prepareStatement(statement);
     }
 
+    /**
+     * Returns an ordinary prepared statement. Subclasses override this to use
+     * server-side prepares.
+     * 
+     * @see com.continuent.tungsten.replicator.database.Database#prepareReusableStatement(java.lang.String)
+     */
+    public PreparedStatement prepareReusableStatement(String statement)
+            throws SQLException
+    {
+        return prepareStatement(statement);
+    }
+
     /**
      * {@inheritDoc}
      * 
@@ -23,6 +23,8 @@
 package com.continuent.tungsten.replicator.database;
 
 import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
@@ -283,6 +285,12 @@ public interface Database
      */
     public boolean supportsReplace();
 
+    /**
+     * Returns true if the implementation supports INSERT statements with more
+     * than one row in the VALUES clause.
+     */
+    public boolean supportsMultiRowInsert();
+
     /**
      * Replaces a row in the table using the data supplied by the Table
      * specification. The Table instance's primary key is used to locate the
@@ -313,6 +321,16 @@ public interface Database
     public PreparedStatement prepareStatement(String statement)
             throws SQLException;
 
+    /**
+     * Generate a JDBC prepared statement that will be executed many times.
+     * Implementations use server-side prepared statements where the driver
+     * supports them so that the server parses the statement once.
+     * 
+     * @param statement SQL statement to prepare
+     */
+    public PreparedStatement prepareReusableStatement(String statement)
+            throws SQLException;
+
     /**
      * Generate a JDBC statement.
      */
@@ -508,4 +526,22 @@ public interface Database
      * @return A property configured CsvWriter instance
      */
     public CsvWriter getCsvWriter(BufferedWriter writer);
+
+    /**
+     * Returns true if the implementation can load data streamed from the
+     * client using {@link #copyIn(String, InputStream)}.
+     */
+    public boolean supportsCopyIn();
+
+    /**
+     * Loads data through the COPY API of the driver, which streams them from
+     * the client rather than reading a file on the DBMS server.
+     * 
+     * @param copyCommand A COPY command that reads from STDIN
+     * @param data Input stream containing data in the format expected by the
+     *            command
+     * @return Number of rows loaded
+     */
+    public long copyIn(String copyCommand, InputStream data)
+            throws SQLException, IOException;
 }
\ No newline at end of file
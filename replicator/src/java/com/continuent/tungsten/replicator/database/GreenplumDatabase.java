@@ -23,6 +23,8 @@
 package com.continuent.tungsten.replicator.database;
 
 import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -32,8 +34,11 @@ import java.util.ArrayList;
 import java.util.Iterator;
 
 import org.apache.log4j.Logger;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
 
 import com.continuent.tungsten.commons.csv.CsvWriter;
+import com.continuent.tungsten.commons.csv.NullPolicy;
 import com.continuent.tungsten.replicator.ReplicatorException;
 import com.continuent.tungsten.replicator.dbms.OneRowChange;
 
@@ -471,8 +476,37 @@ public class GreenplumDatabase extends AbstractDatabase
      */
     public CsvWriter getCsvWriter(BufferedWriter writer)
     {
-        // Need to implement in order to support CSV.
-        throw new UnsupportedOperationException(
-                "CSV output is not supported for this database type");
+        // Greenplum loads CSV the same way as PostgreSQL, which takes
+        // backslashes literally and escapes quotes by doubling them.
+        CsvWriter csv = new CsvWriter(writer);
+        csv.setQuoteChar('"');
+        csv.setQuoted(true);
+        csv.setNullPolicy(NullPolicy.skip);
+        csv.setEscapeChar('"');
+        csv.setWriteHeaders(false);
+        return csv;
+    }
+
+    /**
+     * Greenplum supports COPY FROM STDIN through the driver's copy API.
+     * 
+     * @see com.continuent.tungsten.replicator.database.Database#supportsCopyIn()
+     */
+    public boolean supportsCopyIn()
+    {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see com.continuent.tungsten.replicator.database.Database#copyIn(java.lang.String,
+     *      java.io.InputStream)
+     */
+    public long copyIn(String copyCommand, InputStream data)
+            throws SQLException, IOException
+    {
+        CopyManager copyManager = ((PGConnection) dbConn).getCopyAPI();
+        return copyManager.copyIn(copyCommand, data);
     }
 }
@@ -24,6 +24,7 @@ package com.continuent.tungsten.replicator.database;
 
 import java.io.BufferedWriter;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -146,6 +147,32 @@ public class MySQLDatabase extends AbstractDatabase
         return true;
     }
 
+    public boolean supportsMultiRowInsert()
+    {
+        return true;
+    }
+
+    /**
+     * Uses a server-side prepared statement if the connection is from the
+     * MySQL Connector/J driver, which otherwise emulates prepares on the
+     * client.
+     * 
+     * @see com.continuent.tungsten.replicator.database.AbstractDatabase#prepareReusableStatement(java.lang.String)
+     */
+    public PreparedStatement prepareReusableStatement(String statement)
+            throws SQLException
+    {
+        if (dbConn instanceof com.mysql.jdbc.Connection)
+        {
+            if (logger.isDebugEnabled())
+                logger.debug("Server-side prepare: " + statement);
+            return ((com.mysql.jdbc.Connection) dbConn)
+                    .serverPrepareStatement(statement);
+        }
+        else
+            return super.prepareReusableStatement(statement);
+    }
+
     public boolean supportsUseDefaultSchema()
     {
         return true;
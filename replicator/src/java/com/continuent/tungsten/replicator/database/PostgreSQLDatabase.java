@@ -23,7 +23,10 @@
 package com.continuent.tungsten.replicator.database;
 
 import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -32,6 +35,8 @@ import java.util.ArrayList;
 import java.util.Iterator;
 
 import org.apache.log4j.Logger;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
 
 import com.continuent.tungsten.commons.csv.CsvWriter;
 import com.continuent.tungsten.commons.csv.NullPolicy;
@@ -140,6 +145,26 @@ public class PostgreSQLDatabase extends AbstractDatabase
         return false;
     }
 
+    public boolean supportsMultiRowInsert()
+    {
+        return true;
+    }
+
+    /**
+     * Asks the PostgreSQL driver to use a named server-side statement from
+     * the first execution rather than after the default threshold of 5.
+     * 
+     * @see com.continuent.tungsten.replicator.database.AbstractDatabase#prepareReusableStatement(java.lang.String)
+     */
+    public PreparedStatement prepareReusableStatement(String statement)
+            throws SQLException
+    {
+        PreparedStatement ps = super.prepareReusableStatement(statement);
+        if (ps instanceof org.postgresql.PGStatement)
+            ((org.postgresql.PGStatement) ps).setPrepareThreshold(1);
+        return ps;
+    }
+
     public boolean supportsUseDefaultSchema()
     {
         return true;
@@ -508,13 +533,37 @@ public class PostgreSQLDatabase extends AbstractDatabase
      */
     public CsvWriter getCsvWriter(BufferedWriter writer)
     {
+        // COPY CSV takes backslashes literally and escapes quotes by doubling
+        // them, so only quotes are escaped.
         CsvWriter csv = new CsvWriter(writer);
         csv.setQuoteChar('"');
         csv.setQuoted(true);
         csv.setNullPolicy(NullPolicy.skip);
-        csv.setEscapedChars("\\");
         csv.setEscapeChar('"');
         csv.setWriteHeaders(false);
         return csv;
     }
+
+    /**
+     * PostgreSQL supports COPY FROM STDIN through the driver's copy API.
+     * 
+     * @see com.continuent.tungsten.replicator.database.Database#supportsCopyIn()
+     */
+    public boolean supportsCopyIn()
+    {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see com.continuent.tungsten.replicator.database.Database#copyIn(java.lang.String,
+     *      java.io.InputStream)
+     */
+    public long copyIn(String copyCommand, InputStream data)
+            throws SQLException, IOException
+    {
+        CopyManager copyManager = ((PGConnection) dbConn).getCopyAPI();
+        return copyManager.copyIn(copyCommand, data);
+    }
 }
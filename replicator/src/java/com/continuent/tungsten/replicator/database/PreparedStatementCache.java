@@ -0,0 +1,246 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.apache.log4j.Logger;
+
+import com.continuent.tungsten.commons.cache.CacheResourceManager;
+import com.continuent.tungsten.commons.cache.IndexedLRUCache;
+
+/**
+ * Implements a cache of prepared statements for a single connection. The cache
+ * organizes statements by schema, table, and a statement shape supplied by
+ * the client, which must identify the SQL text uniquely for the table.
+ * Statements are closed when they are dropped from the cache. Like the
+ * TableMetadataCache, this cache supports invalidation by table and schema as
+ * well as by SQL operations so that DDL does not leave statements prepared
+ * against old table definitions.
+ * <p/>
+ * The cache is designed for use by the thread that owns the connection, but
+ * hit and miss counts may be read by other threads.
+ * 
+ * @version 1.0
+ */
+public class PreparedStatementCache
+        implements
+            CacheResourceManager<PreparedStatementCache.CachedStatement>
+{
+    private static Logger                   logger = Logger.getLogger(PreparedStatementCache.class);
+
+    private IndexedLRUCache<CachedStatement> cache;
+    private final int                       capacity;
+    private volatile long                   hits;
+    private volatile long                   misses;
+
+    /**
+     * Holds a prepared statement with its SQL text.
+     */
+    public static class CachedStatement
+    {
+        private final String            sql;
+        private final PreparedStatement statement;
+        private final boolean           cached;
+
+        /**
+         * Creates a new instance.
+         * 
+         * @param sql SQL text of the statement
+         * @param statement Statement prepared from the SQL
+         * @param cached True if the statement belongs to a cache, in which
+         *            case clients must not close it
+         */
+        public CachedStatement(String sql, PreparedStatement statement,
+                boolean cached)
+        {
+            this.sql = sql;
+            this.statement = statement;
+            this.cached = cached;
+        }
+
+        public String getSql()
+        {
+            return sql;
+        }
+
+        public PreparedStatement getStatement()
+        {
+            return statement;
+        }
+
+        public boolean isCached()
+        {
+            return cached;
+        }
+    }
+
+    /**
+     * Creates a new prepared statement cache.
+     */
+    public PreparedStatementCache(int capacity)
+    {
+        this.capacity = capacity;
+        cache = new IndexedLRUCache<CachedStatement>(capacity, this);
+    }
+
+    /**
+     * Call back to close a statement that is dropped from the cache.
+     * 
+     * @see com.continuent.tungsten.commons.cache.CacheResourceManager#release(java.lang.Object)
+     */
+    public void release(CachedStatement value)
+    {
+        try
+        {
+            value.getStatement().close();
+        }
+        catch (SQLException e)
+        {
+            if (logger.isDebugEnabled())
+                logger.debug("Unable to close cached statement: "
+                        + e.getMessage());
+        }
+    }
+
+    /** Returns the maximum number of statements in the cache. */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /** Returns the number of statements in the cache. */
+    public int size()
+    {
+        return cache.size();
+    }
+
+    /** Returns the number of retrievals that found a statement. */
+    public long getHits()
+    {
+        return hits;
+    }
+
+    /** Returns the number of retrievals that did not find a statement. */
+    public long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Stores a statement, which is closed when it leaves the cache.
+     * 
+     * @return A CachedStatement for the statement
+     */
+    public CachedStatement store(String schema, String tableName,
+            String shape, String sql, PreparedStatement statement)
+    {
+        CachedStatement value = new CachedStatement(sql, statement, true);
+        cache.put(generateKey(schema, tableName, shape), value);
+        return value;
+    }
+
+    /**
+     * Retrieves a statement or returns null if it is not in the cache.
+     */
+    public CachedStatement retrieve(String schema, String tableName,
+            String shape)
+    {
+        CachedStatement value = cache.get(generateKey(schema, tableName,
+                shape));
+        if (value == null)
+            misses++;
+        else
+            hits++;
+        return value;
+    }
+
+    /**
+     * Release a single statement, for example after it fails.
+     */
+    public int invalidate(String schema, String tableName, String shape)
+    {
+        return cache.invalidate(generateKey(schema, tableName, shape));
+    }
+
+    /**
+     * Release all statements in the cache.
+     */
+    public int invalidateAll()
+    {
+        return cache.invalidateAll();
+    }
+
+    /**
+     * Release all statements for tables in a given schema.
+     */
+    public int invalidateSchema(String schema)
+    {
+        return cache.invalidateByPrefix(schema + ".");
+    }
+
+    /**
+     * Release all statements for a single table.
+     */
+    public int invalidateTable(String schema, String tableName)
+    {
+        return cache.invalidateByPrefix(generateKey(schema, tableName, ""));
+    }
+
+    /**
+     * Invalidate statements for tables affected by a particular SQL operation.
+     * The rules match those of TableMetadataCache.
+     * 
+     * @param sqlOperation A SQLOperation from parsing
+     * @param defaultSchema Default schema in case it is not supplied by
+     *            sqlOperation
+     */
+    public int invalidate(SqlOperation sqlOperation, String defaultSchema)
+    {
+        if (sqlOperation.getOperation() == SqlOperation.DROP
+                && sqlOperation.getObjectType() == SqlOperation.SCHEMA)
+        {
+            return invalidateSchema(sqlOperation.getSchema());
+        }
+        else if ((sqlOperation.getOperation() == SqlOperation.DROP && sqlOperation
+                .getObjectType() == SqlOperation.TABLE)
+                || sqlOperation.getOperation() == SqlOperation.ALTER)
+        {
+            String schema = sqlOperation.getSchema();
+            if (schema == null)
+                schema = defaultSchema;
+            return invalidateTable(schema, sqlOperation.getName());
+        }
+        return 0;
+    }
+
+    // Generate a key for a statement.
+    private String generateKey(String schema, String tableName, String shape)
+    {
+        StringBuffer key = new StringBuffer();
+        key.append(schema);
+        key.append(".");
+        key.append(tableName);
+        key.append(".");
+        key.append(shape);
+        return key.toString();
+    }
+}
@@ -23,6 +23,10 @@
 package com.continuent.tungsten.replicator.database;
 
 import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -65,6 +69,16 @@ public class VerticaDatabase extends PostgreSQLDatabase
             execute("SELECT implement_temp_design('')");
     }
 
+    /**
+     * Vertica does not accept more than one row in the VALUES clause.
+     *
+     * @see com.continuent.tungsten.replicator.database.Database#supportsMultiRowInsert()
+     */
+    public boolean supportsMultiRowInsert()
+    {
+        return false;
+    }
+
     /**
      * Ensure projection is created for new table. (Otherwise metadata
      * operations may fail if we try to select off a new table.)
@@ -130,4 +144,61 @@ public class VerticaDatabase extends PostgreSQLDatabase
         csv.setWriteHeaders(false);
         return csv;
     }
+
+    /**
+     * Streams data using the executeCopyIn() method of Vertica statements.
+     * The method is looked up by reflection so that the Vertica driver is
+     * only required at run time.
+     * 
+     * @see com.continuent.tungsten.replicator.database.Database#copyIn(java.lang.String,
+     *      java.io.InputStream)
+     */
+    public long copyIn(String copyCommand, InputStream data)
+            throws SQLException, IOException
+    {
+        Statement stmt = dbConn.createStatement();
+        try
+        {
+            Method executeCopyIn = stmt.getClass().getMethod("executeCopyIn",
+                    String.class, InputStream.class);
+            Object result = executeCopyIn.invoke(stmt, copyCommand, data);
+            if (result instanceof Number)
+                return ((Number) result).longValue();
+            else
+                return stmt.getUpdateCount();
+        }
+        catch (NoSuchMethodException e)
+        {
+            throw new SQLException(
+                    "Vertica driver does not support COPY from a stream: "
+                            + stmt.getClass().getName());
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new SQLException("Unable to invoke Vertica COPY API: "
+                    + e.getMessage());
+        }
+        catch (InvocationTargetException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException)
+                throw (SQLException) cause;
+            else if (cause instanceof IOException)
+                throw (IOException) cause;
+            SQLException se = new SQLException("Vertica COPY failed: "
+                    + cause.getMessage());
+            se.initCause(cause);
+            throw se;
+        }
+        finally
+        {
+            try
+            {
+                stmt.close();
+            }
+            catch (SQLException e)
+            {
+            }
+        }
+    }
 }
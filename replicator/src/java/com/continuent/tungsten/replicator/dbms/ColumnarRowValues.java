@@ -0,0 +1,366 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.dbms;
+
+import java.io.Serializable;
+
+/**
+ * Holds values of a set of rows in columnar form. Each column stores a kind
+ * and a primitive value per row, so that integer and floating point values
+ * need no objects. Bytes of strings and binary values are copied into a
+ * buffer shared by all cells, which store their offset and length. Values of
+ * other types, such as decimals and timestamps, are kept as objects.
+ * <p/>
+ * The kind of a cell doubles as its null indicator. New rows start out with
+ * all cells null, which makes appending rows cheap for sparse data.
+ * <p/>
+ * OneRowChange can be backed by instances of this class. Clients that do not
+ * know about columnar values see ColumnVal instances created by
+ * {@link #getObject(int, int)}, which returns the same object types as the
+ * extractor stores in ColumnVal, so filters and appliers work unchanged.
+ * Instances are not thread-safe.
+ * 
+ * @version 1.0
+ */
+public class ColumnarRowValues implements Serializable
+{
+    private static final long  serialVersionUID = 1L;
+
+    /** Cell value is null. */
+    public static final byte   NULL             = 0;
+    /** Cell value is an int, which appears as an Integer. */
+    public static final byte   INT              = 1;
+    /** Cell value is a long, which appears as a Long. */
+    public static final byte   LONG             = 2;
+    /** Cell value is a float, which appears as a Float. */
+    public static final byte   FLOAT            = 3;
+    /** Cell value is a double, which appears as a Double. */
+    public static final byte   DOUBLE           = 4;
+    /**
+     * Cell value is bytes of a string in the platform default charset, which
+     * appears as a String.
+     */
+    public static final byte   STRING           = 5;
+    /** Cell value is binary, which appears as a byte array. */
+    public static final byte   BYTES            = 6;
+    /** Cell value is an object of any other type. */
+    public static final byte   OBJECT           = 7;
+
+    private static final int   DEFAULT_ROWS     = 8;
+
+    private final int          columns;
+    private int                rows;
+    private int                capacity;
+
+    // Kind and value of each cell by column and row. Values of STRING and
+    // BYTES cells hold the buffer offset in the upper 32 bits and the length
+    // in the lower 32 bits.
+    private byte[][]           kinds;
+    private long[][]           values;
+
+    // Values of OBJECT cells by column and row. Columns are allocated when
+    // first needed.
+    private Serializable[][]   objects;
+
+    // Shared buffer for STRING and BYTES cells.
+    private byte[]             buffer;
+    private int                bufferLength;
+
+    /**
+     * Creates a new instance.
+     * 
+     * @param columns Number of values in each row
+     */
+    public ColumnarRowValues(int columns)
+    {
+        this(columns, DEFAULT_ROWS);
+    }
+
+    /**
+     * Creates a new instance with space for a number of rows.
+     * 
+     * @param columns Number of values in each row
+     * @param rowCapacity Number of rows to allocate initially
+     */
+    public ColumnarRowValues(int columns, int rowCapacity)
+    {
+        this.columns = columns;
+        this.capacity = Math.max(rowCapacity, 1);
+        kinds = new byte[columns][capacity];
+        values = new long[columns][capacity];
+        objects = new Serializable[columns][];
+        buffer = new byte[64];
+    }
+
+    /** Returns the number of values in each row. */
+    public int getColumnCount()
+    {
+        return columns;
+    }
+
+    /** Returns the number of rows. */
+    public int getRowCount()
+    {
+        return rows;
+    }
+
+    /**
+     * Adds a row whose values are all null.
+     * 
+     * @return Index of the new row
+     */
+    public int addRow()
+    {
+        if (rows == capacity)
+        {
+            int newCapacity = capacity * 2;
+            for (int col = 0; col < columns; col++)
+            {
+                byte[] newKinds = new byte[newCapacity];
+                System.arraycopy(kinds[col], 0, newKinds, 0, rows);
+                kinds[col] = newKinds;
+                long[] newValues = new long[newCapacity];
+                System.arraycopy(values[col], 0, newValues, 0, rows);
+                values[col] = newValues;
+                if (objects[col] != null)
+                {
+                    Serializable[] newObjects = new Serializable[newCapacity];
+                    System.arraycopy(objects[col], 0, newObjects, 0, rows);
+                    objects[col] = newObjects;
+                }
+            }
+            capacity = newCapacity;
+        }
+        return rows++;
+    }
+
+    /** Sets a cell to null. */
+    public void setNull(int row, int column)
+    {
+        setKind(row, column, NULL);
+        if (objects[column] != null)
+            objects[column][row] = null;
+    }
+
+    /** Sets a cell to an int value. */
+    public void setInt(int row, int column, int value)
+    {
+        setPrimitive(row, column, INT, value);
+    }
+
+    /** Sets a cell to a long value. */
+    public void setLong(int row, int column, long value)
+    {
+        setPrimitive(row, column, LONG, value);
+    }
+
+    /** Sets a cell to a float value. */
+    public void setFloat(int row, int column, float value)
+    {
+        setPrimitive(row, column, FLOAT, Float.floatToRawIntBits(value));
+    }
+
+    /** Sets a cell to a double value. */
+    public void setDouble(int row, int column, double value)
+    {
+        setPrimitive(row, column, DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Sets a cell to a string, which is copied from bytes in the platform
+     * default charset.
+     */
+    public void setString(int row, int column, byte[] bytes, int offset,
+            int length)
+    {
+        setSlice(row, column, STRING, bytes, offset, length);
+    }
+
+    /**
+     * Sets a cell to a binary value, which is copied.
+     */
+    public void setBytes(int row, int column, byte[] bytes, int offset,
+            int length)
+    {
+        setSlice(row, column, BYTES, bytes, offset, length);
+    }
+
+    /**
+     * Sets a cell to an object value. Values of types that have primitive
+     * kinds and byte arrays are converted, while other objects, including
+     * strings, are stored as they are.
+     */
+    public void setObject(int row, int column, Serializable value)
+    {
+        if (value == null)
+            setNull(row, column);
+        else if (value instanceof Integer)
+            setInt(row, column, ((Integer) value).intValue());
+        else if (value instanceof Long)
+            setLong(row, column, ((Long) value).longValue());
+        else if (value instanceof Float)
+            setFloat(row, column, ((Float) value).floatValue());
+        else if (value instanceof Double)
+            setDouble(row, column, ((Double) value).doubleValue());
+        else if (value instanceof byte[])
+        {
+            byte[] bytes = (byte[]) value;
+            setBytes(row, column, bytes, 0, bytes.length);
+        }
+        else
+        {
+            setKind(row, column, OBJECT);
+            if (objects[column] == null)
+                objects[column] = new Serializable[capacity];
+            objects[column][row] = value;
+        }
+    }
+
+    /** Returns the kind of a cell. */
+    public byte getKind(int row, int column)
+    {
+        checkRow(row);
+        return kinds[column][row];
+    }
+
+    /** Returns true if a cell is null. */
+    public boolean isNull(int row, int column)
+    {
+        return getKind(row, column) == NULL;
+    }
+
+    /** Returns the value of an INT cell. */
+    public int getInt(int row, int column)
+    {
+        return (int) values[column][row];
+    }
+
+    /** Returns the value of a LONG cell. */
+    public long getLong(int row, int column)
+    {
+        return values[column][row];
+    }
+
+    /** Returns the value of a FLOAT cell. */
+    public float getFloat(int row, int column)
+    {
+        return Float.intBitsToFloat((int) values[column][row]);
+    }
+
+    /** Returns the value of a DOUBLE cell. */
+    public double getDouble(int row, int column)
+    {
+        return Double.longBitsToDouble(values[column][row]);
+    }
+
+    /**
+     * Returns the buffer that holds bytes of STRING and BYTES cells. The
+     * buffer may be replaced when values are added.
+     */
+    public byte[] getBuffer()
+    {
+        return buffer;
+    }
+
+    /** Returns the buffer offset of a STRING or BYTES cell. */
+    public int getOffset(int row, int column)
+    {
+        return (int) (values[column][row] >>> 32);
+    }
+
+    /** Returns the length of a STRING or BYTES cell. */
+    public int getLength(int row, int column)
+    {
+        return (int) values[column][row];
+    }
+
+    /**
+     * Returns the value of a cell as an object of the type that appears in
+     * ColumnVal instances, or null if the cell is null.
+     */
+    public Serializable getObject(int row, int column)
+    {
+        switch (getKind(row, column))
+        {
+            case NULL :
+                return null;
+            case INT :
+                return new Integer(getInt(row, column));
+            case LONG :
+                return new Long(getLong(row, column));
+            case FLOAT :
+                return new Float(getFloat(row, column));
+            case DOUBLE :
+                return new Double(getDouble(row, column));
+            case STRING :
+                return new String(buffer, getOffset(row, column), getLength(
+                        row, column));
+            case BYTES :
+                int length = getLength(row, column);
+                byte[] bytes = new byte[length];
+                System.arraycopy(buffer, getOffset(row, column), bytes, 0,
+                        length);
+                return bytes;
+            default :
+                return objects[column][row];
+        }
+    }
+
+    // Ensure a row exists.
+    private void checkRow(int row)
+    {
+        if (row < 0 || row >= rows)
+            throw new IndexOutOfBoundsException("Row " + row
+                    + " does not exist; row count is " + rows);
+    }
+
+    // Sets the kind of a cell.
+    private void setKind(int row, int column, byte kind)
+    {
+        checkRow(row);
+        kinds[column][row] = kind;
+    }
+
+    // Sets a primitive cell, releasing any object it held.
+    private void setPrimitive(int row, int column, byte kind, long value)
+    {
+        setKind(row, column, kind);
+        values[column][row] = value;
+        if (objects[column] != null)
+            objects[column][row] = null;
+    }
+
+    // Copies bytes into the shared buffer and points a cell at them.
+    private void setSlice(int row, int column, byte kind, byte[] bytes,
+            int offset, int length)
+    {
+        if (bufferLength + length > buffer.length)
+        {
+            int newLength = Math.max(buffer.length * 2, bufferLength + length);
+            byte[] newBuffer = new byte[newLength];
+            System.arraycopy(buffer, 0, newBuffer, 0, bufferLength);
+            buffer = newBuffer;
+        }
+        System.arraycopy(bytes, offset, buffer, bufferLength, length);
+        setPrimitive(row, column, kind, ((long) bufferLength << 32)
+                | (length & 0xFFFFFFFFL));
+        bufferLength += length;
+    }
+}
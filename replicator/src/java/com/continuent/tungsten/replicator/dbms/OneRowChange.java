@@ -165,6 +165,116 @@ public class OneRowChange implements Serializable
         {
             return value;
         }
+
+        /** Sets an int value. */
+        public void setIntValue(int value)
+        {
+            setValue(new Integer(value));
+        }
+
+        /** Sets a long value. */
+        public void setLongValue(long value)
+        {
+            setValue(new Long(value));
+        }
+
+        /** Sets a float value. */
+        public void setFloatValue(float value)
+        {
+            setValue(new Float(value));
+        }
+
+        /** Sets a double value. */
+        public void setDoubleValue(double value)
+        {
+            setValue(new Double(value));
+        }
+
+        /**
+         * Sets a string value from bytes in the platform default charset.
+         */
+        public void setStringValue(byte[] bytes, int offset, int length)
+        {
+            setValue(new String(bytes, offset, length));
+        }
+
+        /** Sets a binary value, which is copied from a byte array. */
+        public void setBytesValue(byte[] bytes, int offset, int length)
+        {
+            byte[] copy = new byte[length];
+            System.arraycopy(bytes, offset, copy, 0, length);
+            setValue(copy);
+        }
+    }
+
+    /**
+     * Accesses cells of columnar values through the ColumnVal interface. A
+     * single instance moves from cell to cell so that extractors can store
+     * values without allocating objects per cell.
+     */
+    public class ColumnarColumnVal extends ColumnVal
+    {
+        private static final long       serialVersionUID = 1L;
+        private final ColumnarRowValues values;
+        private int                     row;
+        private int                     column;
+
+        public ColumnarColumnVal(ColumnarRowValues values)
+        {
+            this.values = values;
+        }
+
+        /** Selects the cell to access. */
+        public void moveTo(int row, int column)
+        {
+            this.row = row;
+            this.column = column;
+        }
+
+        public void setValueNull()
+        {
+            values.setNull(row, column);
+        }
+
+        public void setValue(Serializable value)
+        {
+            values.setObject(row, column, value);
+        }
+
+        public Object getValue()
+        {
+            return values.getObject(row, column);
+        }
+
+        public void setIntValue(int value)
+        {
+            values.setInt(row, column, value);
+        }
+
+        public void setLongValue(long value)
+        {
+            values.setLong(row, column, value);
+        }
+
+        public void setFloatValue(float value)
+        {
+            values.setFloat(row, column, value);
+        }
+
+        public void setDoubleValue(double value)
+        {
+            values.setDouble(row, column, value);
+        }
+
+        public void setStringValue(byte[] bytes, int offset, int length)
+        {
+            values.setString(row, column, bytes, offset, length);
+        }
+
+        public void setBytesValue(byte[] bytes, int offset, int length)
+        {
+            values.setBytes(row, column, bytes, offset, length);
+        }
     }
 
     private String                          schemaName;
@@ -182,6 +292,13 @@ public class OneRowChange implements Serializable
     private ArrayList<ArrayList<ColumnVal>> columnValues;
     private long                            tableId;
 
+    /*
+     * columnar values, which replace the corresponding lists until a client
+     * asks for the lists
+     */
+    private ColumnarRowValues               columnarKeyValues;
+    private ColumnarRowValues               columnarColumnValues;
+
     public ArrayList<ColumnSpec> getColumnSpec()
     {
         return columnSpec;
@@ -192,14 +309,42 @@ public class OneRowChange implements Serializable
         this.columnSpec = columnSpec;
     }
 
+    /**
+     * Returns column values as lists. If values are columnar, they are
+     * converted to lists, which hold the values from then on.
+     */
     public ArrayList<ArrayList<ColumnVal>> getColumnValues()
     {
+        if (columnarColumnValues != null)
+        {
+            columnValues = toColumnVals(columnarColumnValues);
+            columnarColumnValues = null;
+        }
         return columnValues;
     }
 
     public void setColumnValues(ArrayList<ArrayList<ColumnVal>> columnValues)
     {
         this.columnValues = columnValues;
+        this.columnarColumnValues = null;
+    }
+
+    /**
+     * Returns columnar column values or null if column values are held in
+     * lists.
+     */
+    public ColumnarRowValues getColumnarColumnValues()
+    {
+        return columnarColumnValues;
+    }
+
+    /**
+     * Sets columnar column values, which replace any values in lists.
+     */
+    public void setColumnarColumnValues(ColumnarRowValues columnarColumnValues)
+    {
+        this.columnarColumnValues = columnarColumnValues;
+        this.columnValues = new ArrayList<ArrayList<ColumnVal>>();
     }
 
     public ArrayList<ColumnSpec> getKeySpec()
@@ -212,14 +357,81 @@ public class OneRowChange implements Serializable
         this.keySpec = keySpec;
     }
 
+    /**
+     * Returns key values as lists. If values are columnar, they are converted
+     * to lists, which hold the values from then on.
+     */
     public ArrayList<ArrayList<ColumnVal>> getKeyValues()
     {
+        if (columnarKeyValues != null)
+        {
+            keyValues = toColumnVals(columnarKeyValues);
+            columnarKeyValues = null;
+        }
         return keyValues;
     }
 
     public void setKeyValues(ArrayList<ArrayList<ColumnVal>> keyValues)
     {
         this.keyValues = keyValues;
+        this.columnarKeyValues = null;
+    }
+
+    /**
+     * Returns columnar key values or null if key values are held in lists.
+     */
+    public ColumnarRowValues getColumnarKeyValues()
+    {
+        return columnarKeyValues;
+    }
+
+    /**
+     * Sets columnar key values, which replace any values in lists.
+     */
+    public void setColumnarKeyValues(ColumnarRowValues columnarKeyValues)
+    {
+        this.columnarKeyValues = columnarKeyValues;
+        this.keyValues = new ArrayList<ArrayList<ColumnVal>>();
+    }
+
+    /**
+     * Returns true if values are columnar, meaning that at least one of
+     * column and key values is columnar and the other is either columnar or
+     * empty.
+     */
+    public boolean hasColumnarValues()
+    {
+        if (columnarColumnValues == null && columnarKeyValues == null)
+            return false;
+        if (columnarColumnValues == null && columnValues != null
+                && columnValues.size() > 0)
+            return false;
+        if (columnarKeyValues == null && keyValues != null
+                && keyValues.size() > 0)
+            return false;
+        return true;
+    }
+
+    // Converts columnar values to lists.
+    private ArrayList<ArrayList<ColumnVal>> toColumnVals(
+            ColumnarRowValues values)
+    {
+        int rows = values.getRowCount();
+        int columns = values.getColumnCount();
+        ArrayList<ArrayList<ColumnVal>> list = new ArrayList<ArrayList<ColumnVal>>(
+                rows);
+        for (int row = 0; row < rows; row++)
+        {
+            ArrayList<ColumnVal> rowValues = new ArrayList<ColumnVal>(columns);
+            for (int col = 0; col < columns; col++)
+            {
+                ColumnVal value = new ColumnVal();
+                value.setValue(values.getObject(row, col));
+                rowValues.add(value);
+            }
+            list.add(rowValues);
+        }
+        return list;
     }
 
     public ActionType getAction()
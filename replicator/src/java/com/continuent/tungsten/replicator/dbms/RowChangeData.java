@@ -23,6 +23,7 @@
 package com.continuent.tungsten.replicator.dbms;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedList;
 
 import com.continuent.tungsten.replicator.event.ReplOption;
@@ -66,6 +67,17 @@ public class RowChangeData extends DBMSData
 		this.rowChanges.add(rowChange);
 	}
 
+    /**
+     * Returns an iterator over row changes. Callers that go through the row
+     * changes once should use this instead of {@link #getRowChanges()}, as
+     * subclasses may decode row changes one at a time rather than hold all of
+     * them in memory.
+     */
+    public Iterator<OneRowChange> rowChangeIterator()
+    {
+        return getRowChanges().iterator();
+    }
+
     public void addOptions(LinkedList<ReplOption> savedOptions)
     {
         this.options.addAll(savedOptions);
@@ -48,6 +48,12 @@ public class ReplDBMSEvent extends ReplEvent implements ReplDBMSHeader
     long              epochNumber;
     DBMSEvent         event;
 
+    // Serialized log record from which this event was read and the name of
+    // the serializer that wrote it. These are not serialized and must be
+    // cleared if the event may have changed.
+    transient byte[]  serializedRecord;
+    transient String  serializerName;
+
     /**
      * Construct a new replication event.
      * 
@@ -195,6 +201,50 @@ public class ReplDBMSEvent extends ReplEvent implements ReplDBMSHeader
     {
         this.getDBMSEvent().setMetaDataOption(ReplOptionParams.SHARD_ID,
                 shardId);
+        clearSerializedRecord();
+    }
+
+    /**
+     * Attaches the log record from which this event was deserialized. Logs
+     * that use the same serializer may store the record as is instead of
+     * serializing the event again.
+     * 
+     * @param serializedRecord Log record data, including the record header
+     * @param serializerName Class name of the serializer that wrote the event
+     */
+    public void setSerializedRecord(byte[] serializedRecord,
+            String serializerName)
+    {
+        this.serializedRecord = serializedRecord;
+        this.serializerName = serializerName;
+    }
+
+    /**
+     * Returns the log record from which this event was deserialized or null if
+     * there is none.
+     */
+    public byte[] getSerializedRecord()
+    {
+        return serializedRecord;
+    }
+
+    /**
+     * Returns the class name of the serializer that wrote the log record or
+     * null if there is no record.
+     */
+    public String getSerializerName()
+    {
+        return serializerName;
+    }
+
+    /**
+     * Drops the attached log record. This must be called whenever the event
+     * may have been altered after it was read.
+     */
+    public void clearSerializedRecord()
+    {
+        serializedRecord = null;
+        serializerName = null;
     }
 
     /**
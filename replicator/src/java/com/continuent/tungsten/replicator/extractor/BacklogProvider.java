@@ -0,0 +1,36 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.extractor;
+
+/**
+ * Denotes an extractor that can report how many events are waiting to be
+ * extracted from its upstream store. Stage tasks use this to size commit
+ * blocks.
+ * 
+ * @version 1.0
+ */
+public interface BacklogProvider
+{
+    /**
+     * Returns the approximate number of events that are ready to be extracted
+     * or -1 if this is not known.
+     */
+    public long getBacklog();
+}
@@ -134,6 +134,14 @@ public class MySQLExtractor implements RawExtractor
 
     private int                             bufferSize              = 32768;
 
+    // Number of threads that decode rows of row events. If 0, rows are
+    // decoded on the extractor thread.
+    private int                             rowDecoderThreads       = 0;
+    private RowsEventDecoder                rowsDecoder             = new RowsEventDecoder(0, null);
+
+    // If true, row values are extracted into columnar containers.
+    private boolean                         useColumnarRows         = false;
+
     public String getHost()
     {
         return host;
@@ -294,6 +302,34 @@ public class MySQLExtractor implements RawExtractor
         this.transactionFragSize = transactionFragSize;
     }
 
+    public int getRowDecoderThreads()
+    {
+        return rowDecoderThreads;
+    }
+
+    /**
+     * Sets the number of threads that decode rows of row events in parallel
+     * with reading the binlog. Set to 0 to decode on the extractor thread.
+     */
+    public void setRowDecoderThreads(int rowDecoderThreads)
+    {
+        this.rowDecoderThreads = rowDecoderThreads;
+    }
+
+    public boolean isUseColumnarRows()
+    {
+        return useColumnarRows;
+    }
+
+    /**
+     * If set to true, row values are extracted into columnar containers, which
+     * avoid allocating an object per column value and serialize faster.
+     */
+    public void setUseColumnarRows(boolean useColumnarRows)
+    {
+        this.useColumnarRows = useColumnarRows;
+    }
+
     public String getJdbcHeader()
     {
         return jdbcHeader;
@@ -873,11 +909,15 @@ public class MySQLExtractor implements RawExtractor
                     if (logger.isDebugEnabled())
                         logger.debug("got rows log event - event size = "
                                 + ((RowsLogEvent) logEvent).getEventSize());
-                    rowChangeData = new RowChangeData();
                     RowsLogEvent rowsEvent = (RowsLogEvent) logEvent;
                     TableMapLogEvent tableEvent = tableEvents.get(rowsEvent
                             .getTableId());
-                    rowsEvent.processExtractedEvent(rowChangeData, tableEvent);
+
+                    rowsEvent.setUseColumnarRows(useColumnarRows);
+
+                    // Rows may be decoded in the background. The row change
+                    // keeps its place in the event in binlog order.
+                    rowChangeData = rowsDecoder.decode(rowsEvent, tableEvent);
                     dataArray.add(rowChangeData);
                     foundRowsLogEvent = true;
                 }
@@ -1013,6 +1053,9 @@ public class MySQLExtractor implements RawExtractor
                 }
                 if (dbmsEvent != null)
                 {
+                    // Ensure all rows in the event are decoded.
+                    rowsDecoder.waitForAll();
+
                     dbmsEvent.addMetadataOption(ReplOptionParams.SERVER_ID,
                             String.valueOf(serverId));
                     if (doRollback)
@@ -1027,6 +1070,7 @@ public class MySQLExtractor implements RawExtractor
         }
         catch (ExtractorException e)
         {
+            rowsDecoder.cancel();
             if (runtime.getExtractorFailurePolicy() == FailurePolicy.STOP)
                 throw new ExtractorException("Failed to extract from "
                         + position, e);
@@ -1037,10 +1081,12 @@ public class MySQLExtractor implements RawExtractor
         catch (InterruptedException e)
         {
             // We just pass this up the stack as we are being cancelled.
+            rowsDecoder.cancel();
             throw e;
         }
         catch (Exception e)
         {
+            rowsDecoder.cancel();
             if (runtime.getExtractorFailurePolicy() == FailurePolicy.STOP)
                 throw new ExtractorException(
                         "Unexpected failure while extracting event " + position,
@@ -1246,6 +1292,15 @@ public class MySQLExtractor implements RawExtractor
      */
     public void prepare(PluginContext context) throws ReplicatorException
     {
+        // Start row decoder threads if desired.
+        if (rowDecoderThreads > 0)
+        {
+            logger.info("Decoding row events in parallel: threads="
+                    + rowDecoderThreads);
+            rowsDecoder = new RowsEventDecoder(rowDecoderThreads,
+                    "mysql-row-decoder");
+        }
+
         // NOTE: We can't check the database by default as unit tests depend
         // on being able to run without the server present. Also, we may in
         // future want to run on mirrored binlogs without the database.
@@ -1574,6 +1629,7 @@ public class MySQLExtractor implements RawExtractor
     public void release(PluginContext context) throws ReplicatorException
     {
         stopRelayLogs();
+        rowsDecoder.release();
     }
 
     /**
@@ -0,0 +1,198 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.extractor.mysql;
+
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import com.continuent.tungsten.replicator.ReplicatorException;
+import com.continuent.tungsten.replicator.dbms.RowChangeData;
+
+/**
+ * Decodes rows of binlog row events into row changes. With no threads, rows
+ * are decoded immediately on the calling thread. Otherwise each row event is
+ * handed to a pool of decoder threads and the caller receives an empty
+ * RowChangeData that is filled in the background. The caller places it in the
+ * event data in binlog order and must call {@link #waitForAll()} before it
+ * emits the event, which makes the order of row changes independent of the
+ * order in which decoding finishes.
+ * <p/>
+ * The number of row events being decoded is bounded. When the bound is
+ * reached the caller waits for the oldest event, so a large transaction does
+ * not hold more undecoded events in memory than the pool can work on.
+ * <p/>
+ * Instances are not thread-safe; they must be called by the extractor thread
+ * only.
+ * 
+ * @version 1.0
+ */
+public class RowsEventDecoder
+{
+    // Number of pending events allowed per decoder thread.
+    private static final int          PENDING_PER_THREAD = 4;
+
+    private final ExecutorService     executor;
+    private final int                 maxPending;
+    private final LinkedList<Future<?>> pending          = new LinkedList<Future<?>>();
+
+    /**
+     * Creates a new decoder.
+     * 
+     * @param threads Number of decoder threads or 0 to decode on the calling
+     *            thread
+     * @param name Prefix for decoder thread names
+     */
+    public RowsEventDecoder(int threads, final String name)
+    {
+        if (threads > 0)
+        {
+            executor = Executors.newFixedThreadPool(threads,
+                    new ThreadFactory()
+                    {
+                        private int count = 0;
+
+                        public synchronized Thread newThread(Runnable r)
+                        {
+                            Thread t = new Thread(r, name + "-" + count++);
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+            maxPending = threads * PENDING_PER_THREAD;
+        }
+        else
+        {
+            executor = null;
+            maxPending = 0;
+        }
+    }
+
+    /**
+     * Returns true if rows are decoded by background threads.
+     */
+    public boolean isParallel()
+    {
+        return executor != null;
+    }
+
+    /**
+     * Returns the number of row events that may still be in progress.
+     */
+    public int getPendingCount()
+    {
+        return pending.size();
+    }
+
+    /**
+     * Decodes the rows of a row event.
+     * 
+     * @param rowsEvent Row event to decode
+     * @param tableEvent Table map for the event, which may be null if the
+     *            table is unknown
+     * @return Row change data that contains the decoded rows once
+     *         {@link #waitForAll()} returns
+     * @throws ReplicatorException Thrown if decoding fails, which may include
+     *             failures of previously submitted events
+     * @throws InterruptedException Thrown if we are interrupted while waiting
+     *             for decoding to finish
+     */
+    public RowChangeData decode(final RowsLogEvent rowsEvent,
+            final TableMapLogEvent tableEvent) throws ReplicatorException,
+            InterruptedException
+    {
+        final RowChangeData rowChangeData = new RowChangeData();
+        if (executor == null)
+        {
+            rowsEvent.processExtractedEvent(rowChangeData, tableEvent);
+            return rowChangeData;
+        }
+
+        // Wait for the oldest event if too many are outstanding.
+        if (pending.size() >= maxPending)
+            waitFor(pending.removeFirst());
+
+        pending.add(executor.submit(new Callable<Object>()
+        {
+            public Object call() throws ReplicatorException
+            {
+                rowsEvent.processExtractedEvent(rowChangeData, tableEvent);
+                return null;
+            }
+        }));
+        return rowChangeData;
+    }
+
+    /**
+     * Waits until all row events passed to {@link #decode} are decoded. The
+     * first failure is rethrown, in which case remaining events are
+     * cancelled.
+     */
+    public void waitForAll() throws ReplicatorException, InterruptedException
+    {
+        while (!pending.isEmpty())
+            waitFor(pending.removeFirst());
+    }
+
+    /**
+     * Cancels decoding of any pending row events, whose results must then be
+     * discarded.
+     */
+    public void cancel()
+    {
+        for (Future<?> future : pending)
+            future.cancel(false);
+        pending.clear();
+    }
+
+    /**
+     * Cancels pending events and stops decoder threads.
+     */
+    public void release()
+    {
+        cancel();
+        if (executor != null)
+            executor.shutdownNow();
+    }
+
+    // Waits for a single event, cancelling all events if it failed.
+    private void waitFor(Future<?> future) throws ReplicatorException,
+            InterruptedException
+    {
+        try
+        {
+            future.get();
+        }
+        catch (ExecutionException e)
+        {
+            cancel();
+            Throwable cause = e.getCause();
+            if (cause instanceof ReplicatorException)
+                throw (ReplicatorException) cause;
+            else
+                throw new MySQLExtractException(
+                        "Unexpected failure while decoding row event", cause);
+        }
+    }
+}
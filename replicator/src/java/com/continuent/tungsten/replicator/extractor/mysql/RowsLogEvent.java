@@ -35,6 +35,7 @@ import org.apache.log4j.Logger;
 
 import com.continuent.tungsten.replicator.ReplicatorException;
 import com.continuent.tungsten.replicator.database.DatabaseHelper;
+import com.continuent.tungsten.replicator.dbms.ColumnarRowValues;
 import com.continuent.tungsten.replicator.dbms.OneRowChange;
 import com.continuent.tungsten.replicator.dbms.OneRowChange.ColumnSpec;
 import com.continuent.tungsten.replicator.dbms.OneRowChange.ColumnVal;
@@ -109,6 +110,9 @@ public abstract class RowsLogEvent extends LogEvent
 
     protected boolean useBytesForString;
 
+    /* If true, row values are stored in columnar form */
+    protected boolean useColumnarRows;
+
     public RowsLogEvent(byte[] buffer, int eventLength,
             FormatDescriptionLogEvent descriptionEvent, int eventType,
             boolean useBytesForString) throws ReplicatorException
@@ -430,7 +434,7 @@ public abstract class RowsLogEvent extends LogEvent
                             + MysqlBinlog.INT_MIN + " - " + MysqlBinlog.INT_MAX
                             + " )");
                 }
-                value.setValue(new Integer(si));
+                value.setIntValue(si);
                 if (spec != null)
                 {
                     spec.setType(java.sql.Types.INTEGER);
@@ -450,7 +454,7 @@ public abstract class RowsLogEvent extends LogEvent
                             + MysqlBinlog.TINYINT_MAX + " )");
                 }
 
-                value.setValue(new Integer(si));
+                value.setIntValue(si);
                 if (spec != null)
                 {
                     spec.setType(java.sql.Types.INTEGER);
@@ -470,7 +474,7 @@ public abstract class RowsLogEvent extends LogEvent
                             + MysqlBinlog.SMALLINT_MIN + " - "
                             + MysqlBinlog.SMALLINT_MAX + " )");
                 }
-                value.setValue(new Integer(si));
+                value.setIntValue(si);
                 if (spec != null)
                 {
                     spec.setType(java.sql.Types.INTEGER);
@@ -490,7 +494,7 @@ public abstract class RowsLogEvent extends LogEvent
                             + MysqlBinlog.MEDIUMINT_MIN + " - "
                             + MysqlBinlog.MEDIUMINT_MAX + " )");
                 }
-                value.setValue(new Integer(si));
+                value.setIntValue(si);
                 if (spec != null)
                 {
                     spec.setType(java.sql.Types.INTEGER);
@@ -507,7 +511,7 @@ public abstract class RowsLogEvent extends LogEvent
                 {
                     long ui = LittleEndianConversion.convert8BytesToLong(row,
                             rowPos);
-                    value.setValue(new Long(ui));
+                    value.setLongValue(ui);
                     if (spec != null)
                     {
                         spec.setType(java.sql.Types.INTEGER);
@@ -516,7 +520,7 @@ public abstract class RowsLogEvent extends LogEvent
                 }
                 else
                 {
-                    value.setValue(new Long(si));
+                    value.setLongValue(si);
                     if (spec != null)
                     {
                         spec.setType(java.sql.Types.INTEGER);
@@ -544,7 +548,7 @@ public abstract class RowsLogEvent extends LogEvent
             case MysqlBinlog.MYSQL_TYPE_FLOAT :
             {
                 float fl = MysqlBinlog.float4ToFloat(row, rowPos);
-                value.setValue(new Float(fl));
+                value.setFloatValue(fl);
                 if (spec != null)
                     spec.setType(java.sql.Types.FLOAT);
                 return 4;
@@ -553,7 +557,7 @@ public abstract class RowsLogEvent extends LogEvent
             case MysqlBinlog.MYSQL_TYPE_DOUBLE :
             {
                 double dbl = MysqlBinlog.double8ToDouble(row, rowPos);
-                value.setValue(new Double(dbl));
+                value.setDoubleValue(dbl);
                 if (spec != null)
                     spec.setType(java.sql.Types.DOUBLE);
 
@@ -789,9 +793,9 @@ public abstract class RowsLogEvent extends LogEvent
                             rowPos);
                     rowPos++;
                     if (useBytesForString)
-                        value.setValue(processStringAsBytes(row, rowPos, length));
+                        value.setBytesValue(row, rowPos, length);
                     else
-                        value.setValue(processString(row, rowPos, length));
+                        value.setStringValue(row, rowPos, length);
                     length += 1;
                 }
                 else
@@ -800,9 +804,9 @@ public abstract class RowsLogEvent extends LogEvent
                             rowPos);
                     rowPos += 2;
                     if (useBytesForString)
-                        value.setValue(processStringAsBytes(row, rowPos, length));
+                        value.setBytesValue(row, rowPos, length);
                     else
-                        value.setValue(processString(row, rowPos, length));
+                        value.setStringValue(row, rowPos, length);
                     length += 2;
                 }
 
@@ -817,9 +821,9 @@ public abstract class RowsLogEvent extends LogEvent
                             rowPos);
                     rowPos++;
                     if (useBytesForString)
-                        value.setValue(processStringAsBytes(row, rowPos, length));
+                        value.setBytesValue(row, rowPos, length);
                     else
-                        value.setValue(processString(row, rowPos, length));
+                        value.setStringValue(row, rowPos, length);
                     length += 1;
                 }
                 else
@@ -828,9 +832,9 @@ public abstract class RowsLogEvent extends LogEvent
                             rowPos);
                     rowPos += 2;
                     if (useBytesForString)
-                        value.setValue(processStringAsBytes(row, rowPos, length));
+                        value.setBytesValue(row, rowPos, length);
                     else
-                        value.setValue(processString(row, rowPos, length));
+                        value.setStringValue(row, rowPos, length);
                     length += 2;
                 }
                 if (spec != null)
@@ -844,24 +848,19 @@ public abstract class RowsLogEvent extends LogEvent
         }
     }
 
-    // JIRA TREP-237. Need to expose the table ID.
-    protected long getTableId()
-    {
-        return tableId;
-    }
-
-    private byte[] processStringAsBytes(byte[] buffer, int pos, int length)
-            throws ReplicatorException
+    /**
+     * If set to true, row values are extracted into columnar containers rather
+     * than lists of column values, which avoids allocating objects per cell.
+     */
+    public void setUseColumnarRows(boolean useColumnarRows)
     {
-        byte[] output = new byte[length];
-        System.arraycopy(buffer, pos, output, 0, length);
-        return output;
+        this.useColumnarRows = useColumnarRows;
     }
 
-    protected String processString(byte[] buffer, int pos, int length)
-            throws ReplicatorException
+    // JIRA TREP-237. Need to expose the table ID.
+    protected long getTableId()
     {
-        return new String(buffer, pos, length);
+        return tableId;
     }
 
     protected int processExtractedEventRow(OneRowChange oneRowChange,
@@ -879,24 +878,49 @@ public abstract class RowsLogEvent extends LogEvent
         BitSet nulls = new BitSet(usedColumnsCount);
         MysqlBinlog.setBitField(nulls, row, startIndex, usedColumnsCount);
 
-        ArrayList<ArrayList<OneRowChange.ColumnVal>> rows = (isKeySpec)
-                ? oneRowChange.getKeyValues()
-                : oneRowChange.getColumnValues();
-
-        /*
-         * add new row for column values
-         */
-        if (rows.size() == rowIndex)
+        ArrayList<OneRowChange.ColumnVal> columns = null;
+        OneRowChange.ColumnarColumnVal cursor = null;
+        if (useColumnarRows)
         {
-            rows.add(new ArrayList<ColumnVal>());
+            /*
+             * Columnar values are filled in place through a single cursor.
+             */
+            ColumnarRowValues values = (isKeySpec) ? oneRowChange
+                    .getColumnarKeyValues() : oneRowChange
+                    .getColumnarColumnValues();
+            if (values == null)
+            {
+                values = new ColumnarRowValues(usedColumnsCount);
+                if (isKeySpec)
+                    oneRowChange.setColumnarKeyValues(values);
+                else
+                    oneRowChange.setColumnarColumnValues(values);
+            }
+            if (values.getRowCount() == rowIndex)
+                values.addRow();
+            cursor = oneRowChange.new ColumnarColumnVal(values);
         }
-        ArrayList<OneRowChange.ColumnVal> columns = rows.get(rowIndex);
-
-        if (columns == null)
+        else
         {
-            throw new ExtractorException(
-                    "Row data corrupted : column value list empty for row "
-                            + oneRowChange.toString());
+            ArrayList<ArrayList<OneRowChange.ColumnVal>> rows = (isKeySpec)
+                    ? oneRowChange.getKeyValues()
+                    : oneRowChange.getColumnValues();
+
+            /*
+             * add new row for column values
+             */
+            if (rows.size() == rowIndex)
+            {
+                rows.add(new ArrayList<ColumnVal>());
+            }
+            columns = rows.get(rowIndex);
+
+            if (columns == null)
+            {
+                throw new ExtractorException(
+                        "Row data corrupted : column value list empty for row "
+                                + oneRowChange.toString());
+            }
         }
         rowPos += (usedColumnsCount + 7) / 8;
 
@@ -911,7 +935,17 @@ public abstract class RowsLogEvent extends LogEvent
             boolean isNull = nulls.get(nullIndex);
             nullIndex++;
 
-            OneRowChange.ColumnVal value = oneRowChange.new ColumnVal();
+            OneRowChange.ColumnVal value;
+            if (cursor != null)
+            {
+                cursor.moveTo(rowIndex, nullIndex - 1);
+                value = cursor;
+            }
+            else
+            {
+                value = oneRowChange.new ColumnVal();
+                columns.add(value);
+            }
             if (isKeySpec)
             {
                 if (rowIndex == 0)
@@ -920,7 +954,6 @@ public abstract class RowsLogEvent extends LogEvent
                     spec.setIndex(i + 1);
                     oneRowChange.getKeySpec().add(spec);
                 }
-                oneRowChange.getKeyValues().get(rowIndex).add(value);
             }
             else
             {
@@ -943,7 +976,6 @@ public abstract class RowsLogEvent extends LogEvent
                     else
                         spec = null;
                 }
-                oneRowChange.getColumnValues().get(rowIndex).add(value);
             }
             if (isNull)
             {
@@ -50,23 +50,33 @@ import com.continuent.tungsten.replicator.plugin.PluginContext;
  */
 public class PostgreSQLSlonyExtractor implements RawExtractor
 {
-    private static Logger     logger      = Logger.getLogger(PostgreSQLSlonyExtractor.class);
+    private static Logger     logger          = Logger.getLogger(PostgreSQLSlonyExtractor.class);
 
-    private ReplicatorRuntime runtime     = null;
-    private String            host        = "localhost";
-    private int               port        = 5432;
-    private String            database    = null;
-    private String            user        = "postgres";
-    private String            password    = "";
+    private ReplicatorRuntime runtime         = null;
+    private String            host            = "localhost";
+    private int               port            = 5432;
+    private String            database        = null;
+    private String            user            = "postgres";
+    private String            password        = "";
 
-    private String            slonySchema = "_slonytest";
+    private String            slonySchema     = "_slonytest";
+
+    // Parameters for reading the log in batches.
+    private int               fetchSize       = 0;
+    private int               fetchQueueSize  = 100;
+    private String            notifyChannel   = null;
+    private long              minPollInterval = 10;
+    private long              maxPollInterval = 1000;
 
     private String            url;
 
-    Database                  conn        = null;
+    Database                  conn            = null;
 
     /** Cursor to current Slony log position. */
-    private String            currentTxId = null;
+    private String            currentTxId     = null;
+
+    /** Reader of log rows, if reading in batches. */
+    private SlonyLogReader    reader          = null;
 
     public String getHost()
     {
@@ -132,6 +142,44 @@ public class PostgreSQLSlonyExtractor implements RawExtractor
         this.slonySchema = slonySchema;
     }
 
+    /**
+     * Number of log rows to fetch at a time through a server-side cursor. If
+     * greater than 0, a separate thread reads the log in batches ahead of
+     * extraction. Otherwise each transaction is queried on its own.
+     */
+    public void setFetchSize(int fetchSize)
+    {
+        this.fetchSize = fetchSize;
+    }
+
+    /** Number of transactions to read ahead when reading in batches. */
+    public void setFetchQueueSize(int fetchQueueSize)
+    {
+        this.fetchQueueSize = fetchQueueSize;
+    }
+
+    /**
+     * Channel to LISTEN on for Slony log changes when reading in batches. A
+     * trigger or job on the master must NOTIFY this channel when log rows are
+     * added. If not set, an idle log is polled with a growing interval.
+     */
+    public void setNotifyChannel(String notifyChannel)
+    {
+        this.notifyChannel = notifyChannel;
+    }
+
+    /** Shortest wait in milliseconds between queries on an idle log. */
+    public void setMinPollInterval(long minPollInterval)
+    {
+        this.minPollInterval = minPollInterval;
+    }
+
+    /** Longest wait in milliseconds between queries on an idle log. */
+    public void setMaxPollInterval(long maxPollInterval)
+    {
+        this.maxPollInterval = maxPollInterval;
+    }
+
     /**
      * Put back together all Slony log's variables and build a valid SQL query.
      * 
@@ -392,7 +440,92 @@ public class PostgreSQLSlonyExtractor implements RawExtractor
     public synchronized DBMSEvent extract() throws InterruptedException,
             ReplicatorException
     {
-        return extractEvent(currentTxId);
+        if (fetchSize > 0)
+            return extractBatchedEvent();
+        else
+            return extractEvent(currentTxId);
+    }
+
+    /**
+     * Extract the next event from transactions queued by the log reader,
+     * starting the reader at the current position if it is not running.
+     */
+    private DBMSEvent extractBatchedEvent() throws ReplicatorException,
+            InterruptedException
+    {
+        String afterTxId = currentTxId;
+        try
+        {
+            if (reader == null)
+            {
+                if (logger.isDebugEnabled())
+                    logger.debug("Starting Slony log reader after: "
+                            + afterTxId);
+                reader = new SlonyLogReader(url, user, password, slonySchema,
+                        Long.parseLong(afterTxId), fetchSize, fetchQueueSize,
+                        notifyChannel, minPollInterval, maxPollInterval);
+                reader.start("slony-log-reader");
+            }
+
+            SlonyLogReader.SlonyTransaction trx = reader.take();
+            if (trx.getFailure() != null)
+            {
+                // The reader has stopped; restart it on the next call.
+                reader.cancel();
+                reader = null;
+                throw new ExtractorException("Unable to read Slony log",
+                        trx.getFailure());
+            }
+
+            // Convert log rows to statements.
+            if (logger.isDebugEnabled())
+                logger.debug("Extracting event: " + trx.getTxId());
+            ArrayList<DBMSData> dataArray = new ArrayList<DBMSData>(
+                    trx.size());
+            for (int i = 0; i < trx.size(); i++)
+            {
+                String queryString = rebuildSlonyQuery(trx.cmdTypes.get(i),
+                        trx.cmdData.get(i), trx.tableNames.get(i));
+                dataArray.add(new StatementData(queryString));
+            }
+            String txId = Long.toString(trx.getTxId());
+            DBMSEvent dbmsEvent = new DBMSEvent(txId, dataArray, null);
+
+            // Move to next event without restarting the reader.
+            this.currentTxId = txId;
+            return dbmsEvent;
+        }
+        catch (ExtractorException e)
+        {
+            logger.error("Failed to extract after " + afterTxId, e);
+            if (runtime.getExtractorFailurePolicy() == FailurePolicy.STOP)
+                throw e;
+        }
+        catch (InterruptedException e)
+        {
+            // We just pass this up the stack as we are being canceled.
+            throw e;
+        }
+        catch (Exception e)
+        {
+            logger.error("Unexpected failure while extracting after event "
+                    + afterTxId, e);
+            if (runtime.getExtractorFailurePolicy() == FailurePolicy.STOP)
+                throw new ExtractorException(
+                        "Unexpected failure while extracting after event "
+                                + afterTxId, e);
+        }
+        return null;
+    }
+
+    // Stop the log reader, which discards transactions read ahead.
+    private void stopReader() throws InterruptedException
+    {
+        if (reader != null)
+        {
+            reader.cancel();
+            reader = null;
+        }
     }
 
     /**
@@ -414,6 +547,18 @@ public class PostgreSQLSlonyExtractor implements RawExtractor
      */
     public void setLastEventId(String eventId) throws ReplicatorException
     {
+        // Transactions read ahead no longer follow the position.
+        try
+        {
+            stopReader();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new ExtractorException(
+                    "Interrupted while stopping Slony log reader");
+        }
+
         if (eventId != null)
         {
             this.currentTxId = eventId;
@@ -487,6 +632,14 @@ public class PostgreSQLSlonyExtractor implements RawExtractor
      */
     public void release(PluginContext context) throws ReplicatorException
     {
+        try
+        {
+            stopReader();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
         cleanUpDatabaseResources(conn, null, null);
     }
 
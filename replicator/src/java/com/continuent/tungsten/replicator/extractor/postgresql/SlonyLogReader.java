@@ -0,0 +1,385 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.extractor.postgresql;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.log4j.Logger;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import com.continuent.tungsten.replicator.database.Database;
+import com.continuent.tungsten.replicator.database.DatabaseFactory;
+
+/**
+ * Reads Slony log rows in a separate thread and queues them as transactions,
+ * so that the next rows are fetched while the extractor converts the
+ * previous ones to events. Rows after the current position are read through
+ * a server-side cursor, fetchSize rows at a time, in order of log_txid and
+ * log_actionseq.
+ * <p/>
+ * When the log has no new rows, the reader waits before querying again. If
+ * a notification channel is given, the reader listens on it and queries the
+ * log as soon as a notification arrives. The PostgreSQL driver only receives
+ * notifications with query results, so it checks for them with an empty
+ * query every minPollInterval milliseconds, and queries the log anyway after
+ * maxPollInterval in case a notification was missed. Without a channel, the
+ * wait doubles from minPollInterval up to maxPollInterval while the log
+ * stays idle.
+ *
+ * @version 1.0
+ */
+public class SlonyLogReader implements Runnable
+{
+    private static Logger                       logger = Logger.getLogger(SlonyLogReader.class);
+
+    /**
+     * Log rows of a single transaction, or a failure of the reader.
+     */
+    public static class SlonyTransaction
+    {
+        long         txId;
+        List<String> cmdTypes   = new ArrayList<String>();
+        List<String> cmdData    = new ArrayList<String>();
+        List<String> tableNames = new ArrayList<String>();
+        Exception    failure;
+
+        /** Returns the Slony log_txid of the transaction. */
+        public long getTxId()
+        {
+            return txId;
+        }
+
+        /** Returns the number of log rows. */
+        public int size()
+        {
+            return cmdTypes.size();
+        }
+
+        /** Returns the failure that stopped the reader, if any. */
+        public Exception getFailure()
+        {
+            return failure;
+        }
+    }
+
+    private final String                        url;
+    private final String                        user;
+    private final String                        password;
+    private final String                        logQuery;
+    private final int                           fetchSize;
+    private final String                        notifyChannel;
+    private final long                          minPollInterval;
+    private final long                          maxPollInterval;
+    private final BlockingQueue<SlonyTransaction> queue;
+
+    private long                                lastTxId;
+    private Thread                              thread;
+    private volatile boolean                    cancelled;
+    private Database                            conn;
+    private Statement                           pollStatement;
+
+    /**
+     * Creates a new reader.
+     *
+     * @param url JDBC URL of the database that contains the Slony log
+     * @param user Database user
+     * @param password Database password
+     * @param slonySchema Schema of the Slony log tables
+     * @param afterTxId log_txid after which to start reading
+     * @param fetchSize Number of rows fetched from the cursor at a time
+     * @param queueSize Number of transactions to read ahead
+     * @param notifyChannel Channel to listen on for log changes or null to
+     *            poll
+     * @param minPollInterval Shortest wait in milliseconds between queries on
+     *            an idle log
+     * @param maxPollInterval Longest wait in milliseconds between queries on
+     *            an idle log
+     */
+    public SlonyLogReader(String url, String user, String password,
+            String slonySchema, long afterTxId, int fetchSize, int queueSize,
+            String notifyChannel, long minPollInterval, long maxPollInterval)
+    {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.lastTxId = afterTxId;
+        this.fetchSize = fetchSize;
+        this.notifyChannel = notifyChannel;
+        this.minPollInterval = Math.max(1, minPollInterval);
+        this.maxPollInterval = Math.max(this.minPollInterval, maxPollInterval);
+        this.queue = new ArrayBlockingQueue<SlonyTransaction>(Math.max(1,
+                queueSize));
+
+        // Select log rows of both log tables with table names. The log_txid
+        // parameter is the last transaction read.
+        StringBuffer sb = new StringBuffer();
+        sb.append("SELECT * FROM (");
+        for (int i = 1; i <= 2; i++)
+        {
+            String logTable = slonySchema + ".sl_log_" + i;
+            String tableTable = slonySchema + ".sl_table";
+            if (i > 1)
+                sb.append(" UNION ALL");
+            sb.append(" SELECT log_txid, log_actionseq, log_cmdtype, log_cmddata, tab_nspname, tab_relname FROM ");
+            sb.append(logTable);
+            sb.append(" LEFT OUTER JOIN ");
+            sb.append(tableTable);
+            sb.append(" ON ");
+            sb.append(logTable);
+            sb.append(".log_tableid = ");
+            sb.append(tableTable);
+            sb.append(".tab_id");
+            sb.append(" WHERE log_txid > %d");
+        }
+        sb.append(") AS log_union ");
+        sb.append("ORDER BY log_txid, log_actionseq");
+        this.logQuery = sb.toString();
+    }
+
+    /**
+     * Starts the reader thread.
+     */
+    public synchronized void start(String name)
+    {
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the reader thread and waits for it to exit.
+     */
+    public synchronized void cancel() throws InterruptedException
+    {
+        cancelled = true;
+        if (thread != null)
+        {
+            thread.interrupt();
+            thread.join(maxPollInterval + 10000);
+            thread = null;
+        }
+        queue.clear();
+    }
+
+    /**
+     * Returns the next transaction, waiting until one is available. A
+     * transaction with a failure is returned if the reader stopped.
+     */
+    public SlonyTransaction take() throws InterruptedException
+    {
+        return queue.take();
+    }
+
+    /**
+     * Reads the log until cancelled. {@inheritDoc}
+     *
+     * @see java.lang.Runnable#run()
+     */
+    public void run()
+    {
+        try
+        {
+            connect();
+            long interval = minPollInterval;
+            while (!cancelled)
+            {
+                if (readLog())
+                {
+                    interval = minPollInterval;
+                }
+                else
+                {
+                    // Nothing new, so wait before querying again.
+                    if (notifyChannel == null)
+                    {
+                        Thread.sleep(interval);
+                        interval = Math.min(interval * 2, maxPollInterval);
+                    }
+                    else
+                        waitForNotification();
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            if (!cancelled)
+                fail(e);
+        }
+        catch (Exception e)
+        {
+            if (!cancelled)
+            {
+                logger.error("Slony log reader failed after log_txid "
+                        + lastTxId, e);
+                fail(e);
+            }
+        }
+        finally
+        {
+            disconnect();
+        }
+    }
+
+    // Connect and start listening for notifications if desired.
+    private void connect() throws SQLException
+    {
+        conn = DatabaseFactory.createDatabase(url, user, password);
+        conn.connect();
+        conn.setAutoCommit(false);
+        if (notifyChannel != null)
+        {
+            pollStatement = conn.createStatement();
+            pollStatement.execute("LISTEN " + notifyChannel);
+            conn.commit();
+            logger.info("Listening for Slony log changes: channel="
+                    + notifyChannel);
+        }
+    }
+
+    // Read log rows after the last transaction and queue them. Returns true
+    // if any rows were found.
+    private boolean readLog() throws SQLException, InterruptedException
+    {
+        Statement st = null;
+        ResultSet rs = null;
+        SlonyTransaction trx = null;
+        int count = 0;
+        try
+        {
+            // The cursor is only used within a transaction.
+            st = conn.createStatement();
+            st.setFetchSize(fetchSize);
+            rs = st.executeQuery(String.format(logQuery, lastTxId, lastTxId));
+            while (rs.next() && !cancelled)
+            {
+                long txId = rs.getLong(1);
+                if (trx == null || trx.txId != txId)
+                {
+                    if (trx != null)
+                        put(trx);
+                    trx = new SlonyTransaction();
+                    trx.txId = txId;
+                }
+                trx.cmdTypes.add(rs.getString(3));
+                trx.cmdData.add(rs.getString(4));
+                trx.tableNames.add(rs.getString(5) + "." + rs.getString(6));
+                count++;
+            }
+
+            // Rows of a transaction are committed together, so the last
+            // transaction is complete.
+            if (trx != null && !cancelled)
+                put(trx);
+            if (logger.isDebugEnabled() && count > 0)
+            {
+                logger.debug("Read Slony log rows: count=" + count
+                        + " last_txid=" + lastTxId);
+            }
+            return count > 0;
+        }
+        finally
+        {
+            if (rs != null)
+            {
+                try
+                {
+                    rs.close();
+                }
+                catch (SQLException ignore)
+                {
+                }
+            }
+            if (st != null)
+            {
+                try
+                {
+                    st.close();
+                }
+                catch (SQLException ignore)
+                {
+                }
+            }
+
+            // End the transaction to release the snapshot.
+            conn.commit();
+        }
+    }
+
+    // Queue a transaction and advance the position.
+    private void put(SlonyTransaction trx) throws InterruptedException
+    {
+        queue.put(trx);
+        lastTxId = trx.txId;
+    }
+
+    // Wait until a notification arrives or the longest poll interval passes.
+    private void waitForNotification() throws SQLException,
+            InterruptedException
+    {
+        PGConnection pgConn = (PGConnection) conn.getConnection();
+        long deadline = System.currentTimeMillis() + maxPollInterval;
+        while (!cancelled && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(minPollInterval);
+            pollStatement.execute("SELECT 1");
+            conn.commit();
+            PGNotification[] notifications = pgConn.getNotifications();
+            if (notifications != null && notifications.length > 0)
+                return;
+        }
+    }
+
+    // Queue a failure for the extractor, replacing transactions read ahead.
+    private void fail(Exception e)
+    {
+        SlonyTransaction failure = new SlonyTransaction();
+        failure.txId = lastTxId;
+        failure.failure = e;
+        queue.clear();
+        queue.offer(failure);
+    }
+
+    // Close the connection.
+    private void disconnect()
+    {
+        if (pollStatement != null)
+        {
+            try
+            {
+                pollStatement.close();
+            }
+            catch (SQLException ignore)
+            {
+            }
+        }
+        if (conn != null)
+        {
+            conn.close();
+            conn = null;
+        }
+    }
+}
@@ -51,6 +51,8 @@ import com.continuent.tungsten.commons.cluster.resource.physical.ReplicatorCapab
 import com.continuent.tungsten.commons.config.TungstenProperties;
 import com.continuent.tungsten.commons.config.WildcardPattern;
 import com.continuent.tungsten.replicator.ReplicatorException;
+import com.continuent.tungsten.replicator.applier.Applier;
+import com.continuent.tungsten.replicator.applier.ApplierStatusProvider;
 import com.continuent.tungsten.replicator.channel.ChannelAssignmentService;
 import com.continuent.tungsten.replicator.conf.ReplicatorConf;
 import com.continuent.tungsten.replicator.conf.ReplicatorMonitor;
@@ -69,6 +71,7 @@ import com.continuent.tungsten.replicator.management.OpenReplicatorContext;
 import com.continuent.tungsten.replicator.management.OpenReplicatorPlugin;
 import com.continuent.tungsten.replicator.management.events.GoOfflineEvent;
 import com.continuent.tungsten.replicator.management.events.OfflineNotification;
+import com.continuent.tungsten.replicator.pipeline.CommitReason;
 import com.continuent.tungsten.replicator.pipeline.Pipeline;
 import com.continuent.tungsten.replicator.pipeline.ShardProgress;
 import com.continuent.tungsten.replicator.pipeline.TaskProgress;
@@ -887,6 +890,18 @@ public class TungstenPlugin extends NotificationBroadcasterSupport
                         avgBlock = 0.0;
                     props.put("averageBlockSize",
                             String.format("%-10.3f", avgBlock));
+                    props.put("blockSize",
+                            Integer.toString(progress.getBlockSize()));
+                    props.put("blockCommitInterval", Double.toString(progress
+                            .getCommitIntervalMillis() / 1000.0));
+                    CommitReason lastCommitReason = progress
+                            .getLastCommitReason();
+                    if (lastCommitReason == null)
+                        props.put("lastCommitReason", "");
+                    else
+                        props.put("lastCommitReason",
+                                lastCommitReason.toString());
+                    props.put("commitReasons", progress.getCommitReasons());
                     props.put("appliedLatency",
                             Double.toString(progress.getApplyLatencySeconds()));
                     props.put("extractTime",
@@ -924,6 +939,22 @@ public class TungstenPlugin extends NotificationBroadcasterSupport
                         props.put("currentLastEventId", lastDirtyEvent.getEventId());
                         props.put("currentLastFragno", Short.toString(lastDirtyEvent.getFragno()));
                     }
+
+                    // Add status reported by the applier, if any.
+                    Applier applier = pipeline.getStage(
+                            progress.getStageName()).getApplier(
+                            progress.getTaskId());
+                    if (applier instanceof ApplierStatusProvider)
+                    {
+                        TungstenProperties applierProps = ((ApplierStatusProvider) applier)
+                                .status();
+                        if (applierProps != null)
+                        {
+                            for (String key : applierProps.keyNames())
+                                props.put("applier." + key,
+                                        applierProps.getString(key));
+                        }
+                    }
                     statusList.add(props);
                 }
             }
@@ -943,6 +974,12 @@ public class TungstenPlugin extends NotificationBroadcasterSupport
                     props.put("appliedLastSeqno",
                             Long.toString(progress.getLastSeqno()));
                     props.put("appliedLastEventId", progress.getLastEventId());
+                    props.put("channel",
+                            Integer.toString(progress.getTaskId()));
+                    props.put("channelMoves",
+                            Long.toString(progress.getChannelMoves()));
+                    props.put("applyTime",
+                            Double.toString(progress.getApplySeconds()));
 
                     statusList.add(props);
                 }
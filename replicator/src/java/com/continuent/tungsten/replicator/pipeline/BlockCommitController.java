@@ -0,0 +1,233 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.pipeline;
+
+/**
+ * Decides when a task commits a block of transactions.
+ * <p/>
+ * The fixed policy commits when the block reaches the maximum block size or,
+ * if a commit interval is set, when the block has been open longer than the
+ * interval. The adaptive policy tunes the block size and interval after each
+ * commit. When the task is behind, either because the apply latency exceeds
+ * the target lag or because the upstream store holds more than a block of
+ * events, the block size doubles up to the maximum and the interval widens to
+ * the maximum interval. When the task is caught up the block size halves down
+ * to 1 and the interval shrinks to half the target lag. In both cases the
+ * block size is capped so that a block can be applied within the interval at
+ * the observed apply time per event.
+ * <p/>
+ * Times are passed in by callers to make the class easy to test. Instances
+ * are not thread-safe.
+ * 
+ * @version 1.0
+ */
+public class BlockCommitController
+{
+    /** Name of the fixed block commit policy. */
+    public static final String  FIXED               = "fixed";
+
+    /** Name of the adaptive block commit policy. */
+    public static final String  ADAPTIVE            = "adaptive";
+
+    // Weight of the latest block in the average apply time per event.
+    private static final double APPLY_WEIGHT        = 0.2;
+
+    private final int           maxBlockSize;
+    private final long          maxIntervalMillis;
+    private final boolean       adaptive;
+    private final long          targetLagMillis;
+
+    // Current settings.
+    private int                 blockSize;
+    private long                intervalMillis;
+
+    // State of the open block.
+    private int                 blockEvents;
+    private long                blockStartMillis;
+
+    // Average apply time per event or -1 if no block has been measured.
+    private double              applyMillisPerEvent = -1;
+
+    /**
+     * Creates a new controller.
+     * 
+     * @param maxBlockSize Maximum number of events in a block
+     * @param maxIntervalMillis Maximum time a block may be open in
+     *            milliseconds or 0 for no limit
+     * @param adaptive If true, tune block size and interval at runtime
+     * @param targetLagMillis Apply latency above which an adaptive task
+     *            counts as behind
+     */
+    public BlockCommitController(int maxBlockSize, long maxIntervalMillis,
+            boolean adaptive, long targetLagMillis)
+    {
+        this.maxBlockSize = Math.max(maxBlockSize, 1);
+        this.maxIntervalMillis = Math.max(maxIntervalMillis, 0);
+        this.adaptive = adaptive;
+        this.targetLagMillis = Math.max(targetLagMillis, 0);
+
+        // Adaptive tasks start out as if caught up and grow blocks as soon as
+        // they see a backlog.
+        if (adaptive)
+        {
+            blockSize = 1;
+            intervalMillis = caughtUpIntervalMillis();
+        }
+        else
+        {
+            blockSize = this.maxBlockSize;
+            intervalMillis = this.maxIntervalMillis;
+        }
+    }
+
+    /** Returns true if blocks are tuned at runtime. */
+    public boolean isAdaptive()
+    {
+        return adaptive;
+    }
+
+    /** Returns the maximum block size. */
+    public int getMaxBlockSize()
+    {
+        return maxBlockSize;
+    }
+
+    /** Returns the current block size. */
+    public int getBlockSize()
+    {
+        return blockSize;
+    }
+
+    /** Returns the current commit interval in milliseconds or 0 if none. */
+    public long getIntervalMillis()
+    {
+        return intervalMillis;
+    }
+
+    /** Returns the number of events in the open block. */
+    public int getBlockEvents()
+    {
+        return blockEvents;
+    }
+
+    /** Returns the average apply time per event or -1 if not yet known. */
+    public double getApplyMillisPerEvent()
+    {
+        return applyMillisPerEvent;
+    }
+
+    /**
+     * Adds an event to the open block.
+     * 
+     * @param nowMillis Current time
+     */
+    public void addEvent(long nowMillis)
+    {
+        if (blockEvents == 0)
+            blockStartMillis = nowMillis;
+        blockEvents++;
+    }
+
+    /** Returns true if the open block has reached the current block size. */
+    public boolean isBlockFull()
+    {
+        return blockEvents >= blockSize;
+    }
+
+    /**
+     * Returns true if the open block has been open for longer than the
+     * current commit interval.
+     * 
+     * @param nowMillis Current time
+     */
+    public boolean isIntervalExpired(long nowMillis)
+    {
+        return intervalMillis > 0 && blockEvents > 0
+                && nowMillis - blockStartMillis >= intervalMillis;
+    }
+
+    /**
+     * Closes the open block after a commit and tunes settings if the
+     * controller is adaptive. Commits of empty blocks are ignored.
+     * 
+     * @param reason Reason for the commit
+     * @param applyMillis Time spent applying the block including the commit
+     * @param lagMillis Apply latency of the last event in the block
+     * @param backlog Number of events waiting upstream or -1 if unknown
+     */
+    public void committed(CommitReason reason, long applyMillis,
+            long lagMillis, long backlog)
+    {
+        if (blockEvents == 0)
+            return;
+
+        double blockMillisPerEvent = (double) Math.max(applyMillis, 0)
+                / blockEvents;
+        if (applyMillisPerEvent < 0)
+            applyMillisPerEvent = blockMillisPerEvent;
+        else
+            applyMillisPerEvent = (1 - APPLY_WEIGHT) * applyMillisPerEvent
+                    + APPLY_WEIGHT * blockMillisPerEvent;
+
+        if (adaptive)
+            tune(reason, lagMillis, backlog);
+        blockEvents = 0;
+    }
+
+    // Adjusts block size and interval following a commit.
+    private void tune(CommitReason reason, long lagMillis, long backlog)
+    {
+        boolean behind;
+        if (backlog == 0 || reason == CommitReason.empty)
+            behind = false;
+        else if (backlog > blockSize)
+            behind = true;
+        else
+            behind = targetLagMillis > 0 && lagMillis > targetLagMillis;
+
+        if (behind)
+        {
+            blockSize = (int) Math.min((long) blockSize * 2, maxBlockSize);
+            intervalMillis = maxIntervalMillis;
+        }
+        else
+        {
+            blockSize = Math.max(blockSize / 2, 1);
+            intervalMillis = caughtUpIntervalMillis();
+        }
+
+        // Keep blocks small enough to apply within the interval.
+        if (intervalMillis > 0 && applyMillisPerEvent > 0)
+        {
+            long fit = (long) (intervalMillis / applyMillisPerEvent);
+            blockSize = (int) Math.max(Math.min(blockSize, fit), 1);
+        }
+    }
+
+    // Returns the interval for a task that is caught up.
+    private long caughtUpIntervalMillis()
+    {
+        long interval = targetLagMillis / 2;
+        if (maxIntervalMillis > 0
+                && (interval == 0 || interval > maxIntervalMillis))
+            interval = maxIntervalMillis;
+        return interval;
+    }
+}
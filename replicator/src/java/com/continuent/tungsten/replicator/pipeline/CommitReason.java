@@ -0,0 +1,49 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.pipeline;
+
+/**
+ * Defines the reasons for which a task commits a block of transactions.
+ */
+public enum CommitReason
+{
+    /** Block reached the current block size. */
+    block,
+    /** No more events were available from the extractor. */
+    empty,
+    /** Block was open longer than the current commit interval. */
+    interval,
+    /** Transaction ended and block commit is not in use. */
+    transaction,
+    /** A fragmented transaction started. */
+    fragment,
+    /** A transaction that rolls back started. */
+    rollback,
+    /** Transaction is unsafe for block commit. */
+    unsafe,
+    /** Service name changed. */
+    service,
+    /** Events discarded by filters were recorded. */
+    filtered,
+    /** Schedule requested a commit. */
+    control,
+    /** Task processing ended. */
+    end
+}
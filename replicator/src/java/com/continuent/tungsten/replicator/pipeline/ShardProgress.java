@@ -36,6 +36,9 @@ public class ShardProgress
     private String       lastEventId;
     private long         eventCount         = 0;
     private long         applyLatencyMillis = 0;
+    private int          taskId             = -1;
+    private long         channelMoves       = 0;
+    private long         applyMillis        = 0;
 
     /**
      * Defines a new task progress tracker for the given shard
@@ -117,6 +120,45 @@ public class ShardProgress
         this.applyLatencyMillis = applyLatencyMillis;
     }
 
+    /** Returns the task ID of the channel that last applied the shard. */
+    public int getTaskId()
+    {
+        return taskId;
+    }
+
+    public void setTaskId(int taskId)
+    {
+        this.taskId = taskId;
+    }
+
+    /** Returns the number of times the shard moved to another channel. */
+    public long getChannelMoves()
+    {
+        return channelMoves;
+    }
+
+    public void setChannelMoves(long channelMoves)
+    {
+        this.channelMoves = channelMoves;
+    }
+
+    /** Returns the total time spent applying the shard in milliseconds. */
+    public long getApplyMillis()
+    {
+        return applyMillis;
+    }
+
+    /** Return apply time in seconds. */
+    public double getApplySeconds()
+    {
+        return applyMillis / 1000.0;
+    }
+
+    public void setApplyMillis(long applyMillis)
+    {
+        this.applyMillis = applyMillis;
+    }
+
     /**
      * Returns a shallow copy of this instance.
      */
@@ -127,6 +169,9 @@ public class ShardProgress
         clone.setLastEventId(lastEventId);
         clone.setApplyLatencyMillis(applyLatencyMillis);
         clone.setEventCount(eventCount);
+        clone.setTaskId(taskId);
+        clone.setChannelMoves(channelMoves);
+        clone.setApplyMillis(applyMillis);
         return clone;
     }
 }
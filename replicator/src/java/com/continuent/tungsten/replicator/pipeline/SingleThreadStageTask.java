@@ -40,8 +40,10 @@ import com.continuent.tungsten.replicator.event.ReplDBMSFilteredEvent;
 import com.continuent.tungsten.replicator.event.ReplDBMSHeader;
 import com.continuent.tungsten.replicator.event.ReplEvent;
 import com.continuent.tungsten.replicator.event.ReplOptionParams;
+import com.continuent.tungsten.replicator.extractor.BacklogProvider;
 import com.continuent.tungsten.replicator.extractor.Extractor;
 import com.continuent.tungsten.replicator.extractor.ExtractorException;
+import com.continuent.tungsten.replicator.extractor.ParallelExtractor;
 import com.continuent.tungsten.replicator.filter.Filter;
 import com.continuent.tungsten.replicator.plugin.PluginContext;
 
@@ -56,32 +58,41 @@ import com.continuent.tungsten.replicator.plugin.PluginContext;
  */
 public class SingleThreadStageTask implements Runnable
 {
-    private static Logger    logger          = Logger.getLogger(SingleThreadStageTask.class);
-    private Stage            stage;
-    private int              taskId;
-    private Extractor        extractor;
-    private List<Filter>     filters;
-    private Applier          applier;
-    private boolean          usingBlockCommit;
-    private int              blockCommitRowsCount;
-    private EventDispatcher  eventDispatcher;
-    private Schedule         schedule;
-    private String           name;
-
-    private long             blockEventCount = 0;
-    private TaskProgress     taskProgress;
-    private PluginContext    context;
-
-    private volatile boolean cancelled       = false;
+    private static Logger         logger          = Logger.getLogger(SingleThreadStageTask.class);
+    private Stage                 stage;
+    private int                   taskId;
+    private Extractor             extractor;
+    private List<Filter>          filters;
+    private Applier               applier;
+    private boolean               usingBlockCommit;
+    private BlockCommitController blockCommit;
+    private EventDispatcher       eventDispatcher;
+    private Schedule              schedule;
+    private String                name;
+
+    // Total apply time when the open block started.
+    private long                  blockApplyStartMillis;
+    private TaskProgress          taskProgress;
+    private PluginContext         context;
+
+    private volatile boolean      cancelled       = false;
 
     public SingleThreadStageTask(Stage stage, int taskId)
     {
         this.taskId = taskId;
         this.name = stage.getName() + "-" + taskId;
         this.stage = stage;
-        this.blockCommitRowsCount = stage.getBlockCommitRowCount();
-        this.usingBlockCommit = (blockCommitRowsCount > 1);
+        this.blockCommit = new BlockCommitController(
+                stage.getBlockCommitRowCount(),
+                stage.getBlockCommitInterval(),
+                BlockCommitController.ADAPTIVE.equals(stage
+                        .getBlockCommitPolicy()),
+                stage.getBlockCommitTargetLag());
+        this.usingBlockCommit = (blockCommit.getMaxBlockSize() > 1);
         this.taskProgress = stage.getProgressTracker().getTaskProgress(taskId);
+        this.taskProgress.setBlockSize(blockCommit.getBlockSize());
+        this.taskProgress.setCommitIntervalMillis(blockCommit
+                .getIntervalMillis());
     }
 
     /** Returns the id of this task. */
@@ -271,7 +282,7 @@ public class SingleThreadStageTask implements Runnable
                                                 newService);
                                 logger.debug(msg);
                             }
-                            commit();
+                            commit(CommitReason.service);
                         }
                         else
                         {
@@ -335,6 +346,10 @@ public class SingleThreadStageTask implements Runnable
 
                 try
                 {
+                    // Filters may alter events in place, so any log record
+                    // attached to the event no longer matches its contents.
+                    if (filters.size() > 0)
+                        event.clearSerializedRecord();
                     for (Filter f : filters)
                     {
                         if ((event = f.filter(event)) == null)
@@ -363,6 +378,24 @@ public class SingleThreadStageTask implements Runnable
                     }
                     else
                         lastFilteredEvent = currentEvent;
+
+                    // Store and commit filtered events at once if the
+                    // parallel queue we read is empty, as partitioners of
+                    // the queue may wait for this task to commit them.
+                    if (extractor instanceof ParallelExtractor
+                            && !extractor.hasMoreEvents())
+                    {
+                        if (logger.isDebugEnabled())
+                        {
+                            logger.debug("Applying filtered event on empty queue");
+                        }
+                        addBlockEvent();
+                        apply(new ReplDBMSFilteredEvent(firstFilteredEvent,
+                                lastFilteredEvent), CommitReason.filtered,
+                                false, syncTHLWithExtractor);
+                        firstFilteredEvent = null;
+                        lastFilteredEvent = null;
+                    }
                     continue;
                 }
                 else
@@ -375,9 +408,10 @@ public class SingleThreadStageTask implements Runnable
                         {
                             logger.debug("Applying filtered event");
                         }
+                        addBlockEvent();
                         apply(new ReplDBMSFilteredEvent(firstFilteredEvent,
-                                lastFilteredEvent), true, false,
-                                syncTHLWithExtractor);
+                                lastFilteredEvent), CommitReason.filtered,
+                                false, syncTHLWithExtractor);
                         firstFilteredEvent = null;
                         lastFilteredEvent = null;
                     }
@@ -393,7 +427,7 @@ public class SingleThreadStageTask implements Runnable
                 if (event.getFragno() == 0 && !event.getLastFrag())
                 {
                     // Starting a new fragmented transaction
-                    commit();
+                    commit(CommitReason.fragment);
                 }
                 else
                 {
@@ -407,14 +441,14 @@ public class SingleThreadStageTask implements Runnable
                         // transaction, previous work was already committed
                         // and the whole current transaction should be rolled
                         // back
-                        commit();
+                        commit(CommitReason.rollback);
                         doRollback = true;
                     }
                     else if (unsafeForBlockCommit)
                     {
                         // Commit previous work and force transaction to commit
                         // afterwards.
-                        commit();
+                        commit(CommitReason.unsafe);
                     }
 
                 }
@@ -422,44 +456,50 @@ public class SingleThreadStageTask implements Runnable
                 // Should commit when :
                 // 1. block commit is not used AND this is the last
                 // fragment of the transaction
-                // 2. (When maximum number of events is reached
-                // OR when queue is empty)
-                // AND this is the last fragment of the transaction
-                boolean doCommit = false;
+                // 2. (When the current block size is reached
+                // OR when queue is empty OR when the commit interval
+                // has elapsed) AND this is the last fragment of the
+                // transaction
+                // A null commit reason means we do not commit.
+                CommitReason commitReason = null;
+                addBlockEvent();
 
                 if (unsafeForBlockCommit)
                 {
-                    doCommit = true;
+                    commitReason = CommitReason.unsafe;
                 }
                 else if (usingBlockCommit)
                 {
-                    blockEventCount++;
-                    if (event.getLastFrag()
-                            && ((blockEventCount >= blockCommitRowsCount) || !extractor
-                                    .hasMoreEvents()))
+                    if (event.getLastFrag())
                     {
-                        doCommit = true;
+                        if (blockCommit.isBlockFull())
+                            commitReason = CommitReason.block;
+                        else if (!extractor.hasMoreEvents())
+                            commitReason = CommitReason.empty;
+                        else if (blockCommit.isIntervalExpired(System
+                                .currentTimeMillis()))
+                            commitReason = CommitReason.interval;
                     }
                 }
-                else
+                else if (event.getLastFrag())
                 {
-                    doCommit = event.getLastFrag();
+                    commitReason = CommitReason.transaction;
                 }
 
                 // Apply the event with optional commit.
                 if (logger.isDebugEnabled())
                 {
                     logger.debug("Applying event: seqno=" + event.getSeqno()
-                            + " fragno=" + event.getFragno() + " doCommit="
-                            + doCommit);
+                            + " fragno=" + event.getFragno() + " commitReason="
+                            + commitReason);
                 }
-                // doCommit should be false if doRollback is true.
-                apply(event, doCommit, doRollback, syncTHLWithExtractor);
+                // commitReason should be null if doRollback is true.
+                apply(event, commitReason, doRollback, syncTHLWithExtractor);
             }
 
             // At the end of the loop, issue commit to ensure partial block
             // becomes persistent.
-            commit();
+            commit(CommitReason.end);
         }
         catch (InterruptedException e)
         {
@@ -533,23 +573,24 @@ public class SingleThreadStageTask implements Runnable
         }
 
         // Decide whether to commit. This recapitulates logic in the main loop.
+        CommitReason commitReason = null;
+        addBlockEvent();
+        if (doCommit)
+            commitReason = CommitReason.control;
         if (usingBlockCommit)
         {
-            blockEventCount++;
-            if ((blockEventCount >= blockCommitRowsCount)
-                    || !extractor.hasMoreEvents())
-            {
-                // Commit if we are at the end of the block.
-                doCommit = true;
-            }
-            else
-            {
-                // Don't commit unless client really wants it.
-                doCommit |= false;
-            }
+            // Commit if we are at the end of the block. Otherwise don't
+            // commit unless client really wants it.
+            if (blockCommit.isBlockFull())
+                commitReason = CommitReason.block;
+            else if (!extractor.hasMoreEvents())
+                commitReason = CommitReason.empty;
+            else if (blockCommit.isIntervalExpired(System.currentTimeMillis()))
+                commitReason = CommitReason.interval;
         }
-        else
-            doCommit = true;
+        else if (commitReason == null)
+            commitReason = CommitReason.transaction;
+        doCommit = (commitReason != null);
 
         // Finally, update!
         if (logger.isDebugEnabled())
@@ -563,7 +604,7 @@ public class SingleThreadStageTask implements Runnable
         if (doCommit)
         {
             schedule.commit();
-            blockEventCount = 0;
+            blockCommitted(commitReason);
         }
     }
 
@@ -572,8 +613,8 @@ public class SingleThreadStageTask implements Runnable
      * and event accounting.
      * 
      * @param event Event to be applied
-     * @param doCommit Boolean flag indicating whether this is the last part of
-     *            multipart event
+     * @param commitReason Reason to commit after applying the event or null
+     *            if the event should not be committed
      * @param doRollback Boolean flag indicating whether this transaction should
      *            rollback
      * @param syncTHL Should this applier synchronize the trep_commit_seqno
@@ -583,10 +624,13 @@ public class SingleThreadStageTask implements Runnable
      *             consistency check has failed
      * @throws InterruptedException Thrown if the applier is interrupted
      */
-    private void apply(ReplDBMSEvent event, boolean doCommit,
+    private void apply(ReplDBMSEvent event, CommitReason commitReason,
             boolean doRollback, boolean syncTHL) throws ReplicatorException,
             ConsistencyException, InterruptedException
     {
+        boolean doCommit = (commitReason != null);
+        boolean committed = false;
+        long applyStartMillis = taskProgress.getTotalApplyMillis();
         try
         {
             taskProgress.beginApplyInterval();
@@ -594,7 +638,7 @@ public class SingleThreadStageTask implements Runnable
             if (doCommit)
             {
                 schedule.commit();
-                blockEventCount = 0;
+                committed = true;
             }
         }
         catch (ApplierException e)
@@ -616,19 +660,60 @@ public class SingleThreadStageTask implements Runnable
             taskProgress.endApplyInterval();
         }
 
+        // Account for the commit once its time is included in the totals.
+        if (committed)
+            blockCommitted(commitReason);
+        stage.getProgressTracker().setShardApplied(taskId, event,
+                taskProgress.getTotalApplyMillis() - applyStartMillis);
     }
 
     /**
      * Utility routine to issue commit with appropriate transaction accounting.
      * 
+     * @param commitReason Reason for the commit
      * @throws ReplicatorException Thrown if applier processing fails
      * @throws InterruptedException Thrown if the applier is interrupted
      */
-    private void commit() throws InterruptedException, ReplicatorException
+    private void commit(CommitReason commitReason)
+            throws InterruptedException, ReplicatorException
     {
         applier.commit();
         schedule.commit();
-        blockEventCount = 0;
+        blockCommitted(commitReason);
+    }
+
+    // Adds an event to the open block, noting the apply time at the start of
+    // a new block.
+    private void addBlockEvent()
+    {
+        if (blockCommit.getBlockEvents() == 0)
+            blockApplyStartMillis = taskProgress.getTotalApplyMillis();
+        blockCommit.addEvent(System.currentTimeMillis());
+    }
+
+    // Closes the open block following a commit, which tunes the block size
+    // for adaptive block commit, and publishes block commit progress. Commits
+    // of empty blocks are not counted.
+    private void blockCommitted(CommitReason commitReason)
+    {
+        if (blockCommit.getBlockEvents() == 0)
+            return;
+
+        long backlog = -1;
+        if (blockCommit.isAdaptive())
+        {
+            if (extractor instanceof BacklogProvider)
+                backlog = ((BacklogProvider) extractor).getBacklog();
+            else if (!extractor.hasMoreEvents())
+                backlog = 0;
+        }
+        blockCommit.committed(commitReason, taskProgress.getTotalApplyMillis()
+                - blockApplyStartMillis, taskProgress.getApplyLatencyMillis(),
+                backlog);
+
+        taskProgress.incrementCommitReasonCount(commitReason);
+        taskProgress.setBlockSize(blockCommit.getBlockSize());
+        taskProgress.setCommitIntervalMillis(blockCommit.getIntervalMillis());
     }
 
     // Utility routine to log error event with exception handling.
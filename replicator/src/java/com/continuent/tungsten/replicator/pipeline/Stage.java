@@ -49,29 +49,32 @@ import com.continuent.tungsten.replicator.plugin.ReplicatorPlugin;
  */
 public class Stage implements ReplicatorPlugin
 {
-    private static Logger             logger              = Logger.getLogger(Stage.class);
+    private static Logger             logger               = Logger.getLogger(Stage.class);
     // Stage elements.
     private String                    name;
     private PluginSpecification       extractorSpec;
     private List<PluginSpecification> filterSpecs;
     private PluginSpecification       applierSpec;
     private PluginContext             pluginContext;
-    private int                       blockCommitRowCount = 1;
-    private boolean                   autoSync            = false;
+    private int                       blockCommitRowCount  = 1;
+    private String                    blockCommitPolicy    = BlockCommitController.FIXED;
+    private long                      blockCommitInterval  = 0;
+    private long                      blockCommitTargetLag = 1000;
+    private boolean                   autoSync             = false;
 
     // Read-only parameters.
     private StageProgressTracker      progressTracker;
 
     // Task processing variables.
     StageTaskGroup                    taskGroup;
-    int                               taskCount           = 1;
+    int                               taskCount            = 1;
 
     // Start-up parameters.
     String                            initialEventId;
-    long                              applySkipCount      = 0;
+    long                              applySkipCount       = 0;
     private SortedSet<Long>           seqnosToBeSkipped;
 
-    private Pipeline                  pipeline            = null;
+    private Pipeline                  pipeline             = null;
 
     /**
      * Creates a new stage instance.
@@ -158,6 +161,49 @@ public class Stage implements ReplicatorPlugin
         this.blockCommitRowCount = blockCommitRowCount;
     }
 
+    public String getBlockCommitPolicy()
+    {
+        return blockCommitPolicy;
+    }
+
+    /**
+     * Sets the block commit policy, which is either "fixed" to commit blocks
+     * of blockCommitRowCount events or "adaptive" to tune the block size up to
+     * blockCommitRowCount at runtime.
+     */
+    public void setBlockCommitPolicy(String blockCommitPolicy)
+    {
+        this.blockCommitPolicy = blockCommitPolicy;
+    }
+
+    public long getBlockCommitInterval()
+    {
+        return blockCommitInterval;
+    }
+
+    /**
+     * Sets the maximum time in milliseconds that a block may stay open before
+     * it is committed. 0 means there is no limit.
+     */
+    public void setBlockCommitInterval(long blockCommitInterval)
+    {
+        this.blockCommitInterval = blockCommitInterval;
+    }
+
+    public long getBlockCommitTargetLag()
+    {
+        return blockCommitTargetLag;
+    }
+
+    /**
+     * Sets the apply latency in milliseconds above which adaptive block commit
+     * treats the stage as behind and grows blocks.
+     */
+    public void setBlockCommitTargetLag(long blockCommitTargetLag)
+    {
+        this.blockCommitTargetLag = blockCommitTargetLag;
+    }
+
     public void setLoggingInterval(long loggingInterval)
     {
         this.progressTracker.setLoggingInterval(loggingInterval);
@@ -209,6 +255,14 @@ public class Stage implements ReplicatorPlugin
         return progressTracker.getShardProgress();
     }
 
+    /**
+     * Returns the applier of a task.
+     */
+    public Applier getApplier(int taskId)
+    {
+        return taskGroup.getTask(taskId).getApplier();
+    }
+
     // Convenience methods for unit testing.
     public Applier getApplier0()
     {
@@ -238,6 +292,11 @@ public class Stage implements ReplicatorPlugin
             throw new ReplicatorException(
                     "Stage task count may not be less than 1: stage=" + name
                             + " taskCount=" + taskCount);
+        if (!BlockCommitController.FIXED.equals(blockCommitPolicy)
+                && !BlockCommitController.ADAPTIVE.equals(blockCommitPolicy))
+            throw new ReplicatorException(
+                    "Unknown block commit policy; must be fixed or adaptive: stage="
+                            + name + " blockCommitPolicy=" + blockCommitPolicy);
 
         progressTracker = new StageProgressTracker(name, taskCount);
         taskGroup = new StageTaskGroup(this, taskCount, progressTracker);
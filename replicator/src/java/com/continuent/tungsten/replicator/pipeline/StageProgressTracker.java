@@ -62,6 +62,9 @@ public class StageProgressTracker
     private final int                            threadCount;
     private final TaskProgress[]                 taskInfo;
 
+    // Seqno each task restarted from, which it committed before it started.
+    private final long[]                         restartSeqno;
+
     // Record of last processed info on each shard.
     private final TreeMap<String, ShardProgress> shardInfo           = new TreeMap<String, ShardProgress>();
 
@@ -113,12 +116,16 @@ public class StageProgressTracker
         this.name = name;
         this.threadCount = threadCount;
         this.taskInfo = new TaskProgress[threadCount];
+        this.restartSeqno = new long[threadCount];
         this.committedSeqno = new AtomicIntervalGuard<ReplDBMSHeader>(
                 threadCount);
 
         // Initialize task processing data.
         for (int i = 0; i < taskInfo.length; i++)
+        {
             taskInfo[i] = new TaskProgress(name, i);
+            restartSeqno[i] = -1;
+        }
 
         if (logger.isDebugEnabled())
         {
@@ -210,6 +217,28 @@ public class StageProgressTracker
         return committedSeqno.getLowSeqno();
     }
 
+    /**
+     * Sets the seqno from which a task restarts, i.e., the last seqno it
+     * committed before the pipeline started.
+     */
+    public synchronized void setRestartSeqno(int taskId, long seqno)
+    {
+        restartSeqno[taskId] = seqno;
+    }
+
+    /**
+     * Returns the last seqno committed by a task, including events committed
+     * before the pipeline started, or -1 if the task has committed nothing.
+     */
+    public synchronized long getCommittedSeqno(int taskId)
+    {
+        ReplDBMSHeader committed = taskInfo[taskId].getLastCommittedEvent();
+        if (committed == null)
+            return restartSeqno[taskId];
+        else
+            return Math.max(committed.getSeqno(), restartSeqno[taskId]);
+    }
+
     /**
      * Return the latency of the last committed event. This is the maximum
      * latency as it fetches the minimum committed event.
@@ -261,6 +290,29 @@ public class StageProgressTracker
         return progressList;
     }
 
+    /**
+     * Records time spent applying an event for its shard. A change in the task
+     * that applies the shard is counted as a move to another channel.
+     * 
+     * @param taskId Task that applied the event
+     * @param replEvent Event that was applied
+     * @param applyMillis Time spent applying the event
+     */
+    public synchronized void setShardApplied(int taskId,
+            ReplDBMSHeader replEvent, long applyMillis)
+    {
+        ShardProgress shardProgress = getShard(taskId, replEvent.getShardId());
+        if (shardProgress.getTaskId() != taskId)
+        {
+            if (shardProgress.getTaskId() >= 0)
+                shardProgress
+                        .setChannelMoves(shardProgress.getChannelMoves() + 1);
+            shardProgress.setTaskId(taskId);
+        }
+        shardProgress.setApplyMillis(shardProgress.getApplyMillis()
+                + applyMillis);
+    }
+
     /**
      * Set the last processed event, which triggers checks for watches.
      */
@@ -282,14 +334,7 @@ public class StageProgressTracker
         taskInfo[taskId].setApplyLatencyMillis(applyLatencyMillis);
 
         // Log per-shard statistics.
-        String shardId = replEvent.getShardId();
-        ShardProgress shardProgress = shardInfo.get(shardId);
-        if (shardProgress == null)
-        {
-            shardProgress = new ShardProgress(shardId,
-                    taskInfo[taskId].getStageName());
-            shardInfo.put(shardId, shardProgress);
-        }
+        ShardProgress shardProgress = getShard(taskId, replEvent.getShardId());
         shardProgress.setLastSeqno(replEvent.getSeqno());
         shardProgress.setLastEventId(replEvent.getEventId());
         shardProgress.setApplyLatencyMillis(applyLatencyMillis);
@@ -569,4 +614,17 @@ public class StageProgressTracker
         // No match, so we will process the event.
         return false;
     }
-}
\ No newline at end of file
+
+    // Returns progress for a shard, adding it if it is not known yet.
+    private ShardProgress getShard(int taskId, String shardId)
+    {
+        ShardProgress shardProgress = shardInfo.get(shardId);
+        if (shardProgress == null)
+        {
+            shardProgress = new ShardProgress(shardId,
+                    taskInfo[taskId].getStageName());
+            shardInfo.put(shardId, shardProgress);
+        }
+        return shardProgress;
+    }
+}
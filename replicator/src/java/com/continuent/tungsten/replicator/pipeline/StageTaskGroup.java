@@ -205,6 +205,7 @@ public class StageTaskGroup implements ReplicatorPlugin
                         + lastHeader.getSeqno() + " event="
                         + lastHeader.getEventId());
                 task.getExtractor().setLastEvent(lastHeader);
+                tracker.setRestartSeqno(i, lastHeader.getSeqno());
             }
         }
     }
@@ -34,24 +34,30 @@ public class TaskProgress
 {
     private final String   stageName;
     private final int      taskId;
-    private ReplDBMSHeader lastProcessedEvent  = null;
-    private ReplDBMSHeader lastCommittedEvent  = null;
-    private boolean        cancelled           = false;
-    private long           eventCount          = 0;
-    private long           blockCount          = 0;
-    private long           applyLatencyMillis  = 0;
+    private ReplDBMSHeader lastProcessedEvent   = null;
+    private ReplDBMSHeader lastCommittedEvent   = null;
+    private boolean        cancelled            = false;
+    private long           eventCount           = 0;
+    private long           blockCount           = 0;
+    private long           applyLatencyMillis   = 0;
     private long           startMillis;
-    private long           totalExtractMillis  = 0;
-    private long           totalFilterMillis   = 0;
-    private long           totalApplyMillis    = 0;
-    private TaskState      state               = TaskState.other;
+    private long           totalExtractMillis   = 0;
+    private long           totalFilterMillis    = 0;
+    private long           totalApplyMillis     = 0;
+    private TaskState      state                = TaskState.other;
+
+    // Block commit settings and statistics.
+    private int            blockSize            = 1;
+    private long           commitIntervalMillis = 0;
+    private CommitReason   lastCommitReason     = null;
+    private long[]         commitReasonCounts   = new long[CommitReason.values().length];
 
     // Used to mark the beginning of a timing interval.
-    private long           intervalStartMillis = 0;
+    private long           intervalStartMillis  = 0;
 
     // Used to mark the end of the last known interval so we can
     // accurately compute elapsed time.
-    private long           endMillis           = 0;
+    private long           endMillis            = 0;
 
     /**
      * Defines a new task progress tracker for the given task ID.
@@ -84,6 +90,10 @@ public class TaskProgress
         this.totalExtractMillis = other.getTotalExtractMillis();
         this.totalFilterMillis = other.getTotalFilterMillis();
         this.state = other.getState();
+        this.blockSize = other.getBlockSize();
+        this.commitIntervalMillis = other.getCommitIntervalMillis();
+        this.lastCommitReason = other.getLastCommitReason();
+        this.commitReasonCounts = other.commitReasonCounts.clone();
     }
 
     /**
@@ -172,6 +182,66 @@ public class TaskProgress
             return 0.0;
     }
 
+    /** Returns the current block commit size. */
+    public int getBlockSize()
+    {
+        return blockSize;
+    }
+
+    public void setBlockSize(int blockSize)
+    {
+        this.blockSize = blockSize;
+    }
+
+    /** Returns the current block commit interval or 0 if there is none. */
+    public long getCommitIntervalMillis()
+    {
+        return commitIntervalMillis;
+    }
+
+    public void setCommitIntervalMillis(long commitIntervalMillis)
+    {
+        this.commitIntervalMillis = commitIntervalMillis;
+    }
+
+    /** Returns the reason for the last block commit or null if none. */
+    public CommitReason getLastCommitReason()
+    {
+        return lastCommitReason;
+    }
+
+    /** Returns the number of block commits for a reason. */
+    public long getCommitReasonCount(CommitReason reason)
+    {
+        return commitReasonCounts[reason.ordinal()];
+    }
+
+    /**
+     * Returns block commit counts by reason, for example "block=10,empty=2".
+     * Reasons without commits are omitted.
+     */
+    public String getCommitReasons()
+    {
+        StringBuffer sb = new StringBuffer();
+        for (CommitReason reason : CommitReason.values())
+        {
+            long count = commitReasonCounts[reason.ordinal()];
+            if (count == 0)
+                continue;
+            if (sb.length() > 0)
+                sb.append(',');
+            sb.append(reason).append('=').append(count);
+        }
+        return sb.toString();
+    }
+
+    /** Records a block commit. */
+    public void incrementCommitReasonCount(CommitReason reason)
+    {
+        this.lastCommitReason = reason;
+        this.commitReasonCounts[reason.ordinal()]++;
+    }
+
     /** Return apply latency in milliseconds. Sub-zero values are rounded to 0. */
     public long getApplyLatencyMillis()
     {
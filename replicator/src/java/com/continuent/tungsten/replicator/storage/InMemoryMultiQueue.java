@@ -25,7 +25,6 @@ package com.continuent.tungsten.replicator.storage;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 
 import org.apache.log4j.Logger;
 
@@ -49,6 +48,8 @@ public class InMemoryMultiQueue implements Store
     private String                             name;
     private int                                partitions       = 1;
     private int                                maxSize          = 1;
+    private String                             queueType        = QueueFactory.LINKED;
+    private String                             waitStrategy     = "park";
 
     private List<BlockingQueue<ReplDBMSEvent>> queues;
     private ReplDBMSHeader[]                   lastHeader;
@@ -84,6 +85,33 @@ public class InMemoryMultiQueue implements Store
         this.maxSize = size;
     }
 
+    /** Returns the queue implementation. */
+    public String getQueueType()
+    {
+        return queueType;
+    }
+
+    /**
+     * Sets the queue implementation, either "linked" for a linked blocking
+     * queue or "ring" for a preallocated lock-free ring buffer.
+     */
+    public void setQueueType(String queueType)
+    {
+        this.queueType = queueType;
+    }
+
+    /** Returns the wait strategy for ring buffers. */
+    public String getWaitStrategy()
+    {
+        return waitStrategy;
+    }
+
+    /** Sets the wait strategy for ring buffers: spin, yield, or park. */
+    public void setWaitStrategy(String waitStrategy)
+    {
+        this.waitStrategy = waitStrategy;
+    }
+
     public int getPartitions()
     {
         return partitions;
@@ -186,7 +214,9 @@ public class InMemoryMultiQueue implements Store
         queues = new ArrayList<BlockingQueue<ReplDBMSEvent>>(partitions);
         for (int i = 0; i < partitions; i++)
         {
-            queues.add(new LinkedBlockingQueue<ReplDBMSEvent>(maxSize));
+            BlockingQueue<ReplDBMSEvent> queue = QueueFactory.createQueue(
+                    queueType, maxSize, waitStrategy);
+            queues.add(queue);
         }
         lastHeader = new ReplDBMSHeader[partitions];
     }
@@ -210,6 +240,7 @@ public class InMemoryMultiQueue implements Store
     {
         TungstenProperties props = new TungstenProperties();
         props.setLong("maxSize", maxSize);
+        props.setString("queueType", queueType);
         props.setLong("eventCount", this.transactionCount);
         return props;
     }
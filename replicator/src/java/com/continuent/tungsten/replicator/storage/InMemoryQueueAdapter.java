@@ -29,6 +29,7 @@ import com.continuent.tungsten.replicator.applier.Applier;
 import com.continuent.tungsten.replicator.consistency.ConsistencyException;
 import com.continuent.tungsten.replicator.event.ReplDBMSEvent;
 import com.continuent.tungsten.replicator.event.ReplDBMSHeader;
+import com.continuent.tungsten.replicator.extractor.BacklogProvider;
 import com.continuent.tungsten.replicator.extractor.Extractor;
 import com.continuent.tungsten.replicator.plugin.PluginContext;
 
@@ -39,7 +40,7 @@ import com.continuent.tungsten.replicator.plugin.PluginContext;
  * @version 1.0
  */
 
-public class InMemoryQueueAdapter implements Extractor, Applier
+public class InMemoryQueueAdapter implements Extractor, Applier, BacklogProvider
 {
     private static Logger      logger = Logger.getLogger(InMemoryQueueAdapter.class);
     private String             storeName;
@@ -98,6 +99,16 @@ public class InMemoryQueueAdapter implements Extractor, Applier
         return queueStore.size() > 0;
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * @see com.continuent.tungsten.replicator.extractor.BacklogProvider#getBacklog()
+     */
+    public long getBacklog()
+    {
+        return queueStore.size();
+    }
+
     /**
      * Store the header so that it can be propagated back through the pipeline
      * for restart. {@inheritDoc}
@@ -22,7 +22,7 @@
 
 package com.continuent.tungsten.replicator.storage;
 
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import org.apache.log4j.Logger;
 
@@ -41,12 +41,14 @@ import com.continuent.tungsten.replicator.plugin.PluginContext;
  */
 public class InMemoryQueueStore implements Store
 {
-    private static Logger                        logger           = Logger.getLogger(InMemoryQueueStore.class);
-    protected String                             name;
-    protected LinkedBlockingQueue<ReplDBMSEvent> queue;
-    protected int                                maxSize          = 1;
-    protected ReplDBMSHeader                     lastHeader;
-    protected long                               transactionCount = 0;
+    private static Logger                  logger           = Logger.getLogger(InMemoryQueueStore.class);
+    protected String                       name;
+    protected BlockingQueue<ReplDBMSEvent> queue;
+    protected int                          maxSize          = 1;
+    protected String                       queueType        = QueueFactory.LINKED;
+    protected String                       waitStrategy     = "park";
+    protected ReplDBMSHeader               lastHeader;
+    protected long                         transactionCount = 0;
 
     public String getName()
     {
@@ -68,6 +70,33 @@ public class InMemoryQueueStore implements Store
         this.maxSize = size;
     }
 
+    /** Returns the queue implementation. */
+    public String getQueueType()
+    {
+        return queueType;
+    }
+
+    /**
+     * Sets the queue implementation, either "linked" for a linked blocking
+     * queue or "ring" for a preallocated lock-free ring buffer.
+     */
+    public void setQueueType(String queueType)
+    {
+        this.queueType = queueType;
+    }
+
+    /** Returns the wait strategy for ring buffers. */
+    public String getWaitStrategy()
+    {
+        return waitStrategy;
+    }
+
+    /** Sets the wait strategy for ring buffers: spin, yield, or park. */
+    public void setWaitStrategy(String waitStrategy)
+    {
+        this.waitStrategy = waitStrategy;
+    }
+
     /** Sets the last header processed. This is required for restart. */
     public void setLastHeader(ReplDBMSHeader header)
     {
@@ -183,7 +212,7 @@ public class InMemoryQueueStore implements Store
      */
     public void prepare(PluginContext context) throws ReplicatorException
     {
-        queue = new LinkedBlockingQueue<ReplDBMSEvent>(maxSize);
+        queue = QueueFactory.createQueue(queueType, maxSize, waitStrategy);
     }
 
     /**
@@ -205,6 +234,7 @@ public class InMemoryQueueStore implements Store
         else
             props.setLong("storeSize", -1);
         props.setLong("maxSize", maxSize);
+        props.setString("queueType", queueType);
         props.setLong("eventCount", this.transactionCount);
         return props;
     }
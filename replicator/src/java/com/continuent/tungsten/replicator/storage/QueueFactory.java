@@ -0,0 +1,80 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.storage;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.continuent.tungsten.replicator.ReplicatorException;
+import com.continuent.tungsten.replicator.util.RingBufferQueue;
+
+/**
+ * Creates the queues that hold events in in-memory stores. Stores accept a
+ * queueType property to select the implementation and a waitStrategy property
+ * that applies to ring buffers.
+ *
+ * @version 1.0
+ */
+public class QueueFactory
+{
+    /** Queue type for a linked blocking queue, which is the default. */
+    public static final String LINKED = "linked";
+
+    /** Queue type for a preallocated lock-free ring buffer. */
+    public static final String RING   = "ring";
+
+    /**
+     * Creates a queue.
+     *
+     * @param queueType Either "linked" or "ring"
+     * @param maxSize Maximum number of elements in the queue
+     * @param waitStrategy Wait strategy for ring buffers, one of "spin",
+     *            "yield", or "park"
+     * @return A new queue
+     * @throws ReplicatorException Thrown if the queue type or wait strategy is
+     *             unknown
+     */
+    public static <E> BlockingQueue<E> createQueue(String queueType,
+            int maxSize, String waitStrategy) throws ReplicatorException
+    {
+        if (LINKED.equalsIgnoreCase(queueType))
+            return new LinkedBlockingQueue<E>(maxSize);
+        else if (RING.equalsIgnoreCase(queueType))
+            return new RingBufferQueue<E>(maxSize,
+                    getWaitStrategy(waitStrategy));
+        else
+            throw new ReplicatorException("Unknown queue type: " + queueType
+                    + " (must be " + LINKED + " or " + RING + ")");
+    }
+
+    // Look up a wait strategy by name.
+    private static RingBufferQueue.WaitStrategy getWaitStrategy(String name)
+            throws ReplicatorException
+    {
+        for (RingBufferQueue.WaitStrategy strategy : RingBufferQueue.WaitStrategy
+                .values())
+        {
+            if (strategy.name().equalsIgnoreCase(name))
+                return strategy;
+        }
+        throw new ReplicatorException("Unknown queue wait strategy: " + name
+                + " (must be spin, yield, or park)");
+    }
+}
@@ -0,0 +1,340 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.storage.parallel;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+
+import com.continuent.tungsten.commons.config.TungstenProperties;
+import com.continuent.tungsten.replicator.ReplicatorException;
+import com.continuent.tungsten.replicator.database.MySQLOperationMatcher;
+import com.continuent.tungsten.replicator.database.SqlOperation;
+import com.continuent.tungsten.replicator.database.SqlOperationMatcher;
+import com.continuent.tungsten.replicator.dbms.DBMSData;
+import com.continuent.tungsten.replicator.dbms.LoadDataFileFragment;
+import com.continuent.tungsten.replicator.dbms.OneRowChange;
+import com.continuent.tungsten.replicator.dbms.RowChangeData;
+import com.continuent.tungsten.replicator.dbms.RowIdData;
+import com.continuent.tungsten.replicator.dbms.StatementData;
+import com.continuent.tungsten.replicator.event.ReplDBMSEvent;
+import com.continuent.tungsten.replicator.event.ReplDBMSHeaderData;
+import com.continuent.tungsten.replicator.event.ReplOptionParams;
+
+/**
+ * Tracks the number of events in each channel of a parallel queue and
+ * implements critical sections. A critical event waits until the channels of
+ * the shards it touches are empty, then goes on its own channel. Events that
+ * follow on those channels wait until the channel of the critical event is
+ * empty. Other channels keep running. If the shards of a critical event are
+ * unknown, it waits for all channels as in a full serialization.
+ * <p/>
+ * The barrier records the time spent waiting in a histogram for each type
+ * of barrier. Stores call this class while holding their own lock on put
+ * operations. Methods are thread-safe.
+ * 
+ * @version 1.0
+ */
+public class ChannelBarrier
+{
+    private static Logger             logger          = Logger.getLogger(ChannelBarrier.class);
+
+    /** Critical event waits for all channels. */
+    public static final String        FULL            = "full";
+    /** Critical event waits for channels of the shards it touches. */
+    public static final String        SHARD           = "shard";
+    /** Event waits for a critical event on another channel. */
+    public static final String        RELEASE         = "release";
+
+    // Upper bounds of histogram buckets in milliseconds. A last bucket holds
+    // longer waits.
+    private static final long[]       BUCKET_MILLIS   = {1, 10, 100, 1000,
+            10000                                     };
+
+    private final int                 channels;
+    private final SqlOperationMatcher matcher         = new MySQLOperationMatcher();
+
+    // Events in each channel and in total.
+    private final long[]              sizes;
+    private long                      size            = 0;
+
+    // Channel of the current critical section and channels that its events
+    // touch, where null means all channels.
+    private int                       criticalChannel = -1;
+    private boolean[]                 touchedChannels;
+
+    // Wait counts, times, and histograms by barrier type.
+    private final Map<String, long[]> histograms      = new TreeMap<String, long[]>();
+    private final Map<String, Long>   waitMillis      = new TreeMap<String, Long>();
+
+    /**
+     * Creates a new barrier.
+     * 
+     * @param channels Number of channels
+     */
+    public ChannelBarrier(int channels)
+    {
+        this.channels = channels;
+        this.sizes = new long[channels];
+        for (String type : new String[]{FULL, SHARD, RELEASE})
+        {
+            histograms.put(type, new long[BUCKET_MILLIS.length + 1]);
+            waitMillis.put(type, new Long(0));
+        }
+    }
+
+    /** Records an event added to a channel. */
+    public synchronized void increment(int channel)
+    {
+        sizes[channel]++;
+        size++;
+        notifyAll();
+    }
+
+    /** Records an event removed from a channel. */
+    public synchronized void decrement(int channel)
+    {
+        sizes[channel]--;
+        size--;
+        notifyAll();
+    }
+
+    /** Returns the number of events in all channels. */
+    public synchronized long getSize()
+    {
+        return size;
+    }
+
+    /** Returns the channel of the current critical section or -1. */
+    public synchronized int getCriticalChannel()
+    {
+        clearDrainedCriticalSection();
+        return criticalChannel;
+    }
+
+    /**
+     * Waits until an event may go on a channel.
+     * 
+     * @param channel Channel on which the event goes
+     * @param critical If true, the event requires a critical section
+     * @param touched Channels of shards that a critical event touches or null
+     *            if they are unknown
+     * @return True if the event starts a new critical section
+     */
+    public synchronized boolean await(int channel, boolean critical,
+            boolean[] touched) throws InterruptedException
+    {
+        clearDrainedCriticalSection();
+        boolean[] waitChannels = new boolean[channels];
+        boolean startsSection = false;
+        String type = null;
+        if (critical)
+        {
+            // Wait for channels the event touches and any critical event on
+            // another channel.
+            startsSection = (criticalChannel != channel);
+            type = (touched == null) ? FULL : SHARD;
+            for (int i = 0; i < channels; i++)
+                waitChannels[i] = (touched == null || touched[i]);
+            if (criticalChannel >= 0)
+                waitChannels[criticalChannel] = true;
+        }
+        else if (criticalChannel >= 0 && criticalChannel != channel
+                && (touchedChannels == null || touchedChannels[channel]))
+        {
+            // Wait for the critical event on a channel this one depends on.
+            type = RELEASE;
+            waitChannels[criticalChannel] = true;
+        }
+
+        // The event's own channel keeps events in order, so only other
+        // channels need to drain.
+        waitChannels[channel] = false;
+        if (type != null)
+            waitForChannels(type, waitChannels);
+
+        // Update the critical section.
+        if (critical)
+        {
+            if (criticalChannel == channel && touchedChannels != null
+                    && touched != null)
+            {
+                for (int i = 0; i < channels; i++)
+                    touchedChannels[i] |= touched[i];
+            }
+            else if (criticalChannel == channel)
+                touchedChannels = null;
+            else
+                touchedChannels = (touched == null) ? null : touched.clone();
+            criticalChannel = channel;
+        }
+        else if (type != null)
+        {
+            criticalChannel = -1;
+            touchedChannels = null;
+        }
+        return startsSection;
+    }
+
+    /**
+     * Returns the channels of the shards that an event touches, or null if
+     * they are unknown. Shards are schemas, which come from parsed statements
+     * and row changes. Events on known shards other than #UNKNOWN return null
+     * as they are critical by configuration rather than due to their
+     * contents.
+     * 
+     * @param event Critical event
+     * @param partitioner Partitioner, which must assign channels by shard
+     * @param taskId Task ID for partitioning
+     */
+    public boolean[] getTouchedChannels(ReplDBMSEvent event,
+            Partitioner partitioner, int taskId) throws ReplicatorException
+    {
+        if (!(partitioner instanceof ShardPartitioner)
+                || !ReplOptionParams.SHARD_ID_UNKNOWN.equals(event
+                        .getShardId()))
+            return null;
+
+        boolean[] touched = new boolean[channels];
+        for (DBMSData data : event.getDBMSEvent().getData())
+        {
+            if (data instanceof StatementData)
+            {
+                StatementData statement = (StatementData) data;
+                SqlOperation op;
+                if (statement.getParsingMetadata() instanceof SqlOperation)
+                    op = (SqlOperation) statement.getParsingMetadata();
+                else
+                    op = matcher.match(statement.getQuery());
+                if (op.isGlobal()
+                        || op.getObjectType() == SqlOperation.UNRECOGNIZED)
+                    return null;
+                String schema = op.getSchema();
+                if (schema == null)
+                    schema = statement.getDefaultSchema();
+                if (!touch(touched, event, schema, partitioner, taskId))
+                    return null;
+            }
+            else if (data instanceof RowChangeData)
+            {
+                for (OneRowChange rowChange : ((RowChangeData) data)
+                        .getRowChanges())
+                {
+                    if (!touch(touched, event, rowChange.getSchemaName(),
+                            partitioner, taskId))
+                        return null;
+                }
+            }
+            else if (data instanceof LoadDataFileFragment)
+            {
+                if (!touch(touched, event, ((LoadDataFileFragment) data)
+                        .getDefaultSchema(), partitioner, taskId))
+                    return null;
+            }
+            else if (!(data instanceof RowIdData))
+                return null;
+        }
+        return touched;
+    }
+
+    /**
+     * Returns wait counts, times, and histograms by barrier type. Histograms
+     * list the number of waits up to 1, 10, 100, 1000, and 10000
+     * milliseconds, followed by longer waits.
+     */
+    public synchronized TungstenProperties status()
+    {
+        TungstenProperties props = new TungstenProperties();
+        for (String type : histograms.keySet())
+        {
+            long[] histogram = histograms.get(type);
+            long count = 0;
+            StringBuffer sb = new StringBuffer();
+            for (int i = 0; i < histogram.length; i++)
+            {
+                count += histogram[i];
+                if (i > 0)
+                    sb.append(",");
+                sb.append(histogram[i]);
+            }
+            props.setLong("barrier." + type + ".count", count);
+            props.setDouble("barrier." + type + ".waitSeconds", waitMillis
+                    .get(type) / 1000.0);
+            props.setString("barrier." + type + ".histogram", sb.toString());
+        }
+        return props;
+    }
+
+    // Marks the channel of a shard as touched. Returns false if the shard is
+    // unknown.
+    private boolean touch(boolean[] touched, ReplDBMSEvent event,
+            String shardId, Partitioner partitioner, int taskId)
+            throws ReplicatorException
+    {
+        if (shardId == null
+                || ReplOptionParams.SHARD_ID_UNKNOWN.equals(shardId))
+            return false;
+        ReplDBMSHeaderData header = new ReplDBMSHeaderData(event.getSeqno(),
+                event.getFragno(), event.getLastFrag(), event.getSourceId(),
+                event.getEpochNumber(), event.getEventId(), shardId, event
+                        .getExtractedTstamp());
+        PartitionerResponse response = partitioner.partition(header, taskId);
+        if (response.isCritical())
+            return false;
+        touched[response.getPartition()] = true;
+        return true;
+    }
+
+    // Ends the critical section once its channel is empty.
+    private void clearDrainedCriticalSection()
+    {
+        if (criticalChannel >= 0 && sizes[criticalChannel] <= 0)
+        {
+            criticalChannel = -1;
+            touchedChannels = null;
+        }
+    }
+
+    // Waits until channels are empty and records the wait.
+    private void waitForChannels(String type, boolean[] waitChannels)
+            throws InterruptedException
+    {
+        long startMillis = System.currentTimeMillis();
+        for (int i = 0; i < channels; i++)
+        {
+            if (logger.isDebugEnabled() && waitChannels[i] && sizes[i] > 0)
+            {
+                logger.debug("Waiting for channel to empty: type=" + type
+                        + " channel=" + i + " size=" + sizes[i]);
+            }
+            while (waitChannels[i] && sizes[i] > 0)
+                wait();
+        }
+        long millis = System.currentTimeMillis() - startMillis;
+
+        long[] histogram = histograms.get(type);
+        int bucket = 0;
+        while (bucket < BUCKET_MILLIS.length && millis > BUCKET_MILLIS[bucket])
+            bucket++;
+        histogram[bucket]++;
+        waitMillis.put(type, waitMillis.get(type) + millis);
+    }
+}
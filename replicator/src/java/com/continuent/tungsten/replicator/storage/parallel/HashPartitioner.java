@@ -34,7 +34,7 @@ import com.continuent.tungsten.replicator.plugin.PluginContext;
  * @author <a href="mailto:robert.hodges@continuent.com">Robert Hodges</a>
  * @version 1.0
  */
-public class HashPartitioner implements Partitioner
+public class HashPartitioner implements ShardPartitioner
 {
     private int availablePartitions;
 
@@ -0,0 +1,386 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.storage.parallel;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import com.continuent.tungsten.commons.config.TungstenProperties;
+import com.continuent.tungsten.replicator.ReplicatorException;
+import com.continuent.tungsten.replicator.channel.ChannelAssignmentService;
+import com.continuent.tungsten.replicator.conf.ReplicatorRuntime;
+import com.continuent.tungsten.replicator.event.ReplDBMSEvent;
+import com.continuent.tungsten.replicator.event.ReplDBMSHeader;
+import com.continuent.tungsten.replicator.event.ReplOptionParams;
+import com.continuent.tungsten.replicator.pipeline.Pipeline;
+import com.continuent.tungsten.replicator.pipeline.ShardProgress;
+import com.continuent.tungsten.replicator.pipeline.Stage;
+import com.continuent.tungsten.replicator.plugin.PluginContext;
+import com.continuent.tungsten.replicator.service.PipelineService;
+
+/**
+ * Partitions events by shard and moves shards between channels to balance
+ * load. New shards receive persistent round-robin assignments from the
+ * channel-assignment service. Every rebalanceInterval transactions the
+ * partitioner measures the load of each channel as the time spent applying
+ * its shards since the previous check, or as the number of transactions
+ * routed to them if apply times are not available. If the busiest channel
+ * exceeds the mean load by more than maxImbalance, the partitioner moves one
+ * shard from the busiest to the least busy channel.
+ * <p/>
+ * Only shards without backlog move, meaning every channel has committed past
+ * the last transaction of the shard. The old channel has therefore applied
+ * and committed all of the shard's transactions, which preserves ordering
+ * within the shard, and no channel can restart from a position that replays
+ * them. Moves are stored in the channel-assignment table before they take
+ * effect and apply from the transaction after the one being partitioned, as
+ * THL read tasks may already have partitioned that transaction.
+ * 
+ * @version 1.0
+ */
+public class LoadBalancingPartitioner implements Partitioner
+{
+    private static Logger                    logger            = Logger.getLogger(LoadBalancingPartitioner.class);
+
+    private int                              availablePartitions;
+    private int                              rebalanceInterval = 1000;
+    private double                           maxImbalance      = 1.5;
+
+    // Control fields.
+    private PluginContext                    context;
+    private ChannelAssignmentService         channelAssignmentService;
+    private HashMap<String, ShardAssignment> shards;
+    private long                             transactionCount  = 0;
+    private long                             moveCount         = 0;
+    private double                           imbalance         = 1.0;
+
+    // Channel assignment of a shard. Transactions before effectiveSeqno
+    // belong to the previous channel.
+    private static class ShardAssignment
+    {
+        int  channel;
+        int  previousChannel;
+        long effectiveSeqno = -1;
+        long lastSeqno      = -1;
+        long transactions   = 0;
+        long applyMillis    = 0;
+        long load           = 0;
+
+        ShardAssignment(int channel)
+        {
+            this.channel = channel;
+            this.previousChannel = channel;
+        }
+
+        int getChannel(long seqno)
+        {
+            return (seqno >= effectiveSeqno) ? channel : previousChannel;
+        }
+    }
+
+    /**
+     * Create new instance of partitioner.
+     */
+    public LoadBalancingPartitioner()
+    {
+    }
+
+    /**
+     * Sets the number of transactions between checks of channel load.
+     */
+    public synchronized void setRebalanceInterval(int rebalanceInterval)
+    {
+        this.rebalanceInterval = rebalanceInterval;
+    }
+
+    /**
+     * Sets the ratio of busiest channel load to mean channel load above which
+     * shards are moved.
+     */
+    public synchronized void setMaxImbalance(double maxImbalance)
+    {
+        this.maxImbalance = maxImbalance;
+    }
+
+    /**
+     * Sets the service that stores shard assignments. If not set, the
+     * partitioner looks up the channel-assignment service on first use.
+     */
+    public synchronized void setChannelAssignmentService(
+            ChannelAssignmentService channelAssignmentService)
+    {
+        this.channelAssignmentService = channelAssignmentService;
+    }
+
+    /** Returns the number of shards moved between channels. */
+    public synchronized long getMoveCount()
+    {
+        return moveCount;
+    }
+
+    /**
+     * Returns the ratio of busiest channel load to mean channel load at the
+     * last check.
+     */
+    public synchronized double getImbalance()
+    {
+        return imbalance;
+    }
+
+    /**
+     * Returns balancing statistics for display in the status of the store
+     * that uses this partitioner.
+     */
+    public synchronized TungstenProperties status()
+    {
+        TungstenProperties props = new TungstenProperties();
+        props.setInt("partitioner.rebalanceInterval", rebalanceInterval);
+        props.setDouble("partitioner.maxImbalance", maxImbalance);
+        props.setDouble("partitioner.imbalance", imbalance);
+        props.setLong("partitioner.moveCount", moveCount);
+        props.setInt("partitioner.shards", shards == null ? 0 : shards.size());
+        return props;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see com.continuent.tungsten.replicator.storage.parallel.Partitioner#setPartitions(int)
+     */
+    public synchronized void setPartitions(int availablePartitions)
+    {
+        this.availablePartitions = availablePartitions;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see com.continuent.tungsten.replicator.storage.parallel.Partitioner#setContext(com.continuent.tungsten.replicator.plugin.PluginContext)
+     */
+    public synchronized void setContext(PluginContext context)
+    {
+        this.context = context;
+    }
+
+    /**
+     * Assigns the event to the current channel of its shard. Stores call this
+     * method with full events once per transaction, which is when load is
+     * counted and shards may move. THL read tasks partition headers again to
+     * filter events and only look up assignments. {@inheritDoc}
+     * 
+     * @see com.continuent.tungsten.replicator.storage.parallel.Partitioner#partition(com.continuent.tungsten.replicator.event.ReplDBMSHeader,
+     *      int)
+     */
+    public synchronized PartitionerResponse partition(ReplDBMSHeader event,
+            int taskId) throws ReplicatorException
+    {
+        // Initialize on first call.
+        if (shards == null)
+            initialize();
+
+        // Find the shard, assigning a channel if it is new.
+        String shardId = event.getShardId();
+        ShardAssignment shard = shards.get(shardId);
+        if (shard == null)
+        {
+            Integer channel = channelAssignmentService
+                    .getChannelAssignment(shardId);
+            shard = new ShardAssignment(channel);
+            shards.put(shardId, shard);
+        }
+        int partition = shard.getChannel(event.getSeqno());
+
+        // Count load and rebalance on whole transactions from the store.
+        if (event instanceof ReplDBMSEvent)
+        {
+            shard.lastSeqno = event.getSeqno();
+            if (event.getLastFrag())
+            {
+                shard.transactions++;
+                if (++transactionCount >= rebalanceInterval)
+                {
+                    transactionCount = 0;
+                    rebalance(event.getSeqno());
+                }
+            }
+        }
+
+        // Compute whether this is a critical shard.
+        boolean critical = ReplOptionParams.SHARD_ID_UNKNOWN.equals(shardId);
+
+        return new PartitionerResponse(partition, critical);
+    }
+
+    /**
+     * Returns the minimum seqno committed by all channels. Shards whose last
+     * transaction is below this value have no backlog.
+     */
+    protected long getCommittedSeqno()
+    {
+        return context.getCommittedSeqno();
+    }
+
+    /**
+     * Returns the total apply time of each shard in milliseconds as measured
+     * by the tasks that apply events from the store.
+     */
+    protected Map<String, Long> getShardApplyMillis()
+    {
+        Map<String, Long> applyMillis = new HashMap<String, Long>();
+        if (context instanceof ReplicatorRuntime)
+        {
+            // Shard progress comes from the end of the pipeline. Go to the
+            // progress tracker directly as pipeline and stage methods hold
+            // locks that shutdown also takes.
+            Pipeline pipeline = ((ReplicatorRuntime) context).getPipeline();
+            if (pipeline != null && pipeline.getStages().size() > 0)
+            {
+                List<Stage> stages = pipeline.getStages();
+                Stage lastStage = stages.get(stages.size() - 1);
+                for (ShardProgress progress : lastStage.getProgressTracker()
+                        .getShardProgress())
+                {
+                    applyMillis.put(progress.getShardId(),
+                            progress.getApplyMillis());
+                }
+            }
+        }
+        return applyMillis;
+    }
+
+    // Measures channel load since the last check and moves a shard from the
+    // busiest to the least busy channel if the imbalance is too high.
+    private void rebalance(long seqno) throws ReplicatorException
+    {
+        // Compute shard loads, preferring apply times if we have them.
+        Map<String, Long> applyMillis = getShardApplyMillis();
+        long totalApplyMillis = 0;
+        for (Map.Entry<String, ShardAssignment> entry : shards.entrySet())
+        {
+            ShardAssignment shard = entry.getValue();
+            Long shardApplyMillis = applyMillis.get(entry.getKey());
+            if (shardApplyMillis != null)
+            {
+                shard.load = Math.max(shardApplyMillis - shard.applyMillis, 0);
+                shard.applyMillis = shardApplyMillis;
+                totalApplyMillis += shard.load;
+            }
+            else
+                shard.load = 0;
+        }
+
+        long[] channelLoad = new long[availablePartitions];
+        long totalLoad = 0;
+        for (ShardAssignment shard : shards.values())
+        {
+            if (totalApplyMillis == 0)
+                shard.load = shard.transactions;
+            shard.transactions = 0;
+            if (shard.channel < availablePartitions)
+            {
+                channelLoad[shard.channel] += shard.load;
+                totalLoad += shard.load;
+            }
+        }
+        if (totalLoad == 0 || availablePartitions < 2)
+            return;
+
+        // Find the busiest and least busy channels.
+        int hot = 0;
+        int cold = 0;
+        for (int i = 1; i < availablePartitions; i++)
+        {
+            if (channelLoad[i] > channelLoad[hot])
+                hot = i;
+            if (channelLoad[i] < channelLoad[cold])
+                cold = i;
+        }
+        double meanLoad = (double) totalLoad / availablePartitions;
+        imbalance = channelLoad[hot] / meanLoad;
+        if (imbalance <= maxImbalance)
+            return;
+
+        // Pick the busiest shard without backlog whose move narrows the gap
+        // between the two channels.
+        long committedSeqno = getCommittedSeqno();
+        long gap = channelLoad[hot] - channelLoad[cold];
+        String moveShardId = null;
+        ShardAssignment moveShard = null;
+        for (Map.Entry<String, ShardAssignment> entry : shards.entrySet())
+        {
+            ShardAssignment shard = entry.getValue();
+            if (shard.channel != hot || shard.load == 0 || shard.load >= gap
+                    || shard.lastSeqno >= committedSeqno)
+                continue;
+            if (ReplOptionParams.SHARD_ID_UNKNOWN.equals(entry.getKey()))
+                continue;
+            if (moveShard == null || shard.load > moveShard.load)
+            {
+                moveShardId = entry.getKey();
+                moveShard = shard;
+            }
+        }
+        if (moveShard == null)
+        {
+            if (logger.isDebugEnabled())
+                logger.debug("No shard can move to balance channels: hot="
+                        + hot + " cold=" + cold + " imbalance=" + imbalance);
+            return;
+        }
+
+        // Store the move, then apply it from the next transaction.
+        channelAssignmentService.updateChannelAssignment(moveShardId, cold);
+        moveShard.previousChannel = moveShard.channel;
+        moveShard.channel = cold;
+        moveShard.effectiveSeqno = seqno + 1;
+        moveCount++;
+        logger.info("Moved shard to balance channel load: shardId="
+                + moveShardId + " from=" + hot + " to=" + cold
+                + " imbalance=" + imbalance + " effectiveSeqno="
+                + moveShard.effectiveSeqno);
+    }
+
+    // Load the channel-assignment service.
+    private void initialize() throws ReplicatorException
+    {
+        shards = new HashMap<String, ShardAssignment>();
+        if (channelAssignmentService != null)
+            return;
+
+        PipelineService svc = context.getService("channel-assignment");
+        if (svc == null)
+        {
+            throw new ReplicatorException(
+                    "Unable to find required channel-assignment service to manage channels");
+        }
+        else if (!(svc instanceof ChannelAssignmentService))
+        {
+            throw new ReplicatorException(
+                    "Incorrect class type for channel-assignment service: required="
+                            + ChannelAssignmentService.class.getName()
+                            + " actual=" + svc.getClass().getName());
+        }
+        channelAssignmentService = (ChannelAssignmentService) svc;
+        logger.info("Channel assignment service loaded: " + svc.getName());
+    }
+}
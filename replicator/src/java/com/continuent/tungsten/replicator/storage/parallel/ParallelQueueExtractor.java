@@ -29,6 +29,7 @@ import com.continuent.tungsten.replicator.event.ReplControlEvent;
 import com.continuent.tungsten.replicator.event.ReplDBMSEvent;
 import com.continuent.tungsten.replicator.event.ReplDBMSHeader;
 import com.continuent.tungsten.replicator.event.ReplEvent;
+import com.continuent.tungsten.replicator.extractor.BacklogProvider;
 import com.continuent.tungsten.replicator.extractor.ExtractorException;
 import com.continuent.tungsten.replicator.extractor.ParallelExtractor;
 import com.continuent.tungsten.replicator.plugin.PluginContext;
@@ -40,7 +41,10 @@ import com.continuent.tungsten.replicator.plugin.PluginContext;
  * @version 1.0
  */
 
-public class ParallelQueueExtractor implements ParallelExtractor
+public class ParallelQueueExtractor
+        implements
+            ParallelExtractor,
+            BacklogProvider
 {
     private static Logger      logger    = Logger.getLogger(ParallelQueueExtractor.class);
 
@@ -156,6 +160,16 @@ public class ParallelQueueExtractor implements ParallelExtractor
         return parallelQueue.size(taskId) > 0;
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * @see com.continuent.tungsten.replicator.extractor.BacklogProvider#getBacklog()
+     */
+    public long getBacklog()
+    {
+        return parallelQueue.size(taskId);
+    }
+
     /**
      * {@inheritDoc}
      * 
@@ -24,6 +24,7 @@ package com.continuent.tungsten.replicator.storage.parallel;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import org.apache.log4j.Logger;
@@ -39,7 +40,7 @@ import com.continuent.tungsten.replicator.event.ReplEvent;
 import com.continuent.tungsten.replicator.event.ReplOptionParams;
 import com.continuent.tungsten.replicator.plugin.PluginContext;
 import com.continuent.tungsten.replicator.storage.ParallelStore;
-import com.continuent.tungsten.replicator.util.AtomicCounter;
+import com.continuent.tungsten.replicator.storage.QueueFactory;
 import com.continuent.tungsten.replicator.util.WatchPredicate;
 
 /**
@@ -53,7 +54,7 @@ public class ParallelQueueStore implements ParallelStore
 {
     private static Logger                                       logger             = Logger.getLogger(ParallelQueueStore.class);
     private String                                              name;
-    private List<LinkedBlockingQueue<ReplEvent>>                queues;
+    private List<BlockingQueue<ReplEvent>>                      queues;
     private ReplDBMSHeader[]                                    lastHeaders;
     private ReplDBMSEvent                                       lastInsertedEvent;
 
@@ -76,6 +77,8 @@ public class ParallelQueueStore implements ParallelStore
     private int                                                 partitions         = 1;
     private boolean                                             syncEnabled        = true;
     private int                                                 syncInterval       = 100;
+    private String                                              queueType          = QueueFactory.LINKED;
+    private String                                              waitStrategy       = "park";
 
     // Counter to force synchronization events at intervals so all queues remain
     // up-to-date.
@@ -83,9 +86,7 @@ public class ParallelQueueStore implements ParallelStore
 
     // Control information for event serialization to support dependent shard
     // processing.
-    private int                                                 criticalPartition  = -1;
-    private AtomicCounter                                       activeSize         = new AtomicCounter(
-                                                                                           0);
+    private ChannelBarrier                                      barrier;
 
     public String getName()
     {
@@ -174,6 +175,33 @@ public class ParallelQueueStore implements ParallelStore
         this.syncEnabled = syncEnabled;
     }
 
+    /** Returns the queue implementation. */
+    public String getQueueType()
+    {
+        return queueType;
+    }
+
+    /**
+     * Sets the queue implementation, either "linked" for a linked blocking
+     * queue or "ring" for a preallocated lock-free ring buffer.
+     */
+    public void setQueueType(String queueType)
+    {
+        this.queueType = queueType;
+    }
+
+    /** Returns the wait strategy for ring buffers. */
+    public String getWaitStrategy()
+    {
+        return waitStrategy;
+    }
+
+    /** Sets the wait strategy for ring buffers: spin, yield, or park. */
+    public void setWaitStrategy(String waitStrategy)
+    {
+        this.waitStrategy = waitStrategy;
+    }
+
     /** No-op method to preserve interface compability with THLParallelQueue. */
     public void setMaxOfflineInterval(int maxOfflineInterval)
     {
@@ -184,7 +212,7 @@ public class ParallelQueueStore implements ParallelStore
      */
     public long getStoreSize()
     {
-        return activeSize.getSeqno();
+        return barrier.getSize();
     }
 
     /** Sets the last header processed. This is required for restart. */
@@ -242,41 +270,31 @@ public class ParallelQueueStore implements ParallelStore
             return;
         }
 
-        // Partition the event. Handle critical sections by "blocking to zero"
-        // under the following circumstances:
-        // 1.) Event is critical and we are not in a critical section.
-        // 2.) We are in a critical section but the shard ID has changed.
-        // 3.) Event is not critical and we are in a critical section.
+        // Partition the event. Critical events wait until the channels of
+        // the shards they touch are empty. Events that follow on those
+        // channels wait until the critical event has been taken.
         PartitionerResponse response = partitioner.partition(event, taskId);
-        if (response.isCritical()
-                && (criticalPartition != response.getPartition()))
+        boolean[] touched = null;
+        if (response.isCritical())
+            touched = barrier.getTouchedChannels(event, partitioner, taskId);
+        if (barrier.await(response.getPartition(), response.isCritical(),
+                touched))
         {
-            // Covers cases 1 & 2. We have to serialize here.
             serializationCount++;
-            blockToZero();
-            criticalPartition = response.getPartition();
             if (logger.isDebugEnabled())
             {
                 logger.debug("Enabling critical partition: partition="
-                        + criticalPartition + " seqno=" + event.getSeqno());
-            }
-        }
-        else if (!response.isCritical() && criticalPartition > 0)
-        {
-            // Covers case 3.
-            blockToZero();
-            criticalPartition = -1;
-            if (logger.isDebugEnabled())
-            {
-                logger.debug("Ending critical partition: seqno="
-                        + event.getSeqno());
+                        + response.getPartition() + " seqno="
+                        + event.getSeqno() + " shardsKnown="
+                        + (touched != null));
             }
         }
 
         // Add event to the queue, increment the active store size, and remember
         // the event.
         queues.get(response.getPartition()).put(event);
-        long size = activeSize.incrAndGetSeqno();
+        barrier.increment(response.getPartition());
+        long size = barrier.getSize();
         transactionCount++;
         if (logger.isDebugEnabled())
         {
@@ -349,12 +367,6 @@ public class ParallelQueueStore implements ParallelStore
         }
     }
 
-    // Block until all queues are empty.
-    private void blockToZero() throws InterruptedException
-    {
-        activeSize.waitSeqnoLessEqual(0);
-    }
-
     // Inserts a control event in all queues.
     private void putControlEvent(int type, ReplDBMSEvent event)
             throws InterruptedException
@@ -366,10 +378,10 @@ public class ParallelQueueStore implements ParallelStore
             ctrlSeqno = event.getSeqno();
         ReplControlEvent ctrl = new ReplControlEvent(type, ctrlSeqno, event);
 
-        for (LinkedBlockingQueue<ReplEvent> queue : queues)
+        for (int i = 0; i < queues.size(); i++)
         {
-            queue.put(ctrl);
-            activeSize.incrAndGetSeqno();
+            queues.get(i).put(ctrl);
+            barrier.increment(i);
         }
     }
 
@@ -381,7 +393,8 @@ public class ParallelQueueStore implements ParallelStore
     {
         assertTaskIdWithinRange(taskId);
         ReplEvent event = queues.get(taskId).take();
-        long size = activeSize.decrAndGetSeqno();
+        barrier.decrement(taskId);
+        long size = barrier.getSize();
         if (logger.isDebugEnabled())
         {
             if (event instanceof ReplDBMSEvent)
@@ -447,8 +460,9 @@ public class ParallelQueueStore implements ParallelStore
 
         // Instantiate queue list, followed by array of last sequence numbers to
         // permit propagation of restart points from each output task.
-        queues = new ArrayList<LinkedBlockingQueue<ReplEvent>>(partitions);
+        queues = new ArrayList<BlockingQueue<ReplEvent>>(partitions);
         lastHeaders = new ReplDBMSHeader[partitions];
+        barrier = new ChannelBarrier(partitions);
         this.watchPredicates = new LinkedBlockingQueue<WatchPredicate<ReplDBMSHeader>>();
     }
 
@@ -463,7 +477,9 @@ public class ParallelQueueStore implements ParallelStore
         // Create queues.
         for (int i = 0; i < partitions; i++)
         {
-            queues.add(new LinkedBlockingQueue<ReplEvent>(maxSize));
+            BlockingQueue<ReplEvent> queue = QueueFactory.createQueue(
+                    queueType, maxSize, waitStrategy);
+            queues.add(queue);
         }
     }
 
@@ -525,12 +541,17 @@ public class ParallelQueueStore implements ParallelStore
         props.setLong("eventCount", transactionCount);
         props.setLong("discardCount", discardCount);
         props.setInt("queues", partitions);
+        props.setString("queueType", queueType);
         props.setBoolean("syncEnabled", syncEnabled);
         props.setInt("syncInterval", syncInterval);
-        props.setBoolean("serialized", this.criticalPartition >= 0);
+        int criticalPartition = barrier.getCriticalChannel();
+        props.setBoolean("serialized", criticalPartition >= 0);
         props.setLong("serializationCount", serializationCount);
         props.setBoolean("stopRequested", stopRequested);
         props.setInt("criticalPartition", criticalPartition);
+        props.putAll(barrier.status());
+        if (partitioner instanceof LoadBalancingPartitioner)
+            props.putAll(((LoadBalancingPartitioner) partitioner).status());
         props.setString("partitionerClass", partitionerClass);
         for (int i = 0; i < queues.size(); i++)
         {
@@ -0,0 +1,377 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+
+package com.continuent.tungsten.replicator.storage.parallel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import com.continuent.tungsten.replicator.ReplicatorException;
+import com.continuent.tungsten.replicator.conf.ReplicatorRuntime;
+import com.continuent.tungsten.replicator.dbms.ColumnarRowValues;
+import com.continuent.tungsten.replicator.dbms.DBMSData;
+import com.continuent.tungsten.replicator.dbms.OneRowChange;
+import com.continuent.tungsten.replicator.dbms.OneRowChange.ColumnSpec;
+import com.continuent.tungsten.replicator.dbms.OneRowChange.ColumnVal;
+import com.continuent.tungsten.replicator.dbms.RowChangeData;
+import com.continuent.tungsten.replicator.event.ReplDBMSEvent;
+import com.continuent.tungsten.replicator.event.ReplDBMSHeader;
+import com.continuent.tungsten.replicator.event.ReplOptionParams;
+import com.continuent.tungsten.replicator.pipeline.Pipeline;
+import com.continuent.tungsten.replicator.pipeline.Stage;
+import com.continuent.tungsten.replicator.plugin.PluginContext;
+
+/**
+ * Partitions row events by the keys of the rows they change, so that
+ * transactions on a single shard can apply in parallel. Each row key, i.e.,
+ * schema, table, and the values of the key columns, hashes to a key channel.
+ * A transaction whose keys all hash to the same channel goes to that channel,
+ * which applies transactions on the same rows in commit order. A transaction
+ * whose keys hash to several channels goes to the channel of its first key
+ * and waits until the other channels have committed earlier transactions on
+ * those keys. Transactions that later touch its keys on other channels wait
+ * in turn until it commits.
+ * <p/>
+ * Transactions whose keys are unknown are critical and wait for all channels.
+ * This covers statements, row changes without key columns, fragmented
+ * transactions, and transactions on the #UNKNOWN shard. Inserts have key
+ * columns only if PrimaryKeyFilter runs upstream with addPkeyToInserts=true,
+ * which also reduces keys to primary key columns.
+ * <p/>
+ * Channels depend only on the contents of each transaction, so tasks restart
+ * correctly from their own positions in trep_commit_seqno. Only primary keys
+ * count as conflicts. Do not use this partitioner for tables with other
+ * unique keys or foreign keys, as transactions that conflict on them may
+ * apply out of order. This partitioner requires full events and works only
+ * with ParallelQueueStore.
+ * 
+ * @version 1.0
+ */
+public class RowKeyPartitioner implements Partitioner
+{
+    private static Logger logger          = Logger.getLogger(RowKeyPartitioner.class);
+
+    private PluginContext context;
+    private int           availablePartitions;
+    private long          waitMillis      = 10;
+
+    // Last seqno to touch keys of each key channel and the channel to which
+    // it went.
+    private long[]        lastSeqno;
+    private int[]         lastChannel;
+
+    // Statistics.
+    private long          conflictCount   = 0;
+    private long          criticalCount   = 0;
+
+    /**
+     * Sets the interval at which to check whether other channels have
+     * committed transactions that a conflicting transaction waits for.
+     */
+    public synchronized void setWaitMillis(long waitMillis)
+    {
+        this.waitMillis = waitMillis;
+    }
+
+    /**
+     * Returns the number of transactions that waited for other channels due
+     * to conflicting keys.
+     */
+    public synchronized long getConflictCount()
+    {
+        return conflictCount;
+    }
+
+    /**
+     * Returns the number of transactions whose keys are unknown.
+     */
+    public synchronized long getCriticalCount()
+    {
+        return criticalCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see com.continuent.tungsten.replicator.storage.parallel.Partitioner#setPartitions(int)
+     */
+    public synchronized void setPartitions(int availablePartitions)
+    {
+        this.availablePartitions = availablePartitions;
+        lastSeqno = new long[availablePartitions];
+        lastChannel = new int[availablePartitions];
+        Arrays.fill(lastSeqno, -1);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see com.continuent.tungsten.replicator.storage.parallel.Partitioner#setContext(com.continuent.tungsten.replicator.plugin.PluginContext)
+     */
+    public synchronized void setContext(PluginContext context)
+    {
+        this.context = context;
+    }
+
+    /**
+     * Assigns the event to a channel based on its row keys and waits until
+     * other channels have committed earlier transactions on the same keys.
+     * If interrupted while waiting, returns with the interrupt flag set so
+     * that the caller's next blocking call fails. {@inheritDoc}
+     * 
+     * @see com.continuent.tungsten.replicator.storage.parallel.Partitioner#partition(com.continuent.tungsten.replicator.event.ReplDBMSHeader,
+     *      int)
+     */
+    public synchronized PartitionerResponse partition(ReplDBMSHeader event,
+            int taskId) throws ReplicatorException
+    {
+        if (!(event instanceof ReplDBMSEvent))
+            throw new ReplicatorException(
+                    "Row key partitioning requires full events; "
+                            + "use ParallelQueueStore: seqno="
+                            + event.getSeqno());
+
+        // Find the key channels that the event touches. A null value means
+        // keys are unknown, so the event touches all of them.
+        String shardId = event.getShardId();
+        List<Integer> keyChannels = null;
+        if (event.getFragno() == 0 && event.getLastFrag()
+                && !ReplOptionParams.SHARD_ID_UNKNOWN.equals(shardId))
+        {
+            keyChannels = getKeyChannels((ReplDBMSEvent) event);
+        }
+
+        // Choose the channel.
+        int partition;
+        boolean critical;
+        if (keyChannels == null)
+        {
+            partition = (shardId.hashCode() & Integer.MAX_VALUE)
+                    % availablePartitions;
+            critical = true;
+            if (event.getFragno() == 0)
+                criticalCount++;
+        }
+        else if (keyChannels.size() == 0)
+        {
+            partition = (shardId.hashCode() & Integer.MAX_VALUE)
+                    % availablePartitions;
+            critical = false;
+        }
+        else
+        {
+            partition = keyChannels.get(0);
+            critical = false;
+        }
+
+        // Wait for conflicting transactions on other channels, then record
+        // this event as the last to touch its key channels.
+        boolean conflict = false;
+        for (int keyChannel = 0; keyChannel < availablePartitions; keyChannel++)
+        {
+            if (keyChannels != null && !keyChannels.contains(keyChannel))
+                continue;
+            long seqno = lastSeqno[keyChannel];
+            int channel = lastChannel[keyChannel];
+            if (seqno >= 0 && seqno != event.getSeqno() && channel != partition)
+            {
+                conflict = true;
+                if (!waitForCommit(channel, seqno))
+                    break;
+            }
+            lastSeqno[keyChannel] = event.getSeqno();
+            lastChannel[keyChannel] = partition;
+        }
+        if (conflict)
+        {
+            conflictCount++;
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Waited for conflicting transactions: seqno="
+                        + event.getSeqno() + " partition=" + partition);
+            }
+        }
+
+        return new PartitionerResponse(partition, critical);
+    }
+
+    /**
+     * Returns the last seqno committed by a channel, including transactions
+     * committed before the pipeline started. Channels are tasks of the last
+     * stage, which reads from the store.
+     */
+    protected long getCommittedSeqno(int channel)
+    {
+        if (context instanceof ReplicatorRuntime)
+        {
+            // Go to the progress tracker directly as pipeline and stage
+            // methods hold locks that shutdown also takes.
+            Pipeline pipeline = ((ReplicatorRuntime) context).getPipeline();
+            if (pipeline != null && pipeline.getStages().size() > 0)
+            {
+                List<Stage> stages = pipeline.getStages();
+                Stage lastStage = stages.get(stages.size() - 1);
+                return lastStage.getProgressTracker()
+                        .getCommittedSeqno(channel);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    // Waits until a channel commits a seqno. Returns false if interrupted,
+    // leaving the interrupt flag set.
+    private boolean waitForCommit(int channel, long seqno)
+    {
+        try
+        {
+            while (getCommittedSeqno(channel) < seqno)
+                Thread.sleep(waitMillis);
+            return true;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Returns the key channels of the rows of an event in order of first
+    // appearance or null if any row lacks keys.
+    private List<Integer> getKeyChannels(ReplDBMSEvent event)
+    {
+        List<Integer> keyChannels = new ArrayList<Integer>();
+        for (DBMSData data : event.getDBMSEvent().getData())
+        {
+            if (!(data instanceof RowChangeData))
+                return null;
+            for (OneRowChange rowChange : ((RowChangeData) data)
+                    .getRowChanges())
+            {
+                if (!addKeyChannels(rowChange, keyChannels))
+                    return null;
+            }
+        }
+        return keyChannels;
+    }
+
+    // Adds the key channels of the before and after images of rows. Key
+    // values hold before images in key column order. After images of key
+    // columns are found in column values by column index. Returns false if
+    // keys are unknown.
+    private boolean addKeyChannels(OneRowChange rowChange,
+            List<Integer> keyChannels)
+    {
+        List<ColumnSpec> keySpec = rowChange.getKeySpec();
+        if (keySpec == null || keySpec.size() == 0)
+            return false;
+        int tableHash = rowChange.getSchemaName().hashCode() * 31
+                + rowChange.getTableName().hashCode();
+
+        // Before images.
+        int[] keyColumns = new int[keySpec.size()];
+        for (int i = 0; i < keyColumns.length; i++)
+            keyColumns[i] = i;
+        ColumnarRowValues columnarKeyValues = rowChange.getColumnarKeyValues();
+        if (columnarKeyValues == null)
+            addKeyChannels(tableHash, keyColumns, rowChange.getKeyValues(),
+                    keyChannels);
+        else
+            addKeyChannels(tableHash, keyColumns, columnarKeyValues,
+                    keyChannels);
+
+        // After images, if the change has them.
+        ColumnarRowValues columnarValues = rowChange.getColumnarColumnValues();
+        int rows = (columnarValues == null) ? rowChange.getColumnValues()
+                .size() : columnarValues.getRowCount();
+        if (rows > 0)
+        {
+            List<ColumnSpec> columnSpec = rowChange.getColumnSpec();
+            for (int i = 0; i < keyColumns.length; i++)
+            {
+                keyColumns[i] = -1;
+                int index = keySpec.get(i).getIndex();
+                for (int col = 0; col < columnSpec.size(); col++)
+                {
+                    if (columnSpec.get(col).getIndex() == index)
+                        keyColumns[i] = col;
+                }
+                if (keyColumns[i] < 0)
+                    return false;
+            }
+            if (columnarValues == null)
+                addKeyChannels(tableHash, keyColumns, rowChange
+                        .getColumnValues(), keyChannels);
+            else
+                addKeyChannels(tableHash, keyColumns, columnarValues,
+                        keyChannels);
+        }
+        return true;
+    }
+
+    // Adds the key channels of rows held in lists.
+    private void addKeyChannels(int tableHash, int[] keyColumns,
+            ArrayList<ArrayList<ColumnVal>> values, List<Integer> keyChannels)
+    {
+        for (ArrayList<ColumnVal> row : values)
+        {
+            int hash = tableHash;
+            for (int col : keyColumns)
+                hash = hash * 31 + hashValue(row.get(col).getValue());
+            addKeyChannel(hash, keyChannels);
+        }
+    }
+
+    // Adds the key channels of rows held in columnar values, which are read
+    // without converting them to lists.
+    private void addKeyChannels(int tableHash, int[] keyColumns,
+            ColumnarRowValues values, List<Integer> keyChannels)
+    {
+        int rows = values.getRowCount();
+        for (int row = 0; row < rows; row++)
+        {
+            int hash = tableHash;
+            for (int col : keyColumns)
+                hash = hash * 31 + hashValue(values.getObject(row, col));
+            addKeyChannel(hash, keyChannels);
+        }
+    }
+
+    // Adds the key channel of a key hash unless already present.
+    private void addKeyChannel(int hash, List<Integer> keyChannels)
+    {
+        Integer keyChannel = (hash & Integer.MAX_VALUE) % availablePartitions;
+        if (!keyChannels.contains(keyChannel))
+            keyChannels.add(keyChannel);
+    }
+
+    // Hashes a value, using contents for binary values.
+    private int hashValue(Object value)
+    {
+        if (value == null)
+            return 0;
+        else if (value instanceof byte[])
+            return Arrays.hashCode((byte[]) value);
+        else
+            return value.hashCode();
+    }
+}
@@ -67,7 +67,7 @@ import com.continuent.tungsten.replicator.service.PipelineService;
  * @author <a href="mailto:robert.hodges@continuent.com">Robert Hodges</a>
  * @version 1.0
  */
-public class ShardListPartitioner implements Partitioner
+public class ShardListPartitioner implements ShardPartitioner
 {
     private static Logger            logger           = Logger.getLogger(ShardListPartitioner.class);
 
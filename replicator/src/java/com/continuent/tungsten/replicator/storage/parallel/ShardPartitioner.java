@@ -0,0 +1,32 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.storage.parallel;
+
+/**
+ * Denotes a partitioner that assigns channels by shard ID alone. Stores may
+ * find the channel of any shard by partitioning a header for that shard,
+ * which lets them limit critical sections to the channels of shards that a
+ * critical event touches.
+ * 
+ * @version 1.0
+ */
+public interface ShardPartitioner extends Partitioner
+{
+}
@@ -49,6 +49,15 @@ import com.continuent.tungsten.replicator.event.ReplDBMSHeaderData;
  * is stored.</li>
  * <li>Slave - Slave must update trep_commit_seqno whenever an event is applied</li>
  * </ul>
+ * Appliers that write positions inside their own transactions use
+ * {@link #updateLastCommitSeqno(int, ReplDBMSHeader, long)} or send the
+ * statement from {@link #getUpdateLastCommitSeqnoSQL(int, ReplDBMSHeader, long)}
+ * along with their own statements. Appliers for non-transactional targets may
+ * instead use {@link #recordLastCommitSeqno(int, ReplDBMSHeader, long)}, which
+ * writes positions of committed transactions at most once per write-behind
+ * interval. The stored position then never runs ahead of applied data, but
+ * may trail it by up to an interval of transactions, which are applied again
+ * after a crash.
  * 
  * @author <a href="mailto:robert.hodges@continuent.com">Robert Hodges</a>
  * @version 1.0
@@ -85,6 +94,18 @@ public class CommitSeqnoTable
 
     private String             tableType;
 
+    // Write-behind of positions. Positions recorded within the interval are
+    // held in memory and written by the next recorded position that falls due
+    // or by an explicit flush.
+    private long               writeBehindMillis        = 0;
+    private ReplDBMSHeader     pendingHeader;
+    private long               pendingLatency;
+    private int                pendingTaskId;
+    private long               lastWriteMillis;
+
+    // Number of position updates executed by this instance.
+    private long               updateCount              = 0;
+
     /**
      * Creates a new instance valid for life of the provided database
      * connection.
@@ -98,6 +119,21 @@ public class CommitSeqnoTable
         this.syncNativeSlaveRequired = syncNativeSlaveRequired;
     }
 
+    /**
+     * Sets the minimum time in milliseconds between writes of recorded
+     * positions. 0, the default, writes each recorded position.
+     */
+    public void setWriteBehindMillis(long writeBehindMillis)
+    {
+        this.writeBehindMillis = writeBehindMillis;
+    }
+
+    /** Returns the number of position updates executed so far. */
+    public long getUpdateCount()
+    {
+        return updateCount;
+    }
+
     /**
      * Prepares the instance for use. This must occur before use.
      */
@@ -219,10 +255,14 @@ public class CommitSeqnoTable
 
     /**
      * Fetches header data for last committed transaction or null if none such
-     * can be found.
+     * can be found. Recorded positions that have not been written yet take
+     * precedence over the stored position.
      */
     public ReplDBMSHeader lastCommitSeqno(int taskId) throws SQLException
     {
+        if (pendingHeader != null && pendingTaskId == taskId)
+            return pendingHeader;
+
         ReplDBMSHeaderData header = null;
         ResultSet res = null;
 
@@ -360,6 +400,108 @@ public class CommitSeqnoTable
         commitSeqnoUpdate.setInt(11, taskId);
 
         commitSeqnoUpdate.executeUpdate();
+        updateCount++;
+        lastWriteMillis = System.currentTimeMillis();
+
+        // This position supersedes any position waiting to be written.
+        pendingHeader = null;
+    }
+
+    /**
+     * Records the position of a transaction that has committed. The position
+     * is written at once if the write-behind interval has passed since the
+     * last write and is otherwise held until a later position falls due or
+     * until {@link #flushLastCommitSeqno()} is called. Callers must not record
+     * positions of uncommitted transactions, as they could be written ahead of
+     * the data.
+     */
+    public void recordLastCommitSeqno(int taskId, ReplDBMSHeader header,
+            long appliedLatency) throws SQLException
+    {
+        if (System.currentTimeMillis() - lastWriteMillis >= writeBehindMillis)
+            updateLastCommitSeqno(taskId, header, appliedLatency);
+        else
+        {
+            pendingHeader = header;
+            pendingLatency = appliedLatency;
+            pendingTaskId = taskId;
+        }
+    }
+
+    /**
+     * Writes the last recorded position if it has not been written yet.
+     */
+    public void flushLastCommitSeqno() throws SQLException
+    {
+        if (pendingHeader != null)
+            updateLastCommitSeqno(pendingTaskId, pendingHeader, pendingLatency);
+    }
+
+    /**
+     * Returns an update of the last commit seqno value with values inlined as
+     * MySQL literals, which allows callers to send it in the same
+     * multi-statement query string as other statements. Returns null if a value cannot be inlined safely, in
+     * which case callers should use
+     * {@link #updateLastCommitSeqno(int, ReplDBMSHeader, long)}.
+     */
+    public String getUpdateLastCommitSeqnoSQL(int taskId,
+            ReplDBMSHeader header, long appliedLatency)
+    {
+        String sourceId = toLiteral(header.getSourceId());
+        String eventId = toLiteral(header.getEventId());
+        String shardId = toLiteral(header.getShardId());
+        if (sourceId == null || eventId == null || shardId == null)
+            return null;
+
+        StringBuffer sb = new StringBuffer();
+        sb.append("UPDATE ").append(commitSeqnoTable.getSchema()).append('.')
+                .append(commitSeqnoTable.getName()).append(" SET ");
+        sb.append(commitSeqnoTableSeqno.getName()).append('=')
+                .append(header.getSeqno()).append(", ");
+        sb.append(commitSeqnoTableFragno.getName()).append('=')
+                .append(header.getFragno()).append(", ");
+        sb.append(commitSeqnoTableLastFrag.getName()).append('=')
+                .append(header.getLastFrag() ? "1" : "0").append(", ");
+        sb.append(commitSeqnoTableSourceId.getName()).append('=')
+                .append(sourceId).append(", ");
+        sb.append(commitSeqnoTableEpochNumber.getName()).append('=')
+                .append(header.getEpochNumber()).append(", ");
+        sb.append(commitSeqnoTableEventId.getName()).append('=')
+                .append(eventId).append(", ");
+        // Latency can go negative due to clock differences. Round up to 0.
+        sb.append(commitSeqnoTableAppliedLatency.getName()).append('=')
+                .append(Math.abs(appliedLatency)).append(", ");
+        sb.append(commitSeqnoTableUpdateTimestamp.getName()).append('=')
+                .append(toLiteral(new Timestamp(System.currentTimeMillis())))
+                .append(", ");
+        sb.append(commitSeqnoTableShardId.getName()).append('=')
+                .append(shardId).append(", ");
+        sb.append(commitSeqnoTableExtractTimestamp.getName()).append('=')
+                .append(toLiteral(header.getExtractedTstamp()));
+        sb.append(" WHERE ").append(commitSeqnoTableTaskId.getName())
+                .append('=').append(taskId);
+        return sb.toString();
+    }
+
+    // Returns a quoted string literal or null if the value contains a
+    // backslash, whose meaning depends on the SQL mode.
+    private static String toLiteral(String value)
+    {
+        if (value == null)
+            return "NULL";
+        else if (value.indexOf('\\') >= 0)
+            return null;
+        else
+            return "'" + value.replace("'", "''") + "'";
+    }
+
+    // Returns a quoted timestamp literal.
+    private static String toLiteral(Timestamp value)
+    {
+        if (value == null)
+            return "NULL";
+        else
+            return "'" + value.toString() + "'";
     }
 
     // Return a header from a trep_commit_seqno result.
@@ -149,6 +149,16 @@ public class Connector implements ReplicatorPlugin
     {
         if (channel != null)
         {
+            if (protocol != null)
+            {
+                ProtocolStatistics statistics = protocol.getStatistics();
+                logger.info("Closing THL connection: records="
+                        + statistics.getRecords() + " bytes="
+                        + statistics.getBytes() + " recordsPerSecond="
+                        + String.format("%.1f", statistics.getRecordsPerSecond())
+                        + " compressionRatio="
+                        + String.format("%.2f", statistics.getCompressionRatio()));
+            }
             try
             {
                 channel.close();
@@ -188,6 +198,18 @@ public class Connector implements ReplicatorPlugin
         return retval;
     }
 
+    /**
+     * Returns throughput statistics for the current connection or null if we
+     * are not connected.
+     */
+    public ProtocolStatistics getStatistics()
+    {
+        if (protocol == null)
+            return null;
+        else
+            return protocol.getStatistics();
+    }
+
     /**
      * TODO: getMinSeqNo definition.
      * 
@@ -38,6 +38,7 @@ import com.continuent.tungsten.replicator.event.ReplEvent;
 import com.continuent.tungsten.replicator.plugin.PluginContext;
 import com.continuent.tungsten.replicator.plugin.ReplicatorPlugin;
 import com.continuent.tungsten.replicator.thl.log.LogConnection;
+import com.continuent.tungsten.replicator.thl.log.LogEventReplReader;
 import com.continuent.tungsten.replicator.thl.log.LogTimeoutException;
 
 /**
@@ -48,18 +49,21 @@ import com.continuent.tungsten.replicator.thl.log.LogTimeoutException;
  */
 public class ConnectorHandler implements ReplicatorPlugin, Runnable
 {
-    private Server           server    = null;
-    private PluginContext    context   = null;
-    private Thread           thd       = null;
-    private SocketChannel    channel   = null;
-    private THL              thl       = null;
-    private int              resetPeriod;
-    private int              heartbeatMillis;
-    private long             altSeqno  = -1;
-    private volatile boolean cancelled = false;
-    private volatile boolean finished  = false;
-
-    private static Logger    logger    = Logger.getLogger(ConnectorHandler.class);
+    private Server                      server    = null;
+    private PluginContext               context   = null;
+    private Thread                      thd       = null;
+    private SocketChannel               channel   = null;
+    private THL                         thl       = null;
+    private int                         resetPeriod;
+    private int                         heartbeatMillis;
+    private long                        altSeqno  = -1;
+    private volatile boolean            cancelled = false;
+    private volatile boolean            finished  = false;
+
+    // Statistics of the current protocol connection.
+    private volatile ProtocolStatistics statistics;
+
+    private static Logger               logger    = Logger.getLogger(ConnectorHandler.class);
 
     // Implements call-back to check log consistency between client and
     // master.
@@ -238,6 +242,15 @@ public class ConnectorHandler implements ReplicatorPlugin, Runnable
     {
     }
 
+    /**
+     * Returns throughput and round trip statistics for the client connection
+     * or null if the connection has not started.
+     */
+    public ProtocolStatistics getStatistics()
+    {
+        return statistics;
+    }
+
     /**
      * Returns true if this handler has terminated and may be discarded.
      */
@@ -257,6 +270,7 @@ public class ConnectorHandler implements ReplicatorPlugin, Runnable
         try
         {
             protocol = new Protocol(context, channel, resetPeriod);
+            statistics = protocol.getStatistics();
         }
         catch (IOException e)
         {
@@ -271,7 +285,9 @@ public class ConnectorHandler implements ReplicatorPlugin, Runnable
             LogValidator logValidator = new LogValidator();
 
             // TUC-2 Added log validator to check log for divergent
-            // epoch numbers on last common sequence number.
+            // epoch numbers on last common sequence number. Supplying the
+            // log serializer allows clients to receive raw log records.
+            protocol.setLogSerializerName(thl.getEventSerializer());
             protocol.serverHandshake(logValidator, minSeqno, maxSeqno);
 
             // Name the thread so that developers can see which source ID we
@@ -320,6 +336,14 @@ public class ConnectorHandler implements ReplicatorPlugin, Runnable
                     connection.setTimeoutMillis(heartbeatMillis);
                 }
 
+                // Clients using the framed protocol receive log records
+                // without deserialization.
+                if (protocol.getVersion() >= Protocol.VERSION_FRAMED)
+                {
+                    sendLogRecords(protocol, connection, prefetchRange);
+                    continue;
+                }
+
                 long i = 0;
                 while (i < prefetchRange)
                 {
@@ -458,7 +482,42 @@ public class ConnectorHandler implements ReplicatorPlugin, Runnable
 
             // Make sure we can see that the connection ended.
             logger.info("Terminating THL client connection from source ID: "
-                    + protocol.getClientSourceId());
+                    + protocol.getClientSourceId() + " records="
+                    + statistics.getRecords() + " avgRttMillis="
+                    + statistics.getAvgRttMillis());
+        }
+    }
+
+    // Send log records to a client until the prefetch range is satisfied. We
+    // only read event headers, so each last fragment counts as one event.
+    // Current clients request an unlimited range. Streaming clients limit
+    // how far we may run ahead, in which case sending waits for credit.
+    private void sendLogRecords(Protocol protocol, LogConnection connection,
+            long prefetchRange) throws ReplicatorException,
+            InterruptedException, IOException
+    {
+        long i = 0;
+        while (i < prefetchRange && !cancelled)
+        {
+            // Get the next event from the log, waiting if necessary. If the
+            // read times out send a heartbeat and try again.
+            LogEventReplReader eventReader = null;
+            try
+            {
+                eventReader = connection.nextReader(true);
+            }
+            catch (LogTimeoutException e)
+            {
+                sendHeartbeat(protocol);
+                continue;
+            }
+
+            long seqno = eventReader.getSeqno();
+            if (eventReader.isLastFrag())
+                i++;
+            protocol.sendLogRecord(eventReader.getLogRecord(),
+                    seqno >= thl.getMaxStoredSeqno());
+            eventReader.done();
         }
     }
 
@@ -24,23 +24,40 @@ package com.continuent.tungsten.replicator.thl;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.zip.Deflater;
 
 import org.apache.log4j.Logger;
 
+import com.continuent.tungsten.commons.io.BlockDeflaterOutputStream;
+import com.continuent.tungsten.commons.io.BlockInflaterInputStream;
 import com.continuent.tungsten.replicator.ReplicatorException;
 import com.continuent.tungsten.replicator.conf.ReplicatorConf;
 import com.continuent.tungsten.replicator.event.ReplDBMSEvent;
 import com.continuent.tungsten.replicator.event.ReplDBMSFilteredEvent;
 import com.continuent.tungsten.replicator.event.ReplEvent;
 import com.continuent.tungsten.replicator.plugin.PluginContext;
+import com.continuent.tungsten.replicator.thl.log.LogEventReplReader;
+import com.continuent.tungsten.replicator.thl.log.LogRecord;
+import com.continuent.tungsten.replicator.thl.serializer.Serializer;
 
 /**
- * This class defines a Protocol
+ * This class defines a Protocol. Connections start with a handshake that uses
+ * Java serialization. If both sides support it, they then switch to a framed
+ * protocol in which each message is sent as a length-prefixed frame and
+ * replication events are sent as the raw log records stored in the server's
+ * log. This avoids deserializing events on the server and reserializing them
+ * on the client. Framed connections may also be compressed if the client asks
+ * for a codec the server supports.
  * 
  * @author <a href="mailto:teemu.ollakka@continuent.com">Teemu Ollakka</a>
  * @version 1.0
@@ -49,6 +66,29 @@ public class Protocol
 {
     private static Logger        logger                   = Logger.getLogger(Protocol.class);
 
+    /** Original protocol, which sends all messages using Java serialization. */
+    public static final int      VERSION_SERIALIZED       = 1;
+
+    /** Framed protocol, which sends events as raw log records. */
+    public static final int      VERSION_FRAMED           = 2;
+
+    /**
+     * Streaming protocol, which adds credit-based flow control to the framed
+     * protocol. Clients acknowledge records asynchronously.
+     */
+    public static final int      VERSION_STREAMING        = 3;
+
+    /** Compression codec name for per-block deflate compression. */
+    public static final String   COMPRESSION_DEFLATE      = "deflate";
+
+    /** Compression codec name for uncompressed connections. */
+    public static final String   COMPRESSION_NONE         = "none";
+
+    // Frame types and limits for the framed protocol.
+    private static final byte    FRAME_MESSAGE            = 1;
+    private static final byte    FRAME_RECORD             = 2;
+    private static final int     MAX_FRAME_LENGTH         = 1000000000;
+
     protected PluginContext      pluginContext            = null;
     protected SocketChannel      channel                  = null;
 
@@ -66,6 +106,38 @@ public class Protocol
     protected ObjectInputStream  ois                      = null;
     protected ObjectOutputStream oos                      = null;
 
+    // Underlying streams, which the framed protocol uses after handshake.
+    private BufferedInputStream  bis                      = null;
+    private BufferedOutputStream bos                      = null;
+    private DataInputStream      dis                      = null;
+    private DataOutputStream     dos                      = null;
+
+    // Protocol version in use and the highest version we will accept.
+    private int                  version                  = VERSION_SERIALIZED;
+    private int                  maxVersion               = VERSION_STREAMING;
+
+    // Log serializer of the server, which reads and writes records sent by
+    // the framed protocol.
+    private String               logSerializerName        = null;
+    private Serializer           logSerializer            = null;
+    private int                  recordsBuffered          = 0;
+
+    // Flow control for the streaming protocol. The window is the number of
+    // records that may be unacknowledged; zero means no flow control. Send
+    // times of unacknowledged records are used to compute round trip time.
+    private int                  streamWindow             = 0;
+    private long                 credits                  = 0;
+    private long                 recordsSent              = 0;
+    private long                 recordsAcked             = 0;
+    private long                 recordsReceived          = 0;
+    private long                 receivedAtLastAck        = 0;
+    private LinkedList<Long>     sendTimes                = new LinkedList<Long>();
+    private ProtocolStatistics   statistics               = new ProtocolStatistics();
+
+    // Compression codec the client asks for and the codec in use.
+    private String               compression              = COMPRESSION_NONE;
+    private String               activeCompression        = COMPRESSION_NONE;
+
     protected String             clientSourceId           = null;
     private long                 clientLastEpochNumber    = -1;
     private long                 clientLastSeqno          = -1;
@@ -93,8 +165,8 @@ public class Protocol
         this.pluginContext = context;
         this.channel = channel;
 
-        oos = new ObjectOutputStream(new BufferedOutputStream(this.channel
-                .socket().getOutputStream()));
+        bos = new BufferedOutputStream(this.channel.socket().getOutputStream());
+        oos = new ObjectOutputStream(bos);
         oos.flush();
 
         resetPeriod = 1;
@@ -110,6 +182,81 @@ public class Protocol
         buffering = bufferSize > 0;
         if (buffering)
             logger.info("THL protocol buffering enabled: size=" + bufferSize);
+        this.maxVersion = context.getReplicatorProperties().getInt(
+                ReplicatorConf.THL_PROTOCOL_VERSION);
+        this.streamWindow = context.getReplicatorProperties().getInt(
+                ReplicatorConf.THL_PROTOCOL_WINDOW);
+        this.compression = context.getReplicatorProperties().getString(
+                ReplicatorConf.THL_PROTOCOL_COMPRESSION);
+    }
+
+    /**
+     * Returns the protocol version negotiated during handshake.
+     */
+    public int getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Sets the highest protocol version we will negotiate.
+     */
+    public void setMaxVersion(int maxVersion)
+    {
+        this.maxVersion = maxVersion;
+    }
+
+    /**
+     * Sets the number of records a client allows the server to send ahead of
+     * acknowledgements when using the streaming protocol. Zero or less
+     * disables flow control.
+     */
+    public void setStreamWindow(int streamWindow)
+    {
+        this.streamWindow = streamWindow;
+    }
+
+    /**
+     * Returns the flow control window, which is zero if there is no flow
+     * control on this connection.
+     */
+    public int getStreamWindow()
+    {
+        return streamWindow;
+    }
+
+    /**
+     * Sets the compression codec clients request from the server, which may
+     * be "deflate" or "none". Codecs only apply to the framed protocol.
+     */
+    public void setCompression(String compression)
+    {
+        this.compression = compression;
+    }
+
+    /**
+     * Returns the compression codec in use on this connection.
+     */
+    public String getActiveCompression()
+    {
+        return activeCompression;
+    }
+
+    /**
+     * Returns throughput and round trip statistics for this connection.
+     */
+    public ProtocolStatistics getStatistics()
+    {
+        return statistics;
+    }
+
+    /**
+     * Sets the class name of the serializer used by the server log. Servers
+     * must set this before handshake to offer the framed protocol.
+     */
+    public void setLogSerializerName(String logSerializerName)
+    {
+        this.logSerializerName = logSerializerName;
     }
 
     /**
@@ -146,10 +293,20 @@ public class Protocol
     protected ProtocolMessage readMessage() throws IOException,
             ReplicatorException
     {
+        if (version >= VERSION_FRAMED)
+        {
+            Object frame = readFrame();
+            if (frame instanceof ProtocolMessage == false)
+                throw new THLException(
+                        "Protocol error; unexpected log record from peer");
+            return (ProtocolMessage) frame;
+        }
+
         if (ois == null)
         {
-            ois = new ObjectInputStream(new BufferedInputStream(this.channel
-                    .socket().getInputStream()));
+            bis = new BufferedInputStream(this.channel.socket()
+                    .getInputStream());
+            ois = new ObjectInputStream(bis);
         }
         Object obj;
         try
@@ -175,15 +332,123 @@ public class Protocol
      */
     protected void writeMessage(ProtocolMessage msg) throws IOException
     {
-        oos.writeObject(msg);
-        oos.flush();
+        if (version >= VERSION_FRAMED)
+        {
+            writeFrame(msg);
+            return;
+        }
 
-        objectsSent++;
+        // Reset the stream before rather than after writing once the reset
+        // period is reached. Readers accept resets anywhere between objects,
+        // and this ensures nothing follows the last serialized message when
+        // we switch to frames.
         if (objectsSent >= resetPeriod)
         {
             objectsSent = 0;
             oos.reset();
         }
+        oos.writeObject(msg);
+        oos.flush();
+        objectsSent++;
+    }
+
+    // Read a frame, returning either a protocol message or a log record.
+    private Object readFrame() throws IOException, ReplicatorException
+    {
+        int length = dis.readInt();
+        if (length < 1 || length > MAX_FRAME_LENGTH)
+            throw new THLException("Invalid protocol frame length: " + length);
+        byte type = dis.readByte();
+        if (type == FRAME_MESSAGE)
+        {
+            byte[] bytes = new byte[length - 1];
+            dis.readFully(bytes);
+            ObjectInputStream frameInput = new ObjectInputStream(
+                    new ByteArrayInputStream(bytes));
+            Object obj;
+            try
+            {
+                obj = frameInput.readObject();
+            }
+            catch (ClassNotFoundException e)
+            {
+                throw new THLException(e.getMessage());
+            }
+            if (obj instanceof ProtocolMessage == false)
+                throw new THLException("Invalid object in stream");
+            return obj;
+        }
+        else if (type == FRAME_RECORD)
+        {
+            if (length < 10)
+                throw new THLException("Invalid log record frame length: "
+                        + length);
+            byte crcType = dis.readByte();
+            long crc = dis.readLong();
+            byte[] data = new byte[length - 10];
+            dis.readFully(data);
+            return new LogRecord(-1, data, crcType, crc);
+        }
+        else
+            throw new THLException("Invalid protocol frame type: " + type);
+    }
+
+    // Write a protocol message as a frame and flush.
+    private void writeFrame(ProtocolMessage msg) throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream frameOutput = new ObjectOutputStream(baos);
+        frameOutput.writeObject(msg);
+        frameOutput.close();
+        byte[] bytes = baos.toByteArray();
+
+        dos.writeInt(bytes.length + 1);
+        dos.writeByte(FRAME_MESSAGE);
+        dos.write(bytes);
+        dos.flush();
+        recordsBuffered = 0;
+    }
+
+    // Switch to a new protocol version and compression codec after
+    // handshake. Compression applies to all frames in both directions, and
+    // each flush of the output stream writes one compressed block.
+    private void startVersion(int newVersion, String codec) throws IOException
+    {
+        version = newVersion;
+        if (version >= VERSION_FRAMED)
+        {
+            if (COMPRESSION_DEFLATE.equals(codec))
+            {
+                BlockInflaterInputStream inflaterInput = new BlockInflaterInputStream(
+                        bis);
+                BlockDeflaterOutputStream deflaterOutput = new BlockDeflaterOutputStream(
+                        bos, Deflater.BEST_SPEED);
+                dis = new DataInputStream(inflaterInput);
+                dos = new DataOutputStream(deflaterOutput);
+                statistics.setCompressionStreams(deflaterOutput, inflaterInput);
+                activeCompression = codec;
+            }
+            else
+            {
+                dis = new DataInputStream(bis);
+                dos = new DataOutputStream(bos);
+            }
+        }
+        logger.info("THL protocol version: " + version + " compression="
+                + activeCompression);
+    }
+
+    // Return true if a comma-separated list of codecs includes a codec.
+    private static boolean supportsCodec(String codecs, String codec)
+    {
+        if (codecs == null)
+            return false;
+        for (String supported : codecs.split(","))
+        {
+            if (supported.trim().equals(codec))
+                return true;
+        }
+        return false;
     }
 
     /**
@@ -199,7 +464,22 @@ public class Protocol
             long minSeqNo, long maxSeqNo) throws ReplicatorException,
             IOException, InterruptedException
     {
-        writeMessage(new ProtocolHandshake());
+        // Offer the framed protocol only if we can tell the client how to
+        // read log records.
+        ProtocolHandshake handshake = new ProtocolHandshake();
+        int offeredVersion = maxVersion;
+        if (logSerializerName == null)
+            offeredVersion = VERSION_SERIALIZED;
+        else
+            handshake.setCapability(ProtocolParams.LOG_SERIALIZER,
+                    logSerializerName);
+        handshake.setCapability(ProtocolParams.PROTOCOL_VERSION,
+                Integer.toString(offeredVersion));
+        if (offeredVersion >= VERSION_FRAMED)
+            handshake.setCapability(ProtocolParams.COMPRESSION,
+                    COMPRESSION_DEFLATE);
+        writeMessage(handshake);
+
         ProtocolMessage response = readMessage();
         if (response instanceof ProtocolHandshakeResponse)
         {
@@ -216,6 +496,22 @@ public class Protocol
                         "Client response validation failed: " + e.getMessage()));
                 throw e;
             }
+
+            // Older clients do not return a version. Clients that stream
+            // tell us their window, which is our initial credit.
+            int clientVersion = parseVersion(handshakeResponse
+                    .getOption(ProtocolParams.PROTOCOL_VERSION));
+            startVersion(Math.min(clientVersion, offeredVersion),
+                    handshakeResponse.getOption(ProtocolParams.COMPRESSION));
+            streamWindow = 0;
+            if (version >= VERSION_STREAMING)
+            {
+                String window = handshakeResponse
+                        .getOption(ProtocolParams.STREAM_WINDOW);
+                if (window != null)
+                    streamWindow = Integer.parseInt(window);
+            }
+            credits = streamWindow;
         }
         else
         {
@@ -242,16 +538,60 @@ public class Protocol
         ProtocolMessage handshake = readMessage();
         if (handshake instanceof ProtocolHandshake == false)
             throw new THLException("Invalid handshake");
+
+        // Choose the protocol version. Older servers do not offer a version.
+        ProtocolHandshake serverHandshake = (ProtocolHandshake) handshake;
+        int clientVersion = Math.min(maxVersion, parseVersion(serverHandshake
+                .getCapability(ProtocolParams.PROTOCOL_VERSION)));
+        if (clientVersion >= VERSION_FRAMED)
+        {
+            logSerializerName = serverHandshake
+                    .getCapability(ProtocolParams.LOG_SERIALIZER);
+            try
+            {
+                logSerializer = (Serializer) Class.forName(logSerializerName)
+                        .newInstance();
+            }
+            catch (Exception e)
+            {
+                logger.warn("Unable to load server log serializer; using serialized protocol: serializer="
+                        + logSerializerName + " message=" + e.getMessage());
+                clientVersion = VERSION_SERIALIZED;
+            }
+        }
+
         ProtocolHandshakeResponse response = new ProtocolHandshakeResponse(
                 pluginContext.getSourceId(), lastEpochNumber, lastSeqno,
                 heartbeatMillis);
         if (lastEventId != null)
             response.setOption(ProtocolParams.INIT_EVENT_ID, lastEventId);
+        response.setOption(ProtocolParams.PROTOCOL_VERSION,
+                Integer.toString(clientVersion));
+        if (clientVersion >= VERSION_STREAMING && streamWindow > 0)
+            response.setOption(ProtocolParams.STREAM_WINDOW,
+                    Integer.toString(streamWindow));
+        else
+            streamWindow = 0;
+        String codec = COMPRESSION_NONE;
+        if (clientVersion >= VERSION_FRAMED
+                && !COMPRESSION_NONE.equals(compression))
+        {
+            if (supportsCodec(serverHandshake
+                    .getCapability(ProtocolParams.COMPRESSION), compression))
+            {
+                codec = compression;
+                response.setOption(ProtocolParams.COMPRESSION, codec);
+            }
+            else
+                logger.warn("Server does not support requested compression; using none: compression="
+                        + compression);
+        }
         writeMessage(response);
 
         ProtocolMessage okOrNok = readMessage();
         if (okOrNok instanceof ProtocolOK)
         {
+            startVersion(clientVersion, codec);
             return (SeqNoRange) okOrNok.getPayload();
         }
         else if (okOrNok instanceof ProtocolNOK)
@@ -293,9 +633,21 @@ public class Protocol
             // Read the next message, skipping over any heartbeat events, which
             // serve to keep the connection open.
             ProtocolMessage msg = null;
+            LogRecord logRecord = null;
             for (;;)
             {
-                msg = readMessage();
+                if (version >= VERSION_FRAMED)
+                {
+                    Object frame = readFrame();
+                    if (frame instanceof LogRecord)
+                    {
+                        logRecord = (LogRecord) frame;
+                        break;
+                    }
+                    msg = (ProtocolMessage) frame;
+                }
+                else
+                    msg = readMessage();
                 if (msg instanceof ProtocolHeartbeat)
                 {
                     if (logger.isDebugEnabled())
@@ -308,7 +660,13 @@ public class Protocol
             }
 
             // Handling buffering on the client side
-            if (msg.getPayload() instanceof ArrayList<?>)
+            if (logRecord != null)
+            {
+                // Receiving a log record from the framed protocol.
+                ret = readLogRecord(logRecord);
+                acknowledge(ret.getSeqno(), logRecord.getDataLength());
+            }
+            else if (msg.getPayload() instanceof ArrayList<?>)
             {
                 // Receiving buffered events
                 buffer = (ArrayList<ReplEvent>) msg.getPayload();
@@ -370,6 +728,56 @@ public class Protocol
         return ret;
     }
 
+    // Deserialize an event from a log record sent by the server. The record
+    // stays attached to the event so that it can be stored without
+    // serializing the event again.
+    private ReplEvent readLogRecord(LogRecord logRecord)
+            throws ReplicatorException
+    {
+        LogEventReplReader eventReader = new LogEventReplReader(logRecord,
+                logSerializer, true);
+        THLEvent thlEvent = eventReader.deserializeEvent();
+        eventReader.done();
+        ReplEvent replEvent = thlEvent.getReplEvent();
+        if (replEvent instanceof ReplDBMSEvent)
+        {
+            ((ReplDBMSEvent) replEvent).setSerializedRecord(
+                    logRecord.getData(), logSerializerName);
+        }
+        return replEvent;
+    }
+
+    // Count a received log record and return credit to the server once half
+    // the window has been received. The server does not reply, so the client
+    // never waits on an acknowledgement.
+    private void acknowledge(long seqno, int bytes) throws IOException
+    {
+        recordsReceived++;
+        statistics.recordTransfer(bytes);
+        if (streamWindow > 0
+                && recordsReceived - receivedAtLastAck >= Math.max(1,
+                        streamWindow / 2))
+        {
+            writeFrame(new ProtocolAck(recordsReceived, seqno));
+            receivedAtLastAck = recordsReceived;
+        }
+    }
+
+    // Parse a protocol version, which defaults to the serialized protocol.
+    private static int parseVersion(String version)
+    {
+        if (version == null)
+            return VERSION_SERIALIZED;
+        try
+        {
+            return Integer.parseInt(version);
+        }
+        catch (NumberFormatException e)
+        {
+            return VERSION_SERIALIZED;
+        }
+    }
+
     /**
      * TODO: waitReplicationDBMSEventRequest definition.
      * 
@@ -380,7 +788,13 @@ public class Protocol
     public ProtocolReplEventRequest waitReplEventRequest()
             throws ReplicatorException, IOException
     {
+        // Streaming clients may still be acknowledging earlier records.
         ProtocolMessage msg = readMessage();
+        while (msg instanceof ProtocolAck)
+        {
+            processAck((ProtocolAck) msg);
+            msg = readMessage();
+        }
         if (msg instanceof ProtocolReplEventRequest == false)
             throw new THLException("Protocol error");
         return (ProtocolReplEventRequest) msg;
@@ -411,6 +825,93 @@ public class Protocol
         }
     }
 
+    /**
+     * Sends a log record containing an event to a client that uses the framed
+     * protocol. Records are flushed immediately unless buffering is enabled,
+     * in which case they are flushed when the buffer is full or forceSend is
+     * true. If the client streams with flow control, this waits until the
+     * client has granted credit to send the record.
+     * 
+     * @param logRecord Log record read from the server log
+     * @param forceSend If true, flush buffered records
+     */
+    public void sendLogRecord(LogRecord logRecord, boolean forceSend)
+            throws IOException, ReplicatorException
+    {
+        if (streamWindow > 0)
+            waitForCredit();
+
+        byte[] data = logRecord.getData();
+        dos.writeInt(data.length + 10);
+        dos.writeByte(FRAME_RECORD);
+        dos.writeByte(logRecord.getCrcType());
+        dos.writeLong(logRecord.getCrc());
+        dos.write(data);
+
+        recordsBuffered++;
+        if (!buffering || forceSend || recordsBuffered >= bufferSize)
+        {
+            dos.flush();
+            recordsBuffered = 0;
+        }
+
+        statistics.recordTransfer(data.length);
+        if (streamWindow > 0)
+        {
+            credits--;
+            recordsSent++;
+            sendTimes.add(System.nanoTime());
+        }
+    }
+
+    // Process acknowledgements that have already arrived. If we are out of
+    // credit, flush buffered records so the client can see them and block
+    // until an acknowledgement arrives.
+    private void waitForCredit() throws IOException, ReplicatorException
+    {
+        while (dis.available() > 0)
+            readAck();
+        if (credits <= 0)
+        {
+            dos.flush();
+            recordsBuffered = 0;
+            long startNanos = System.nanoTime();
+            while (credits <= 0)
+                readAck();
+            statistics.recordCreditWait(System.nanoTime() - startNanos);
+        }
+    }
+
+    // Read an acknowledgement, which is the only message a streaming client
+    // sends while receiving records.
+    private void readAck() throws IOException, ReplicatorException
+    {
+        Object frame = readFrame();
+        if (frame instanceof ProtocolAck == false)
+            throw new THLException(
+                    "Protocol error; expected acknowledgement but received: "
+                            + frame.getClass().getName());
+        processAck((ProtocolAck) frame);
+    }
+
+    // Return credit for acknowledged records and note the round trip time of
+    // the last record acknowledged.
+    private void processAck(ProtocolAck ack)
+    {
+        long acked = ack.getReceived() - recordsAcked;
+        Long sendNanos = null;
+        for (long i = 0; i < acked && !sendTimes.isEmpty(); i++)
+            sendNanos = sendTimes.poll();
+        if (sendNanos != null)
+            statistics.recordAck(System.nanoTime() - sendNanos);
+        recordsAcked = ack.getReceived();
+        credits = streamWindow - (recordsSent - recordsAcked);
+        if (logger.isDebugEnabled())
+            logger.debug("Received acknowledgement: seqno=" + ack.getSeqno()
+                    + " received=" + ack.getReceived() + " credits="
+                    + credits);
+    }
+
     /**
      * Send an error message back to client.
      */
@@ -0,0 +1,60 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.thl;
+
+/**
+ * This class defines an acknowledgement sent by clients using the streaming
+ * protocol. Clients do not wait for a reply. Each acknowledgement returns
+ * credit to the server, which may then send further log records.
+ * 
+ * @version 1.0
+ */
+public class ProtocolAck extends ProtocolMessage
+{
+    static final long serialVersionUID = 1L;
+
+    private final long received;
+    private final long seqno;
+
+    /**
+     * Instantiate acknowledgement. Acknowledgements do not have a payload.
+     * 
+     * @param received Total number of log records received on this connection
+     * @param seqno Sequence number of the last log record received
+     */
+    public ProtocolAck(long received, long seqno)
+    {
+        super(null);
+        this.received = received;
+        this.seqno = seqno;
+    }
+
+    /** Returns the total number of log records received by the client. */
+    public long getReceived()
+    {
+        return received;
+    }
+
+    /** Returns the sequence number of the last log record received. */
+    public long getSeqno()
+    {
+        return seqno;
+    }
+}
@@ -33,4 +33,31 @@ public class ProtocolParams
      * search for and return the transaction that matches this native event ID.
      */
     public static final String INIT_EVENT_ID = "extractFromId";
-}
\ No newline at end of file
+
+    /**
+     * Protocol version. The server offers its highest version as a handshake
+     * capability and the client returns the version it will use as an option.
+     * Peers that do not send a version use the original serialized protocol.
+     */
+    public static final String PROTOCOL_VERSION = "protocolVersion";
+
+    /**
+     * Class name of the serializer used to write log records on the server.
+     * Clients need this to read log records sent by the framed protocol.
+     */
+    public static final String LOG_SERIALIZER = "logSerializer";
+
+    /**
+     * Number of log records the client allows the server to send before the
+     * client acknowledges them. Clients that use the streaming protocol send
+     * this as a handshake option; it is the initial credit for flow control.
+     */
+    public static final String STREAM_WINDOW = "streamWindow";
+
+    /**
+     * Compression codec. The server lists the codecs it supports as a
+     * handshake capability and the client returns the codec it will use as an
+     * option. Currently the only codec is "deflate".
+     */
+    public static final String COMPRESSION = "compression";
+}
@@ -0,0 +1,203 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.thl;
+
+import com.continuent.tungsten.commons.io.BlockDeflaterOutputStream;
+import com.continuent.tungsten.commons.io.BlockInflaterInputStream;
+
+/**
+ * Tracks throughput and round trip times on a THL protocol connection. Values
+ * are updated by the thread that owns the connection and may be read by any
+ * thread.
+ *
+ * @version 1.0
+ */
+public class ProtocolStatistics
+{
+    private final long                         startMillis = System.currentTimeMillis();
+
+    private volatile long                      records;
+    private volatile long                      bytes;
+    private volatile long                      acks;
+    private volatile long                      rttTotalNanos;
+    private volatile long                      rttMaxNanos;
+    private volatile long                      creditWaits;
+    private volatile long                      creditWaitNanos;
+
+    // Compression streams if the connection is compressed.
+    private volatile BlockDeflaterOutputStream compressedOutput;
+    private volatile BlockInflaterInputStream  compressedInput;
+
+    /**
+     * Records a log record sent or received.
+     *
+     * @param recordBytes Number of bytes of record data
+     */
+    public void recordTransfer(long recordBytes)
+    {
+        records++;
+        bytes += recordBytes;
+    }
+
+    /**
+     * Records an acknowledgement.
+     *
+     * @param rttNanos Time from sending the last acknowledged record until the
+     *            acknowledgement arrived
+     */
+    public void recordAck(long rttNanos)
+    {
+        acks++;
+        rttTotalNanos += rttNanos;
+        if (rttNanos > rttMaxNanos)
+            rttMaxNanos = rttNanos;
+    }
+
+    /**
+     * Records a wait for credit when the flow control window is full.
+     *
+     * @param waitNanos Time spent waiting
+     */
+    public void recordCreditWait(long waitNanos)
+    {
+        creditWaits++;
+        creditWaitNanos += waitNanos;
+    }
+
+    /** Returns the number of log records transferred. */
+    public long getRecords()
+    {
+        return records;
+    }
+
+    /** Returns the number of bytes of record data transferred. */
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    /** Returns the number of acknowledgements. */
+    public long getAcks()
+    {
+        return acks;
+    }
+
+    /** Returns the average records per second since the connection started. */
+    public double getRecordsPerSecond()
+    {
+        return records / getElapsedSeconds();
+    }
+
+    /** Returns the average bytes per second since the connection started. */
+    public double getBytesPerSecond()
+    {
+        return bytes / getElapsedSeconds();
+    }
+
+    /** Returns the average round trip time in milliseconds. */
+    public double getAvgRttMillis()
+    {
+        long n = acks;
+        if (n == 0)
+            return 0;
+        else
+            return rttTotalNanos / n / 1000000.0;
+    }
+
+    /** Returns the maximum round trip time in milliseconds. */
+    public double getMaxRttMillis()
+    {
+        return rttMaxNanos / 1000000.0;
+    }
+
+    /** Returns the number of times the sender waited for credit. */
+    public long getCreditWaits()
+    {
+        return creditWaits;
+    }
+
+    /** Returns the total time spent waiting for credit in milliseconds. */
+    public double getCreditWaitMillis()
+    {
+        return creditWaitNanos / 1000000.0;
+    }
+
+    /**
+     * Sets the streams that compress this connection.
+     */
+    public void setCompressionStreams(BlockDeflaterOutputStream output,
+            BlockInflaterInputStream input)
+    {
+        this.compressedOutput = output;
+        this.compressedInput = input;
+    }
+
+    /** Returns true if the connection is compressed. */
+    public boolean isCompressed()
+    {
+        return compressedOutput != null;
+    }
+
+    /**
+     * Returns the number of bytes sent and received before compression or 0
+     * if the connection is not compressed.
+     */
+    public long getUncompressedBytes()
+    {
+        if (isCompressed())
+            return compressedOutput.getDataBytes()
+                    + compressedInput.getDataBytes();
+        else
+            return 0;
+    }
+
+    /**
+     * Returns the number of bytes sent and received after compression or 0
+     * if the connection is not compressed.
+     */
+    public long getCompressedBytes()
+    {
+        if (isCompressed())
+            return compressedOutput.getStoredBytes()
+                    + compressedInput.getStoredBytes();
+        else
+            return 0;
+    }
+
+    /**
+     * Returns the ratio of uncompressed to compressed bytes, which is 1 if
+     * the connection is not compressed or has not transferred data.
+     */
+    public double getCompressionRatio()
+    {
+        long compressed = getCompressedBytes();
+        if (compressed == 0)
+            return 1;
+        else
+            return (double) getUncompressedBytes() / compressed;
+    }
+
+    // Elapsed time with a floor to avoid dividing by zero.
+    private double getElapsedSeconds()
+    {
+        long elapsed = System.currentTimeMillis() - startMillis;
+        return Math.max(elapsed, 1) / 1000.0;
+    }
+}
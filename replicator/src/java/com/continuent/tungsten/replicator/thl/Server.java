@@ -30,7 +30,9 @@ import java.net.URISyntaxException;
 import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import org.apache.log4j.Logger;
@@ -120,7 +122,10 @@ public class Server implements Runnable
                 handler.setThl(thl);
                 handler.prepare(context);
 
-                clients.add(handler);
+                synchronized (this)
+                {
+                    clients.add(handler);
+                }
                 handler.start();
                 removeFinishedClients();
             }
@@ -170,7 +175,10 @@ public class Server implements Runnable
                 logger.warn("One or more clients did not finish: "
                         + clients.size());
             }
-            clients = null;
+            synchronized (this)
+            {
+                clients = null;
+            }
 
             // Close the socket.
             if (socket != null)
@@ -193,6 +201,23 @@ public class Server implements Runnable
         }
     }
 
+    /**
+     * Returns statistics for connected clients that have started streaming.
+     */
+    public synchronized List<ProtocolStatistics> getClientStatistics()
+    {
+        List<ProtocolStatistics> statistics = new ArrayList<ProtocolStatistics>();
+        if (clients != null)
+        {
+            for (ConnectorHandler client : clients)
+            {
+                if (client.getStatistics() != null)
+                    statistics.add(client.getStatistics());
+            }
+        }
+        return statistics;
+    }
+
     /**
      * Marks a client for removal.
      */
@@ -204,7 +229,7 @@ public class Server implements Runnable
     /**
      * Clean up terminated clients marked for removal.
      */
-    private void removeFinishedClients()
+    private synchronized void removeFinishedClients()
     {
         ConnectorHandler client = null;
         while ((client = deadClients.poll()) != null)
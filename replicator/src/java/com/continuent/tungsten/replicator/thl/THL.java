@@ -24,6 +24,7 @@ package com.continuent.tungsten.replicator.thl;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.List;
 
 import org.apache.log4j.Logger;
 
@@ -39,7 +40,9 @@ import com.continuent.tungsten.replicator.event.ReplEvent;
 import com.continuent.tungsten.replicator.plugin.PluginContext;
 import com.continuent.tungsten.replicator.storage.Store;
 import com.continuent.tungsten.replicator.thl.log.DiskLog;
+import com.continuent.tungsten.replicator.thl.log.LogCompressTask;
 import com.continuent.tungsten.replicator.thl.log.LogConnection;
+import com.continuent.tungsten.replicator.thl.log.LogFlushTask;
 import com.continuent.tungsten.replicator.thl.serializer.ProtobufSerializer;
 import com.continuent.tungsten.replicator.util.AtomicCounter;
 
@@ -105,6 +108,18 @@ public class THL implements Store
     /** If true, fsync when flushing. */
     private boolean            fsyncOnFlush         = false;
 
+    /** Minimum milliseconds between group commit syncs. 0 disables. */
+    private long               groupCommitWindowMillis = 0;
+
+    /** Bytes between seqno index entries in log files. 0 disables index. */
+    private int                seqnoIndexIntervalBytes = 1000000;
+
+    /** If true, read log files using memory-mapped I/O. */
+    private boolean            memoryMappedReads    = false;
+
+    /** If true, compress log files in the background after rotation. */
+    private boolean            compressRotatedFiles = false;
+
     // Database storage and disk log.
     private CatalogManager     catalog              = null;
     private DiskLog            diskLog              = null;
@@ -232,6 +247,14 @@ public class THL implements Store
         this.eventSerializer = eventSerializer;
     }
 
+    /**
+     * Returns the event serializer name.
+     */
+    public String getEventSerializer()
+    {
+        return eventSerializer;
+    }
+
     /**
      * Sets the log file retention interval.
      */
@@ -273,6 +296,44 @@ public class THL implements Store
         this.fsyncOnFlush = fsyncOnFlush;
     }
 
+    /**
+     * Sets the group commit window. If greater than 0, commits are synced to
+     * storage by a background task that issues at most one sync per window,
+     * so that commits arriving close together share a single sync.
+     */
+    public void setGroupCommitWindowMillis(long groupCommitWindowMillis)
+    {
+        this.groupCommitWindowMillis = groupCommitWindowMillis;
+    }
+
+    /**
+     * Sets the approximate number of bytes between entries in the per-file
+     * seqno index, which speeds up seeks on large log files. 0 disables the
+     * index.
+     */
+    public void setSeqnoIndexIntervalBytes(int seqnoIndexIntervalBytes)
+    {
+        this.seqnoIndexIntervalBytes = seqnoIndexIntervalBytes;
+    }
+
+    /**
+     * If set to true, log readers use memory-mapped I/O on rotated log files,
+     * which avoids copying log records when many clients read the same files.
+     */
+    public void setMemoryMappedReads(boolean memoryMappedReads)
+    {
+        this.memoryMappedReads = memoryMappedReads;
+    }
+
+    /**
+     * If set to true, log files are compressed in the background after the
+     * log rotates to a new file. Compressed files remain readable.
+     */
+    public void setCompressRotatedFiles(boolean compressRotatedFiles)
+    {
+        this.compressRotatedFiles = compressRotatedFiles;
+    }
+
     public void setReadOnly(String ro)
     {
         readOnly = (ro.equals("true"));
@@ -363,6 +424,10 @@ public class THL implements Store
             // Only used with fsync.
             diskLog.setFlushIntervalMillis(flushIntervalMillis);
         }
+        diskLog.setGroupCommitWindowMillis(groupCommitWindowMillis);
+        diskLog.setSeqnoIndexIntervalBytes(seqnoIndexIntervalBytes);
+        diskLog.setMemoryMappedReads(memoryMappedReads);
+        diskLog.setCompressRotatedFiles(compressRotatedFiles);
         diskLog.setReadOnly(readOnly);
         diskLog.prepare();
         logger.info("Log preparation is complete");
@@ -568,6 +633,75 @@ public class THL implements Store
         props.setLong("flushIntervalMillis", diskLog.getFlushIntervalMillis());
         props.setLong("timeoutMillis", diskLog.getTimeoutMillis());
         props.setLong("logConnectionTimeout", logConnectionTimeout);
+        props.setLong("groupCommitWindowMillis",
+                diskLog.getGroupCommitWindowMillis());
+        LogFlushTask logFlushTask = diskLog.getLogFlushTask();
+        if (logFlushTask != null && diskLog.getGroupCommitWindowMillis() > 0)
+        {
+            props.setLong("groupCommitSyncs", logFlushTask.getSyncCount());
+            props.setDouble("groupCommitSyncAvgMillis",
+                    logFlushTask.getSyncAvgMillis());
+            props.setDouble("groupCommitSyncMaxMillis",
+                    logFlushTask.getSyncMaxMillis());
+            props.setDouble("groupCommitAvgRecords",
+                    logFlushTask.getSyncAvgRecords());
+            props.setDouble("groupCommitAvgCommits",
+                    logFlushTask.getSyncAvgRequests());
+        }
+        props.setInt("seqnoIndexIntervalBytes",
+                diskLog.getSeqnoIndexIntervalBytes());
+        props.setBoolean("memoryMappedReads", diskLog.isMemoryMappedReads());
+        props.setBoolean("compressRotatedFiles",
+                diskLog.isCompressRotatedFiles());
+        LogCompressTask logCompressTask = diskLog.getLogCompressTask();
+        if (logCompressTask != null)
+        {
+            props.setLong("compressedFiles",
+                    logCompressTask.getFilesCompressed());
+            props.setInt("compressQueueSize", logCompressTask.getQueueSize());
+            props.setDouble("compressionRatio",
+                    logCompressTask.getCompressionRatio());
+        }
+
+        // Add streaming statistics summed over connected clients.
+        Server currentServer = server;
+        if (currentServer != null)
+        {
+            List<ProtocolStatistics> clientStats = currentServer
+                    .getClientStatistics();
+            double recordsPerSecond = 0;
+            double bytesPerSecond = 0;
+            double rttTotalMillis = 0;
+            double rttMaxMillis = 0;
+            long rttClients = 0;
+            long creditWaits = 0;
+            long uncompressedBytes = 0;
+            long compressedBytes = 0;
+            for (ProtocolStatistics stats : clientStats)
+            {
+                recordsPerSecond += stats.getRecordsPerSecond();
+                bytesPerSecond += stats.getBytesPerSecond();
+                if (stats.getAcks() > 0)
+                {
+                    rttTotalMillis += stats.getAvgRttMillis();
+                    rttClients++;
+                }
+                rttMaxMillis = Math.max(rttMaxMillis, stats.getMaxRttMillis());
+                creditWaits += stats.getCreditWaits();
+                uncompressedBytes += stats.getUncompressedBytes();
+                compressedBytes += stats.getCompressedBytes();
+            }
+            props.setInt("streamClients", clientStats.size());
+            props.setDouble("streamRecordsPerSecond", recordsPerSecond);
+            props.setDouble("streamBytesPerSecond", bytesPerSecond);
+            props.setDouble("streamAvgRttMillis",
+                    rttClients == 0 ? 0 : rttTotalMillis / rttClients);
+            props.setDouble("streamMaxRttMillis", rttMaxMillis);
+            props.setLong("streamCreditWaits", creditWaits);
+            props.setDouble("streamCompressionRatio", compressedBytes == 0
+                    ? 1
+                    : (double) uncompressedBytes / compressedBytes);
+        }
         props.setBoolean("readOnly", readOnly);
 
         return props;
@@ -29,6 +29,7 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import javax.sql.rowset.serial.SerialBlob;
@@ -51,6 +52,7 @@ import com.continuent.tungsten.replicator.event.ReplDBMSFilteredEvent;
 import com.continuent.tungsten.replicator.event.ReplEvent;
 import com.continuent.tungsten.replicator.event.ReplOption;
 import com.continuent.tungsten.replicator.thl.log.DiskLog;
+import com.continuent.tungsten.replicator.thl.log.LogCompressionSummary;
 import com.continuent.tungsten.replicator.thl.log.LogConnection;
 
 /**
@@ -185,6 +187,17 @@ public class THLManagerCtrl
         return new InfoHolder(minSeqno, maxSeqno, maxSeqno - minSeqno, -1);
     }
 
+    /**
+     * Reads log file headers to summarize compression of log files.
+     * 
+     * @return Compression summary
+     */
+    public LogCompressionSummary getCompressionSummary()
+            throws ReplicatorException, InterruptedException
+    {
+        return diskLog.getCompressionSummary();
+    }
+
     /**
      * Formats column and column value for printing.
      * 
@@ -624,8 +637,10 @@ public class THLManagerCtrl
         if (!pureSQL)
             println(stringBuilder, "- SQL(" + sqlIndex + ") =");
         String schema = null;
-        for (OneRowChange oneRowChange : rowChange.getRowChanges())
+        Iterator<OneRowChange> rowChanges = rowChange.rowChangeIterator();
+        while (rowChanges.hasNext())
         {
+            OneRowChange oneRowChange = rowChanges.next();
             // Output row change details.
             if (pureSQL)
                 println(stringBuilder,
@@ -839,6 +854,16 @@ public class THLManagerCtrl
                 println("max seq# = " + info.getMaxSeqNo());
                 println("events = " + info.getEventCount());
 
+                LogCompressionSummary summary = thlManager
+                        .getCompressionSummary();
+                println("files = " + summary.getFiles());
+                println("compressed files = " + summary.getCompressedFiles());
+                println("stored bytes = " + summary.getStoredBytes());
+                println("uncompressed bytes = "
+                        + summary.getUncompressedBytes());
+                println(String.format("compression ratio = %.2f",
+                        summary.getCompressionRatio()));
+
                 thlManager.release();
             }
             else if (THLCommands.LIST.equals(command))
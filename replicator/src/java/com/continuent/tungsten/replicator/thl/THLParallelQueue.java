@@ -39,6 +39,8 @@ import com.continuent.tungsten.replicator.event.ReplEvent;
 import com.continuent.tungsten.replicator.event.ReplOptionParams;
 import com.continuent.tungsten.replicator.plugin.PluginContext;
 import com.continuent.tungsten.replicator.storage.ParallelStore;
+import com.continuent.tungsten.replicator.storage.parallel.ChannelBarrier;
+import com.continuent.tungsten.replicator.storage.parallel.LoadBalancingPartitioner;
 import com.continuent.tungsten.replicator.storage.parallel.Partitioner;
 import com.continuent.tungsten.replicator.storage.parallel.PartitionerResponse;
 import com.continuent.tungsten.replicator.storage.parallel.SimplePartitioner;
@@ -65,12 +67,15 @@ public class THLParallelQueue implements ParallelStore
     private int                                                 syncInterval        = 5000;
     private int                                                 maxOfflineInterval  = 300;
     private String                                              thlStoreName        = "thl";
+    private boolean                                             sharedReader        = false;
 
     // THL for which we are implementing a parallel queue.
     private THL                                                 thl;
 
     // Read task control information.
     private List<THLParallelReadTask>                           readTasks;
+    private THLParallelSharedReadTask                           sharedReadTask;
+    private boolean[]                                           tasksStarted;
     private ReplDBMSEvent                                       lastInsertedEvent;
 
     // Headers used to track the restart position from downstream tasks.
@@ -96,9 +101,7 @@ public class THLParallelQueue implements ParallelStore
     private boolean                                             stopRequested       = false;
 
     // Control information for event serialization to support shard processing.
-    private int                                                 criticalPartition   = -1;
-    private AtomicCounter                                       activeSize          = new AtomicCounter(
-                                                                                            0);
+    private ChannelBarrier                                      barrier;
 
     // Control data to enforce maximum offline interval. These variables limit
     // the time interval between most and least advanced read threads.
@@ -187,6 +190,24 @@ public class THLParallelQueue implements ParallelStore
         this.maxOfflineInterval = maxOfflineInterval;
     }
 
+    /** Returns true if partitions share a single reader on the THL. */
+    public boolean isSharedReader()
+    {
+        return sharedReader;
+    }
+
+    /**
+     * If true, a single thread reads and partitions each THL event once and
+     * hands it to the queue of its partition. Otherwise each partition reads
+     * the THL on its own and skips events in other partitions. The shared
+     * reader saves I/O and CPU when there are many partitions but stops for
+     * all partitions when the queue of any one partition is full.
+     */
+    public void setSharedReader(boolean sharedReader)
+    {
+        this.sharedReader = sharedReader;
+    }
+
     /** Sets the last header processed. This is required for restart. */
     public void setLastHeader(int taskId, ReplDBMSHeader header)
             throws ReplicatorException
@@ -293,34 +314,23 @@ public class THLParallelQueue implements ParallelStore
             return;
         }
 
-        // Partition the event. Handle critical sections by "blocking to zero"
-        // under the following circumstances:
-        // 1.) Event is critical and we are not in a critical section.
-        // 2.) We are in a critical section but the shard ID has changed.
-        // 3.) Event is not critical and we are in a critical section.
+        // Partition the event. Critical events wait until the channels of
+        // the shards they touch are empty. Events that follow on those
+        // channels wait until the critical event has been taken.
         PartitionerResponse response = partitioner.partition(event, taskId);
-        if (response.isCritical()
-                && (criticalPartition != response.getPartition()))
+        boolean[] touched = null;
+        if (response.isCritical())
+            touched = barrier.getTouchedChannels(event, partitioner, taskId);
+        if (barrier.await(response.getPartition(), response.isCritical(),
+                touched))
         {
-            // Covers cases 1 & 2. We have to serialize here.
             serializationCount++;
-            blockToZero();
-            criticalPartition = response.getPartition();
             if (logger.isDebugEnabled())
             {
                 logger.debug("Enabling critical partition: partition="
-                        + criticalPartition + " seqno=" + event.getSeqno());
-            }
-        }
-        else if (!response.isCritical() && criticalPartition >= 0)
-        {
-            // Covers case 3.
-            blockToZero();
-            criticalPartition = -1;
-            if (logger.isDebugEnabled())
-            {
-                logger.debug("Ending critical partition: seqno="
-                        + event.getSeqno());
+                        + response.getPartition() + " seqno="
+                        + event.getSeqno() + " shardsKnown="
+                        + (touched != null));
             }
         }
 
@@ -360,13 +370,13 @@ public class THLParallelQueue implements ParallelStore
         // Advance the head seqno counter. This allows all eligible threads
         // to move forward. Update the active size to show how many events are
         // logically in the queue.
-        activeSize.incrAndGetSeqno();
+        barrier.increment(response.getPartition());
         headSeqnoCounter.setSeqno(event.getSeqno());
         if (logger.isDebugEnabled())
         {
             logger.debug("Updating position: headSeqnoCounter="
                     + headSeqnoCounter.getSeqno() + " activeSize="
-                    + activeSize.getSeqno());
+                    + barrier.getSize());
         }
 
         // Record last event handled.
@@ -423,17 +433,6 @@ public class THLParallelQueue implements ParallelStore
         }
     }
 
-    // Block until all queues are empty.
-    private void blockToZero() throws InterruptedException
-    {
-        if (logger.isDebugEnabled())
-        {
-            logger.debug("Blocking to zero: activeSize="
-                    + activeSize.getSeqno());
-        }
-        activeSize.waitSeqnoLessEqual(0);
-    }
-
     // Inserts a control event in all queues.
     private void putControlEvent(int type, ReplDBMSEvent event)
             throws InterruptedException
@@ -469,12 +468,12 @@ public class THLParallelQueue implements ParallelStore
         if (logger.isDebugEnabled())
         {
             logger.debug("Returning event: taskId=" + taskId + " seqno="
-                    + event.getSeqno() + " activeSize=" + activeSize.getSeqno());
+                    + event.getSeqno() + " activeSize=" + barrier.getSize());
         }
 
         // Only decrement for a proper event belonging to a transaction.
         if (event instanceof ReplDBMSEvent)
-            activeSize.decrAndGetSeqno();
+            barrier.decrement(taskId);
         return event;
     }
 
@@ -534,6 +533,7 @@ public class THLParallelQueue implements ParallelStore
         // Allocate the thread interval checker now that we know the number of
         // partitions.
         intervalGuard = new AtomicIntervalGuard<Object>(partitions);
+        barrier = new ChannelBarrier(partitions);
         maxOfflineMillis = maxOfflineInterval * 1000;
     }
 
@@ -570,11 +570,20 @@ public class THLParallelQueue implements ParallelStore
             THLParallelReadTask readTask = new THLParallelReadTask(i, thl,
                     partitioner, headSeqnoCounter, intervalGuard, maxSize,
                     maxControlEvents, syncInterval,
-                    context.getEventDispatcher());
+                    context.getEventDispatcher(), sharedReader);
             readTasks.add(readTask);
             readTask.prepare(context);
         }
         lastHeaders = new ReplDBMSHeader[partitions];
+
+        // Add the shared reader that feeds read tasks if desired.
+        if (sharedReader)
+        {
+            sharedReadTask = new THLParallelSharedReadTask(thl, partitioner,
+                    headSeqnoCounter, readTasks, context.getEventDispatcher());
+            sharedReadTask.prepare(context);
+            tasksStarted = new boolean[partitions];
+        }
     }
 
     /**
@@ -585,6 +594,12 @@ public class THLParallelQueue implements ParallelStore
     public synchronized void release(PluginContext context)
             throws ReplicatorException
     {
+        if (sharedReadTask != null)
+        {
+            sharedReadTask.stop();
+            sharedReadTask.release();
+            sharedReadTask = null;
+        }
         if (readTasks != null)
         {
             for (THLParallelReadTask readTask : readTasks)
@@ -599,18 +614,32 @@ public class THLParallelQueue implements ParallelStore
     }
 
     /**
-     * Start the reader for a particular task.
+     * Start the reader for a particular task. The shared reader starts once all
+     * tasks have started so that it reads from the common restart position.
      */
     public synchronized void start(int taskId)
     {
         this.readTasks.get(taskId).start();
+        if (sharedReadTask != null)
+        {
+            tasksStarted[taskId] = true;
+            for (boolean started : tasksStarted)
+            {
+                if (!started)
+                    return;
+            }
+            sharedReadTask.start();
+        }
     }
 
     /**
-     * Stop the reader for a particular task.
+     * Stop the reader for a particular task. This also stops the shared reader
+     * as it cannot make progress without all tasks.
      */
     public synchronized void stop(int taskId)
     {
+        if (sharedReadTask != null)
+            sharedReadTask.stop();
         this.readTasks.get(taskId).stop();
     }
 
@@ -664,10 +693,17 @@ public class THLParallelQueue implements ParallelStore
         props.setInt("maxOfflineInterval", maxOfflineInterval);
         props.setDouble("estimatedOfflineInterval",
                 ((double) intervalGuard.getInterval()) / 1000.0);
-        props.setBoolean("serialized", this.criticalPartition >= 0);
+        int criticalPartition = barrier.getCriticalChannel();
+        props.setBoolean("serialized", criticalPartition >= 0);
         props.setLong("serializationCount", serializationCount);
         props.setBoolean("stopRequested", stopRequested);
         props.setInt("criticalPartition", criticalPartition);
+        props.putAll(barrier.status());
+        if (partitioner instanceof LoadBalancingPartitioner)
+            props.putAll(((LoadBalancingPartitioner) partitioner).status());
+        props.setBoolean("sharedReader", sharedReader);
+        if (sharedReadTask != null)
+            props.setString("store.shared", sharedReadTask.toString());
         for (int i = 0; i < readTasks.size(); i++)
         {
             props.setString("store." + i, readTasks.get(i).toString());
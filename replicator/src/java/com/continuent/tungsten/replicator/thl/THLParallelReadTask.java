@@ -23,6 +23,7 @@
 package com.continuent.tungsten.replicator.thl;
 
 import java.sql.Timestamp;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicLong;
@@ -51,6 +52,11 @@ import com.continuent.tungsten.replicator.util.AtomicIntervalGuard;
 /**
  * Performs coordinated reads on the THL on behalf of a particular client (a
  * task thread) and buffers log records up to a local limit.
+ * <p>
+ * In shared mode the task does not read the log itself. Instead a
+ * {@link THLParallelSharedReadTask} reads each event once and dispatches it to
+ * every task, which buffers the events in its own partition in a bounded ring
+ * buffer.
  * 
  * @author <a href="mailto:robert.hodges@continuent.com">Robert Hodges</a>
  * @version 1.0
@@ -108,13 +114,20 @@ public class THLParallelReadTask implements Runnable
     // Flag indicating task is cancelled.
     private volatile boolean               cancelled            = false;
 
+    // If true, events are dispatched to us by a shared reader.
+    private final boolean                  shared;
+
     /**
      * Instantiate a read task.
+     * 
+     * @param shared If true, the task does not read the log but receives
+     *            events from a shared reader through dispatch()
      */
     public THLParallelReadTask(int taskId, THL thl, Partitioner partitioner,
             AtomicCounter headSeqnoCounter,
             AtomicIntervalGuard<?> intervalGuard, int maxSize,
-            int maxControlEvents, int syncInterval, EventDispatcher dispatcher)
+            int maxControlEvents, int syncInterval, EventDispatcher dispatcher,
+            boolean shared)
     {
         this.taskId = taskId;
         this.thl = thl;
@@ -122,9 +135,28 @@ public class THLParallelReadTask implements Runnable
         this.headSeqnoCounter = headSeqnoCounter;
         this.intervalGuard = intervalGuard;
         this.maxControlEvents = maxControlEvents;
-        this.eventQueue = new LinkedBlockingQueue<ReplEvent>(maxSize);
         this.syncInterval = syncInterval;
         this.dispatcher = dispatcher;
+        this.shared = shared;
+
+        // A shared reader fills queues in turn, so we use a fixed ring buffer
+        // for each partition.
+        if (shared)
+            this.eventQueue = new ArrayBlockingQueue<ReplEvent>(maxSize);
+        else
+            this.eventQueue = new LinkedBlockingQueue<ReplEvent>(maxSize);
+    }
+
+    /** Returns the task ID. */
+    public int getTaskId()
+    {
+        return taskId;
+    }
+
+    /** Returns the first seqno to read. */
+    public synchronized long getRestartSeqno()
+    {
+        return restartSeqno;
     }
 
     /**
@@ -147,6 +179,13 @@ public class THLParallelReadTask implements Runnable
         this.readQueue = new THLParallelReadQueue(eventQueue, maxControlEvents,
                 restartSeqno);
 
+        // Report our starting position to the interval guard.
+        intervalGuard.report(taskId, restartSeqno, restartExtractMillis);
+
+        // Shared tasks do not read from the log.
+        if (shared)
+            return;
+
         // Connect to the log.
         connection = thl.connect(true);
 
@@ -181,17 +220,15 @@ public class THLParallelReadTask implements Runnable
             }
         };
         connection.setReadFilter(filter);
-
-        // Report our starting position to the interval guard.
-        intervalGuard.report(taskId, restartSeqno, restartExtractMillis);
     }
 
     /**
-     * Start the task thread. This must be called after prepare.
+     * Start the task thread. This must be called after prepare. Shared tasks
+     * do not have a thread.
      */
     public synchronized void start()
     {
-        if (this.taskThread == null)
+        if (!shared && this.taskThread == null)
         {
             taskThread = new Thread(this);
             taskThread.setName("store-" + thl.getName() + "-" + taskId);
@@ -228,6 +265,9 @@ public class THLParallelReadTask implements Runnable
         {
             connection.release();
             connection = null;
+        }
+        if (readQueue != null)
+        {
             eventQueue.clear();
             readQueue.release();
         }
@@ -259,70 +299,15 @@ public class THLParallelReadTask implements Runnable
                 // Read next event from the log.
                 THLEvent thlEvent = connection.next();
                 readSeqno = thlEvent.getSeqno();
-                if (lowWaterMark.get() == 0)
-                    lowWaterMark.set(readSeqno);
-                readCount.incrementAndGet();
-                if (logger.isDebugEnabled())
-                {
-                    logger.debug("Read event from THL: seqno="
-                            + thlEvent.getSeqno() + " fragno="
-                            + thlEvent.getFragno() + " lastFrag="
-                            + thlEvent.getLastFrag() + " deserialized="
-                            + (thlEvent.getReplEvent() != null));
-                }
 
                 // Ensure it is safe to process this value. This lock prevents
                 // our thread from jumping too far ahead of others and
                 // coordinates serialization.
                 headSeqnoCounter.waitSeqnoGreaterEqual(thlEvent.getSeqno());
 
-                // Report our position to the interval guard.
-                intervalGuard.report(taskId, thlEvent.getSeqno(), thlEvent
-                        .getSourceTstamp().getTime());
-
-                // If we do not want it, just go to the next event. This
-                // would be null if the read filter discarded the event due
-                // to it being in another partition.
-                ReplDBMSEvent replDBMSEvent = (ReplDBMSEvent) thlEvent
-                        .getReplEvent();
-                if (replDBMSEvent == null)
-                {
-                    discardCount.incrementAndGet();
-                    checkSync(thlEvent);
-                    if (logger.isDebugEnabled())
-                    {
-                        logger.debug("Discarded null event: seqno="
-                                + thlEvent.getSeqno() + " fragno="
-                                + thlEvent.getFragno());
-                    }
-                    continue;
-                }
-
-                // Discard empty events. These should not be common.
-                DBMSEvent dbmsEvent = replDBMSEvent.getDBMSEvent();
-                if (dbmsEvent == null | dbmsEvent instanceof DBMSEmptyEvent
-                        || dbmsEvent.getData().size() == 0)
-                {
-                    discardCount.incrementAndGet();
-                    if (logger.isDebugEnabled())
-                    {
-                        logger.debug("Discarded empty event: seqno="
-                                + thlEvent.getSeqno() + " fragno="
-                                + thlEvent.getFragno());
-                    }
-                    checkSync(thlEvent);
-                    continue;
-                }
-
-                // Add to queue.
-                if (logger.isDebugEnabled())
-                {
-                    logger.debug("Adding event to parallel queue:  taskId="
-                            + taskId + " seqno=" + replDBMSEvent.getSeqno()
-                            + " fragno=" + replDBMSEvent.getFragno());
-                }
-                acceptCount.incrementAndGet();
-                readQueue.post(replDBMSEvent);
+                // Queue the event. The event would be null if the read filter
+                // discarded it due to it being in another partition.
+                dispatch(thlEvent, thlEvent.getReplEvent() != null);
             }
         }
         catch (InterruptedException e)
@@ -352,6 +337,83 @@ public class THLParallelReadTask implements Runnable
                 + " store=" + thl.getName() + " taskId=" + taskId);
     }
 
+    /**
+     * Processes the next event read from the log. The read thread calls this
+     * method for every event, whether or not the event is in our partition.
+     * Caller must ensure the head seqno counter has reached the event.
+     * 
+     * @param thlEvent Event read from the log
+     * @param accepted If true, the event belongs to this partition
+     */
+    void dispatch(THLEvent thlEvent, boolean accepted)
+            throws InterruptedException
+    {
+        if (lowWaterMark.get() == 0)
+            lowWaterMark.set(thlEvent.getSeqno());
+        readCount.incrementAndGet();
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Read event from THL: seqno=" + thlEvent.getSeqno()
+                    + " fragno=" + thlEvent.getFragno() + " lastFrag="
+                    + thlEvent.getLastFrag() + " taskId=" + taskId
+                    + " accepted=" + accepted);
+        }
+
+        // Report our position to the interval guard.
+        intervalGuard.report(taskId, thlEvent.getSeqno(), thlEvent
+                .getSourceTstamp().getTime());
+
+        // If we do not want it, just go to the next event.
+        ReplDBMSEvent replDBMSEvent = (ReplDBMSEvent) thlEvent.getReplEvent();
+        if (!accepted || replDBMSEvent == null)
+        {
+            discardCount.incrementAndGet();
+            checkSync(thlEvent);
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Discarded event from other partition: seqno="
+                        + thlEvent.getSeqno() + " fragno="
+                        + thlEvent.getFragno());
+            }
+            return;
+        }
+
+        // Discard empty events. These should not be common.
+        DBMSEvent dbmsEvent = replDBMSEvent.getDBMSEvent();
+        if (dbmsEvent == null | dbmsEvent instanceof DBMSEmptyEvent
+                || dbmsEvent.getData().size() == 0)
+        {
+            discardCount.incrementAndGet();
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Discarded empty event: seqno="
+                        + thlEvent.getSeqno() + " fragno="
+                        + thlEvent.getFragno());
+            }
+            checkSync(thlEvent);
+            return;
+        }
+
+        // Add to queue.
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Adding event to parallel queue:  taskId=" + taskId
+                    + " seqno=" + replDBMSEvent.getSeqno() + " fragno="
+                    + replDBMSEvent.getFragno());
+        }
+        acceptCount.incrementAndGet();
+        readQueue.post(replDBMSEvent);
+    }
+
+    /**
+     * Records a failure of the thread that reads on our behalf so that clients
+     * see it on the next call to get().
+     */
+    void failed(Throwable t)
+    {
+        throwable = t;
+    }
+
     // Handle synchronization of the read position in the queue.
     private void checkSync(THLEvent thlEvent) throws InterruptedException
     {
@@ -455,7 +517,9 @@ public class THLParallelReadTask implements Runnable
         sb.append(this.getClass().getSimpleName());
         sb.append(" task_id=").append(taskId);
         sb.append(" thread_name=");
-        if (taskThread == null)
+        if (shared)
+            sb.append("shared");
+        else if (taskThread == null)
             sb.append("null");
         else
             sb.append(taskThread.getName());
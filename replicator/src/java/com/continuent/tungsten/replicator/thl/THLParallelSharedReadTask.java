@@ -0,0 +1,242 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.thl;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.continuent.tungsten.commons.patterns.event.EventDispatcher;
+import com.continuent.tungsten.replicator.ErrorNotification;
+import com.continuent.tungsten.replicator.ReplicatorException;
+import com.continuent.tungsten.replicator.event.ReplDBMSHeaderData;
+import com.continuent.tungsten.replicator.plugin.PluginContext;
+import com.continuent.tungsten.replicator.storage.parallel.Partitioner;
+import com.continuent.tungsten.replicator.storage.parallel.PartitionerResponse;
+import com.continuent.tungsten.replicator.thl.log.LogConnection;
+import com.continuent.tungsten.replicator.util.AtomicCounter;
+
+/**
+ * Reads the THL once on behalf of all tasks of a parallel queue. Each event is
+ * read and partitioned a single time, then dispatched to every read task so
+ * that the task in the event's partition queues it and the others advance
+ * their positions. Read tasks buffer events in bounded queues, so a partition
+ * whose queue is full holds back the reader until its client catches up.
+ *
+ * @version 1.0
+ */
+public class THLParallelSharedReadTask implements Runnable
+{
+    private static Logger                   logger    = Logger.getLogger(THLParallelSharedReadTask.class);
+
+    // Partitioner instance.
+    private final Partitioner               partitioner;
+
+    // Read tasks to which we dispatch events, indexed by task ID.
+    private final List<THLParallelReadTask> readTasks;
+
+    // Counter to coordinate queue operation.
+    private final AtomicCounter             headSeqnoCounter;
+    private final AtomicLong                readCount = new AtomicLong(0);
+    private volatile long                   readSeqno = -1;
+
+    // Dispatcher to report errors.
+    private final EventDispatcher           dispatcher;
+
+    // Connection to the log.
+    private final THL                       thl;
+    private LogConnection                   connection;
+
+    // Thread ID for this read task.
+    private volatile Thread                 taskThread;
+
+    // Flag indicating task is cancelled.
+    private volatile boolean                cancelled = false;
+
+    /**
+     * Instantiate a shared read task.
+     */
+    public THLParallelSharedReadTask(THL thl, Partitioner partitioner,
+            AtomicCounter headSeqnoCounter,
+            List<THLParallelReadTask> readTasks, EventDispatcher dispatcher)
+    {
+        this.thl = thl;
+        this.partitioner = partitioner;
+        this.headSeqnoCounter = headSeqnoCounter;
+        this.readTasks = readTasks;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Connect to THL. Must be called before run().
+     */
+    public synchronized void prepare(PluginContext context)
+            throws ReplicatorException, InterruptedException
+    {
+        connection = thl.connect(true);
+    }
+
+    /**
+     * Start the task thread. This must be called after prepare and after the
+     * restart header is set on read tasks.
+     */
+    public synchronized void start()
+    {
+        if (this.taskThread == null)
+        {
+            taskThread = new Thread(this);
+            taskThread.setName("store-" + thl.getName() + "-shared");
+            taskThread.start();
+        }
+    }
+
+    /**
+     * Cancel the thread. This must be called prior to release.
+     */
+    public synchronized void stop()
+    {
+        cancelled = true;
+        if (this.taskThread != null)
+        {
+            taskThread.interrupt();
+            try
+            {
+                taskThread.join(2000);
+            }
+            catch (InterruptedException e)
+            {
+            }
+        }
+    }
+
+    /**
+     * Terminate reader task and free all resources. Must be called following
+     * run().
+     */
+    public synchronized void release()
+    {
+        if (connection != null)
+        {
+            connection.release();
+            connection = null;
+        }
+    }
+
+    /**
+     * Implements read loop on the log to feed event queues of all tasks.
+     */
+    @Override
+    public void run()
+    {
+        // All tasks start from the same position.
+        long restartSeqno = readTasks.get(0).getRestartSeqno();
+        readSeqno = restartSeqno;
+
+        try
+        {
+            // Seek to initial position to start reading.
+            if (!connection.seek(restartSeqno))
+            {
+                throw new THLException(
+                        "Unable to locate starting seqno in log: seqno="
+                                + restartSeqno + " store=" + thl.getName());
+            }
+
+            // Read records until we are cancelled.
+            while (!cancelled)
+            {
+                // Read next event from the log.
+                THLEvent thlEvent = connection.next();
+                readSeqno = thlEvent.getSeqno();
+                readCount.incrementAndGet();
+
+                // Ensure it is safe to process this value. This lock prevents
+                // us from jumping ahead of the store and coordinates
+                // serialization.
+                headSeqnoCounter.waitSeqnoGreaterEqual(thlEvent.getSeqno());
+
+                // Partition once and dispatch to all tasks.
+                int partition = partition(thlEvent);
+                for (THLParallelReadTask readTask : readTasks)
+                {
+                    readTask.dispatch(thlEvent,
+                            readTask.getTaskId() == partition);
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            if (!cancelled)
+                logger.warn("Unexpected interrupt before reader thread was cancelled");
+        }
+        catch (Throwable e)
+        {
+            String msg = "Read failed on transaction log: seqno=" + readSeqno
+                    + " store=" + thl.getName();
+            for (THLParallelReadTask readTask : readTasks)
+                readTask.failed(e);
+            try
+            {
+                dispatcher.put(new ErrorNotification(msg, e));
+            }
+            catch (InterruptedException e1)
+            {
+                logger.warn("Task cancelled while posting error notification",
+                        null);
+            }
+        }
+
+        // Close up shop.
+        logger.info("Terminating shared parallel reader thread: seqno="
+                + readSeqno + " store=" + thl.getName());
+    }
+
+    // Compute the partition for an event from its header.
+    private int partition(THLEvent thlEvent) throws ReplicatorException
+    {
+        ReplDBMSHeaderData header = new ReplDBMSHeaderData(thlEvent.getSeqno(),
+                thlEvent.getFragno(), thlEvent.getLastFrag(),
+                thlEvent.getSourceId(), thlEvent.getEpochNumber(),
+                thlEvent.getEventId(), thlEvent.getShardId(),
+                thlEvent.getSourceTstamp());
+        PartitionerResponse response = partitioner.partition(header, 0);
+        return response.getPartition();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see java.lang.Object#toString()
+     */
+    public String toString()
+    {
+        StringBuffer sb = new StringBuffer();
+        sb.append(this.getClass().getSimpleName());
+        sb.append(" thread_name=");
+        if (taskThread == null)
+            sb.append("null");
+        else
+            sb.append(taskThread.getName());
+        sb.append(" seqno=").append(readSeqno);
+        sb.append(" read=").append(readCount);
+        return sb.toString();
+    }
+}
@@ -29,6 +29,7 @@ import com.continuent.tungsten.replicator.event.ReplControlEvent;
 import com.continuent.tungsten.replicator.event.ReplDBMSEvent;
 import com.continuent.tungsten.replicator.event.ReplDBMSHeader;
 import com.continuent.tungsten.replicator.event.ReplEvent;
+import com.continuent.tungsten.replicator.extractor.BacklogProvider;
 import com.continuent.tungsten.replicator.extractor.Extractor;
 import com.continuent.tungsten.replicator.extractor.ExtractorException;
 import com.continuent.tungsten.replicator.plugin.PluginContext;
@@ -40,7 +41,7 @@ import com.continuent.tungsten.replicator.thl.log.LogConnection;
  * @author <a href="mailto:robert.hodges@continuent.com">Robert Hodges</a>
  * @version 1.0
  */
-public class THLStoreExtractor implements Extractor
+public class THLStoreExtractor implements Extractor, BacklogProvider
 {
     private static Logger logger     = Logger.getLogger(THLStoreExtractor.class);
     private String        storeName;
@@ -219,6 +220,16 @@ public class THLStoreExtractor implements Extractor
         return (fragno > 0 || thl.pollSeqno(seqno + 1));
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * @see com.continuent.tungsten.replicator.extractor.BacklogProvider#getBacklog()
+     */
+    public long getBacklog()
+    {
+        return Math.max(thl.getMaxStoredSeqno() - seqno, 0);
+    }
+
     /**
      * Stores the last event we have processed. {@inheritDoc}
      * 
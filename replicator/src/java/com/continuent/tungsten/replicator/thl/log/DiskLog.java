@@ -25,6 +25,7 @@ package com.continuent.tungsten.replicator.thl.log;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.log4j.Logger;
 
@@ -62,6 +63,7 @@ public class DiskLog
                                                                             Integer.MAX_VALUE)
                                                                     .length();
     private static final String  DATA_FILENAME_PREFIX       = "thl.data.";
+    private static final String  COMPRESS_FILENAME_PREFIX   = "thl.compress.";
 
     /** Store and compare checksum values on the log. */
     private boolean              doChecksum                 = true;
@@ -116,11 +118,49 @@ public class DiskLog
     private boolean              fsyncOnFlush               = false;
 
     /**
-     * Log flush task; enabled if asynchronous flush interval is greater than 0.
+     * If greater than 0, commits are grouped and synced by the log flush task
+     * at most once per this many milliseconds.
+     */
+    private long                 groupCommitWindowMillis    = 0;
+
+    /**
+     * Log flush task; enabled if asynchronous flush interval or group commit
+     * window is greater than 0.
      */
     private LogFlushTask         logSyncTask;
     private Thread               logSyncThread;
 
+    /**
+     * Approximate number of bytes between entries in the sparse seqno index
+     * kept for each log file. 0 disables the index.
+     */
+    private int                  seqnoIndexIntervalBytes    = 1000000;
+
+    /** Seqno index for the log file currently being written. */
+    private LogSeqnoIndex        writeSeqnoIndex;
+
+    /**
+     * If true, log connections read files through memory mappings rather than
+     * buffered I/O.
+     */
+    private boolean              memoryMappedReads          = false;
+
+    /**
+     * If true, log files are compressed in the background once the log
+     * rotates to a new file.
+     */
+    private boolean              compressRotatedFiles       = false;
+
+    /** Log compression task; enabled if compressRotatedFiles is true. */
+    private LogCompressTask      logCompressTask;
+    private Thread               logCompressThread;
+
+    /**
+     * Lock held while removing, truncating, or replacing log files so that
+     * compressed files do not replace files that have changed.
+     */
+    private final Object         fileLock                   = new Object();
+
     /**
      * Creates a new log instance.
      */
@@ -285,6 +325,96 @@ public class DiskLog
         this.fsyncOnFlush = fsyncOnFlush;
     }
 
+    /**
+     * Sets the group commit window in milliseconds. If greater than 0, commits
+     * wait until a background task syncs the log to storage, which it does at
+     * most once per window for all commits that arrive in the meantime. 0
+     * disables group commit.
+     */
+    public void setGroupCommitWindowMillis(long groupCommitWindowMillis)
+    {
+        this.groupCommitWindowMillis = groupCommitWindowMillis;
+    }
+
+    /**
+     * Returns the group commit window in milliseconds.
+     */
+    public long getGroupCommitWindowMillis()
+    {
+        return groupCommitWindowMillis;
+    }
+
+    /**
+     * Returns the log flush task, which holds group commit statistics, or null
+     * if there is no such task.
+     */
+    public LogFlushTask getLogFlushTask()
+    {
+        return logSyncTask;
+    }
+
+    /**
+     * Sets the approximate number of bytes between sparse seqno index entries.
+     * Smaller values make seeks faster at the cost of larger index files. 0
+     * disables the index.
+     */
+    public void setSeqnoIndexIntervalBytes(int seqnoIndexIntervalBytes)
+    {
+        this.seqnoIndexIntervalBytes = seqnoIndexIntervalBytes;
+    }
+
+    /**
+     * Returns the number of bytes between sparse seqno index entries.
+     */
+    public int getSeqnoIndexIntervalBytes()
+    {
+        return seqnoIndexIntervalBytes;
+    }
+
+    /**
+     * If set to true, readers use memory-mapped I/O on rotated log files. This
+     * avoids copying record data when many connections read the same files.
+     * The file currently being written is always read with buffered I/O.
+     */
+    public void setMemoryMappedReads(boolean memoryMappedReads)
+    {
+        this.memoryMappedReads = memoryMappedReads;
+    }
+
+    /**
+     * Returns true if readers use memory-mapped I/O.
+     */
+    public boolean isMemoryMappedReads()
+    {
+        return memoryMappedReads;
+    }
+
+    /**
+     * If set to true, log files are compressed in the background after the
+     * log rotates to a new file. Readers decompress records transparently.
+     */
+    public void setCompressRotatedFiles(boolean compressRotatedFiles)
+    {
+        this.compressRotatedFiles = compressRotatedFiles;
+    }
+
+    /**
+     * Returns true if rotated log files are compressed.
+     */
+    public boolean isCompressRotatedFiles()
+    {
+        return compressRotatedFiles;
+    }
+
+    /**
+     * Returns the log compression task, which holds compression statistics,
+     * or null if there is no such task.
+     */
+    public LogCompressTask getLogCompressTask()
+    {
+        return logCompressTask;
+    }
+
     // Administrative API calls.
     public void setReadOnly(boolean readOnly)
     {
@@ -302,6 +432,8 @@ public class DiskLog
         logger.info(String.format("Using directory '%s' for replicator logs",
                 logDirName));
         logger.info("Checksums enabled for log records: " + doChecksum);
+        logger.info("Memory-mapped reads enabled: " + memoryMappedReads);
+        logger.info("Compress rotated log files: " + compressRotatedFiles);
 
         // Ensure log directory is ready for use, which includes creating
         // a new log directory if desired.
@@ -431,6 +563,14 @@ public class DiskLog
         long lastCompleteEventOffset = logFile.getOffset();
         boolean lastFrag = true;
 
+        // Rebuild the seqno index for the file while we scan. This ensures
+        // the index matches the file even if we crashed before index writes
+        // reached storage.
+        LogSeqnoIndex seqnoIndex = null;
+        if (seqnoIndexIntervalBytes > 0)
+            seqnoIndex = new LogSeqnoIndex(logDir, logFileName,
+                    seqnoIndexIntervalBytes);
+
         if (logger.isDebugEnabled())
             logger.debug("Starting max seqno is " + maxSeqno);
 
@@ -446,12 +586,15 @@ public class DiskLog
             while (!currentRecord.isEmpty())
             {
                 // See what kind of event we have.
-                lastRecordType = currentRecord.getData()[0];
+                lastRecordType = currentRecord.getRecordType();
                 if (lastRecordType == LogRecord.EVENT_REPL)
                 {
                     LogEventReplReader eventReader = new LogEventReplReader(
                             currentRecord, eventSerializer, doChecksum);
                     lastFrag = eventReader.isLastFrag();
+                    if (seqnoIndex != null && eventReader.getFragno() == 0)
+                        seqnoIndex.add(eventReader.getSeqno(),
+                                currentRecord.getOffset());
 
                     // If we are on a last fragment of an event, update the
                     // last complete transaction offset and store the sequence
@@ -480,6 +623,13 @@ public class DiskLog
                         // number we just discovered.
                         index.setMaxIndexedSeqno(maxSeqno);
 
+                        // The file is complete, so its seqno index is too.
+                        if (seqnoIndex != null)
+                        {
+                            writeSeqnoIndex(seqnoIndex);
+                            seqnoIndex = null;
+                        }
+
                         // Create the next file.
                         logFileIndexPos = fileName.lastIndexOf(".");
                         fileIndex = Long.valueOf(fileName
@@ -509,6 +659,8 @@ public class DiskLog
                             + " partially written bytes="
                             + (logFile.getLength() - currentRecord.getOffset()));
                     logFile.setLength(currentRecord.getOffset());
+                    if (seqnoIndex != null)
+                        seqnoIndex.truncate(currentRecord.getOffset());
                     logger.info("Log file truncated to end of last good record: length="
                             + logFile.getLength());
                 }
@@ -531,6 +683,8 @@ public class DiskLog
                             + "truncating to last full transaction: seqno="
                             + maxSeqno + " length=" + lastCompleteEventOffset);
                     logFile.setLength(lastCompleteEventOffset);
+                    if (seqnoIndex != null)
+                        seqnoIndex.truncate(lastCompleteEventOffset);
                 }
                 else
                 {
@@ -540,6 +694,14 @@ public class DiskLog
                             + "owns the write lock is still writing it.");
                 }
             }
+
+            // Save the seqno index for the last file and keep it open so the
+            // writer can append to it.
+            if (seqnoIndex != null && !readOnly && writeLock.isLocked())
+            {
+                writeSeqnoIndex(seqnoIndex);
+                openWriteSeqnoIndex(seqnoIndex);
+            }
         }
         catch (IOException e)
         {
@@ -556,12 +718,32 @@ public class DiskLog
 
         // If this log is writable, compute the write flush interval.
         logger.info("Setting up log flush policy: fsyncIntervalMillis="
-                + flushIntervalMillis + " fsyncOnFlush=" + this.fsyncOnFlush);
+                + flushIntervalMillis + " fsyncOnFlush=" + this.fsyncOnFlush
+                + " groupCommitWindowMillis=" + groupCommitWindowMillis);
         if (!this.readOnly)
         {
             startLogSyncTask();
         }
 
+        // If this log is writable and compresses rotated files, start
+        // compressing files left over from earlier runs.
+        if (compressRotatedFiles && isWritable())
+        {
+            for (File tempFile : listLogFiles(logDir, COMPRESS_FILENAME_PREFIX))
+            {
+                logger.info("Removing incomplete compressed log file: "
+                        + tempFile.getName());
+                tempFile.delete();
+            }
+            startLogCompressTask();
+            String lastFile = index.getLastFile();
+            for (String fileName : index.getFileNames())
+            {
+                if (!fileName.equals(lastFile))
+                    logCompressTask.addLogFile(fileName);
+            }
+        }
+
         // Open up the connection manager for business.
         this.cursorManager = new LogCursorManager();
         cursorManager.setTimeoutMillis(logConnectionTimeoutMillis);
@@ -584,16 +766,23 @@ public class DiskLog
         if (!readOnly)
             writeLock.release();
 
+        // Release the seqno index of the file we were writing.
+        closeWriteSeqnoIndex();
+
         // Terminate the log flush thread.
         stopLogSyncTask();
+
+        // Terminate the log compression thread.
+        stopLogCompressTask();
     }
 
     // Start log sync task.
     private void startLogSyncTask()
     {
-        if (flushIntervalMillis > 0)
+        if (flushIntervalMillis > 0 || groupCommitWindowMillis > 0)
         {
-            logSyncTask = new LogFlushTask(flushIntervalMillis);
+            logSyncTask = new LogFlushTask(flushIntervalMillis,
+                    groupCommitWindowMillis);
             logSyncThread = new Thread(logSyncTask, "log-sync-"
                     + logDir.getName());
             logSyncThread.start();
@@ -625,13 +814,47 @@ public class DiskLog
         }
     }
 
+    // Start log compression task.
+    private void startLogCompressTask()
+    {
+        logCompressTask = new LogCompressTask(this);
+        logCompressThread = new Thread(logCompressTask, "log-compress-"
+                + logDir.getName());
+        logCompressThread.start();
+        logger.info("Started log compression thread: "
+                + logCompressThread.getName());
+    }
+
+    // Stop log compression task.
+    private void stopLogCompressTask() throws InterruptedException
+    {
+        if (logCompressThread != null)
+        {
+            logger.info("Stopping log compression thread: "
+                    + logCompressThread.getName());
+            logCompressTask.cancel();
+            logCompressThread.interrupt();
+            try
+            {
+                logCompressThread.join(5000);
+            }
+            finally
+            {
+                if (logCompressThread.isAlive())
+                    logger.warn("Unable to terminate log compression thread: "
+                            + logCompressThread.getName());
+                logCompressThread = null;
+            }
+        }
+    }
+
     /**
      * Ensure the log sync tasks is running.
      */
     void checkLogSyncTask() throws InterruptedException
     {
         // Ensure that sync thread is healthy. If not, restart it.
-        if (flushIntervalMillis > 0 && logSyncTask.isFinished())
+        if (logSyncTask != null && logSyncTask.isFinished())
         {
             stopLogSyncTask();
             startLogSyncTask();
@@ -772,7 +995,14 @@ public class DiskLog
                             + dataFile.getFile().getName(), e);
         }
 
-        return startNewLogFile(seqno);
+        LogFile newFile = startNewLogFile(seqno);
+
+        // The previous file is complete once the caller releases it, so it
+        // can now be compressed.
+        if (logCompressTask != null)
+            logCompressTask.addLogFile(dataFile.getFile().getName());
+
+        return newFile;
     }
 
     /**
@@ -795,6 +1025,7 @@ public class DiskLog
         {
             LogFile logFile = new LogFile(logDir, name);
             logFile.setBufferSize(bufferSize);
+            logFile.setMemoryMapped(isMappable(name));
             return logFile;
         }
     }
@@ -808,12 +1039,21 @@ public class DiskLog
         {
             LogFile logFile = new LogFile(logDir, name);
             logFile.setBufferSize(bufferSize);
+            logFile.setMemoryMapped(isMappable(name));
             return logFile;
         }
         else
             return null;
     }
 
+    // Returns true if reads from a log file should be memory-mapped. Only
+    // rotated files are mapped, as the mapping does not follow a file that is
+    // still being written.
+    private boolean isMappable(String name)
+    {
+        return memoryMappedReads && !name.equals(index.getLastFile());
+    }
+
     /**
      * Returns the name of a log file based on an index
      * 
@@ -841,6 +1081,7 @@ public class DiskLog
         {
             LogFile logFile = new LogFile(newFile);
             logFile.setBufferSize(bufferSize);
+            logFile.setMemoryMapped(isMappable(newFileName));
             logFile.openRead();
             return logFile;
         }
@@ -923,17 +1164,33 @@ public class DiskLog
     // Drops a file completely.
     private void purgeFile(LogIndexEntry entry)
     {
-        index.removeFile(entry.fileName);
-        File f = new File(logDir, entry.fileName);
-        if (!f.delete())
+        synchronized (fileLock)
         {
-            logger.warn("Unable to delete log file: " + f.getAbsolutePath());
+            index.removeFile(entry.fileName);
+            File f = new File(logDir, entry.fileName);
+            if (!f.delete())
+            {
+                logger.warn("Unable to delete log file: "
+                        + f.getAbsolutePath());
+            }
+            dropSeqnoIndex(entry.fileName);
         }
     }
 
     // Truncates the file at a particular sequence number.
     private void truncateFile(LogConnection client, LogIndexEntry entry,
             long seqno) throws ReplicatorException, InterruptedException
+    {
+        synchronized (fileLock)
+        {
+            truncateFileLocked(client, entry, seqno);
+        }
+    }
+
+    // Truncates a file while holding the file lock.
+    private void truncateFileLocked(LogConnection client,
+            LogIndexEntry entry, long seqno) throws ReplicatorException,
+            InterruptedException
     {
         LogFile logFile = null;
         try
@@ -953,7 +1210,7 @@ public class DiskLog
             {
 
                 // See what kind of event we have.
-                byte recordType = currentRecord.getData()[0];
+                byte recordType = currentRecord.getRecordType();
                 if (recordType == LogRecord.EVENT_REPL)
                 {
                     LogEventReplReader eventReader = new LogEventReplReader(
@@ -968,6 +1225,7 @@ public class DiskLog
                                 + entry.fileName + " seqno=" + seqno);
                         logFile.setLength(offset);
                         index.setMaxIndexedSeqno(seqno - 1);
+                        truncateSeqnoIndex(entry.fileName, offset);
                         break;
                     }
                 }
@@ -1001,6 +1259,178 @@ public class DiskLog
         }
     }
 
+    /**
+     * Compresses a log file that is no longer written and replaces the
+     * original file with the compressed copy. Clients that have the original
+     * file open continue to read it; new clients see the compressed file.
+     * 
+     * @param fileName Name of the log file
+     * @param task Task that receives statistics about the compressed file
+     * @return True if the file is compressed or need not be compressed, false
+     *         if the file is not complete yet and should be retried later
+     */
+    boolean compressFile(String fileName, LogCompressTask task)
+            throws ReplicatorException, InterruptedException, IOException
+    {
+        // Only rotated files that are still in the log are compressed.
+        if (!index.fileNameExists(fileName)
+                || fileName.equals(index.getLastFile()))
+            return true;
+
+        File file = new File(logDir, fileName);
+        File tempFile = new File(logDir, COMPRESS_FILENAME_PREFIX + fileName);
+        LogFile source = new LogFile(file);
+        source.setBufferSize(bufferSize);
+        LogFile target = null;
+        boolean replaced = false;
+        try
+        {
+            // Scan the file to confirm it ends with a rotate event, which
+            // means it is complete, and to sample the leading records for the
+            // preset dictionary shared by all records in the compressed file.
+            // The dictionary is stored in the file header, so small files get
+            // a proportionally small dictionary.
+            source.openRead();
+            if (source.isCompressed())
+                return true;
+            int dictionaryLength = (int) Math.min(file.length() / 8,
+                    LogRecordCompressor.MAX_DICTIONARY_LENGTH);
+            List<byte[]> samples = new ArrayList<byte[]>();
+            int sampleBytes = 0;
+            boolean complete = false;
+            LogRecord record = source.readRecord(0);
+            while (!record.isEmpty())
+            {
+                if (sampleBytes < dictionaryLength)
+                {
+                    samples.add(record.getData());
+                    sampleBytes += record.getDataLength();
+                }
+                if (record.getRecordType() == LogRecord.EVENT_ROTATE)
+                {
+                    complete = true;
+                    break;
+                }
+                record = source.readRecord(0);
+            }
+            if (!complete)
+                return false;
+            long length = source.getOffset();
+            long lastModified = file.lastModified();
+            byte[] dictionary = LogRecordCompressor.buildDictionary(samples,
+                    dictionaryLength);
+
+            // Copy records through the rotate event into a compressed file.
+            source.close();
+            source.openRead();
+            if (tempFile.exists())
+                tempFile.delete();
+            target = new LogFile(tempFile);
+            target.setBufferSize(bufferSize);
+            target.create(source.getBaseSeqno(), length, dictionary);
+            record = source.readRecord(0);
+            while (!record.isEmpty())
+            {
+                target.writeRecord(record, 0);
+                if (record.getRecordType() == LogRecord.EVENT_ROTATE)
+                    break;
+                record = source.readRecord(0);
+            }
+            target.setFsyncOnFlush(true);
+            target.flush();
+            long compressedLength = target.getLength();
+            target.close();
+            if (compressedLength >= length)
+            {
+                logger.info("Log file does not compress; leaving it as is: "
+                        + fileName);
+                return true;
+            }
+
+            // Keep the modification time so that retention is unaffected.
+            tempFile.setLastModified(lastModified);
+
+            // Replace the original file unless it was purged or truncated in
+            // the meantime. The seqno index holds offsets in the original
+            // file, so it is dropped and rebuilt on the next seek.
+            synchronized (fileLock)
+            {
+                synchronized (index)
+                {
+                    if (!index.fileNameExists(fileName)
+                            || fileName.equals(index.getLastFile())
+                            || file.length() != length)
+                    {
+                        logger.info("Log file changed during compression; "
+                                + "discarding compressed copy: " + fileName);
+                        return true;
+                    }
+                    dropSeqnoIndex(fileName);
+                    if (!tempFile.renameTo(file))
+                    {
+                        logger.warn("Unable to replace log file with "
+                                + "compressed copy: " + fileName);
+                        return true;
+                    }
+                    replaced = true;
+                }
+            }
+
+            logger.info(String.format(
+                    "Compressed log file: file=%s length=%d "
+                            + "compressed=%d ratio=%.2f", fileName, length,
+                    compressedLength, (double) length
+                            / Math.max(compressedLength, 1)));
+            if (task != null)
+                task.recordCompression(length, compressedLength);
+            return true;
+        }
+        finally
+        {
+            source.close();
+            if (target != null)
+                target.close();
+            if (!replaced && tempFile.exists())
+                tempFile.delete();
+        }
+    }
+
+    /**
+     * Reads the headers of log files and returns a summary of their
+     * compression.
+     */
+    public LogCompressionSummary getCompressionSummary()
+            throws ReplicatorException, InterruptedException
+    {
+        LogCompressionSummary summary = new LogCompressionSummary();
+        for (String fileName : index.getFileNames())
+        {
+            LogFile logFile = new LogFile(logDir, fileName);
+            try
+            {
+                logFile.openRead();
+                long length = logFile.getFile().length();
+                if (logFile.isCompressed())
+                    summary.addCompressedFile(length,
+                            logFile.getUncompressedLength());
+                else
+                    summary.addFile(length);
+            }
+            catch (THLException e)
+            {
+                // File was purged or cannot be read; skip it.
+                if (logger.isDebugEnabled())
+                    logger.debug("Unable to read log file header: "
+                            + fileName + " message=" + e.getMessage());
+            }
+            finally
+            {
+                logFile.close();
+            }
+        }
+        return summary;
+    }
+
     /**
      * Open the last log file for writing. The file is assumed to exist as the
      * log must be initialized at this point.
@@ -1033,11 +1463,7 @@ public class DiskLog
         // deferred sync is enabled.
         LogFile data = new LogFile(logDir, logFileName);
         if (!readOnly)
-        {
-            data.setLogSyncTask(logSyncTask);
-            data.setFlushIntervalMillis(flushIntervalMillis);
-            data.setFsyncOnFlush(readOnly);
-        }
+            setWriteParameters(data);
         data.setBufferSize(bufferSize);
 
         // Ensure the file exists.
@@ -1075,6 +1501,7 @@ public class DiskLog
         String logFileName = getDataFileName(fileIndex);
         LogFile dataFile = new LogFile(logDir, logFileName);
         dataFile.setBufferSize(bufferSize);
+        setWriteParameters(dataFile);
         if (dataFile.getFile().exists())
         {
             throw new THLException("New log file exists already: "
@@ -1082,12 +1509,269 @@ public class DiskLog
         }
         dataFile.create(seqno);
 
+        // Remove any stale seqno index left over from an earlier file with
+        // the same name. A new index is started on the first write.
+        dropSeqnoIndex(logFileName);
+
         // Add the file to the volatile index.
         index.addNewFile(seqno, logFileName);
 
         return dataFile;
     }
 
+    // Set flush and sync parameters on a log file that we will write.
+    private void setWriteParameters(LogFile logFile)
+    {
+        logFile.setLogSyncTask(logSyncTask);
+        logFile.setFlushIntervalMillis(flushIntervalMillis);
+        logFile.setFsyncOnFlush(fsyncOnFlush);
+        logFile.setGroupCommitWindowMillis(groupCommitWindowMillis);
+    }
+
+    // Sparse seqno index management. The writer maintains the index of the
+    // file it is writing. Readers load indexes from disk and rebuild missing
+    // indexes on complete files when they seek.
+
+    /**
+     * Records the position of an event in the seqno index of the file being
+     * written. Only first fragments are indexed so that a reader positioned
+     * on an indexed offset never misses earlier fragments of an event.
+     * 
+     * @param logFile Log file to which the event was written
+     * @param seqno Sequence number of the event
+     * @param fragno Fragment number of the event
+     * @param offset Offset of the event's log record
+     */
+    synchronized void updateSeqnoIndex(LogFile logFile, long seqno,
+            short fragno, long offset)
+    {
+        if (seqnoIndexIntervalBytes <= 0 || fragno != 0)
+            return;
+
+        // Switch indexes if the writer has moved to a new file.
+        String logFileName = logFile.getFile().getName();
+        if (writeSeqnoIndex == null
+                || !writeSeqnoIndex.getIndexFile().getName()
+                        .equals(LogSeqnoIndex.indexFileName(logFileName)))
+        {
+            closeWriteSeqnoIndex();
+            LogSeqnoIndex seqnoIndex = new LogSeqnoIndex(logDir, logFileName,
+                    seqnoIndexIntervalBytes);
+            try
+            {
+                if (seqnoIndex.exists())
+                    seqnoIndex.load();
+            }
+            catch (IOException e)
+            {
+                logger.warn("Unable to load log seqno index; index will be rebuilt: "
+                        + seqnoIndex.getIndexFile().getAbsolutePath());
+                writeSeqnoIndex(seqnoIndex);
+            }
+            openWriteSeqnoIndex(seqnoIndex);
+        }
+
+        // Add the entry. The index is only an optimization, so failures just
+        // disable it until the writer moves to the next file.
+        if (writeSeqnoIndex != null)
+        {
+            try
+            {
+                writeSeqnoIndex.add(seqno, offset);
+            }
+            catch (IOException e)
+            {
+                logger.warn("Unable to update log seqno index: "
+                        + writeSeqnoIndex.getIndexFile().getAbsolutePath(), e);
+                writeSeqnoIndex.close();
+                LogSeqnoIndex.delete(logDir, logFileName);
+            }
+        }
+    }
+
+    /**
+     * Returns the offset of the closest indexed event at or before a
+     * particular sequence number in a log file. If the file has no index and
+     * is not the last file in the log, the index is rebuilt first.
+     * 
+     * @param logFile Log file we are reading
+     * @param seqno Desired sequence number
+     * @return Offset of indexed event or -1 if no index entry applies
+     */
+    long findIndexedOffset(LogFile logFile, long seqno)
+            throws ReplicatorException, InterruptedException
+    {
+        if (seqnoIndexIntervalBytes <= 0)
+            return -1;
+
+        String logFileName = logFile.getFile().getName();
+        LogSeqnoIndex seqnoIndex = new LogSeqnoIndex(logDir, logFileName,
+                seqnoIndexIntervalBytes);
+        if (seqnoIndex.exists())
+        {
+            try
+            {
+                seqnoIndex.load();
+            }
+            catch (IOException e)
+            {
+                logger.warn("Unable to read log seqno index: "
+                        + seqnoIndex.getIndexFile().getAbsolutePath(), e);
+                return -1;
+            }
+        }
+        else if (logFileName.equals(index.getLastFile()))
+        {
+            // The writer owns the index on the last file.
+            return -1;
+        }
+        else
+        {
+            rebuildSeqnoIndex(seqnoIndex, logFileName);
+        }
+        return seqnoIndex.findOffset(seqno);
+    }
+
+    // Scan a log file to build its seqno index. The index is saved only if
+    // the file ends with a rotate event, i.e., is no longer written.
+    private void rebuildSeqnoIndex(LogSeqnoIndex seqnoIndex, String logFileName)
+            throws ReplicatorException, InterruptedException
+    {
+        logger.info("Building log seqno index: file=" + logFileName);
+        LogFile logFile = new LogFile(logDir, logFileName);
+        logFile.setBufferSize(bufferSize);
+        boolean complete = false;
+        try
+        {
+            logFile.openRead();
+            LogRecord record = logFile.readRecord(0);
+            while (!record.isEmpty())
+            {
+                byte recordType = record.getRecordType();
+                if (recordType == LogRecord.EVENT_REPL)
+                {
+                    LogEventReplReader eventReader = new LogEventReplReader(
+                            record, null, false);
+                    if (eventReader.getFragno() == 0)
+                        seqnoIndex.add(eventReader.getSeqno(),
+                                record.getOffset());
+                    eventReader.done();
+                }
+                else if (recordType == LogRecord.EVENT_ROTATE)
+                {
+                    complete = true;
+                    break;
+                }
+                record = logFile.readRecord(0);
+            }
+        }
+        catch (IOException e)
+        {
+            throw new THLException("Unable to read log file: " + logFileName,
+                    e);
+        }
+        finally
+        {
+            logFile.close();
+        }
+
+        // Save the index. Read-only clients may not be able to write to the
+        // log directory, which is fine; they just rebuild next time.
+        if (complete)
+        {
+            try
+            {
+                seqnoIndex.write();
+            }
+            catch (IOException e)
+            {
+                logger.info("Unable to save log seqno index: file="
+                        + seqnoIndex.getIndexFile().getAbsolutePath()
+                        + " message=" + e.getMessage());
+            }
+        }
+    }
+
+    // Save a seqno index, removing the index file if this fails.
+    private void writeSeqnoIndex(LogSeqnoIndex seqnoIndex)
+    {
+        try
+        {
+            seqnoIndex.write();
+        }
+        catch (IOException e)
+        {
+            logger.warn("Unable to write log seqno index: "
+                    + seqnoIndex.getIndexFile().getAbsolutePath(), e);
+            seqnoIndex.getIndexFile().delete();
+        }
+    }
+
+    // Make a seqno index the current index for writes.
+    private synchronized void openWriteSeqnoIndex(LogSeqnoIndex seqnoIndex)
+    {
+        closeWriteSeqnoIndex();
+        try
+        {
+            seqnoIndex.openAppend();
+            writeSeqnoIndex = seqnoIndex;
+        }
+        catch (IOException e)
+        {
+            logger.warn("Unable to open log seqno index for writing: "
+                    + seqnoIndex.getIndexFile().getAbsolutePath(), e);
+        }
+    }
+
+    // Release the current index for writes.
+    private synchronized void closeWriteSeqnoIndex()
+    {
+        if (writeSeqnoIndex != null)
+        {
+            writeSeqnoIndex.close();
+            writeSeqnoIndex = null;
+        }
+    }
+
+    // Drop index entries past the end of a truncated log file.
+    private synchronized void truncateSeqnoIndex(String logFileName,
+            long length)
+    {
+        LogSeqnoIndex seqnoIndex;
+        if (writeSeqnoIndex != null
+                && writeSeqnoIndex.getIndexFile().getName()
+                        .equals(LogSeqnoIndex.indexFileName(logFileName)))
+            seqnoIndex = writeSeqnoIndex;
+        else
+            seqnoIndex = new LogSeqnoIndex(logDir, logFileName,
+                    seqnoIndexIntervalBytes);
+
+        try
+        {
+            if (seqnoIndex != writeSeqnoIndex && seqnoIndex.exists())
+                seqnoIndex.load();
+            seqnoIndex.truncate(length);
+        }
+        catch (IOException e)
+        {
+            logger.warn("Unable to truncate log seqno index; dropping it: "
+                    + seqnoIndex.getIndexFile().getAbsolutePath(), e);
+            if (seqnoIndex == writeSeqnoIndex)
+                closeWriteSeqnoIndex();
+            LogSeqnoIndex.delete(logDir, logFileName);
+        }
+    }
+
+    // Delete the index on a log file.
+    private synchronized void dropSeqnoIndex(String logFileName)
+    {
+        if (writeSeqnoIndex != null
+                && writeSeqnoIndex.getIndexFile().getName()
+                        .equals(LogSeqnoIndex.indexFileName(logFileName)))
+            closeWriteSeqnoIndex();
+        LogSeqnoIndex.delete(logDir, logFileName);
+    }
+
     /**
      * getIndex returns a String representation of the index, built from the
      * configured log directory.
@@ -0,0 +1,205 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.thl.log;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * This class implements a task to compress log files in the background after
+ * the log rotates away from them. Files are queued by name and compressed one
+ * at a time by the disk log, which swaps in the compressed copy once it is
+ * complete. Files that are not yet complete, i.e., do not yet end with a
+ * rotate event, are retried after a short delay.
+ *
+ * @version 1.0
+ */
+public class LogCompressTask implements Runnable
+{
+    private static Logger               logger            = Logger
+                                                                  .getLogger(LogCompressTask.class);
+
+    // Delay and maximum number of retries for files that are not complete.
+    private static final long           RETRY_MILLIS      = 1000;
+    private static final int            MAX_RETRIES       = 60;
+
+    private final DiskLog               diskLog;
+    private final BlockingQueue<String> queue             = new LinkedBlockingQueue<String>();
+    private final Map<String, Integer>  retries           = new HashMap<String, Integer>();
+    private volatile boolean            cancelled         = false;
+    private volatile boolean            finished          = false;
+
+    // Compression statistics.
+    private final AtomicLong            filesCompressed   = new AtomicLong();
+    private final AtomicLong            bytesUncompressed = new AtomicLong();
+    private final AtomicLong            bytesCompressed   = new AtomicLong();
+
+    /**
+     * Creates a new log compression task.
+     *
+     * @param diskLog Disk log whose files we compress
+     */
+    public LogCompressTask(DiskLog diskLog)
+    {
+        this.diskLog = diskLog;
+    }
+
+    /**
+     * Compresses queued files until cancelled.
+     */
+    public void run()
+    {
+        logger.info("Log compression task starting: "
+                + Thread.currentThread().getName());
+
+        try
+        {
+            while (!cancelled && !Thread.currentThread().isInterrupted())
+            {
+                String fileName = queue.poll(RETRY_MILLIS,
+                        TimeUnit.MILLISECONDS);
+                if (fileName != null)
+                    compress(fileName);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            logger.info("Log compression task cancelled by interrupt");
+        }
+        catch (Throwable t)
+        {
+            logger.error("Log compression task failed due to exception: "
+                    + t.getMessage(), t);
+        }
+
+        logger.info("Log compression task ending: "
+                + Thread.currentThread().getName());
+        finished = true;
+    }
+
+    // Compress a single file, requeuing it if it is not complete yet.
+    private void compress(String fileName) throws InterruptedException
+    {
+        boolean done;
+        try
+        {
+            done = diskLog.compressFile(fileName, this);
+        }
+        catch (InterruptedException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            logger.warn("Unable to compress log file: file=" + fileName
+                    + " message=" + e.getMessage(), e);
+            done = true;
+        }
+
+        if (done)
+            retries.remove(fileName);
+        else
+        {
+            Integer count = retries.get(fileName);
+            int next = (count == null) ? 1 : count + 1;
+            if (next > MAX_RETRIES)
+            {
+                logger.warn("Giving up on compressing incomplete log file: "
+                        + fileName);
+                retries.remove(fileName);
+            }
+            else
+            {
+                retries.put(fileName, next);
+                Thread.sleep(RETRY_MILLIS);
+                queue.put(fileName);
+            }
+        }
+    }
+
+    /**
+     * Queues a log file for compression.
+     *
+     * @param fileName Name of a log file in the log directory
+     */
+    public void addLogFile(String fileName)
+    {
+        queue.offer(fileName);
+    }
+
+    /**
+     * Records statistics for a compressed file.
+     *
+     * @param uncompressedLength File length before compression
+     * @param compressedLength File length after compression
+     */
+    public void recordCompression(long uncompressedLength,
+            long compressedLength)
+    {
+        filesCompressed.incrementAndGet();
+        bytesUncompressed.addAndGet(uncompressedLength);
+        bytesCompressed.addAndGet(compressedLength);
+    }
+
+    /** Returns the number of files compressed by this task. */
+    public long getFilesCompressed()
+    {
+        return filesCompressed.get();
+    }
+
+    /** Returns the number of files waiting to be compressed. */
+    public int getQueueSize()
+    {
+        return queue.size();
+    }
+
+    /**
+     * Returns the ratio of uncompressed to compressed bytes for files
+     * compressed by this task, which is 1 if no files have been compressed.
+     */
+    public double getCompressionRatio()
+    {
+        long compressed = bytesCompressed.get();
+        return (compressed == 0) ? 1 : (double) bytesUncompressed.get()
+                / compressed;
+    }
+
+    /**
+     * Signal that the task should end.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    /**
+     * Returns true if the task has completed.
+     */
+    public boolean isFinished()
+    {
+        return finished;
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.thl.log;
+
+/**
+ * Summarizes the sizes of log files on disk and before compression.
+ *
+ * @version 1.0
+ */
+public class LogCompressionSummary
+{
+    private int  files;
+    private int  compressedFiles;
+    private long storedBytes;
+    private long uncompressedBytes;
+
+    /**
+     * Adds an uncompressed file.
+     */
+    public void addFile(long length)
+    {
+        files++;
+        storedBytes += length;
+        uncompressedBytes += length;
+    }
+
+    /**
+     * Adds a compressed file.
+     *
+     * @param length Length of the file on disk
+     * @param uncompressedLength Length of the file before compression
+     */
+    public void addCompressedFile(long length, long uncompressedLength)
+    {
+        files++;
+        compressedFiles++;
+        storedBytes += length;
+        uncompressedBytes += uncompressedLength;
+    }
+
+    /** Returns the number of log files. */
+    public int getFiles()
+    {
+        return files;
+    }
+
+    /** Returns the number of compressed log files. */
+    public int getCompressedFiles()
+    {
+        return compressedFiles;
+    }
+
+    /** Returns the number of bytes log files occupy on disk. */
+    public long getStoredBytes()
+    {
+        return storedBytes;
+    }
+
+    /** Returns the number of bytes log files would occupy uncompressed. */
+    public long getUncompressedBytes()
+    {
+        return uncompressedBytes;
+    }
+
+    /**
+     * Returns the ratio of uncompressed to stored bytes, which is 1 if no
+     * files are compressed.
+     */
+    public double getCompressionRatio()
+    {
+        return (storedBytes == 0) ? 1 : (double) uncompressedBytes
+                / storedBytes;
+    }
+}
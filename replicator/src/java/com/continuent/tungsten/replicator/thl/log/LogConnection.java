@@ -24,6 +24,9 @@ package com.continuent.tungsten.replicator.thl.log;
 
 import java.io.IOException;
 import java.sql.Timestamp;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.log4j.Logger;
 
@@ -63,7 +66,7 @@ public class LogConnection
     // Disk log parameters.
     private DiskLog            diskLog;
     private LogCursor          cursor;
-    private THLEvent           pendingEvent;
+    private LogEventReplReader pendingReader;
     private long               pendingSeqno;
     private long               writeCount    = 0;
     private long               readCount     = 0;
@@ -196,7 +199,7 @@ public class LogConnection
             cursor.release();
             cursor = null;
         }
-        pendingEvent = null;
+        pendingReader = null;
         pendingSeqno = UNINITIALIZED;
 
         // Find the log file that contains our sequence number.
@@ -236,6 +239,10 @@ public class LogConnection
             return true;
         }
 
+        // If the file has a seqno index, skip ahead to the closest indexed
+        // event so we only scan from there.
+        positionFromSeqnoIndex(logFile, seqno);
+
         // Look for the sequence number we are trying to find.
         long lastSeqno = logFile.getBaseSeqno();
         while (true)
@@ -274,8 +281,7 @@ public class LogConnection
                         break;
                 }
 
-                byte[] bytes = logRecord.getData();
-                byte recordType = bytes[0];
+                byte recordType = logRecord.getRecordType();
                 if (recordType == LogRecord.EVENT_REPL)
                 {
                     // We have an event. Check the header.
@@ -289,7 +295,7 @@ public class LogConnection
                             logger.debug("Found requested event (" + seqno
                                     + "/" + fragno + ")");
                         // We found the event we are looking for.
-                        pendingEvent = deserialize(logRecord);
+                        pendingReader = eventReader;
                         break;
                     }
                     else if (eventReader.getSeqno() > seqno
@@ -342,16 +348,81 @@ public class LogConnection
         }
 
         // If we have a pending event, the seek was successful.
-        return (pendingEvent != null);
+        return (pendingReader != null);
+    }
+
+    // Position the log file on the closest indexed event at or before the
+    // seqno we are seeking. The index is a hint, so we confirm the record at the
+    // indexed offset is the event we expect and otherwise leave the file
+    // positioned where it was.
+    private void positionFromSeqnoIndex(LogFile logFile, long seqno)
+            throws ReplicatorException, InterruptedException
+    {
+        long indexedOffset = diskLog.findIndexedOffset(logFile, seqno);
+        long startOffset = logFile.getOffset();
+        if (indexedOffset <= startOffset)
+            return;
+
+        boolean valid = false;
+        try
+        {
+            logFile.seekOffset(indexedOffset);
+            LogRecord logRecord = logFile.readRecord(0);
+            if (!logRecord.isEmpty()
+                    && logRecord.getRecordType() == LogRecord.EVENT_REPL)
+            {
+                LogEventReplReader eventReader = new LogEventReplReader(
+                        logRecord, null, false);
+                valid = eventReader.getSeqno() <= seqno
+                        && eventReader.getFragno() == 0;
+                eventReader.done();
+            }
+
+            if (valid)
+            {
+                if (logger.isDebugEnabled())
+                    logger.debug("Using seqno index to seek: file="
+                            + logFile.getFile().getName() + " offset="
+                            + indexedOffset + " seqno=" + seqno);
+                logFile.seekOffset(indexedOffset);
+            }
+            else
+            {
+                logger.info("Ignoring invalid seqno index entry: file="
+                        + logFile.getFile().getName() + " offset="
+                        + indexedOffset + " seqno=" + seqno);
+                logFile.seekOffset(startOffset);
+            }
+        }
+        catch (IOException e)
+        {
+            throw new THLException("Unable to position log file using index: "
+                    + logFile.getFile().getName() + " offset=" + indexedOffset,
+                    e);
+        }
+        catch (THLException e)
+        {
+            // Thrown if the indexed offset does not contain a good record.
+            logger.info("Unable to read event at seqno index offset: file="
+                    + logFile.getFile().getName() + " offset=" + indexedOffset
+                    + " message=" + e.getMessage());
+            try
+            {
+                logFile.seekOffset(startOffset);
+            }
+            catch (IOException e1)
+            {
+                throw new THLException("Unable to reposition log file: "
+                        + logFile.getFile().getName(), e1);
+            }
+        }
     }
 
     // Deserialize the event we just found. This takes into consideration
     // the read filter, if present.
-    private THLEvent deserialize(LogRecord logRecord)
+    private THLEvent deserialize(LogEventReplReader eventReader)
             throws ReplicatorException
     {
-        LogEventReplReader eventReader = new LogEventReplReader(logRecord,
-                eventSerializer, doChecksum);
         THLEvent event;
 
         // If there is no read filter or if the filter asks us to accept, then
@@ -435,8 +506,8 @@ public class LogConnection
             cursor.release();
             cursor = null;
         }
-        if (pendingEvent != null)
-            pendingEvent = null;
+        if (pendingReader != null)
+            pendingReader = null;
 
     }
 
@@ -453,6 +524,25 @@ public class LogConnection
      */
     public synchronized THLEvent next(boolean block)
             throws ReplicatorException, InterruptedException
+    {
+        LogEventReplReader eventReader = nextReader(block);
+        if (eventReader == null)
+            return null;
+        else
+            return deserialize(eventReader);
+    }
+
+    /**
+     * Returns a reader positioned on the next event without deserializing the
+     * event. Callers can use the header fields and ship the underlying log
+     * record to other logs as is. Call done() on the reader after use.
+     * 
+     * @param block If true, block until the next record is available
+     * @return A reader on the next event or null if we are non-blocking and
+     *         there is no event
+     */
+    public synchronized LogEventReplReader nextReader(boolean block)
+            throws ReplicatorException, InterruptedException
     {
         assertNotDone();
 
@@ -464,12 +554,12 @@ public class LogConnection
         }
 
         // If we have a pending event, just hand that back.
-        if (pendingEvent != null)
+        if (pendingReader != null)
         {
-            THLEvent event = pendingEvent;
-            pendingEvent = null;
+            LogEventReplReader eventReader = pendingReader;
+            pendingReader = null;
             readCount++;
-            return event;
+            return eventReader;
         }
 
         // Retrieve the log file and optionally note the name.
@@ -486,8 +576,8 @@ public class LogConnection
             readTimeoutMillis = timeoutMillis;
 
         // Scan for the record.
-        THLEvent event = null;
-        while (event == null)
+        LogEventReplReader eventReader = null;
+        while (eventReader == null)
         {
             try
             {
@@ -500,15 +590,16 @@ public class LogConnection
                     return null;
                 }
 
-                byte[] bytes = logRecord.getData();
-                byte recordType = bytes[0];
+                byte recordType = logRecord.getRecordType();
                 if (recordType == LogRecord.EVENT_REPL)
                 {
-                    event = deserialize(logRecord);
-                    if (event.getSeqno() < this.pendingSeqno)
+                    eventReader = new LogEventReplReader(logRecord,
+                            eventSerializer, doChecksum);
+                    if (eventReader.getSeqno() < this.pendingSeqno)
                     {
-                        // If we are seeking a future event, keep trying.  
-                        event = null;
+                        // If we are seeking a future event, keep trying.
+                        eventReader.done();
+                        eventReader = null;
                         continue;
                     }
                     else
@@ -600,16 +691,16 @@ public class LogConnection
         // sure we found what we expected.
         if (pendingSeqno != UNINITIALIZED)
         {
-            if (event.getSeqno() != pendingSeqno)
+            if (eventReader.getSeqno() != pendingSeqno)
                 throw new LogPositionException(
                         "Log seek failure: expected seqno=" + pendingSeqno
-                                + " found seqno=" + event.getSeqno());
+                                + " found seqno=" + eventReader.getSeqno());
             pendingSeqno = UNINITIALIZED;
         }
 
         // Increment read count and return.
         readCount++;
-        return event;
+        return eventReader;
     }
 
     /**
@@ -683,15 +774,18 @@ public class LogConnection
                     eventSerializer, doChecksum);
             LogRecord logRecord = eventWriter.write();
 
-            // Write to the file.
+            // Write to the file and note the position in the seqno index.
+            long offset = dataFile.getOffset();
             dataFile.writeRecord(logRecord, logFileSize);
+            diskLog.updateSeqnoIndex(dataFile, event.getSeqno(),
+                    event.getFragno(), offset);
             diskLog.setMaxSeqno(event.getSeqno());
             writeCount++;
 
             // If it is time to commit, make it happen!
             if (commit)
             {
-                dataFile.flush();
+                waitForSync(dataFile, dataFile.requestSync(event.getSeqno()));
             }
         }
         catch (IOException e)
@@ -708,27 +802,79 @@ public class LogConnection
      */
     public synchronized void commit() throws ReplicatorException,
             InterruptedException
+    {
+        LogSyncFuture future = commitAsync();
+        if (cursor != null)
+            waitForSync(cursor.getLogFile(), future);
+    }
+
+    /**
+     * Commit transactions stored in the log without waiting for them to become
+     * durable. If group commit is enabled, callers may wait on the returned
+     * future to learn when the transactions are synced to storage. Otherwise
+     * the log is flushed before returning.
+     * 
+     * @return A future that completes when stored transactions are durable
+     */
+    public synchronized LogSyncFuture commitAsync()
+            throws ReplicatorException, InterruptedException
     {
         assertWritable();
 
         // If we have an active cursor, issue a commit now.
-        if (cursor != null)
+        long seqno = diskLog.getMaxSeqno();
+        if (cursor == null)
+            return LogSyncFuture.completed(seqno);
+
+        // This is a good time to make sure the sync thread is running.
+        diskLog.checkLogSyncTask();
+
+        // Issue a flush or group sync request.
+        LogFile dataFile = cursor.getLogFile();
+        try
         {
-            // Issue a flush call.
-            LogFile dataFile = cursor.getLogFile();
-            try
-            {
-                dataFile.flush();
-            }
-            catch (IOException e)
+            return dataFile.requestSync(seqno);
+        }
+        catch (IOException e)
+        {
+            throw new THLException("Commit failed on log: seqno="
+                    + cursor.getLastSeqno() + " log file="
+                    + dataFile.getFile().getName(), e);
+        }
+    }
+
+    // Wait for a sync request to complete. We check periodically that the
+    // log flush task is alive so that we do not wait forever if it fails.
+    private void waitForSync(LogFile dataFile, LogSyncFuture future)
+            throws ReplicatorException, InterruptedException
+    {
+        try
+        {
+            while (!future.isDone())
             {
-                throw new THLException("Commit failed on log: seqno="
-                        + cursor.getLastSeqno() + " log file="
-                        + dataFile.getFile().getName());
+                try
+                {
+                    future.get(1, TimeUnit.SECONDS);
+                }
+                catch (TimeoutException e)
+                {
+                    LogFlushTask task = dataFile.getLogFlushTask();
+                    if (!future.isDone() && task != null && task.isFinished())
+                    {
+                        throw new THLException(
+                                "Log flush task ended before commit was synced: seqno="
+                                        + future.getSeqno() + " log file="
+                                        + dataFile.getFile().getName());
+                    }
+                }
             }
-
-            // This is a good time to make sure the sync thread is running.
-            diskLog.checkLogSyncTask();
+            future.get();
+        }
+        catch (ExecutionException e)
+        {
+            throw new THLException("Commit failed on log: seqno="
+                    + future.getSeqno() + " log file="
+                    + dataFile.getFile().getName(), e);
         }
     }
 
@@ -26,6 +26,7 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 
 import com.continuent.tungsten.replicator.ReplicatorException;
+import com.continuent.tungsten.replicator.event.ReplDBMSEvent;
 import com.continuent.tungsten.replicator.thl.THLEvent;
 import com.continuent.tungsten.replicator.thl.THLException;
 import com.continuent.tungsten.replicator.thl.serializer.Serializer;
@@ -59,6 +60,12 @@ public class LogEventReplWriter
      */
     public LogRecord write() throws ReplicatorException
     {
+        // If the event still carries the record it was read from, store it as
+        // is rather than serialize the event again.
+        LogRecord serializedRecord = writeSerializedRecord();
+        if (serializedRecord != null)
+            return serializedRecord;
+
         LogRecord logRecord = new LogRecord(-1, checkCRC);
         try
         {
@@ -92,4 +99,41 @@ public class LogEventReplWriter
         
         return logRecord;
     }
+
+    // Return a log record built from the serialized record attached to the
+    // event or null if there is no usable record. Records are only usable if
+    // our serializer wrote them and the header matches the event.
+    private LogRecord writeSerializedRecord() throws ReplicatorException
+    {
+        if (!(event.getReplEvent() instanceof ReplDBMSEvent))
+            return null;
+        ReplDBMSEvent replEvent = (ReplDBMSEvent) event.getReplEvent();
+        byte[] data = replEvent.getSerializedRecord();
+        if (data == null
+                || !serializer.getClass().getName().equals(
+                        replEvent.getSerializerName()))
+            return null;
+
+        LogRecord logRecord = new LogRecord(-1, data, LogRecord.CRC_TYPE_NONE,
+                0);
+        LogEventReplReader reader = new LogEventReplReader(logRecord,
+                serializer, false);
+        boolean matches = reader.getSeqno() == event.getSeqno()
+                && reader.getFragno() == event.getFragno();
+        reader.done();
+        if (!matches)
+            return null;
+
+        try
+        {
+            if (checkCRC)
+                logRecord.storeCrc(LogRecord.CRC_TYPE_32);
+        }
+        catch (IOException e)
+        {
+            throw new THLException("Error computing log record CRC: "
+                    + e.getMessage(), e);
+        }
+        return logRecord;
+    }
 }
\ No newline at end of file
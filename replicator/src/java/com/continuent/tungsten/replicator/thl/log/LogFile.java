@@ -24,11 +24,16 @@ package com.continuent.tungsten.replicator.thl.log;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.log4j.Logger;
 
 import com.continuent.tungsten.commons.io.BufferedFileDataInput;
 import com.continuent.tungsten.commons.io.BufferedFileDataOutput;
+import com.continuent.tungsten.commons.io.FileDataInput;
+import com.continuent.tungsten.commons.io.MappedFileDataInput;
 import com.continuent.tungsten.replicator.ReplicatorException;
 import com.continuent.tungsten.replicator.thl.THLException;
 
@@ -42,25 +47,31 @@ import com.continuent.tungsten.replicator.thl.THLException;
  */
 public class LogFile
 {
-    static Logger              logger             = Logger.getLogger(LogFile.class);
+    static Logger              logger                   = Logger.getLogger(LogFile.class);
 
     // Header fields values.
-    private static final int   MAGIC_NUMBER       = 0xC001CAFE;
-    private static final short MAJOR_VERSION      = 0x0001;
-    private static final short MINOR_VERSION      = 0x0001;
-    private static final int   RECORD_LENGTH_SIZE = 4;
+    private static final int   MAGIC_NUMBER             = 0xC001CAFE;
+    private static final short MAJOR_VERSION            = 0x0001;
+    private static final short MINOR_VERSION            = 0x0001;
+    // Minor version of compressed files, whose header adds the uncompressed
+    // length and the preset dictionary used to compress records.
+    private static final short MINOR_VERSION_COMPRESSED = 0x0002;
+    private static final int   RECORD_LENGTH_SIZE       = 4;
+    // Length of additional fields in a compressed file header, not counting
+    // the dictionary.
+    private static final int   COMPRESSED_HEADER_LENGTH = 12;
     // Length of header in bytes.
-    private static final int   HEADER_LENGTH      = 16;
+    private static final int   HEADER_LENGTH            = 16;
     // Length of time to wait for a partially written header to appear.
-    private static final int   HEADER_WAIT_MILLIS = 5000;
+    private static final int   HEADER_WAIT_MILLIS       = 5000;
 
     /**
      * Maximum value of a single record. Larger values indicate file corruption.
      */
-    private static final int   MAX_RECORD_LENGTH  = 1000000000;
+    private static final int   MAX_RECORD_LENGTH        = 1000000000;
 
     /** Return immediately from write when there are no data. */
-    public static final int    NO_WAIT            = 0;
+    public static final int    NO_WAIT                  = 0;
 
     /** Current mode of file, namely read or write. */
     private enum AccessMode
@@ -80,6 +91,13 @@ public class LogFile
     private long                   flushIntervalMillis = 0;
     /** If true, fsync when flushing. */
     private boolean                fsyncOnFlush        = false;
+    /**
+     * If greater than 0, commits are synced by the log flush task, which issues
+     * at most one sync per this many milliseconds for all pending commits.
+     */
+    private long                   groupCommitWindowMillis = 0;
+    /** If true, read using a memory mapping instead of buffered I/O. */
+    private boolean                memoryMapped        = false;
 
     // Log sync task.
     private LogFlushTask           logFlushTask        = null;
@@ -87,8 +105,10 @@ public class LogFile
     // Current access mode.
     private AccessMode             mode                = null;
 
-    // Input control data.
-    private BufferedFileDataInput  dataInput;
+    // Input control data. The mapped input is set only when the file is
+    // memory-mapped and is the same object as the data input.
+    private FileDataInput          dataInput;
+    private MappedFileDataInput    mappedInput;
 
     // Output parameters.
     private BufferedFileDataOutput dataOutput;
@@ -96,6 +116,18 @@ public class LogFile
     private long                   baseSeqno;
     private boolean                needsFlush;
 
+    // Compression data from the header of a compressed file. The compressor
+    // is null if the file is not compressed.
+    private LogRecordCompressor    compressor;
+    private long                   uncompressedLength  = -1;
+
+    // Group commit data. These track records written and sync requests
+    // received since the last sync to storage, and whether a sync is running
+    // outside the monitor.
+    private int                    unsyncedRecords;
+    private List<LogSyncFuture>    pendingSyncs        = new ArrayList<LogSyncFuture>();
+    private boolean                syncInProgress;
+
     /**
      * Creates a file from a parent directory and child filename. The file must
      * exist.
@@ -161,6 +193,41 @@ public class LogFile
         this.fsyncOnFlush = fsyncOnFlush;
     }
 
+    public synchronized long getGroupCommitWindowMillis()
+    {
+        return groupCommitWindowMillis;
+    }
+
+    /**
+     * Sets the group commit window. A value greater than 0 enables group
+     * commit if there is also a log flush task.
+     */
+    public synchronized void setGroupCommitWindowMillis(
+            long groupCommitWindowMillis)
+    {
+        this.groupCommitWindowMillis = groupCommitWindowMillis;
+    }
+
+    /** Returns true if commits are synced by the log flush task. */
+    public synchronized boolean isGroupCommit()
+    {
+        return groupCommitWindowMillis > 0 && logFlushTask != null;
+    }
+
+    public synchronized boolean isMemoryMapped()
+    {
+        return memoryMapped;
+    }
+
+    /**
+     * If set to true, reads use a memory mapping of the file. Records are then
+     * returned as slices of the mapping rather than copied to byte arrays.
+     */
+    public synchronized void setMemoryMapped(boolean memoryMapped)
+    {
+        this.memoryMapped = memoryMapped;
+    }
+
     public synchronized int getBufferSize()
     {
         return bufferSize;
@@ -190,11 +257,34 @@ public class LogFile
                             + file.getName());
         }
 
+        // Release any input left from a previous open.
+        if (dataInput != null)
+        {
+            dataInput.close();
+            dataInput = null;
+            mappedInput = null;
+        }
+
         // Open and read the file header so we are correctly positioned in the
-        // file to begin reading.
+        // file to begin reading. If memory mapping is requested but fails,
+        // fall back to buffered reads.
+        if (memoryMapped)
+        {
+            try
+            {
+                mappedInput = new MappedFileDataInput(file);
+                dataInput = mappedInput;
+            }
+            catch (IOException e)
+            {
+                logger.warn("Unable to map log file; using buffered reads: file="
+                        + file.getName() + " message=" + e.getMessage());
+            }
+        }
         try
         {
-            dataInput = new BufferedFileDataInput(file, bufferSize);
+            if (dataInput == null)
+                dataInput = new BufferedFileDataInput(file, bufferSize);
         }
         catch (IOException e)
         {
@@ -255,6 +345,24 @@ public class LogFile
      */
     public synchronized void create(long seqno) throws ReplicatorException,
             InterruptedException
+    {
+        create(seqno, -1, null);
+    }
+
+    /**
+     * Create a new log file, which is compressed if a dictionary is provided.
+     * Records written to a compressed file are compressed one by one using
+     * the dictionary. NOTE: The file offset is positioned after the header.
+     * 
+     * @param seqno Base sequence number of this file (written to header)
+     * @param uncompressedLength Length of the file before compression, which
+     *            is recorded in the header of compressed files
+     * @param dictionary Preset dictionary or null to create an uncompressed
+     *            file
+     */
+    public synchronized void create(long seqno, long uncompressedLength,
+            byte[] dictionary) throws ReplicatorException,
+            InterruptedException
     {
         // Confirm file does not already exist.
         if (file.exists())
@@ -281,8 +389,18 @@ public class LogFile
         {
             write(MAGIC_NUMBER);
             write(MAJOR_VERSION);
-            write(MINOR_VERSION);
+            write(dictionary == null
+                    ? MINOR_VERSION
+                    : MINOR_VERSION_COMPRESSED);
             write(seqno);
+            if (dictionary != null)
+            {
+                write(uncompressedLength);
+                write(dictionary.length);
+                dataOutput.write(dictionary);
+                compressor = new LogRecordCompressor(dictionary);
+                this.uncompressedLength = uncompressedLength;
+            }
             flush();
         }
         catch (IOException e)
@@ -314,6 +432,7 @@ public class LogFile
                 {
                     dataInput.close();
                     dataInput = null;
+                    mappedInput = null;
                 }
 
             }
@@ -323,24 +442,38 @@ public class LogFile
                 {
                     if (logFlushTask != null)
                         logFlushTask.removeLogFile(this);
+                    closeGroupCommit();
                     dataOutput.close();
                     dataOutput = null;
                 }
             }
+            releaseCompressor();
             mode = null;
         }
     }
 
+    // Release native compression resources.
+    private void releaseCompressor()
+    {
+        if (compressor != null)
+        {
+            compressor.release();
+            compressor = null;
+        }
+    }
+
     /**
      * Read the file header and return the log sequence number stored in the
      * file header.
      */
-    private long checkFileHeader(BufferedFileDataInput bfdi)
+    private long checkFileHeader(FileDataInput bfdi)
             throws ReplicatorException, InterruptedException
     {
         int magic = 0;
         short major = 0;
         short minor = 0;
+        releaseCompressor();
+        uncompressedLength = -1;
 
         try
         {
@@ -349,6 +482,26 @@ public class LogFile
             major = bfdi.readShort();
             minor = bfdi.readShort();
             baseSeqno = bfdi.readLong();
+
+            // Compressed files add the uncompressed length and dictionary.
+            if (magic == MAGIC_NUMBER && major == MAJOR_VERSION
+                    && minor == MINOR_VERSION_COMPRESSED)
+            {
+                bfdi.waitAvailable(COMPRESSED_HEADER_LENGTH,
+                        HEADER_WAIT_MILLIS);
+                uncompressedLength = bfdi.readLong();
+                int dictionaryLength = bfdi.readInt();
+                if (dictionaryLength < 0
+                        || dictionaryLength > LogRecordCompressor.MAX_DICTIONARY_LENGTH)
+                    throw new THLException("Could not open file "
+                            + file.getAbsolutePath()
+                            + " : invalid dictionary length: "
+                            + dictionaryLength);
+                bfdi.waitAvailable(dictionaryLength, HEADER_WAIT_MILLIS);
+                byte[] dictionary = new byte[dictionaryLength];
+                bfdi.readFully(dictionary);
+                compressor = new LogRecordCompressor(dictionary);
+            }
         }
         catch (IOException e)
         {
@@ -362,7 +515,7 @@ public class LogFile
         if (major != MAJOR_VERSION)
             throw new THLException("Could not open file "
                     + file.getAbsolutePath() + " : incompatible major version");
-        if (minor != MINOR_VERSION)
+        if (minor != MINOR_VERSION && minor != MINOR_VERSION_COMPRESSED)
             logger.warn("Minor version mismatch : file "
                     + file.getAbsolutePath() + " using format " + major + "."
                     + minor + " - Tungsten running version " + MAJOR_VERSION
@@ -418,6 +571,23 @@ public class LogFile
         return baseSeqno;
     }
 
+    /**
+     * Returns true if the file header marks the file as compressed.
+     */
+    public synchronized boolean isCompressed()
+    {
+        return compressor != null;
+    }
+
+    /**
+     * Returns the length of the file before it was compressed or -1 if the
+     * file is not compressed.
+     */
+    public synchronized long getUncompressedLength()
+    {
+        return uncompressedLength;
+    }
+
     /**
      * Returns the length of the file, including any unbuffered writes.
      */
@@ -576,12 +746,32 @@ public class LogFile
             }
         }
 
-        // Finally, there's enough to read a record, so get it.
-        byte[] bytesToRead = new byte[recordLength - LogRecord.NON_DATA_BYTES];
-        dataInput.readFully(bytesToRead);
-        byte crcType = dataInput.readByte();
-        long crc = dataInput.readLong();
-        return new LogRecord(offset, bytesToRead, crcType, crc);
+        // Finally, there's enough to read a record, so get it. Mapped files
+        // hand back a slice of the mapping to avoid copying the data.
+        int dataLength = recordLength - LogRecord.NON_DATA_BYTES;
+        LogRecord record;
+        if (mappedInput != null)
+        {
+            ByteBuffer bufferToRead = mappedInput.readBuffer(dataLength);
+            byte crcType = dataInput.readByte();
+            long crc = dataInput.readLong();
+            record = new LogRecord(offset, bufferToRead, crcType, crc);
+        }
+        else
+        {
+            byte[] bytesToRead = new byte[dataLength];
+            dataInput.readFully(bytesToRead);
+            byte crcType = dataInput.readByte();
+            long crc = dataInput.readLong();
+            record = new LogRecord(offset, bytesToRead, crcType, crc);
+        }
+
+        // Records in compressed files are decompressed so that callers always
+        // see the original data. The offset remains the offset in this file.
+        if (compressor != null)
+            return compressor.decompress(record);
+        else
+            return record;
     }
 
     /** Reads a single short. */
@@ -619,6 +809,7 @@ public class LogFile
             InterruptedException
     {
         assertWriteMode();
+        waitForSync();
         try
         {
             dataOutput.setLength(length);
@@ -662,8 +853,11 @@ public class LogFile
     public synchronized boolean writeRecord(LogRecord record, int logFileSize)
             throws IOException, InterruptedException, ReplicatorException
     {
-        // Write the length followed by the code.
+        // Write the length followed by the code. Compressed files store
+        // compressed records.
         assertWriteMode();
+        if (compressor != null)
+            record = compressor.compress(record);
         dataOutput.writeInt((int) record.getRecordLength());
         dataOutput.write(record.getData());
         dataOutput.writeByte(record.getCrcType());
@@ -671,6 +865,7 @@ public class LogFile
 
         // Record that we need a flush.
         needsFlush = true;
+        unsyncedRecords++;
 
         // See if we have exceeded the maximum number of bytes per log file.
         if (logFileSize > 0 && dataOutput.getOffset() > logFileSize)
@@ -714,6 +909,150 @@ public class LogFile
         }
     }
 
+    /**
+     * Requests that all records written so far be synced to storage. If group
+     * commit is enabled the request is queued for the log flush task, which
+     * syncs all pending requests together. Otherwise this is a normal flush
+     * and the returned future is already complete.
+     * 
+     * @param seqno Sequence number of the last event written
+     * @return A future that completes when the records are durable
+     */
+    public synchronized LogSyncFuture requestSync(long seqno)
+            throws IOException, ReplicatorException, InterruptedException
+    {
+        if (!isGroupCommit())
+        {
+            flush();
+            return LogSyncFuture.completed(seqno);
+        }
+
+        assertWriteMode();
+        if (unsyncedRecords == 0)
+            return LogSyncFuture.completed(seqno);
+        LogSyncFuture future = new LogSyncFuture(seqno);
+        pendingSyncs.add(future);
+        logFlushTask.requestSync();
+        return future;
+    }
+
+    /**
+     * Syncs records written since the last sync with a single call and
+     * completes pending sync requests. This is called by the log flush task
+     * when group commit is enabled. Records and requests are collected under
+     * the monitor, but the sync itself runs outside it so that writers are not
+     * held up by the storage device.
+     * 
+     * @return Number of records synced
+     * @throws IOException Thrown if the sync fails, in which case pending
+     *             requests fail as well
+     */
+    int syncGroup() throws IOException
+    {
+        int records;
+        List<LogSyncFuture> syncs;
+        BufferedFileDataOutput output;
+        synchronized (this)
+        {
+            if (mode != AccessMode.write || unsyncedRecords == 0
+                    || syncInProgress)
+                return 0;
+
+            records = unsyncedRecords;
+            syncs = pendingSyncs;
+            pendingSyncs = new ArrayList<LogSyncFuture>();
+            unsyncedRecords = 0;
+            try
+            {
+                dataOutput.flush();
+            }
+            catch (IOException e)
+            {
+                unsyncedRecords = records;
+                failSyncs(syncs, e);
+                throw e;
+            }
+            needsFlush = false;
+            nextFlushMillis = System.currentTimeMillis()
+                    + this.flushIntervalMillis;
+            output = dataOutput;
+            syncInProgress = true;
+        }
+
+        long startNanos = System.nanoTime();
+        IOException failure = null;
+        try
+        {
+            output.force();
+        }
+        catch (IOException e)
+        {
+            failure = e;
+        }
+        long nanos = System.nanoTime() - startNanos;
+
+        // Let close or truncate proceed, then report the outcome. Records that
+        // failed to sync are counted again so the next sync retries them.
+        LogFlushTask task;
+        synchronized (this)
+        {
+            if (failure != null)
+                unsyncedRecords += records;
+            syncInProgress = false;
+            notifyAll();
+            task = logFlushTask;
+        }
+        if (failure != null)
+        {
+            failSyncs(syncs, failure);
+            throw failure;
+        }
+        if (task != null)
+            task.recordSync(nanos, records, syncs.size());
+        for (LogSyncFuture future : syncs)
+            future.complete();
+        return records;
+    }
+
+    // Fails sync requests whose records could not be synced.
+    private void failSyncs(List<LogSyncFuture> syncs, IOException e)
+    {
+        for (LogSyncFuture future : syncs)
+            future.fail(e);
+    }
+
+    // Waits for a sync running outside the monitor to finish, as the output
+    // must not be closed or truncated under it. Caller must hold the monitor.
+    private void waitForSync() throws InterruptedException
+    {
+        while (syncInProgress)
+            wait();
+    }
+
+    // Sync outstanding records on close so that no sync request is left
+    // waiting on a file that the log flush task no longer sees.
+    private void closeGroupCommit()
+    {
+        if (!isGroupCommit())
+            return;
+        try
+        {
+            waitForSync();
+            syncGroup();
+        }
+        catch (IOException e)
+        {
+            logger.warn("Unable to sync log file on close: file="
+                    + file.getName() + " exception=" + e.getMessage());
+        }
+        catch (InterruptedException e)
+        {
+            logger.warn("Interrupted while waiting for log file sync on close: file="
+                    + file.getName());
+            Thread.currentThread().interrupt();
+        }
+    }
+
     // Perform actual flush/fsync call.
     private void flushPrivate() throws IOException
     {
@@ -27,6 +27,7 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
 
@@ -34,13 +35,16 @@ import com.continuent.tungsten.replicator.ReplicatorException;
 
 /**
  * This class implements a task to issue asynchronous flush calls on active log
- * files.
+ * files. If group commit is enabled the task also syncs log files on request,
+ * issuing at most one sync per group commit window so that commits arriving
+ * close together share a single sync.
  * <p>
  * Important concurrency note: This class calls back into LogFile instances,
  * which in turn call this class to register themselves. Methods on this class
  * should *not* be synchronized as this would create the possibility of
  * deadlock. Synchronization within this class is handled by the
- * ConncurrentHashMap that contains the log files.
+ * ConncurrentHashMap that contains the log files. Sync requests are signaled
+ * on a separate lock that is never held while calling log files.
  * 
  * @author <a href="mailto:robert.hodges@continuent.com">Robert Hodges</a>
  * @version 1.0
@@ -53,15 +57,41 @@ public class LogFlushTask implements Runnable
     private volatile boolean   finished   = false;
 
     private long               flushIntervalMillis;
+    private long               groupCommitWindowMillis;
 
     private Map<File, LogFile> logFileMap = new ConcurrentHashMap<File, LogFile>();
 
+    // Group commit request signaling.
+    private final Object       syncRequestLock = new Object();
+    private boolean            syncRequested;
+    private long               lastGroupSyncMillis;
+
+    // Group commit statistics.
+    private final AtomicLong   syncCount       = new AtomicLong();
+    private final AtomicLong   syncNanos       = new AtomicLong();
+    private final AtomicLong   syncMaxNanos    = new AtomicLong();
+    private final AtomicLong   syncRecords     = new AtomicLong();
+    private final AtomicLong   syncRequests    = new AtomicLong();
+
     /**
      * Creates a new log sync task.
      */
     public LogFlushTask(long flushIntervalMillis)
+    {
+        this(flushIntervalMillis, 0);
+    }
+
+    /**
+     * Creates a new log sync task with optional group commit.
+     * 
+     * @param flushIntervalMillis Interval between flush calls
+     * @param groupCommitWindowMillis Minimum interval between group syncs; 0
+     *            disables group commit
+     */
+    public LogFlushTask(long flushIntervalMillis, long groupCommitWindowMillis)
     {
         this.flushIntervalMillis = flushIntervalMillis;
+        this.groupCommitWindowMillis = groupCommitWindowMillis;
     }
 
     /**
@@ -76,8 +106,13 @@ public class LogFlushTask implements Runnable
         {
             while (!cancelled && !Thread.currentThread().isInterrupted())
             {
-                Thread.sleep(flushIntervalMillis);
-                processSync();
+                if (groupCommitWindowMillis > 0)
+                    processGroupSync();
+                else
+                {
+                    Thread.sleep(flushIntervalMillis);
+                    processSync();
+                }
             }
         }
         catch (InterruptedException e)
@@ -109,6 +144,98 @@ public class LogFlushTask implements Runnable
         }
     }
 
+    /**
+     * Wait for a sync request and sync all log files. If a flush interval is
+     * set we also wake up at that interval to sync writes that have not been
+     * committed yet.
+     */
+    private void processGroupSync() throws IOException, InterruptedException
+    {
+        synchronized (syncRequestLock)
+        {
+            if (!syncRequested)
+                syncRequestLock.wait(flushIntervalMillis);
+            syncRequested = false;
+        }
+
+        // Hold off until the window from the last sync expires. Writes and
+        // sync requests that arrive meanwhile join this sync.
+        long delayMillis = lastGroupSyncMillis + groupCommitWindowMillis
+                - System.currentTimeMillis();
+        if (delayMillis > 0)
+            Thread.sleep(delayMillis);
+        lastGroupSyncMillis = System.currentTimeMillis();
+
+        Collection<LogFile> logFiles = logFileMap.values();
+        for (LogFile logFile : logFiles)
+        {
+            logFile.syncGroup();
+        }
+    }
+
+    /**
+     * Signals that a log file has a pending sync request.
+     */
+    public void requestSync()
+    {
+        synchronized (syncRequestLock)
+        {
+            syncRequested = true;
+            syncRequestLock.notifyAll();
+        }
+    }
+
+    /**
+     * Records statistics for a single group sync.
+     * 
+     * @param nanos Time taken by the sync call
+     * @param records Number of log records synced
+     * @param requests Number of sync requests completed
+     */
+    public void recordSync(long nanos, int records, int requests)
+    {
+        syncCount.incrementAndGet();
+        syncNanos.addAndGet(nanos);
+        syncRecords.addAndGet(records);
+        syncRequests.addAndGet(requests);
+        long max = syncMaxNanos.get();
+        while (nanos > max && !syncMaxNanos.compareAndSet(max, nanos))
+            max = syncMaxNanos.get();
+    }
+
+    /** Returns the number of group syncs. */
+    public long getSyncCount()
+    {
+        return syncCount.get();
+    }
+
+    /** Returns the average group sync latency in milliseconds. */
+    public double getSyncAvgMillis()
+    {
+        long count = syncCount.get();
+        return (count == 0) ? 0 : syncNanos.get() / 1000000.0 / count;
+    }
+
+    /** Returns the maximum group sync latency in milliseconds. */
+    public double getSyncMaxMillis()
+    {
+        return syncMaxNanos.get() / 1000000.0;
+    }
+
+    /** Returns the average number of log records per group sync. */
+    public double getSyncAvgRecords()
+    {
+        long count = syncCount.get();
+        return (count == 0) ? 0 : (double) syncRecords.get() / count;
+    }
+
+    /** Returns the average number of commits per group sync. */
+    public double getSyncAvgRequests()
+    {
+        long count = syncCount.get();
+        return (count == 0) ? 0 : (double) syncRequests.get() / count;
+    }
+
     /**
      * Adds a logFile to the list for regular synchronization.
      * 
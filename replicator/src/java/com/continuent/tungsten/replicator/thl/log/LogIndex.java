@@ -122,7 +122,7 @@ public class LogIndex
                     LogRecord record1 = lf.readRecord(0);
                     if (!record1.isEmpty() && !record1.isTruncated())
                     {
-                        if (record1.getData()[0] == LogRecord.EVENT_REPL)
+                        if (record1.getRecordType() == LogRecord.EVENT_REPL)
                         {
                             LogEventReplReader eventReader = new LogEventReplReader(
                                     record1, null, false);
@@ -132,7 +132,7 @@ public class LogIndex
                         else
                         {
                             logger.warn("Unexpected record type in first log record: type="
-                                    + record1.getData()[0]
+                                    + record1.getRecordType()
                                     + " file="
                                     + lf.getFile().getAbsolutePath());
                         }
@@ -396,6 +396,8 @@ public class LogIndex
                     removeFile(file.getName());
 
                 FileCommands.deleteFiles(filesToPurge, false);
+                for (File file : filesToPurge)
+                    LogSeqnoIndex.delete(logDir, file.getName());
             }
         }
     }
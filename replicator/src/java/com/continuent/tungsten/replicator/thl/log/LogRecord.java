@@ -28,9 +28,12 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.zip.CRC32;
 import java.util.zip.CheckedInputStream;
 
+import com.continuent.tungsten.commons.io.ByteBufferInputStream;
+
 /**
  * Encapsulates a log record from the Tungsten disk log.
  * 
@@ -43,28 +46,35 @@ public class LogRecord
      * Number of bytes in length field plus CRC. The record length is this
      * number plus the number of bytes of data (currently 4 + 1 + 8).
      */
-    public static final int       NON_DATA_BYTES = 13;
+    public static final int       NON_DATA_BYTES   = 13;
 
     /** Denotes record header information. */
-    public static final byte      EVENT_REPL     = 0x01;
+    public static final byte      EVENT_REPL       = 0x01;
 
     /** Denotes a replication event */
-    public static final byte      EVENT_ROTATE   = 0x02;
+    public static final byte      EVENT_ROTATE     = 0x02;
+
+    /**
+     * Denotes a compressed record in a compressed log file. Log files return
+     * records with the original type after decompressing them.
+     */
+    public static final byte      EVENT_COMPRESSED = 0x03;
 
     /** Record does not have a CRC computed. */
-    public static final byte      CRC_TYPE_NONE  = 0x00;
+    public static final byte      CRC_TYPE_NONE    = 0x00;
 
     /** Record uses conventional CRC-32 computed by Java CRC32 class. */
-    public static final byte      CRC_TYPE_32    = 0x01;
+    public static final byte      CRC_TYPE_32      = 0x01;
 
     private byte[]                data;
+    private ByteBuffer            buffer;
     private long                  offset;
     private byte                  crcType;
     private long                  crc;
-    private boolean               truncated      = false;
+    private boolean               truncated        = false;
 
     // Computed CRC from checkCRC() call.
-    private long                  computedCrc    = -1;
+    private long                  computedCrc      = -1;
 
     private ByteArrayInputStream  read;
     private ByteArrayOutputStream write;
@@ -102,16 +112,60 @@ public class LogRecord
         this.truncated = false;
     }
 
+    /**
+     * Creates a readable record whose content is a buffer, typically a slice of
+     * a memory-mapped log file. The buffer is not copied unless a caller asks
+     * for the data as a byte array.
+     * 
+     * @param offset File offset at which this record was read
+     * @param buffer Data in record from current position to limit
+     * @param crcType Type of CRC check to use
+     * @param crc CRC value
+     */
+    public LogRecord(long offset, ByteBuffer buffer, byte crcType, long crc)
+    {
+        this.offset = offset;
+        this.buffer = buffer;
+        this.crcType = crcType;
+        this.crc = crc;
+        this.truncated = false;
+    }
+
     /**
      * Returns the computed length of this record in the file, including length
      * field, data, and CRC.
      */
     public long getRecordLength()
     {
-        if (data == null)
+        if (isEmpty())
+            return 0;
+        else
+            return getDataLength() + NON_DATA_BYTES;
+    }
+
+    /**
+     * Returns the number of bytes of data in the record.
+     */
+    public int getDataLength()
+    {
+        if (buffer != null)
+            return buffer.remaining();
+        else if (data != null)
+            return data.length;
+        else
             return 0;
+    }
+
+    /**
+     * Returns the record type, which is the first byte of data, without
+     * copying record contents.
+     */
+    public byte getRecordType()
+    {
+        if (buffer != null)
+            return buffer.get(buffer.position());
         else
-            return data.length + NON_DATA_BYTES;
+            return data[0];
     }
 
     /**
@@ -124,10 +178,16 @@ public class LogRecord
 
     /**
      * Returns the underlying byte buffer. Must call done() when writing before
-     * calling this method.
+     * calling this method. If the record was read from a memory-mapped file,
+     * this copies the data into a new array; use read() to avoid the copy.
      */
     public byte[] getData()
     {
+        if (data == null && buffer != null)
+        {
+            data = new byte[buffer.remaining()];
+            buffer.duplicate().get(data);
+        }
         return data;
     }
 
@@ -158,7 +218,7 @@ public class LogRecord
      */
     public boolean isEmpty()
     {
-        return data == null;
+        return data == null && buffer == null;
     }
 
     /**
@@ -166,11 +226,14 @@ public class LogRecord
      */
     public long computeCrc() throws IOException
     {
-        if (data == null || crcType == CRC_TYPE_NONE)
+        if (isEmpty() || crcType == CRC_TYPE_NONE)
             computedCrc = 0;
         else if (crcType == CRC_TYPE_32)
         {
-            computedCrc = computeCrc32(data);
+            if (data == null)
+                computedCrc = computeCrc32(buffer);
+            else
+                computedCrc = computeCrc32(data);
         }
         else
         {
@@ -237,10 +300,31 @@ public class LogRecord
 
     }
 
+    /**
+     * Static routine to compute CRC 32 on the remaining bytes of a buffer
+     * without changing its position.
+     */
+    public static long computeCrc32(ByteBuffer buffer)
+    {
+        CRC32 crc32 = new CRC32();
+        ByteBuffer bb = buffer.duplicate();
+        byte[] buf = new byte[4096];
+        while (bb.hasRemaining())
+        {
+            int len = Math.min(buf.length, bb.remaining());
+            bb.get(buf, 0, len);
+            crc32.update(buf, 0, len);
+        }
+        return crc32.getValue();
+    }
+
     /** Returns a stream to read record contents. */
     public InputStream read()
     {
-        return new ByteArrayInputStream(data);
+        if (data == null && buffer != null)
+            return new ByteBufferInputStream(buffer.duplicate());
+        else
+            return new ByteArrayInputStream(data);
     }
 
     /** Returns a stream to write record contents. */
@@ -289,20 +373,21 @@ public class LogRecord
         StringBuffer sb = new StringBuffer();
         sb.append(this.getClass().getSimpleName());
         sb.append(": offset=").append(offset);
-        if (data == null)
+        byte[] bytes = getData();
+        if (bytes == null)
         {
             sb.append(" data=[] length=0");
         }
         else
         {
             sb.append(" data=");
-            for (int i = 0; i < 10 && i < data.length; i++)
+            for (int i = 0; i < 10 && i < bytes.length; i++)
             {
-                sb.append(String.format("%2X", data[i]));
+                sb.append(String.format("%2X", bytes[i]));
             }
-            if (data.length >= 10)
+            if (bytes.length >= 10)
                 sb.append("...");
-            sb.append("] length=").append(data.length);
+            sb.append("] length=").append(bytes.length);
         }
         sb.append(" crcType=").append(crcType);
         sb.append(" crc=").append(crc);
@@ -322,18 +407,23 @@ public class LogRecord
         LogRecord that = (LogRecord) o;
         if (offset != that.getOffset())
             return false;
-        if (data == null)
+
+        // Use getData() on both sides, as either record may hold its data
+        // in a buffer.
+        byte[] thisData = getData();
+        byte[] thatData = that.getData();
+        if (thisData == null)
         {
-            if (that.getData() != null)
+            if (thatData != null)
                 return false;
         }
         else
         {
-            if (data.length != that.getData().length)
+            if (thatData == null || thisData.length != thatData.length)
                 return false;
-            for (int i = 0; i < data.length; i++)
+            for (int i = 0; i < thisData.length; i++)
             {
-                if (data[i] != that.getData()[i])
+                if (thisData[i] != thatData[i])
                     return false;
             }
         }
@@ -0,0 +1,226 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.thl.log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses and decompresses individual log records in compressed log files.
+ * A compressed record holds the type EVENT_COMPRESSED, a codec id, the length
+ * of the original data, and the deflated data. Records are compressed
+ * separately so that offsets in the file still point to records that can be
+ * read on their own, but all records in a file share a preset dictionary that
+ * gives the compressor context for small records.
+ * <p>
+ * The CRC of a compressed record is the CRC of the original data, so checksums
+ * verify the record after decompression. This class is not thread-safe.
+ *
+ * @version 1.0
+ */
+public class LogRecordCompressor
+{
+    /** Codec id for records compressed with raw deflate. */
+    public static final byte CODEC_DEFLATE         = 0x01;
+
+    /** Maximum length of a preset dictionary, which is the deflate window. */
+    public static final int  MAX_DICTIONARY_LENGTH = 32768;
+
+    // Record type, codec id, and original data length.
+    private static final int HEADER_BYTES          = 6;
+
+    private final byte[]     dictionary;
+    private Deflater         deflater;
+    private Inflater         inflater;
+    private byte[]           buffer                = new byte[8192];
+
+    /**
+     * Creates a new compressor.
+     *
+     * @param dictionary Preset dictionary shared by records in the file
+     */
+    public LogRecordCompressor(byte[] dictionary)
+    {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Builds a preset dictionary from sample record data. Deflate favors
+     * matches close to the current position, so later samples end up closest
+     * to the record data.
+     *
+     * @param samples Record data in the order they appear in the file
+     * @param maxLength Maximum dictionary length, which is further limited to
+     *            MAX_DICTIONARY_LENGTH
+     * @return A dictionary of at most maxLength bytes
+     */
+    public static byte[] buildDictionary(Iterable<byte[]> samples,
+            int maxLength)
+    {
+        int limit = Math.min(maxLength, MAX_DICTIONARY_LENGTH);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        for (byte[] sample : samples)
+        {
+            if (baos.size() >= limit)
+                break;
+            int len = Math.min(sample.length, limit - baos.size());
+            baos.write(sample, 0, len);
+        }
+        return baos.toByteArray();
+    }
+
+    /** Returns the preset dictionary. */
+    public byte[] getDictionary()
+    {
+        return dictionary;
+    }
+
+    /**
+     * Returns true if the record holds compressed data.
+     */
+    public static boolean isCompressed(LogRecord record)
+    {
+        return !record.isEmpty() && record.getDataLength() > 0
+                && record.getRecordType() == LogRecord.EVENT_COMPRESSED;
+    }
+
+    /**
+     * Compresses a record. Records that do not get smaller are returned
+     * unchanged.
+     *
+     * @param record Record to compress
+     * @return A compressed record with the original CRC or the record itself
+     */
+    public LogRecord compress(LogRecord record)
+    {
+        if (record.isEmpty() || isCompressed(record))
+            return record;
+
+        byte[] data = record.getData();
+        if (deflater == null)
+            deflater = new Deflater(Deflater.BEST_SPEED, true);
+        else
+            deflater.reset();
+        if (dictionary.length > 0)
+            deflater.setDictionary(dictionary);
+        deflater.setInput(data);
+        deflater.finish();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(
+                data.length / 2 + HEADER_BYTES);
+        baos.write(LogRecord.EVENT_COMPRESSED);
+        baos.write(CODEC_DEFLATE);
+        baos.write(data.length >>> 24);
+        baos.write(data.length >>> 16);
+        baos.write(data.length >>> 8);
+        baos.write(data.length);
+        while (!deflater.finished())
+        {
+            int len = deflater.deflate(buffer);
+            baos.write(buffer, 0, len);
+            if (baos.size() >= data.length)
+                return record;
+        }
+
+        return new LogRecord(record.getOffset(), baos.toByteArray(),
+                record.getCrcType(), record.getCrc());
+    }
+
+    /**
+     * Decompresses a record. Records that are not compressed are returned
+     * unchanged.
+     *
+     * @param record Record to decompress
+     * @return A record holding the original data and CRC
+     * @throws IOException Thrown if the compressed data are invalid
+     */
+    public LogRecord decompress(LogRecord record) throws IOException
+    {
+        if (!isCompressed(record))
+            return record;
+
+        byte[] data = record.getData();
+        if (data.length < HEADER_BYTES)
+            throw new IOException("Compressed log record is truncated: offset="
+                    + record.getOffset());
+        if (data[1] != CODEC_DEFLATE)
+            throw new IOException("Unknown log record codec: offset="
+                    + record.getOffset() + " codec=" + data[1]);
+        int rawLength = ((data[2] & 0xff) << 24) | ((data[3] & 0xff) << 16)
+                | ((data[4] & 0xff) << 8) | (data[5] & 0xff);
+
+        if (inflater == null)
+            inflater = new Inflater(true);
+        else
+            inflater.reset();
+        if (dictionary.length > 0)
+            inflater.setDictionary(dictionary);
+        inflater.setInput(data, HEADER_BYTES, data.length - HEADER_BYTES);
+
+        byte[] raw = new byte[rawLength];
+        int pos = 0;
+        try
+        {
+            while (pos < rawLength)
+            {
+                int len = inflater.inflate(raw, pos, rawLength - pos);
+                if (len == 0 && (inflater.finished() || inflater.needsInput()))
+                    break;
+                pos += len;
+            }
+        }
+        catch (DataFormatException e)
+        {
+            IOException ioe = new IOException(
+                    "Unable to decompress log record: offset="
+                            + record.getOffset() + " message="
+                            + e.getMessage());
+            ioe.initCause(e);
+            throw ioe;
+        }
+        if (pos != rawLength)
+            throw new IOException("Compressed log record is truncated: offset="
+                    + record.getOffset() + " expected=" + rawLength
+                    + " actual=" + pos);
+
+        return new LogRecord(record.getOffset(), raw, record.getCrcType(),
+                record.getCrc());
+    }
+
+    /**
+     * Releases native resources held by the compressor.
+     */
+    public void release()
+    {
+        if (deflater != null)
+        {
+            deflater.end();
+            deflater = null;
+        }
+        if (inflater != null)
+        {
+            inflater.end();
+            inflater = null;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.thl.log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Implements a sparse index from sequence number to file offset for a single
+ * log file. The index is stored in a sidecar file next to the log file and
+ * contains one entry for the first fragment of an event roughly every
+ * intervalBytes bytes of log data. Readers use the index to jump close to the
+ * event they want instead of scanning the log file from the beginning.
+ * <p>
+ * The index is only a hint. Entries are not forced to storage and may be lost
+ * or become stale after a crash, so callers must confirm that the record at an
+ * indexed offset is the event they expect before relying on it.
+ *
+ * @version 1.0
+ */
+public class LogSeqnoIndex
+{
+    private static Logger      logger                = Logger.getLogger(LogSeqnoIndex.class);
+
+    /** Prefix for index file names. The suffix matches the log file. */
+    public static final String INDEX_FILENAME_PREFIX = "thl.index.";
+
+    // Each entry is a seqno followed by an offset.
+    private static final int   ENTRY_LENGTH          = 16;
+
+    private final File         indexFile;
+    private final long         intervalBytes;
+
+    // Index entries in ascending seqno and offset order.
+    private long[]             seqnos                = new long[64];
+    private long[]             offsets               = new long[64];
+    private int                size                  = 0;
+
+    // Stream used to append entries when the index is open for writing.
+    private DataOutputStream   appender;
+
+    /**
+     * Creates a new, empty index for a log file. The index does not read or
+     * write the sidecar file until asked.
+     *
+     * @param logDir Log directory
+     * @param logFileName Name of the log file we are indexing
+     * @param intervalBytes Minimum number of bytes between index entries
+     */
+    public LogSeqnoIndex(File logDir, String logFileName, long intervalBytes)
+    {
+        this.indexFile = new File(logDir, indexFileName(logFileName));
+        this.intervalBytes = intervalBytes;
+    }
+
+    /**
+     * Returns the name of the index file for a particular log file. Index files
+     * must not share the log file prefix or they would be mistaken for logs.
+     */
+    public static String indexFileName(String logFileName)
+    {
+        int suffixPos = logFileName.lastIndexOf('.');
+        return INDEX_FILENAME_PREFIX + logFileName.substring(suffixPos + 1);
+    }
+
+    /**
+     * Deletes the index file for a log file, if it exists.
+     */
+    public static void delete(File logDir, String logFileName)
+    {
+        File f = new File(logDir, indexFileName(logFileName));
+        if (f.exists() && !f.delete())
+            logger.warn("Unable to delete log index file: "
+                    + f.getAbsolutePath());
+    }
+
+    /** Returns the index file. */
+    public File getIndexFile()
+    {
+        return indexFile;
+    }
+
+    /** Returns true if the index file exists on disk. */
+    public boolean exists()
+    {
+        return indexFile.exists();
+    }
+
+    /** Returns the number of index entries. */
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    /**
+     * Loads entries from the index file. A partially written entry at the end
+     * of the file is ignored, as are entries that are out of order.
+     */
+    public synchronized void load() throws IOException
+    {
+        size = 0;
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(indexFile)));
+        try
+        {
+            long entries = indexFile.length() / ENTRY_LENGTH;
+            for (long i = 0; i < entries; i++)
+            {
+                long seqno = dis.readLong();
+                long offset = dis.readLong();
+                if (size > 0
+                        && (seqno <= seqnos[size - 1] || offset <= offsets[size - 1]))
+                {
+                    logger.warn("Log index entry out of order; ignoring remainder of index: file="
+                            + indexFile.getName()
+                            + " seqno="
+                            + seqno
+                            + " offset=" + offset);
+                    break;
+                }
+                addEntry(seqno, offset);
+            }
+        }
+        catch (EOFException e)
+        {
+            // File was truncated while we were reading; use what we have.
+        }
+        finally
+        {
+            dis.close();
+        }
+    }
+
+    /**
+     * Adds an entry for an event if it is at least intervalBytes past the
+     * previous entry. The first event in the file is always indexed. If the
+     * index is open for append, the entry is written to the index file.
+     *
+     * @param seqno Sequence number of the first fragment of an event
+     * @param offset Offset of the event's log record
+     * @return True if an entry was added
+     */
+    public synchronized boolean add(long seqno, long offset)
+            throws IOException
+    {
+        if (size > 0)
+        {
+            if (seqno <= seqnos[size - 1] || offset <= offsets[size - 1])
+                return false;
+            if (offset - offsets[size - 1] < intervalBytes)
+                return false;
+        }
+        addEntry(seqno, offset);
+        if (appender != null)
+        {
+            appender.writeLong(seqno);
+            appender.writeLong(offset);
+            appender.flush();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the offset of the last indexed event whose seqno is less than or
+     * equal to the requested seqno or -1 if there is no such entry.
+     */
+    public synchronized long findOffset(long seqno)
+    {
+        int low = 0;
+        int high = size - 1;
+        int found = -1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            if (seqnos[mid] <= seqno)
+            {
+                found = mid;
+                low = mid + 1;
+            }
+            else
+                high = mid - 1;
+        }
+        return (found < 0) ? -1 : offsets[found];
+    }
+
+    /**
+     * Drops all entries at or after the given offset. This must be called
+     * whenever the log file is truncated. The index file is rewritten if it
+     * exists.
+     *
+     * @param length New length of the log file
+     */
+    public synchronized void truncate(long length) throws IOException
+    {
+        int newSize = size;
+        while (newSize > 0 && offsets[newSize - 1] >= length)
+            newSize--;
+        if (newSize < size)
+        {
+            size = newSize;
+            if (appender != null || indexFile.exists())
+                write();
+        }
+    }
+
+    /**
+     * Writes all entries to the index file, replacing any previous contents.
+     * The file is written under a temporary name and renamed so that readers in
+     * other processes never see a partial index.
+     */
+    public synchronized void write() throws IOException
+    {
+        boolean appending = (appender != null);
+        closeAppender();
+
+        File tmpFile = new File(indexFile.getParentFile(), indexFile.getName()
+                + ".tmp");
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmpFile)));
+        try
+        {
+            for (int i = 0; i < size; i++)
+            {
+                dos.writeLong(seqnos[i]);
+                dos.writeLong(offsets[i]);
+            }
+        }
+        finally
+        {
+            dos.close();
+        }
+        if (!tmpFile.renameTo(indexFile))
+        {
+            // Some platforms cannot rename over an existing file.
+            indexFile.delete();
+            if (!tmpFile.renameTo(indexFile))
+                throw new IOException("Unable to rename log index file: "
+                        + tmpFile.getAbsolutePath());
+        }
+
+        if (appending)
+            openAppend();
+    }
+
+    /**
+     * Opens the index file so that new entries are appended as they are added.
+     */
+    public synchronized void openAppend() throws IOException
+    {
+        if (appender == null)
+        {
+            appender = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(indexFile, true)));
+        }
+    }
+
+    /**
+     * Releases the index file if it is open for append.
+     */
+    public synchronized void close()
+    {
+        closeAppender();
+    }
+
+    // Close the append stream, if any.
+    private void closeAppender()
+    {
+        if (appender != null)
+        {
+            try
+            {
+                appender.close();
+            }
+            catch (IOException e)
+            {
+                logger.warn("Unable to close log index file: "
+                        + indexFile.getAbsolutePath(), e);
+            }
+            appender = null;
+        }
+    }
+
+    // Store an entry in memory, growing arrays as needed.
+    private void addEntry(long seqno, long offset)
+    {
+        if (size == seqnos.length)
+        {
+            long[] newSeqnos = new long[size * 2];
+            long[] newOffsets = new long[size * 2];
+            System.arraycopy(seqnos, 0, newSeqnos, 0, size);
+            System.arraycopy(offsets, 0, newOffsets, 0, size);
+            seqnos = newSeqnos;
+            offsets = newOffsets;
+        }
+        seqnos[size] = seqno;
+        offsets[size] = offset;
+        size++;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public synchronized String toString()
+    {
+        return this.getClass().getSimpleName() + " " + indexFile.getName()
+                + " entries=" + size + " intervalBytes=" + intervalBytes;
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.thl.log;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tracks a request to make log writes durable. The future completes when all
+ * records written to the log file before the request have been synced to
+ * storage. Its value is the sequence number that was requested.
+ * 
+ * @version 1.0
+ */
+public class LogSyncFuture implements Future<Long>
+{
+    private final long seqno;
+    private boolean    done;
+    private Throwable  failure;
+
+    /**
+     * Creates a new sync request.
+     * 
+     * @param seqno Highest sequence number that must be durable
+     */
+    public LogSyncFuture(long seqno)
+    {
+        this.seqno = seqno;
+    }
+
+    /**
+     * Returns a request that is already satisfied.
+     */
+    public static LogSyncFuture completed(long seqno)
+    {
+        LogSyncFuture future = new LogSyncFuture(seqno);
+        future.done = true;
+        return future;
+    }
+
+    /** Returns the sequence number that must be durable. */
+    public long getSeqno()
+    {
+        return seqno;
+    }
+
+    /** Marks the request as durable and wakes up waiters. */
+    synchronized void complete()
+    {
+        done = true;
+        notifyAll();
+    }
+
+    /** Marks the request as failed and wakes up waiters. */
+    synchronized void fail(Throwable t)
+    {
+        failure = t;
+        done = true;
+        notifyAll();
+    }
+
+    /**
+     * Sync requests cannot be cancelled. {@inheritDoc}
+     * 
+     * @see java.util.concurrent.Future#cancel(boolean)
+     */
+    public boolean cancel(boolean mayInterruptIfRunning)
+    {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see java.util.concurrent.Future#isCancelled()
+     */
+    public boolean isCancelled()
+    {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see java.util.concurrent.Future#isDone()
+     */
+    public synchronized boolean isDone()
+    {
+        return done;
+    }
+
+    /**
+     * Waits until the requested sequence number is durable. {@inheritDoc}
+     * 
+     * @see java.util.concurrent.Future#get()
+     */
+    public synchronized Long get() throws InterruptedException,
+            ExecutionException
+    {
+        while (!done)
+            wait();
+        return result();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see java.util.concurrent.Future#get(long,
+     *      java.util.concurrent.TimeUnit)
+     */
+    public synchronized Long get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException
+    {
+        long waitUntil = System.currentTimeMillis() + unit.toMillis(timeout);
+        while (!done)
+        {
+            long waitMillis = waitUntil - System.currentTimeMillis();
+            if (waitMillis <= 0)
+                throw new TimeoutException("Log sync did not complete: seqno="
+                        + seqno);
+            wait(waitMillis);
+        }
+        return result();
+    }
+
+    // Return the seqno or throw the failure.
+    private Long result() throws ExecutionException
+    {
+        if (failure != null)
+            throw new ExecutionException("Log sync failed: seqno=" + seqno,
+                    failure);
+        return seqno;
+    }
+}
@@ -22,12 +22,15 @@
 
 package com.continuent.tungsten.replicator.thl.serializer;
 
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.charset.Charset;
 import java.sql.Clob;
 import java.sql.Date;
 import java.sql.SQLException;
@@ -57,6 +60,7 @@ import com.continuent.tungsten.replicator.thl.protobuf.TungstenProtos.ProtobufOn
 import com.continuent.tungsten.replicator.thl.protobuf.TungstenProtos.ProtobufOneRowChange.ProtobufRowValue;
 import com.continuent.tungsten.replicator.thl.protobuf.TungstenProtos.ProtobufOneRowChange.ProtobufRowValue.ProtobufColumnVal;
 import com.continuent.tungsten.replicator.thl.protobuf.TungstenProtos.ProtobufOneRowChange.ProtobufRowValue.ProtobufColumnVal.Type;
+import com.continuent.tungsten.replicator.dbms.ColumnarRowValues;
 import com.continuent.tungsten.replicator.dbms.DBMSData;
 import com.continuent.tungsten.replicator.dbms.LoadDataFileFragment;
 import com.continuent.tungsten.replicator.dbms.LoadDataFileQuery;
@@ -74,7 +78,12 @@ import com.continuent.tungsten.replicator.event.ReplOption;
 import com.continuent.tungsten.replicator.extractor.mysql.SerialBlob;
 import com.continuent.tungsten.replicator.thl.THLEvent;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ExtensionRegistryLite;
 import com.google.protobuf.Message;
+import com.google.protobuf.UnknownFieldSet;
+import com.google.protobuf.WireFormat;
 
 /**
  * @author <a href="mailto:stephane.giron@continuent.com">Stephane Giron</a>
@@ -82,12 +91,36 @@ import com.google.protobuf.Message;
  */
 public class ProtobufSerializer implements Serializer
 {
-    static Logger        logger           = Logger.getLogger(ProtobufSerializer.class);
+    static Logger              logger                    = Logger.getLogger(ProtobufSerializer.class);
 
-    private int          deserializeCount = 0;
-    private long         globalDeserTime  = 0;
+    private int                deserializeCount          = 0;
+    private long               globalDeserTime           = 0;
 
-    private StringBuffer trace            = new StringBuffer();
+    private StringBuffer       trace                     = new StringBuffer();
+
+    // Encodings of columnar values.
+    private static final int   CELL_NULL                 = 0;
+    private static final int   CELL_INT                  = 1;
+    private static final int   CELL_BIT                  = 2;
+    private static final int   CELL_LONG                 = 3;
+    private static final int   CELL_FLOAT                = 4;
+    private static final int   CELL_DOUBLE               = 5;
+    private static final int   CELL_STRING               = 6;
+    private static final int   CELL_BINARY_STRING        = 7;
+    private static final int   CELL_MESSAGE              = 8;
+
+    private static final int   WIRETYPE_LENGTH_DELIMITED = 2;
+
+    // String bytes can be copied as is only if they are UTF-8.
+    private static final boolean DEFAULT_CHARSET_IS_UTF8 = "UTF-8"
+                                                                 .equals(Charset
+                                                                         .defaultCharset()
+                                                                         .name());
+
+    // Scratch space for encoding a row of columnar values.
+    private int[]              cellEncodings             = new int[0];
+    private int[]              cellSizes                 = new int[0];
+    private ProtobufColumnVal[] cellMessages             = new ProtobufColumnVal[0];
 
     /**
      * {@inheritDoc}
@@ -115,18 +148,14 @@ public class ProtobufSerializer implements Serializer
             }
             else
             {
-                ProtobufReplDBMSEvent protobufReplDBMSEvent = ProtobufReplDBMSEvent
-                        .parseDelimitedFrom(inStream);
+                // Row data is not decoded here. Instead, each RowChangeData
+                // keeps its serialized row changes and decodes them when
+                // asked, which avoids holding the parsed message and the
+                // decoded row changes of large fragments at the same time.
+                byte[] buffer = readDelimited(inStream);
+                CodedInputStream input = CodedInputStream.newInstance(buffer);
 
                 ArrayList<DBMSData> data = new ArrayList<DBMSData>();
-                List<ProtobufOneChange> changeList = protobufReplDBMSEvent
-                        .getChangeList();
-                for (ProtobufOneChange protobufOneChange : changeList)
-                {
-                    DBMSData statementChange = deserializeOneChange(protobufOneChange);
-                    data.add(statementChange);
-                }
-
                 DBMSEvent dbmsEvent = new DBMSEvent(header.getEventId(), null,
                         data, sourceTstamp);
                 event = new ReplDBMSEvent(header.getSeqno(),
@@ -134,18 +163,38 @@ public class ProtobufSerializer implements Serializer
                         header.getSourceId(), header.getEpochNumber(),
                         sourceTstamp, dbmsEvent);
 
-                for (ProtobufEventOption protobufEventOption : protobufReplDBMSEvent
-                        .getMetadataList())
+                while (!input.isAtEnd())
                 {
-                    dbmsEvent.addMetadataOption(protobufEventOption.getName(),
-                            protobufEventOption.getValue());
-                }
-
-                for (ProtobufEventOption protobufEventOption : protobufReplDBMSEvent
-                        .getOptionsList())
-                {
-                    dbmsEvent.addOption(protobufEventOption.getName(),
-                            protobufEventOption.getValue());
+                    int tag = input.readTag();
+                    switch (WireFormat.getTagFieldNumber(tag))
+                    {
+                        case ProtobufReplDBMSEvent.CHANGE_FIELD_NUMBER :
+                            data.add(deserializeOneChange(buffer, input));
+                            break;
+                        case ProtobufReplDBMSEvent.METADATA_FIELD_NUMBER :
+                        {
+                            ProtobufEventOption.Builder builder = ProtobufEventOption
+                                    .newBuilder();
+                            input.readMessage(builder, ExtensionRegistryLite
+                                    .getEmptyRegistry());
+                            dbmsEvent.addMetadataOption(builder.getName(),
+                                    builder.getValue());
+                            break;
+                        }
+                        case ProtobufReplDBMSEvent.OPTIONS_FIELD_NUMBER :
+                        {
+                            ProtobufEventOption.Builder builder = ProtobufEventOption
+                                    .newBuilder();
+                            input.readMessage(builder, ExtensionRegistryLite
+                                    .getEmptyRegistry());
+                            dbmsEvent.addOption(builder.getName(), builder
+                                    .getValue());
+                            break;
+                        }
+                        default :
+                            input.skipField(tag);
+                            break;
+                    }
                 }
             }
             return new THLEvent(header.getEventId(), event);
@@ -266,6 +315,69 @@ public class ProtobufSerializer implements Serializer
         outStream.flush();
     }
 
+    /**
+     * Reads a length-prefixed message as written by writeDelimitedTo().
+     */
+    private byte[] readDelimited(InputStream inStream) throws IOException
+    {
+        int size = 0;
+        for (int shift = 0;; shift += 7)
+        {
+            int b = inStream.read();
+            if (b == -1)
+                throw new EOFException("Unexpected end of event data");
+            if (shift >= 32)
+                throw new IOException("Malformed event size");
+            size |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                break;
+        }
+        byte[] buffer = new byte[size];
+        new DataInputStream(inStream).readFully(buffer);
+        return buffer;
+    }
+
+    /**
+     * Deserializes a ProtobufOneChange field. Row data becomes a
+     * StreamingRowChangeData over the serialized row changes in the event
+     * buffer, while other changes are decoded at once.
+     */
+    private DBMSData deserializeOneChange(byte[] buffer, CodedInputStream input)
+            throws IOException
+    {
+        int length = input.readRawVarint32();
+        int offset = input.getTotalBytesRead();
+        int limit = input.pushLimit(length);
+        int type = -1;
+        int dataOffset = -1;
+        int dataLength = 0;
+        while (!input.isAtEnd())
+        {
+            int tag = input.readTag();
+            int field = WireFormat.getTagFieldNumber(tag);
+            if (field == ProtobufOneChange.TYPE_FIELD_NUMBER)
+                type = input.readEnum();
+            else if (field == ProtobufOneChange.DATA_FIELD_NUMBER)
+            {
+                dataLength = input.readRawVarint32();
+                dataOffset = input.getTotalBytesRead();
+                input.skipRawBytes(dataLength);
+            }
+            else
+                input.skipField(tag);
+        }
+        input.popLimit(limit);
+
+        if (type == ProtobufOneChange.Type.ROW_DATA.getNumber()
+                && dataOffset >= 0)
+            return new StreamingRowChangeData(buffer, dataOffset, dataLength);
+
+        // Decode other changes the usual way.
+        ProtobufOneChange.Builder builder = ProtobufOneChange.newBuilder();
+        builder.mergeFrom(buffer, offset, length);
+        return deserializeOneChange(builder.build());
+    }
+
     private DBMSData deserializeOneChange(ProtobufOneChange protobufOneChange)
     {
         logger.debug("Event type is : " + protobufOneChange.getType());
@@ -373,150 +485,533 @@ public class ProtobufSerializer implements Serializer
     private void serializeRows(ProtobufRowChangeData.Builder rowDataBuilder,
             RowChangeData rowEv)
     {
-        ProtobufOneRowChange.Builder oneRowBuilder;
-        ProtobufColumnSpec.Builder colSpecBuilder;
-        ProtobufRowValue.Builder rowBuilder;
-        ProtobufColumnVal.Builder valueBuilder;
         ArrayList<OneRowChange> rowChanges = rowEv.getRowChanges();
         trace = new StringBuffer();
-        try
+
+        // Columnar row changes are encoded directly, which avoids building a
+        // message per value. Tracing needs the message builders, so we only
+        // do this when debugging is off.
+        if (!logger.isDebugEnabled())
         {
             for (OneRowChange oneRowChange : rowChanges)
             {
-                oneRowBuilder = ProtobufOneRowChange.newBuilder();
-                oneRowBuilder.setSchemaName(oneRowChange.getSchemaName());
-                oneRowBuilder.setTableName(oneRowChange.getTableName());
-                oneRowBuilder.setTableId(oneRowChange.getTableId());
-
-                switch (oneRowChange.getAction())
+                if (oneRowChange.hasColumnarValues())
                 {
-                    case INSERT :
-                        if (logger.isDebugEnabled())
-                            trace.append("INSERT into ");
-                        oneRowBuilder.setAction(ActionType.INSERT);
-                        break;
-                    case DELETE :
-                        if (logger.isDebugEnabled())
-                            trace.append("DELETE from ");
-                        oneRowBuilder.setAction(ActionType.DELETE);
-                        break;
-                    case UPDATE :
-                        if (logger.isDebugEnabled())
-                            trace.append("UPDATE ");
-                        oneRowBuilder.setAction(ActionType.UPDATE);
-                        break;
-                    default :
-                        break;
+                    serializeColumnarRows(rowDataBuilder, rowChanges);
+                    return;
                 }
+            }
+        }
 
-                if (logger.isDebugEnabled())
-                {
-                    trace.append(oneRowChange.getSchemaName());
-                    trace.append(".");
-                    trace.append(oneRowChange.getTableName());
-                    trace.append("\n    Columns spec :\n");
-                }
+        try
+        {
+            for (OneRowChange oneRowChange : rowChanges)
+            {
+                rowDataBuilder.addRowChange(serializeRowChange(oneRowChange));
+            }
+        }
+        catch (Exception e)
+        {
+            if (logger.isDebugEnabled())
+                logger.debug("Failure while storing " + trace.toString(), e);
+            throw new RuntimeException(e);
+        }
+        if (logger.isDebugEnabled())
+            logger.debug(trace.toString());
+    }
 
-                ArrayList<ColumnSpec> list = oneRowChange.getColumnSpec();
-                for (ColumnSpec columnSpec : list)
-                {
-                    traceColumnSpec(columnSpec);
+    private ProtobufOneRowChange.Builder serializeRowChange(
+            OneRowChange oneRowChange)
+    {
+        ProtobufOneRowChange.Builder oneRowBuilder;
+        ProtobufRowValue.Builder rowBuilder;
+        ProtobufColumnVal.Builder valueBuilder;
 
-                    colSpecBuilder = ProtobufColumnSpec.newBuilder();
-                    colSpecBuilder.setIndex(columnSpec.getIndex());
-                    colSpecBuilder.setLength(columnSpec.getLength());
-                    if (columnSpec.getName() != null)
-                    {
-                        colSpecBuilder.setName(columnSpec.getName());
-                    }
-                    colSpecBuilder.setNotNull(columnSpec.isNotNull());
-                    colSpecBuilder.setSigned(!columnSpec.isUnsigned());
-                    colSpecBuilder.setType(columnSpec.getType());
-                    oneRowBuilder.addColumnSpec(colSpecBuilder);
-                }
+        oneRowBuilder = serializeRowChangeHeader(oneRowChange);
+        oneRowBuilder.setTableId(oneRowChange.getTableId());
 
-                if (logger.isDebugEnabled())
-                    trace.append("\n    Keys spec :\n");
-                list = oneRowChange.getKeySpec();
-                for (ColumnSpec columnSpec : list)
-                {
-                    traceColumnSpec(columnSpec);
+        ArrayList<ArrayList<ColumnVal>> rowValues = oneRowChange
+                .getColumnValues();
 
-                    colSpecBuilder = ProtobufColumnSpec.newBuilder();
-                    colSpecBuilder.setIndex(columnSpec.getIndex());
-                    colSpecBuilder.setLength(columnSpec.getLength());
-                    if (columnSpec.getName() != null)
-                    {
-                        colSpecBuilder.setName(columnSpec.getName());
-                    }
-                    colSpecBuilder.setNotNull(columnSpec.isNotNull());
-                    colSpecBuilder.setSigned(!columnSpec.isUnsigned());
-                    colSpecBuilder.setType(columnSpec.getType());
-                    oneRowBuilder.addKeySpec(colSpecBuilder);
-                }
+        if (logger.isDebugEnabled())
+            trace.append("\n    Columns values :\n");
 
-                ArrayList<ArrayList<ColumnVal>> rowValues = oneRowChange
-                        .getColumnValues();
+        for (ArrayList<ColumnVal> row : rowValues)
+        {
+            rowBuilder = ProtobufRowValue.newBuilder();
+            for (int i = 0; i < row.size(); i++)
+            {
+                if (logger.isDebugEnabled() && i > 0)
+                    trace.append(", ");
 
-                if (logger.isDebugEnabled())
-                    trace.append("\n    Columns values :\n");
+                valueBuilder = ProtobufColumnVal.newBuilder();
 
-                for (ArrayList<ColumnVal> row : rowValues)
-                {
-                    rowBuilder = ProtobufRowValue.newBuilder();
-                    for (int i = 0; i < row.size(); i++)
-                    {
-                        if (logger.isDebugEnabled() && i > 0)
-                            trace.append(", ");
+                ColumnVal colValue = row.get(i);
+                ColumnSpec colSpec = oneRowChange.getColumnSpec().get(i);
+                serializeRowValue(valueBuilder, colValue, colSpec);
+                rowBuilder.addColumnValue(valueBuilder);
+            }
+            oneRowBuilder.addColumnValues(rowBuilder);
+            if (logger.isDebugEnabled())
+                trace.append("\n");
+        }
 
-                        valueBuilder = ProtobufColumnVal.newBuilder();
+        if (logger.isDebugEnabled())
+            trace.append("\n    Keys values :\n");
 
-                        ColumnVal colValue = row.get(i);
-                        ColumnSpec colSpec = oneRowChange.getColumnSpec()
-                                .get(i);
-                        serializeRowValue(valueBuilder, colValue, colSpec);
-                        rowBuilder.addColumnValue(valueBuilder);
-                    }
-                    oneRowBuilder.addColumnValues(rowBuilder);
-                    if (logger.isDebugEnabled())
-                        trace.append("\n");
-                }
+        rowValues = oneRowChange.getKeyValues();
+        for (ArrayList<ColumnVal> row : rowValues)
+        {
+            rowBuilder = ProtobufRowValue.newBuilder();
+            for (int i = 0; i < row.size(); i++)
+            {
+                if (logger.isDebugEnabled() && i > 0)
+                    trace.append(", ");
 
+                valueBuilder = ProtobufColumnVal.newBuilder();
+
+                ColumnVal colValue = row.get(i);
+                ColumnSpec colSpec = oneRowChange.getKeySpec().get(i);
+                serializeRowValue(valueBuilder, colValue, colSpec);
+                rowBuilder.addColumnValue(valueBuilder);
+            }
+            if (logger.isDebugEnabled())
+                trace.append("\n");
+
+            oneRowBuilder.addKeyValues(rowBuilder);
+        }
+        return oneRowBuilder;
+    }
+
+    /**
+     * Returns a builder holding the schema, table, action and column specs of
+     * a row change. Values and table ID are left to the caller.
+     */
+    private ProtobufOneRowChange.Builder serializeRowChangeHeader(
+            OneRowChange oneRowChange)
+    {
+        ProtobufOneRowChange.Builder oneRowBuilder = ProtobufOneRowChange
+                .newBuilder();
+        ProtobufColumnSpec.Builder colSpecBuilder;
+        oneRowBuilder.setSchemaName(oneRowChange.getSchemaName());
+        oneRowBuilder.setTableName(oneRowChange.getTableName());
+
+        switch (oneRowChange.getAction())
+        {
+            case INSERT :
+                if (logger.isDebugEnabled())
+                    trace.append("INSERT into ");
+                oneRowBuilder.setAction(ActionType.INSERT);
+                break;
+            case DELETE :
                 if (logger.isDebugEnabled())
-                    trace.append("\n    Keys values :\n");
+                    trace.append("DELETE from ");
+                oneRowBuilder.setAction(ActionType.DELETE);
+                break;
+            case UPDATE :
+                if (logger.isDebugEnabled())
+                    trace.append("UPDATE ");
+                oneRowBuilder.setAction(ActionType.UPDATE);
+                break;
+            default :
+                break;
+        }
 
-                rowValues = oneRowChange.getKeyValues();
-                for (ArrayList<ColumnVal> row : rowValues)
-                {
-                    rowBuilder = ProtobufRowValue.newBuilder();
-                    for (int i = 0; i < row.size(); i++)
-                    {
-                        if (logger.isDebugEnabled() && i > 0)
-                            trace.append(", ");
+        if (logger.isDebugEnabled())
+        {
+            trace.append(oneRowChange.getSchemaName());
+            trace.append(".");
+            trace.append(oneRowChange.getTableName());
+            trace.append("\n    Columns spec :\n");
+        }
 
-                        valueBuilder = ProtobufColumnVal.newBuilder();
+        ArrayList<ColumnSpec> list = oneRowChange.getColumnSpec();
+        for (ColumnSpec columnSpec : list)
+        {
+            traceColumnSpec(columnSpec);
 
-                        ColumnVal colValue = row.get(i);
-                        ColumnSpec colSpec = oneRowChange.getKeySpec().get(i);
-                        serializeRowValue(valueBuilder, colValue, colSpec);
-                        rowBuilder.addColumnValue(valueBuilder);
-                    }
-                    if (logger.isDebugEnabled())
-                        trace.append("\n");
+            colSpecBuilder = ProtobufColumnSpec.newBuilder();
+            colSpecBuilder.setIndex(columnSpec.getIndex());
+            colSpecBuilder.setLength(columnSpec.getLength());
+            if (columnSpec.getName() != null)
+            {
+                colSpecBuilder.setName(columnSpec.getName());
+            }
+            colSpecBuilder.setNotNull(columnSpec.isNotNull());
+            colSpecBuilder.setSigned(!columnSpec.isUnsigned());
+            colSpecBuilder.setType(columnSpec.getType());
+            oneRowBuilder.addColumnSpec(colSpecBuilder);
+        }
 
-                    oneRowBuilder.addKeyValues(rowBuilder);
+        if (logger.isDebugEnabled())
+            trace.append("\n    Keys spec :\n");
+        list = oneRowChange.getKeySpec();
+        for (ColumnSpec columnSpec : list)
+        {
+            traceColumnSpec(columnSpec);
+
+            colSpecBuilder = ProtobufColumnSpec.newBuilder();
+            colSpecBuilder.setIndex(columnSpec.getIndex());
+            colSpecBuilder.setLength(columnSpec.getLength());
+            if (columnSpec.getName() != null)
+            {
+                colSpecBuilder.setName(columnSpec.getName());
+            }
+            colSpecBuilder.setNotNull(columnSpec.isNotNull());
+            colSpecBuilder.setSigned(!columnSpec.isUnsigned());
+            colSpecBuilder.setType(columnSpec.getType());
+            oneRowBuilder.addKeySpec(colSpecBuilder);
+        }
+        return oneRowBuilder;
+    }
+
+    /**
+     * Serializes row changes of which at least one holds columnar values. Each
+     * row change is encoded into the bytes of a ProtobufOneRowChange message
+     * and added as an unknown rowChange field, which is written exactly like
+     * the known field and parsed as such on deserialization. Row changes that
+     * are not columnar go through the message builders so that row changes
+     * keep their order.
+     */
+    private void serializeColumnarRows(
+            ProtobufRowChangeData.Builder rowDataBuilder,
+            ArrayList<OneRowChange> rowChanges)
+    {
+        UnknownFieldSet.Field.Builder fieldBuilder = UnknownFieldSet.Field
+                .newBuilder();
+        try
+        {
+            for (OneRowChange oneRowChange : rowChanges)
+            {
+                if (oneRowChange.hasColumnarValues())
+                {
+                    fieldBuilder
+                            .addLengthDelimited(serializeColumnarRowChange(oneRowChange));
+                }
+                else
+                {
+                    fieldBuilder.addLengthDelimited(serializeRowChange(
+                            oneRowChange).build().toByteString());
                 }
-                rowDataBuilder.addRowChange(oneRowBuilder);
             }
         }
         catch (Exception e)
         {
-            if (logger.isDebugEnabled())
-                logger.debug("Failure while storing " + trace.toString(), e);
             throw new RuntimeException(e);
         }
-        if (logger.isDebugEnabled())
-            logger.debug(trace.toString());
+        rowDataBuilder.setUnknownFields(UnknownFieldSet.newBuilder()
+                .addField(ProtobufRowChangeData.ROWCHANGE_FIELD_NUMBER,
+                        fieldBuilder.build()).build());
+    }
+
+    /**
+     * Encodes a columnar row change in the ProtobufOneRowChange wire format.
+     */
+    private ByteString serializeColumnarRowChange(OneRowChange oneRowChange)
+            throws IOException
+    {
+        ByteString.Output out = ByteString.newOutput();
+        CodedOutputStream output = CodedOutputStream.newInstance(out);
+
+        // Fields are written in field number order, as protobuf does.
+        serializeRowChangeHeader(oneRowChange).buildPartial().writeTo(output);
+        ColumnarRowValues keys = oneRowChange.getColumnarKeyValues();
+        if (keys != null)
+            writeColumnarRows(output,
+                    ProtobufOneRowChange.KEYVALUES_FIELD_NUMBER, oneRowChange,
+                    keys, oneRowChange.getKeySpec());
+        ColumnarRowValues columns = oneRowChange.getColumnarColumnValues();
+        if (columns != null)
+            writeColumnarRows(output,
+                    ProtobufOneRowChange.COLUMNVALUES_FIELD_NUMBER,
+                    oneRowChange, columns, oneRowChange.getColumnSpec());
+        output.writeSInt64(ProtobufOneRowChange.TABLEID_FIELD_NUMBER,
+                oneRowChange.getTableId());
+        output.flush();
+        return out.toByteString();
+    }
+
+    /**
+     * Writes columnar rows as repeated ProtobufRowValue fields. Each row is
+     * sized before it is written, as the length precedes the row.
+     */
+    private void writeColumnarRows(CodedOutputStream output, int fieldNumber,
+            OneRowChange oneRowChange, ColumnarRowValues values,
+            ArrayList<ColumnSpec> specs) throws IOException
+    {
+        int columns = values.getColumnCount();
+        if (cellEncodings.length < columns)
+        {
+            cellEncodings = new int[columns];
+            cellSizes = new int[columns];
+            cellMessages = new ProtobufColumnVal[columns];
+        }
+
+        for (int row = 0; row < values.getRowCount(); row++)
+        {
+            int rowSize = 0;
+            for (int col = 0; col < columns; col++)
+            {
+                int size = sizeColumnarCell(oneRowChange, values, row, col,
+                        specs.get(col));
+                cellSizes[col] = size;
+                rowSize += CodedOutputStream
+                        .computeTagSize(ProtobufRowValue.COLUMNVALUE_FIELD_NUMBER)
+                        + CodedOutputStream.computeRawVarint32Size(size)
+                        + size;
+            }
+
+            output.writeTag(fieldNumber, WIRETYPE_LENGTH_DELIMITED);
+            output.writeRawVarint32(rowSize);
+            for (int col = 0; col < columns; col++)
+            {
+                output.writeTag(ProtobufRowValue.COLUMNVALUE_FIELD_NUMBER,
+                        WIRETYPE_LENGTH_DELIMITED);
+                output.writeRawVarint32(cellSizes[col]);
+                writeColumnarCell(output, values, row, col);
+                cellMessages[col] = null;
+            }
+        }
+    }
+
+    /**
+     * Chooses the encoding of a columnar cell and returns its size. Values
+     * that do not have a direct encoding are converted to a message by
+     * serializeRowValue(), which decides how every value is encoded.
+     */
+    private int sizeColumnarCell(OneRowChange oneRowChange,
+            ColumnarRowValues values, int row, int col, ColumnSpec colSpec)
+    {
+        int kind = values.getKind(row, col);
+        int specType = colSpec.getType();
+        int encoding = CELL_MESSAGE;
+        if (specType == Types.NULL || kind == ColumnarRowValues.NULL)
+            encoding = CELL_NULL;
+        else if (kind == ColumnarRowValues.INT)
+        {
+            if (specType == Types.INTEGER && colSpec.getLength() >= 0
+                    && colSpec.getLength() <= 4)
+                encoding = CELL_INT;
+            else if (specType == Types.OTHER)
+                encoding = CELL_INT;
+            else if (specType == Types.BIT)
+                encoding = CELL_BIT;
+        }
+        else if (kind == ColumnarRowValues.LONG)
+        {
+            if (specType == Types.INTEGER
+                    && (colSpec.getLength() == 0 || colSpec.getLength() == 8))
+                encoding = CELL_LONG;
+        }
+        else if (kind == ColumnarRowValues.FLOAT)
+        {
+            if (specType == Types.FLOAT)
+                encoding = CELL_FLOAT;
+        }
+        else if (kind == ColumnarRowValues.DOUBLE)
+        {
+            if (specType == Types.DOUBLE)
+                encoding = CELL_DOUBLE;
+        }
+        else if (kind == ColumnarRowValues.STRING)
+        {
+            if ((specType == Types.CHAR || specType == Types.VARCHAR || specType == Types.CLOB)
+                    && DEFAULT_CHARSET_IS_UTF8
+                    && isValidUtf8(values.getBuffer(),
+                            values.getOffset(row, col),
+                            values.getLength(row, col)))
+                encoding = CELL_STRING;
+        }
+        else if (kind == ColumnarRowValues.BYTES)
+        {
+            if (specType == Types.CHAR || specType == Types.VARCHAR)
+                encoding = CELL_BINARY_STRING;
+        }
+        cellEncodings[col] = encoding;
+
+        switch (encoding)
+        {
+            case CELL_NULL :
+                return CodedOutputStream.computeEnumSize(
+                        ProtobufColumnVal.TYPE_FIELD_NUMBER,
+                        Type.NULL.getNumber());
+            case CELL_INT :
+            case CELL_BIT :
+                return CodedOutputStream.computeEnumSize(
+                        ProtobufColumnVal.TYPE_FIELD_NUMBER,
+                        encoding == CELL_INT
+                                ? Type.INT.getNumber()
+                                : Type.BIT.getNumber())
+                        + CodedOutputStream.computeSInt32Size(
+                                ProtobufColumnVal.INTVALUE_FIELD_NUMBER,
+                                values.getInt(row, col));
+            case CELL_LONG :
+                return CodedOutputStream.computeEnumSize(
+                        ProtobufColumnVal.TYPE_FIELD_NUMBER,
+                        Type.LONG.getNumber())
+                        + CodedOutputStream.computeSInt64Size(
+                                ProtobufColumnVal.LONGVALUE_FIELD_NUMBER,
+                                values.getLong(row, col));
+            case CELL_FLOAT :
+                return CodedOutputStream.computeEnumSize(
+                        ProtobufColumnVal.TYPE_FIELD_NUMBER,
+                        Type.FLOAT.getNumber())
+                        + CodedOutputStream.computeFloatSize(
+                                ProtobufColumnVal.FLOATVALUE_FIELD_NUMBER,
+                                values.getFloat(row, col));
+            case CELL_DOUBLE :
+                return CodedOutputStream.computeEnumSize(
+                        ProtobufColumnVal.TYPE_FIELD_NUMBER,
+                        Type.DOUBLE.getNumber())
+                        + CodedOutputStream.computeDoubleSize(
+                                ProtobufColumnVal.DOUBLEVALUE_FIELD_NUMBER,
+                                values.getDouble(row, col));
+            case CELL_STRING :
+            case CELL_BINARY_STRING :
+                int length = values.getLength(row, col);
+                return CodedOutputStream.computeEnumSize(
+                        ProtobufColumnVal.TYPE_FIELD_NUMBER,
+                        encoding == CELL_STRING
+                                ? Type.STRING.getNumber()
+                                : Type.BINARYSTRING.getNumber())
+                        + CodedOutputStream
+                                .computeTagSize(encoding == CELL_STRING
+                                        ? ProtobufColumnVal.STRINGVALUE_FIELD_NUMBER
+                                        : ProtobufColumnVal.BYTESVALUE_FIELD_NUMBER)
+                        + CodedOutputStream.computeRawVarint32Size(length)
+                        + length;
+            default :
+                ColumnVal colValue = oneRowChange.new ColumnVal();
+                colValue.setValue(values.getObject(row, col));
+                ProtobufColumnVal.Builder valueBuilder = ProtobufColumnVal
+                        .newBuilder();
+                serializeRowValue(valueBuilder, colValue, colSpec);
+                cellMessages[col] = valueBuilder.build();
+                return cellMessages[col].getSerializedSize();
+        }
+    }
+
+    /**
+     * Writes a columnar cell using the encoding chosen when it was sized.
+     */
+    private void writeColumnarCell(CodedOutputStream output,
+            ColumnarRowValues values, int row, int col) throws IOException
+    {
+        switch (cellEncodings[col])
+        {
+            case CELL_NULL :
+                output.writeEnum(ProtobufColumnVal.TYPE_FIELD_NUMBER,
+                        Type.NULL.getNumber());
+                break;
+            case CELL_INT :
+                output.writeEnum(ProtobufColumnVal.TYPE_FIELD_NUMBER,
+                        Type.INT.getNumber());
+                output.writeSInt32(ProtobufColumnVal.INTVALUE_FIELD_NUMBER,
+                        values.getInt(row, col));
+                break;
+            case CELL_BIT :
+                output.writeEnum(ProtobufColumnVal.TYPE_FIELD_NUMBER,
+                        Type.BIT.getNumber());
+                output.writeSInt32(ProtobufColumnVal.INTVALUE_FIELD_NUMBER,
+                        values.getInt(row, col));
+                break;
+            case CELL_LONG :
+                output.writeEnum(ProtobufColumnVal.TYPE_FIELD_NUMBER,
+                        Type.LONG.getNumber());
+                output.writeSInt64(ProtobufColumnVal.LONGVALUE_FIELD_NUMBER,
+                        values.getLong(row, col));
+                break;
+            case CELL_FLOAT :
+                output.writeEnum(ProtobufColumnVal.TYPE_FIELD_NUMBER,
+                        Type.FLOAT.getNumber());
+                output.writeFloat(ProtobufColumnVal.FLOATVALUE_FIELD_NUMBER,
+                        values.getFloat(row, col));
+                break;
+            case CELL_DOUBLE :
+                output.writeEnum(ProtobufColumnVal.TYPE_FIELD_NUMBER,
+                        Type.DOUBLE.getNumber());
+                output.writeDouble(
+                        ProtobufColumnVal.DOUBLEVALUE_FIELD_NUMBER,
+                        values.getDouble(row, col));
+                break;
+            case CELL_STRING :
+                output.writeEnum(ProtobufColumnVal.TYPE_FIELD_NUMBER,
+                        Type.STRING.getNumber());
+                output.writeTag(ProtobufColumnVal.STRINGVALUE_FIELD_NUMBER,
+                        WIRETYPE_LENGTH_DELIMITED);
+                output.writeRawVarint32(values.getLength(row, col));
+                output.writeRawBytes(values.getBuffer(),
+                        values.getOffset(row, col), values.getLength(row, col));
+                break;
+            case CELL_BINARY_STRING :
+                output.writeEnum(ProtobufColumnVal.TYPE_FIELD_NUMBER,
+                        Type.BINARYSTRING.getNumber());
+                output.writeTag(ProtobufColumnVal.BYTESVALUE_FIELD_NUMBER,
+                        WIRETYPE_LENGTH_DELIMITED);
+                output.writeRawVarint32(values.getLength(row, col));
+                output.writeRawBytes(values.getBuffer(),
+                        values.getOffset(row, col), values.getLength(row, col));
+                break;
+            default :
+                cellMessages[col].writeTo(output);
+                break;
+        }
+    }
+
+    /**
+     * Returns true if bytes are well-formed UTF-8, meaning that decoding and
+     * encoding them again gives the same bytes.
+     */
+    private static boolean isValidUtf8(byte[] buffer, int offset, int length)
+    {
+        int end = offset + length;
+        int i = offset;
+        while (i < end)
+        {
+            int b = buffer[i] & 0xFF;
+            if (b < 0x80)
+            {
+                i++;
+                continue;
+            }
+            int count;
+            int min;
+            int codePoint;
+            if (b >= 0xC2 && b <= 0xDF)
+            {
+                count = 1;
+                min = 0x80;
+                codePoint = b & 0x1F;
+            }
+            else if (b >= 0xE0 && b <= 0xEF)
+            {
+                count = 2;
+                min = 0x800;
+                codePoint = b & 0x0F;
+            }
+            else if (b >= 0xF0 && b <= 0xF4)
+            {
+                count = 3;
+                min = 0x10000;
+                codePoint = b & 0x07;
+            }
+            else
+                return false;
+            if (i + count >= end)
+                return false;
+            for (int j = 1; j <= count; j++)
+            {
+                int c = buffer[i + j] & 0xFF;
+                if ((c & 0xC0) != 0x80)
+                    return false;
+                codePoint = (codePoint << 6) | (c & 0x3F);
+            }
+            if (codePoint < min || codePoint > 0x10FFFF
+                    || (codePoint >= 0xD800 && codePoint <= 0xDFFF))
+                return false;
+            i += count + 1;
+        }
+        return true;
     }
 
     private void serializeRowValue(ProtobufColumnVal.Builder valueBuilder,
@@ -773,78 +1268,86 @@ public class ProtobufSerializer implements Serializer
         List<ProtobufOneRowChange> rowChangeList = rows.getRowChangeList();
         for (ProtobufOneRowChange oneRowChange : rowChangeList)
         {
-            OneRowChange rowChange = new OneRowChange(
-                    oneRowChange.getSchemaName(), oneRowChange.getTableName(),
-                    RowChangeData.ActionType.valueOf(oneRowChange.getAction()
-                            .name()));
-            if (oneRowChange.hasTableId())
-                rowChange.setTableId(oneRowChange.getTableId());
-
-            for (ProtobufColumnSpec columnSpec : oneRowChange.getKeySpecList())
-            {
-                ColumnSpec c = rowChange.new ColumnSpec();
-                c.setIndex(columnSpec.getIndex());
-                c.setLength(columnSpec.getLength());
-                c.setName(columnSpec.getName());
-                c.setNotNull(columnSpec.getNotNull());
-                c.setSigned(columnSpec.getSigned());
-                c.setType(columnSpec.getType());
-                rowChange.getKeySpec().add(c);
-            }
+            data.appendOneRowChange(deserializeRowChange(oneRowChange));
+        }
 
-            for (ProtobufColumnSpec columnSpec : oneRowChange
-                    .getColumnSpecList())
-            {
-                ColumnSpec c = rowChange.new ColumnSpec();
-                c.setIndex(columnSpec.getIndex());
-                c.setLength(columnSpec.getLength());
-                c.setName(columnSpec.getName());
-                c.setNotNull(columnSpec.getNotNull());
-                c.setSigned(columnSpec.getSigned());
-                c.setType(columnSpec.getType());
-                rowChange.getColumnSpec().add(c);
-            }
+        return data;
+    }
 
-            ArrayList<ColumnVal> colValues = null;
+    /**
+     * Deserializes a single row change.
+     */
+    OneRowChange deserializeRowChange(ProtobufOneRowChange oneRowChange)
+    {
+        OneRowChange rowChange = new OneRowChange(
+                oneRowChange.getSchemaName(), oneRowChange.getTableName(),
+                RowChangeData.ActionType.valueOf(oneRowChange.getAction()
+                        .name()));
+        if (oneRowChange.hasTableId())
+            rowChange.setTableId(oneRowChange.getTableId());
+
+        for (ProtobufColumnSpec columnSpec : oneRowChange.getKeySpecList())
+        {
+            ColumnSpec c = rowChange.new ColumnSpec();
+            c.setIndex(columnSpec.getIndex());
+            c.setLength(columnSpec.getLength());
+            c.setName(columnSpec.getName());
+            c.setNotNull(columnSpec.getNotNull());
+            c.setSigned(columnSpec.getSigned());
+            c.setType(columnSpec.getType());
+            rowChange.getKeySpec().add(c);
+        }
 
-            for (ProtobufRowValue rowValue : oneRowChange.getColumnValuesList())
+        for (ProtobufColumnSpec columnSpec : oneRowChange
+                .getColumnSpecList())
+        {
+            ColumnSpec c = rowChange.new ColumnSpec();
+            c.setIndex(columnSpec.getIndex());
+            c.setLength(columnSpec.getLength());
+            c.setName(columnSpec.getName());
+            c.setNotNull(columnSpec.getNotNull());
+            c.setSigned(columnSpec.getSigned());
+            c.setType(columnSpec.getType());
+            rowChange.getColumnSpec().add(c);
+        }
+
+        ArrayList<ColumnVal> colValues = null;
+
+        for (ProtobufRowValue rowValue : oneRowChange.getColumnValuesList())
+        {
+            colValues = new ArrayList<ColumnVal>();
+            for (ProtobufColumnVal columnVal : rowValue
+                    .getColumnValueList())
             {
-                colValues = new ArrayList<ColumnVal>();
-                for (ProtobufColumnVal columnVal : rowValue
-                        .getColumnValueList())
-                {
-                    ColumnVal v = rowChange.new ColumnVal();
-                    Serializable value = deserializeColumnValue(columnVal);
-                    if (value == null)
-                        v.setValueNull();
-                    else
-                        v.setValue(value);
-                    colValues.add(v);
-                }
-                rowChange.getColumnValues().add(colValues);
+                ColumnVal v = rowChange.new ColumnVal();
+                Serializable value = deserializeColumnValue(columnVal);
+                if (value == null)
+                    v.setValueNull();
+                else
+                    v.setValue(value);
+                colValues.add(v);
             }
+            rowChange.getColumnValues().add(colValues);
+        }
 
-            for (ProtobufRowValue rowValue : oneRowChange.getKeyValuesList())
+        for (ProtobufRowValue rowValue : oneRowChange.getKeyValuesList())
+        {
+            colValues = new ArrayList<ColumnVal>();
+            for (ProtobufColumnVal columnVal : rowValue
+                    .getColumnValueList())
             {
-                colValues = new ArrayList<ColumnVal>();
-                for (ProtobufColumnVal columnVal : rowValue
-                        .getColumnValueList())
-                {
-                    ColumnVal v = rowChange.new ColumnVal();
-                    Serializable value = deserializeColumnValue(columnVal);
-                    if (value == null)
-                        v.setValueNull();
-                    else
-                        v.setValue(value);
-                    colValues.add(v);
-                }
-                rowChange.getKeyValues().add(colValues);
+                ColumnVal v = rowChange.new ColumnVal();
+                Serializable value = deserializeColumnValue(columnVal);
+                if (value == null)
+                    v.setValueNull();
+                else
+                    v.setValue(value);
+                colValues.add(v);
             }
-
-            data.appendOneRowChange(rowChange);
+            rowChange.getKeyValues().add(colValues);
         }
 
-        return data;
+        return rowChange;
     }
 
     /**
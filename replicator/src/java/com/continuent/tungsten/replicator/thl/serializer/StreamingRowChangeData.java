@@ -0,0 +1,221 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+
+package com.continuent.tungsten.replicator.thl.serializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.continuent.tungsten.replicator.dbms.OneRowChange;
+import com.continuent.tungsten.replicator.dbms.RowChangeData;
+import com.continuent.tungsten.replicator.thl.protobuf.TungstenProtos.ProtobufOneRowChange;
+import com.continuent.tungsten.replicator.thl.protobuf.TungstenProtos.ProtobufRowChangeData;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.WireFormat;
+
+/**
+ * Row change data that holds its row changes in serialized form and decodes
+ * them on demand. {@link #rowChangeIterator()} decodes one row change at a
+ * time, so that an applier that goes through a large fragment keeps only its
+ * serialized bytes and the current row change in memory. Calls that need the
+ * whole list, such as {@link #getRowChanges()} from filters, decode all row
+ * changes once and release the serialized bytes, after which this class
+ * behaves like its parent.
+ * 
+ * @version 1.0
+ */
+public class StreamingRowChangeData extends RowChangeData
+{
+    private static final long            serialVersionUID = 1L;
+
+    // Serialized ProtobufRowChangeData, which is null once decoded.
+    private byte[]                       buffer;
+    private int                          offset;
+    private int                          length;
+
+    private transient ProtobufSerializer serializer;
+
+    /**
+     * Creates a new instance over serialized row change data.
+     * 
+     * @param buffer Buffer containing a serialized ProtobufRowChangeData
+     * @param offset Offset of the data in the buffer
+     * @param length Length of the data
+     */
+    StreamingRowChangeData(byte[] buffer, int offset, int length)
+    {
+        super();
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Returns true if row changes have been decoded into a list.
+     */
+    public synchronized boolean isDecoded()
+    {
+        return buffer == null;
+    }
+
+    /**
+     * Returns the length of serialized row changes or 0 if they have been
+     * decoded.
+     */
+    public synchronized int getSerializedLength()
+    {
+        return (buffer == null) ? 0 : length;
+    }
+
+    /**
+     * Decodes all row changes into a list if not already done. {@inheritDoc}
+     * 
+     * @see com.continuent.tungsten.replicator.dbms.RowChangeData#getRowChanges()
+     */
+    public synchronized ArrayList<OneRowChange> getRowChanges()
+    {
+        if (buffer != null)
+        {
+            ArrayList<OneRowChange> rowChanges = new ArrayList<OneRowChange>();
+            Iterator<OneRowChange> iterator = new RowChangeIterator(buffer,
+                    offset, length);
+            while (iterator.hasNext())
+                rowChanges.add(iterator.next());
+            super.setRowChanges(rowChanges);
+            buffer = null;
+        }
+        return super.getRowChanges();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see com.continuent.tungsten.replicator.dbms.RowChangeData#setRowChanges(java.util.ArrayList)
+     */
+    public synchronized void setRowChanges(ArrayList<OneRowChange> rowChanges)
+    {
+        buffer = null;
+        super.setRowChanges(rowChanges);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @see com.continuent.tungsten.replicator.dbms.RowChangeData#appendOneRowChange(com.continuent.tungsten.replicator.dbms.OneRowChange)
+     */
+    public synchronized void appendOneRowChange(OneRowChange rowChange)
+    {
+        getRowChanges().add(rowChange);
+    }
+
+    /**
+     * Returns an iterator that decodes row changes as it advances, unless row
+     * changes are already decoded. {@inheritDoc}
+     * 
+     * @see com.continuent.tungsten.replicator.dbms.RowChangeData#rowChangeIterator()
+     */
+    public Iterator<OneRowChange> rowChangeIterator()
+    {
+        byte[] serialized;
+        synchronized (this)
+        {
+            serialized = buffer;
+        }
+        if (serialized == null)
+            return super.rowChangeIterator();
+        else
+            return new RowChangeIterator(serialized, offset, length);
+    }
+
+    // Returns the serializer that decodes row changes.
+    private synchronized ProtobufSerializer getSerializer()
+    {
+        if (serializer == null)
+            serializer = new ProtobufSerializer();
+        return serializer;
+    }
+
+    /**
+     * Decodes row changes one at a time from repeated rowChange fields.
+     */
+    private class RowChangeIterator implements Iterator<OneRowChange>
+    {
+        private final CodedInputStream input;
+        private OneRowChange           next;
+
+        RowChangeIterator(byte[] buffer, int offset, int length)
+        {
+            input = CodedInputStream.newInstance(buffer, offset, length);
+        }
+
+        public boolean hasNext()
+        {
+            if (next == null)
+                next = decodeNext();
+            return next != null;
+        }
+
+        public OneRowChange next()
+        {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            OneRowChange rowChange = next;
+            next = null;
+            return rowChange;
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException(
+                    "Row changes cannot be removed through this iterator");
+        }
+
+        // Returns the next row change or null at the end of data.
+        private OneRowChange decodeNext()
+        {
+            try
+            {
+                while (!input.isAtEnd())
+                {
+                    int tag = input.readTag();
+                    if (WireFormat.getTagFieldNumber(tag) == ProtobufRowChangeData.ROWCHANGE_FIELD_NUMBER)
+                    {
+                        ProtobufOneRowChange.Builder builder = ProtobufOneRowChange
+                                .newBuilder();
+                        input.readMessage(builder, ExtensionRegistryLite
+                                .getEmptyRegistry());
+                        return getSerializer().deserializeRowChange(
+                                builder.build());
+                    }
+                    else
+                        input.skipField(tag);
+                }
+                return null;
+            }
+            catch (IOException e)
+            {
+                throw new RuntimeException("Unable to decode row change", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,411 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.util;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Implements a bounded blocking queue on a preallocated ring buffer. Slots are
+ * claimed with compare-and-set on the head and tail positions and each slot
+ * carries a sequence number that tells producers and consumers whether it is
+ * free or full, so the queue is safe for any number of producers and
+ * consumers without taking locks or allocating on put and take.
+ * <p>
+ * Threads that cannot proceed because the queue is full or empty wait
+ * according to a {@link WaitStrategy}. Spinning gives the lowest latency but
+ * burns a CPU per waiting thread, which makes it suitable only when there are
+ * spare cores. Parking is the default. Threads first yield for a short while,
+ * then register themselves and park until a thread on the other side of the
+ * queue unparks them, so an idle pipeline does not use CPU. Parked threads
+ * also wake up after a long interval in case a signal is missed.
+ * <p>
+ * Iterators return a snapshot of the queue and do not support removal.
+ *
+ * @version 1.0
+ */
+public class RingBufferQueue<E> extends AbstractQueue<E>
+        implements
+            BlockingQueue<E>
+{
+    /**
+     * Defines how threads wait when the queue is full or empty.
+     */
+    public enum WaitStrategy
+    {
+        /** Busy-wait on the queue. */
+        SPIN,
+        /** Yield the processor between checks. */
+        YIELD,
+        /** Yield briefly, then park until unparked by the other side. */
+        PARK
+    }
+
+    // Number of times to spin before parking.
+    private static final int      SPIN_TRIES = 100;
+
+    // Maximum park interval in nanoseconds, which bounds the wait if a signal
+    // is missed.
+    private static final long     PARK_NANOS = 100000000;
+
+    private final int             capacity;
+    private final int             mask;
+    private final Object[]        items;
+    private final AtomicLongArray sequences;
+    private final AtomicLong      head       = new AtomicLong(0);
+    private final AtomicLong      tail       = new AtomicLong(0);
+    private final WaitStrategy    waitStrategy;
+
+    // Threads parked waiting for an element and for space.
+    private final Queue<Thread>   takers     = new ConcurrentLinkedQueue<Thread>();
+    private final Queue<Thread>   putters    = new ConcurrentLinkedQueue<Thread>();
+
+    /**
+     * Creates a new queue that parks waiting threads.
+     *
+     * @param capacity Maximum number of elements in the queue
+     */
+    public RingBufferQueue(int capacity)
+    {
+        this(capacity, WaitStrategy.PARK);
+    }
+
+    /**
+     * Creates a new queue.
+     *
+     * @param capacity Maximum number of elements in the queue
+     * @param waitStrategy How to wait when the queue is full or empty
+     */
+    public RingBufferQueue(int capacity, WaitStrategy waitStrategy)
+    {
+        if (capacity <= 0)
+            throw new IllegalArgumentException(
+                    "Queue capacity must be greater than 0: " + capacity);
+        this.capacity = capacity;
+        this.waitStrategy = waitStrategy;
+
+        // Round the buffer up to a power of 2 so we can mask positions.
+        int size = 1;
+        while (size < capacity)
+            size <<= 1;
+        this.mask = size - 1;
+        this.items = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++)
+            sequences.set(i, i);
+    }
+
+    /** Returns the wait strategy. */
+    public WaitStrategy getWaitStrategy()
+    {
+        return waitStrategy;
+    }
+
+    /**
+     * Inserts an element if there is space, returning false if the queue is
+     * full.
+     */
+    public boolean offer(E e)
+    {
+        if (e == null)
+            throw new NullPointerException();
+
+        long pos = tail.get();
+        for (;;)
+        {
+            int index = (int) (pos & mask);
+            long dif = sequences.get(index) - pos;
+            if (dif == 0)
+            {
+                // The slot is free. Enforce capacity, which may be less than
+                // the buffer size, then try to claim it.
+                if (pos - head.get() >= capacity)
+                    return false;
+                if (tail.compareAndSet(pos, pos + 1))
+                {
+                    items[index] = e;
+                    sequences.set(index, pos + 1);
+                    signal(takers);
+                    return true;
+                }
+            }
+            else if (dif < 0)
+            {
+                // The slot still holds an element from the last lap.
+                return false;
+            }
+            pos = tail.get();
+        }
+    }
+
+    /**
+     * Removes and returns the head of the queue, returning null if the queue
+     * is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public E poll()
+    {
+        long pos = head.get();
+        for (;;)
+        {
+            int index = (int) (pos & mask);
+            long dif = sequences.get(index) - (pos + 1);
+            if (dif == 0)
+            {
+                if (head.compareAndSet(pos, pos + 1))
+                {
+                    E e = (E) items[index];
+                    items[index] = null;
+                    sequences.set(index, pos + mask + 1);
+                    signal(putters);
+                    return e;
+                }
+            }
+            else if (dif < 0)
+            {
+                // The slot has not been filled yet.
+                return null;
+            }
+            pos = head.get();
+        }
+    }
+
+    /**
+     * Returns but does not remove the head of the queue, returning null if the
+     * queue is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public E peek()
+    {
+        for (;;)
+        {
+            long pos = head.get();
+            int index = (int) (pos & mask);
+            if (sequences.get(index) != pos + 1)
+                return null;
+            E e = (E) items[index];
+
+            // Ensure a consumer did not take the element while we read it.
+            if (e != null && head.get() == pos)
+                return e;
+        }
+    }
+
+    /**
+     * Inserts an element, waiting if necessary for space to become available.
+     */
+    public void put(E e) throws InterruptedException
+    {
+        int tries = 0;
+        while (!offer(e))
+            tries = idle(tries, putters, false, 0);
+    }
+
+    /**
+     * Inserts an element, waiting up to the timeout for space to become
+     * available.
+     */
+    public boolean offer(E e, long timeout, TimeUnit unit)
+            throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int tries = 0;
+        while (!offer(e))
+        {
+            if (System.nanoTime() - deadline >= 0)
+                return false;
+            tries = idle(tries, putters, true, deadline);
+        }
+        return true;
+    }
+
+    /**
+     * Removes and returns the head of the queue, waiting if necessary for an
+     * element to become available.
+     */
+    public E take() throws InterruptedException
+    {
+        int tries = 0;
+        E e;
+        while ((e = poll()) == null)
+            tries = idle(tries, takers, false, 0);
+        return e;
+    }
+
+    /**
+     * Removes and returns the head of the queue, waiting up to the timeout for
+     * an element to become available.
+     */
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int tries = 0;
+        E e;
+        while ((e = poll()) == null)
+        {
+            if (System.nanoTime() - deadline >= 0)
+                return null;
+            tries = idle(tries, takers, true, deadline);
+        }
+        return e;
+    }
+
+    // Waits once according to the wait strategy and returns the number of
+    // tries so far. Parked threads register with the given waiters and wake
+    // up no later than the deadline if the wait is timed.
+    private int idle(int tries, Queue<Thread> waiters, boolean timed,
+            long deadline) throws InterruptedException
+    {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+
+        switch (waitStrategy)
+        {
+            case SPIN :
+                break;
+            case YIELD :
+                Thread.yield();
+                break;
+            case PARK :
+                if (tries < SPIN_TRIES)
+                    Thread.yield();
+                else
+                    park(waiters, timed, deadline);
+                break;
+        }
+        return tries + 1;
+    }
+
+    // Parks until unparked by signal(), the deadline passes, or the maximum
+    // park interval expires.
+    private void park(Queue<Thread> waiters, boolean timed, long deadline)
+    {
+        Thread current = Thread.currentThread();
+        waiters.add(current);
+        try
+        {
+            // Check again after registering, as a signal sent before we were
+            // in the waiters would otherwise be missed.
+            boolean ready = (waiters == takers) ? size() > 0 : size() < capacity;
+            if (ready)
+                return;
+            long nanos = PARK_NANOS;
+            if (timed)
+                nanos = Math.min(nanos, deadline - System.nanoTime());
+            if (nanos > 0)
+                LockSupport.parkNanos(this, nanos);
+        }
+        finally
+        {
+            waiters.remove(current);
+        }
+    }
+
+    // Unparks a thread waiting on the other side of the queue, if any.
+    private void signal(Queue<Thread> waiters)
+    {
+        if (!waiters.isEmpty())
+        {
+            Thread waiter = waiters.poll();
+            if (waiter != null)
+                LockSupport.unpark(waiter);
+        }
+    }
+
+    /** Returns the number of elements in the queue. */
+    public int size()
+    {
+        for (;;)
+        {
+            long h = head.get();
+            long t = tail.get();
+            if (h == head.get())
+                return (int) Math.max(0, Math.min(t - h, capacity));
+        }
+    }
+
+    /** Returns the number of elements that can be added without waiting. */
+    public int remainingCapacity()
+    {
+        return capacity - size();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see java.util.concurrent.BlockingQueue#drainTo(java.util.Collection)
+     */
+    public int drainTo(Collection<? super E> c)
+    {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see java.util.concurrent.BlockingQueue#drainTo(java.util.Collection,
+     *      int)
+     */
+    public int drainTo(Collection<? super E> c, int maxElements)
+    {
+        if (c == this)
+            throw new IllegalArgumentException();
+        int n = 0;
+        E e;
+        while (n < maxElements && (e = poll()) != null)
+        {
+            c.add(e);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the queue.
+     */
+    @SuppressWarnings("unchecked")
+    public Iterator<E> iterator()
+    {
+        List<E> snapshot = new ArrayList<E>(size());
+        long t = tail.get();
+        for (long pos = head.get(); pos < t; pos++)
+        {
+            int index = (int) (pos & mask);
+            if (sequences.get(index) != pos + 1)
+                break;
+            E e = (E) items[index];
+            if (e == null)
+                break;
+            snapshot.add(e);
+        }
+        return Collections.unmodifiableList(snapshot).iterator();
+    }
+}
@@ -0,0 +1,311 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.applier;
+
+import java.io.Serializable;
+import java.sql.BatchUpdateException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.continuent.tungsten.replicator.database.Database;
+import com.continuent.tungsten.replicator.database.DerbyDatabase;
+import com.continuent.tungsten.replicator.database.PreparedStatementCache;
+import com.continuent.tungsten.replicator.database.PreparedStatementCache.CachedStatement;
+import com.continuent.tungsten.replicator.dbms.OneRowChange;
+import com.continuent.tungsten.replicator.dbms.OneRowChange.ColumnSpec;
+import com.continuent.tungsten.replicator.dbms.OneRowChange.ColumnVal;
+import com.continuent.tungsten.replicator.dbms.RowChangeData;
+
+/**
+ * Tests construction of multi-row inserts and reporting of failed batch rows
+ * by JdbcApplier. Statements run against an embedded Derby database, which
+ * accepts several rows in the VALUES clause.
+ *
+ * @version 1.0
+ */
+public class TestJdbcApplier
+{
+    private static String url    = "jdbc:derby:testdb;create=true";
+    private static String schema = "APP";
+    private static String table  = "multi_insert";
+
+    private Database      database;
+    private JdbcApplier   applier;
+
+    /**
+     * Loads the Derby driver.
+     */
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception
+    {
+        Class.forName("org.apache.derby.jdbc.EmbeddedDriver");
+    }
+
+    /**
+     * Creates an empty table and an applier that uses the same connection.
+     */
+    @Before
+    public void setUp() throws Exception
+    {
+        database = new DerbyDatabase();
+        database.setUrl(url);
+        database.connect();
+        try
+        {
+            database.execute("DROP TABLE " + schema + "." + table);
+        }
+        catch (SQLException e)
+        {
+            // Table does not exist yet.
+        }
+        database.execute("CREATE TABLE " + schema + "." + table
+                + " (id INT NOT NULL PRIMARY KEY, name VARCHAR(32),"
+                + " data VARCHAR(16) FOR BIT DATA)");
+
+        // Derby does not accept nulls without a type, so bind them the way
+        // DBMS-specific appliers do.
+        applier = new JdbcApplier()
+        {
+            protected void setObject(PreparedStatement prepStatement,
+                    int bindLoc, ColumnVal value, ColumnSpec columnSpec)
+                    throws SQLException
+            {
+                if (value.getValue() == null)
+                    prepStatement.setNull(bindLoc, columnSpec.getType());
+                else
+                    prepStatement.setObject(bindLoc, value.getValue());
+            }
+        };
+        applier.conn = database;
+    }
+
+    /**
+     * Closes the database connection.
+     */
+    @After
+    public void tearDown() throws Exception
+    {
+        if (database != null)
+            database.close();
+    }
+
+    /**
+     * Verify that a multi-row insert names each column once and has one group
+     * of place holders per row, starting from the requested row.
+     */
+    @Test
+    public void testMultiRowInsertSql() throws Exception
+    {
+        OneRowChange rowChange = createRowChange(5);
+
+        String sql = applier.constructMultiRowInsert(schema, table,
+                rowChange.getColumnSpec(), rowChange.getColumnValues(), 1, 3)
+                .toString().replaceAll("\\s+", " ").trim();
+        Assert.assertEquals("SQL", "INSERT INTO APP.multi_insert"
+                + " ( id , name , data ) VALUES ( ? , ? , ? )"
+                + " , ( ? , ? , ? ) , ( ? , ? , ? )", sql);
+
+        String single = applier.constructMultiRowInsert(schema, table,
+                rowChange.getColumnSpec(), rowChange.getColumnValues(), 4, 1)
+                .toString().replaceAll("\\s+", " ").trim();
+        Assert.assertEquals("Single row SQL", "INSERT INTO APP.multi_insert"
+                + " ( id , name , data ) VALUES ( ? , ? , ? )", single);
+    }
+
+    /**
+     * Verify that binding the rows of a multi-row insert in order inserts
+     * every row with its own values, including null and binary values.
+     */
+    @Test
+    public void testMultiRowInsertValues() throws Exception
+    {
+        OneRowChange rowChange = createRowChange(4);
+        ArrayList<ColumnSpec> columns = rowChange.getColumnSpec();
+        ArrayList<ArrayList<ColumnVal>> values = rowChange.getColumnValues();
+
+        String sql = applier.constructMultiRowInsert(schema, table, columns,
+                values, 0, values.size()).toString();
+        PreparedStatement ps = database.prepareStatement(sql);
+        try
+        {
+            int bindLoc = 1;
+            for (ArrayList<ColumnVal> row : values)
+                bindLoc = applier.bindColumnValues(ps, row, bindLoc, columns,
+                        false);
+            Assert.assertEquals("Bound values", 4 * 3, bindLoc - 1);
+            Assert.assertEquals("Update count", 4, ps.executeUpdate());
+        }
+        finally
+        {
+            ps.close();
+        }
+
+        Statement st = database.createStatement();
+        try
+        {
+            ResultSet rs = st.executeQuery("SELECT id, name, data FROM "
+                    + schema + "." + table + " ORDER BY id");
+            for (int i = 0; i < 4; i++)
+            {
+                Assert.assertTrue("Row " + i, rs.next());
+                Assert.assertEquals("Id", i, rs.getInt(1));
+                Assert.assertEquals("Name", name(i), rs.getString(2));
+                Assert.assertArrayEquals("Data", data(i), rs.getBytes(3));
+            }
+            Assert.assertFalse("No more rows", rs.next());
+        }
+        finally
+        {
+            st.close();
+        }
+    }
+
+    /**
+     * Verify that only full-size multi-row inserts are kept in the statement
+     * cache, so that inserts of remaining rows do not fill it.
+     */
+    @Test
+    public void testMultiRowInsertCaching() throws Exception
+    {
+        applier.statementCache = new PreparedStatementCache(10);
+        OneRowChange rowChange = createRowChange(5);
+        ArrayList<ColumnSpec> columns = rowChange.getColumnSpec();
+        ArrayList<ArrayList<ColumnVal>> values = rowChange.getColumnValues();
+
+        CachedStatement full = applier.prepareRowChangeStatement(rowChange,
+                applier.constructMultiRowInsert(schema, table, columns, values,
+                        0, 3), null, true);
+        Assert.assertTrue("Full-size insert cached", full.isCached());
+        CachedStatement tail = applier.prepareRowChangeStatement(rowChange,
+                applier.constructMultiRowInsert(schema, table, columns, values,
+                        3, 2), full, false);
+        Assert.assertFalse("Remainder not cached", tail.isCached());
+        Assert.assertEquals("Cache entries", 1, applier.statementCache.size());
+        tail.getStatement().close();
+        applier.statementCache.invalidateAll();
+    }
+
+    /**
+     * Verify that the failed row of a batch is found whether the driver marks
+     * failed statements or stops at the first failure.
+     */
+    @Test
+    public void testFailedIndex() throws Exception
+    {
+        Assert.assertEquals("No update counts", 0, JdbcApplier
+                .getFailedIndex(new BatchUpdateException()));
+        Assert.assertEquals("Marked failure", 1, JdbcApplier
+                .getFailedIndex(new BatchUpdateException(new int[]{1,
+                        Statement.EXECUTE_FAILED, 1})));
+        Assert.assertEquals("Stopped at failure", 2, JdbcApplier
+                .getFailedIndex(new BatchUpdateException(new int[]{1, 1})));
+
+        // Derby stops at the first failure, here a duplicate key in the
+        // third row.
+        PreparedStatement ps = database.prepareStatement("INSERT INTO "
+                + schema + "." + table + " (id) VALUES (?)");
+        try
+        {
+            for (int id : new int[]{0, 1, 0, 2})
+            {
+                ps.setInt(1, id);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            Assert.fail("Batch with duplicate key succeeded");
+        }
+        catch (BatchUpdateException e)
+        {
+            Assert.assertEquals("Failed row", 2, JdbcApplier
+                    .getFailedIndex(e));
+        }
+        finally
+        {
+            ps.close();
+        }
+    }
+
+    // Creates an insert of rows whose id is the row number. Odd rows have a
+    // null name and even rows a null data value.
+    private OneRowChange createRowChange(int rows)
+    {
+        OneRowChange rowChange = new OneRowChange(schema, table,
+                RowChangeData.ActionType.INSERT);
+        addColumn(rowChange, 1, "id", Types.INTEGER);
+        addColumn(rowChange, 2, "name", Types.VARCHAR);
+        addColumn(rowChange, 3, "data", Types.VARBINARY);
+        for (int i = 0; i < rows; i++)
+        {
+            ArrayList<ColumnVal> row = new ArrayList<ColumnVal>();
+            row.add(value(rowChange, i));
+            row.add(value(rowChange, name(i)));
+            row.add(value(rowChange, data(i)));
+            rowChange.getColumnValues().add(row);
+        }
+        return rowChange;
+    }
+
+    // Adds a column specification.
+    private void addColumn(OneRowChange rowChange, int index, String name,
+            int type)
+    {
+        ColumnSpec spec = rowChange.new ColumnSpec();
+        spec.setIndex(index);
+        spec.setName(name);
+        spec.setType(type);
+        rowChange.getColumnSpec().add(spec);
+    }
+
+    // Creates a column value, which may be null.
+    private ColumnVal value(OneRowChange rowChange, Serializable value)
+    {
+        ColumnVal columnVal = rowChange.new ColumnVal();
+        if (value == null)
+            columnVal.setValueNull();
+        else
+            columnVal.setValue(value);
+        return columnVal;
+    }
+
+    // Returns the name of a row.
+    private String name(int row)
+    {
+        return (row % 2 == 0) ? "row " + row : null;
+    }
+
+    // Returns the data of a row, including bytes that are not valid
+    // characters.
+    private byte[] data(int row)
+    {
+        if (row % 2 == 0)
+            return null;
+        return new byte[]{(byte) row, 0, (byte) 0xFF, '\'', '\\'};
+    }
+}
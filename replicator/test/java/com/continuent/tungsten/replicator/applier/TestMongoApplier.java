@@ -0,0 +1,313 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.applier;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.continuent.tungsten.replicator.ReplicatorException;
+import com.continuent.tungsten.replicator.dbms.DBMSData;
+import com.continuent.tungsten.replicator.dbms.OneRowChange;
+import com.continuent.tungsten.replicator.dbms.OneRowChange.ColumnSpec;
+import com.continuent.tungsten.replicator.dbms.OneRowChange.ColumnVal;
+import com.continuent.tungsten.replicator.dbms.RowChangeData;
+import com.continuent.tungsten.replicator.dbms.RowChangeData.ActionType;
+import com.continuent.tungsten.replicator.event.DBMSEvent;
+import com.continuent.tungsten.replicator.event.ReplDBMSHeader;
+import com.continuent.tungsten.replicator.event.ReplDBMSHeaderData;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.MongoException;
+
+/**
+ * Tests queuing and flushing of writes by MongoApplier. Flushes are recorded
+ * instead of being sent to MongoDB, so that tests can check which writes go
+ * out together, their order, and the position written with them.
+ *
+ * @version 1.0
+ */
+public class TestMongoApplier
+{
+    // Writes and position of a single flush.
+    static class Flush
+    {
+        List<String>                       names  = new ArrayList<String>();
+        List<List<MongoApplier.WriteOp>>   ops    = new ArrayList<List<MongoApplier.WriteOp>>();
+        ReplDBMSHeader                     header;
+    }
+
+    // Applier that records flushes and can be made to fail.
+    static class RecordingMongoApplier extends MongoApplier
+    {
+        List<Flush> flushes = new ArrayList<Flush>();
+        boolean     fail;
+
+        protected DBCollection getCollection(String schema, String table)
+        {
+            return null;
+        }
+
+        protected void sendWrites(
+                Collection<MongoApplier.CollectionWriter> writers,
+                ReplDBMSHeader header)
+        {
+            if (fail)
+                throw new MongoException("Test failure");
+            Flush flush = new Flush();
+            for (MongoApplier.CollectionWriter writer : writers)
+            {
+                flush.names.add(writer.name);
+                flush.ops.add(new ArrayList<MongoApplier.WriteOp>(writer.ops));
+            }
+            flush.header = header;
+            flushes.add(flush);
+        }
+    }
+
+    /**
+     * Verify that with default settings each row change is sent as it
+     * arrives and the position is sent at commit.
+     */
+    @Test
+    public void testDefaultSettings() throws Exception
+    {
+        RecordingMongoApplier applier = new RecordingMongoApplier();
+        applier.apply(event(insert("t1", 1, 2)), header(0), true, false);
+
+        Assert.assertEquals("Flushes", 2, applier.flushes.size());
+        Flush rows = applier.flushes.get(0);
+        Assert.assertEquals("Row flush collections", 1, rows.names.size());
+        Assert.assertEquals("Inserted documents", 2, rows.ops.get(0).get(0).docs
+                .size());
+        Assert.assertNull("No position with rows", rows.header);
+        Flush commit = applier.flushes.get(1);
+        Assert.assertEquals("No writes with commit", 0, commit.names.size());
+        Assert.assertEquals("Committed seqno", 0, commit.header.getSeqno());
+    }
+
+    /**
+     * Verify that a flush keeps the order of writes on each collection, that
+     * only consecutive inserts are combined, and that every deleted row is a
+     * separate remove, even for rows with the same key.
+     */
+    @Test
+    public void testOrdering() throws Exception
+    {
+        RecordingMongoApplier applier = new RecordingMongoApplier();
+        applier.setBulkWriteSize(100);
+        applier.apply(
+                event(insert("t1", 1, 2), insert("t2", 10), update("t1", 1),
+                        insert("t1", 3), delete("t1", 5, 5)), header(7),
+                true, false);
+
+        Assert.assertEquals("Flushes", 1, applier.flushes.size());
+        Flush flush = applier.flushes.get(0);
+        Assert.assertEquals("Collections in order of first write",
+                "[test.t1, test.t2]", flush.names.toString());
+
+        List<MongoApplier.WriteOp> t1 = flush.ops.get(0);
+        Assert.assertEquals("t1 writes", 5, t1.size());
+        assertWrite(t1.get(0), ActionType.INSERT, 2);
+        assertWrite(t1.get(1), ActionType.UPDATE, 0);
+        assertWrite(t1.get(2), ActionType.INSERT, 1);
+        assertWrite(t1.get(3), ActionType.DELETE, 0);
+        assertWrite(t1.get(4), ActionType.DELETE, 0);
+        Assert.assertEquals("Delete key", new BasicDBObject("id", "5"),
+                t1.get(3).query);
+        Assert.assertEquals("Same key deleted twice", t1.get(3).query,
+                t1.get(4).query);
+
+        List<MongoApplier.WriteOp> t2 = flush.ops.get(1);
+        Assert.assertEquals("t2 writes", 1, t2.size());
+        assertWrite(t2.get(0), ActionType.INSERT, 1);
+        Assert.assertEquals("Committed seqno", 7, flush.header.getSeqno());
+    }
+
+    /**
+     * Verify that writes that fill a bulk write go out with the position of
+     * the last committed transaction rather than of the transaction being
+     * applied, and that held positions are written on release.
+     */
+    @Test
+    public void testPositionFollowsWrites() throws Exception
+    {
+        RecordingMongoApplier applier = new RecordingMongoApplier();
+        applier.setBulkWriteSize(3);
+        applier.setBulkWriteDelay(60000);
+
+        applier.apply(event(insert("t1", 1)), header(0), true, false);
+        Assert.assertEquals("Held below size", 0, applier.flushes.size());
+
+        applier.apply(event(insert("t1", 2, 3)), header(1), true, false);
+        Assert.assertEquals("Flush at size", 1, applier.flushes.size());
+        Flush flush = applier.flushes.get(0);
+        Assert.assertEquals("Inserts across transactions combined", 1,
+                flush.ops.get(0).size());
+        assertWrite(flush.ops.get(0).get(0), ActionType.INSERT, 3);
+        Assert.assertEquals("Position of last commit", 0,
+                flush.header.getSeqno());
+
+        applier.apply(event(), header(2), true, false);
+        Assert.assertEquals("Position held", 1, applier.flushes.size());
+
+        applier.release(null);
+        Assert.assertEquals("Flush on release", 2, applier.flushes.size());
+        Flush last = applier.flushes.get(1);
+        Assert.assertEquals("No writes on release", 0, last.names.size());
+        Assert.assertEquals("Last position", 2, last.header.getSeqno());
+    }
+
+    /**
+     * Verify that a commit sends held writes once the oldest is older than
+     * the bulk write delay.
+     */
+    @Test
+    public void testDelay() throws Exception
+    {
+        RecordingMongoApplier applier = new RecordingMongoApplier();
+        applier.setBulkWriteSize(100);
+        applier.setBulkWriteDelay(200);
+
+        applier.apply(event(insert("t1", 1)), header(0), true, false);
+        Assert.assertEquals("Held within delay", 0, applier.flushes.size());
+
+        Thread.sleep(300);
+        applier.apply(event(insert("t1", 2)), header(1), true, false);
+        Assert.assertEquals("Flush after delay", 1, applier.flushes.size());
+        Flush flush = applier.flushes.get(0);
+        assertWrite(flush.ops.get(0).get(0), ActionType.INSERT, 2);
+        Assert.assertEquals("Committed seqno", 1, flush.header.getSeqno());
+    }
+
+    /**
+     * Verify that a failed flush is reported and drops pending writes, which
+     * are applied again from the last committed position.
+     */
+    @Test
+    public void testFailedFlush() throws Exception
+    {
+        RecordingMongoApplier applier = new RecordingMongoApplier();
+        applier.fail = true;
+        try
+        {
+            applier.apply(event(insert("t1", 1)), header(0), true, false);
+            Assert.fail("Failed flush not reported");
+        }
+        catch (ReplicatorException e)
+        {
+        }
+
+        applier.fail = false;
+        applier.release(null);
+        Assert.assertEquals("Nothing left to flush", 0, applier.flushes.size());
+    }
+
+    // Checks the action and number of documents of a queued write.
+    private void assertWrite(MongoApplier.WriteOp op, ActionType action,
+            int docs)
+    {
+        Assert.assertEquals("Action", action, op.action);
+        Assert.assertEquals("Documents", docs, op.docs == null ? 0 : op.docs
+                .size());
+    }
+
+    // Returns an event containing row changes.
+    private DBMSEvent event(OneRowChange... rowChanges)
+    {
+        RowChangeData rowChangeData = new RowChangeData();
+        for (OneRowChange rowChange : rowChanges)
+            rowChangeData.appendOneRowChange(rowChange);
+        ArrayList<DBMSData> data = new ArrayList<DBMSData>();
+        data.add(rowChangeData);
+        return new DBMSEvent("test", data, new Timestamp(System
+                .currentTimeMillis()));
+    }
+
+    // Returns a header for a seqno.
+    private ReplDBMSHeader header(long seqno)
+    {
+        return new ReplDBMSHeaderData(seqno, (short) 0, true, "test", 0,
+                "test-" + seqno, "test", new Timestamp(System
+                        .currentTimeMillis()));
+    }
+
+    // Returns an insert of rows with the given ids.
+    private OneRowChange insert(String table, int... ids)
+    {
+        OneRowChange rowChange = new OneRowChange("test", table,
+                ActionType.INSERT);
+        rowChange.getColumnSpec().add(spec(rowChange));
+        for (int id : ids)
+            rowChange.getColumnValues().add(values(rowChange, id));
+        return rowChange;
+    }
+
+    // Returns an update of rows with the given ids.
+    private OneRowChange update(String table, int... ids)
+    {
+        OneRowChange rowChange = new OneRowChange("test", table,
+                ActionType.UPDATE);
+        rowChange.getColumnSpec().add(spec(rowChange));
+        rowChange.getKeySpec().add(spec(rowChange));
+        for (int id : ids)
+        {
+            rowChange.getColumnValues().add(values(rowChange, id));
+            rowChange.getKeyValues().add(values(rowChange, id));
+        }
+        return rowChange;
+    }
+
+    // Returns a delete of rows with the given ids.
+    private OneRowChange delete(String table, int... ids)
+    {
+        OneRowChange rowChange = new OneRowChange("test", table,
+                ActionType.DELETE);
+        rowChange.getKeySpec().add(spec(rowChange));
+        for (int id : ids)
+            rowChange.getKeyValues().add(values(rowChange, id));
+        return rowChange;
+    }
+
+    // Returns the specification of the id column.
+    private ColumnSpec spec(OneRowChange rowChange)
+    {
+        ColumnSpec spec = rowChange.new ColumnSpec();
+        spec.setIndex(1);
+        spec.setName("id");
+        spec.setType(Types.INTEGER);
+        return spec;
+    }
+
+    // Returns the values of a row with an id.
+    private ArrayList<ColumnVal> values(OneRowChange rowChange, int id)
+    {
+        ColumnVal value = rowChange.new ColumnVal();
+        value.setValue(id);
+        ArrayList<ColumnVal> values = new ArrayList<ColumnVal>();
+        values.add(value);
+        return values;
+    }
+}
@@ -0,0 +1,242 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.applier.batch;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.continuent.tungsten.replicator.ReplicatorException;
+import com.continuent.tungsten.replicator.database.Database;
+import com.continuent.tungsten.replicator.database.DerbyDatabase;
+
+/**
+ * Tests concurrent loading of tables by ParallelTableLoader. Tables are rows
+ * inserted into a table of an embedded Derby database, so that commits and
+ * rollbacks of the load connections can be checked.
+ *
+ * @version 1.0
+ */
+public class TestParallelTableLoader
+{
+    private static String                url   = "jdbc:derby:testdb;create=true";
+    private static String                table = "APP.parallel_load";
+
+    private Database                     database;
+    private List<Database>               conns;
+    private List<String>                 loaded;
+    private AtomicInteger                running;
+    private ParallelTableLoader<Integer> loader;
+
+    /**
+     * Loads the Derby driver.
+     */
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception
+    {
+        Class.forName("org.apache.derby.jdbc.EmbeddedDriver");
+    }
+
+    /**
+     * Creates an empty table to receive loaded rows.
+     */
+    @Before
+    public void setUp() throws Exception
+    {
+        database = connect();
+        try
+        {
+            database.execute("DROP TABLE " + table);
+        }
+        catch (SQLException e)
+        {
+            // Table does not exist yet.
+        }
+        database.execute("CREATE TABLE " + table + " (id INT NOT NULL)");
+        loaded = Collections.synchronizedList(new ArrayList<String>());
+        running = new AtomicInteger();
+    }
+
+    /**
+     * Releases the loader and closes the database connection.
+     */
+    @After
+    public void tearDown() throws Exception
+    {
+        if (loader != null)
+            loader.release();
+        if (database != null)
+            database.close();
+    }
+
+    /**
+     * Verify that all tables load, each exactly once, and that commit makes
+     * the rows of all connections visible.
+     */
+    @Test
+    public void testLoadCount() throws Exception
+    {
+        loader = createLoader(3, -1, 0);
+        int count = loader.load(tables(10));
+        Assert.assertEquals("Load count", 10, count);
+        Assert.assertEquals("Tables loaded", 10, loaded.size());
+        for (int i = 0; i < 10; i++)
+            Assert.assertTrue("Loaded " + i, loaded.contains("" + i));
+
+        loader.commit();
+        Assert.assertEquals("Rows after commit", 10, countRows());
+
+        // The loader may be used again for the next batch.
+        loaded.clear();
+        Assert.assertEquals("Second load count", 5, loader.load(tables(5)));
+        loader.commit();
+        Assert.assertEquals("Rows after second commit", 15, countRows());
+    }
+
+    /**
+     * Verify that a failed table stops tables that have not started, that the
+     * failure is reported only after running tables finish, and that rolling
+     * back discards rows loaded by the other tables.
+     */
+    @Test
+    public void testFailure() throws Exception
+    {
+        // Table 1 fails while table 0 is still loading on the other
+        // connection. Tables after the failure do not start.
+        loader = createLoader(2, 1, 500);
+        try
+        {
+            loader.load(tables(10));
+            Assert.fail("Load did not report failure");
+        }
+        catch (ReplicatorException e)
+        {
+            Assert.assertEquals("Failure", "Table failed: 1", e.getMessage());
+        }
+        Assert.assertEquals("No loads running", 0, running.get());
+        Assert.assertEquals("Only table 0 loaded", Arrays
+                .asList(new String[]{"0"}), loaded);
+
+        loader.rollback();
+        Assert.assertEquals("Rows after rollback", 0, countRows());
+        loader.commit();
+        Assert.assertEquals("Rows after empty commit", 0, countRows());
+
+        // A later batch loads normally.
+        loaded.clear();
+        Assert.assertEquals("Load count after failure", 3, loader
+                .load(Arrays.asList(new Integer[]{2, 3, 4})));
+        loader.commit();
+        Assert.assertEquals("Rows after commit", 3, countRows());
+    }
+
+    // Creates a loader whose tables insert their number as a row. Table 0
+    // waits before inserting, and the table numbered fail throws an
+    // exception instead.
+    private ParallelTableLoader<Integer> createLoader(int threads,
+            final int fail, final long delayMillis) throws Exception
+    {
+        conns = new ArrayList<Database>();
+        for (int i = 0; i < threads; i++)
+        {
+            Database conn = connect();
+            conn.setAutoCommit(false);
+            conns.add(conn);
+        }
+        return new ParallelTableLoader<Integer>("test-load",
+                new ParallelTableLoader.TableLoader<Integer>()
+                {
+                    public void load(Integer id, Database conn,
+                            Statement statement) throws ReplicatorException
+                    {
+                        running.incrementAndGet();
+                        try
+                        {
+                            if (id == fail)
+                                throw new ReplicatorException("Table failed: "
+                                        + id);
+                            if (id == 0)
+                                Thread.sleep(delayMillis);
+                            statement.executeUpdate("INSERT INTO " + table
+                                    + " VALUES (" + id + ")");
+                            loaded.add("" + id);
+                        }
+                        catch (ReplicatorException e)
+                        {
+                            throw e;
+                        }
+                        catch (Exception e)
+                        {
+                            throw new ReplicatorException(e);
+                        }
+                        finally
+                        {
+                            running.decrementAndGet();
+                        }
+                    }
+                }, conns);
+    }
+
+    // Returns table numbers from 0.
+    private List<Integer> tables(int count)
+    {
+        List<Integer> tables = new ArrayList<Integer>();
+        for (int i = 0; i < count; i++)
+            tables.add(i);
+        return tables;
+    }
+
+    // Counts committed rows.
+    private int countRows() throws Exception
+    {
+        Statement statement = database.createStatement();
+        try
+        {
+            ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM "
+                    + table);
+            rs.next();
+            return rs.getInt(1);
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+
+    // Connects to the database.
+    private Database connect() throws Exception
+    {
+        Database conn = new DerbyDatabase();
+        conn.setUrl(url);
+        conn.connect();
+        return conn;
+    }
+}
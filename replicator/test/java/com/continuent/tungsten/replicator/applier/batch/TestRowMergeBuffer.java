@@ -0,0 +1,139 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.applier.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.continuent.tungsten.replicator.applier.batch.RowMergeBuffer.MergedRow;
+import com.continuent.tungsten.replicator.database.Table;
+import com.continuent.tungsten.replicator.dbms.OneRowChange;
+import com.continuent.tungsten.replicator.dbms.OneRowChange.ColumnSpec;
+import com.continuent.tungsten.replicator.dbms.OneRowChange.ColumnVal;
+
+/**
+ * Tests collapsing of row changes by key in RowMergeBuffer.
+ * 
+ * @version 1.0
+ */
+public class TestRowMergeBuffer
+{
+    private OneRowChange     orc   = new OneRowChange();
+    private Table            table = new Table("db", "t");
+    private List<ColumnSpec> specs = new ArrayList<ColumnSpec>();
+
+    /**
+     * Confirm that a chain of changes to one key collapses to the first
+     * delete image and the final insert image, while a key that ends deleted
+     * has no insert image.
+     */
+    @Test
+    public void testCollapse() throws Exception
+    {
+        RowMergeBuffer buffer = new RowMergeBuffer(Long.MAX_VALUE);
+
+        // Key 1: insert, update, update.
+        buffer.insert(table, key(1), 10, specs, row(1, "a"));
+        buffer.delete(table, key(1), 11, specs, row(1, "a"));
+        buffer.insert(table, key(1), 11, specs, row(1, "b"));
+        buffer.delete(table, key(1), 12, specs, row(1, "b"));
+        buffer.insert(table, key(1), 12, specs, row(1, "c"));
+
+        // Key 2: update, then delete.
+        buffer.delete(table, key(2), 13, specs, row(2, "x"));
+        buffer.insert(table, key(2), 13, specs, row(2, "y"));
+        buffer.delete(table, key(2), 14, specs, row(2, "y"));
+
+        Assert.assertEquals("Changes", 8, buffer.getChangeCount());
+        Assert.assertEquals("Tables", 1, buffer.getTables().size());
+        List<MergedRow> rows = buffer.remove(table);
+        Assert.assertEquals("Merged rows", 2, rows.size());
+
+        MergedRow row1 = rows.get(0);
+        Assert.assertEquals("Key 1 delete image", "a", value(row1
+                .getDeleteValues()));
+        Assert.assertEquals("Key 1 insert image", "c", value(row1
+                .getInsertValues()));
+        Assert.assertEquals("Key 1 insert seqno", 12, row1.getInsertSeqno());
+
+        MergedRow row2 = rows.get(1);
+        Assert.assertEquals("Key 2 delete image", "x", value(row2
+                .getDeleteValues()));
+        Assert.assertEquals("Key 2 delete seqno", 14, row2.getDeleteSeqno());
+        Assert.assertNull("Key 2 ends deleted", row2.getInsertValues());
+
+        Assert.assertEquals("Size after remove", 0, buffer.getSize());
+        Assert.assertEquals("No tables left", 0, buffer.getTables().size());
+    }
+
+    /**
+     * Confirm that rows are returned in order of the latest change to each
+     * key and that the buffer reports full once the size limit is reached.
+     */
+    @Test
+    public void testOrderAndLimit() throws Exception
+    {
+        RowMergeBuffer buffer = new RowMergeBuffer(1000);
+        buffer.insert(table, key(1), 1, specs, row(1, "a"));
+        buffer.insert(table, key(2), 2, specs, row(2, "b"));
+        buffer.insert(table, key(1), 3, specs, row(1, "c"));
+        Assert.assertFalse("Not full", buffer.isFull());
+
+        List<MergedRow> rows = buffer.remove(table);
+        Assert.assertEquals("First row", "b", value(rows.get(0)
+                .getInsertValues()));
+        Assert.assertEquals("Second row", "c", value(rows.get(1)
+                .getInsertValues()));
+
+        for (int i = 0; i < 100 && !buffer.isFull(); i++)
+            buffer.insert(table, key(i), i, specs, row(i, "value"));
+        Assert.assertTrue("Full", buffer.isFull());
+        buffer.clear();
+        Assert.assertFalse("Empty after clear", buffer.isFull());
+    }
+
+    // Returns a single-column key.
+    private Object[] key(int id)
+    {
+        return new Object[]{new Integer(id)};
+    }
+
+    // Returns a row of an id and a string value.
+    private ArrayList<ColumnVal> row(int id, String value)
+    {
+        ArrayList<ColumnVal> row = new ArrayList<ColumnVal>();
+        ColumnVal idVal = orc.new ColumnVal();
+        idVal.setValue(new Integer(id));
+        row.add(idVal);
+        ColumnVal strVal = orc.new ColumnVal();
+        strVal.setValue(value);
+        row.add(strVal);
+        return row;
+    }
+
+    // Returns the string value of a row.
+    private Object value(ArrayList<ColumnVal> row)
+    {
+        return row.get(1).getValue();
+    }
+}
@@ -0,0 +1,255 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.applier.batch;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.continuent.tungsten.commons.csv.CsvWriter;
+import com.continuent.tungsten.replicator.database.GreenplumDatabase;
+import com.continuent.tungsten.replicator.database.PostgreSQLDatabase;
+
+/**
+ * Tests buffering of staged data in memory and in files by StageDataBuffer,
+ * including CSV written for COPY loads.
+ *
+ * @version 1.0
+ */
+public class TestStageDataBuffer
+{
+    /**
+     * Confirm that data below the memory limit are read back without creating
+     * a file.
+     */
+    @Test
+    public void testMemory() throws Exception
+    {
+        File file = new File("testStageDataBuffer1.csv");
+        file.delete();
+        StageDataBuffer buffer = new StageDataBuffer(file, 1024);
+
+        byte[] data = bytes(1000);
+        buffer.write(data, 0, 500);
+        buffer.write(data, 500, 500);
+        buffer.close();
+
+        Assert.assertFalse("Not spilled", buffer.isSpilled());
+        Assert.assertFalse("No file", file.exists());
+        Assert.assertEquals("Size", 1000, buffer.getSize());
+        Assert.assertArrayEquals("Data", data, read(buffer));
+        Assert.assertTrue("Released", buffer.release());
+    }
+
+    /**
+     * Confirm that data move to the file once they pass the memory limit and
+     * that the file contains all data, including those written before the
+     * limit was reached. Releasing the buffer deletes the file.
+     */
+    @Test
+    public void testSpill() throws Exception
+    {
+        File file = new File("testStageDataBuffer2.csv");
+        file.delete();
+        StageDataBuffer buffer = new StageDataBuffer(file, 100);
+
+        byte[] data = bytes(1000);
+        buffer.write(data, 0, 60);
+        Assert.assertFalse("Not yet spilled", buffer.isSpilled());
+        buffer.write(data[60]);
+        buffer.write(data, 61, 939);
+        Assert.assertTrue("Spilled", buffer.isSpilled());
+        buffer.close();
+
+        Assert.assertTrue("File exists", file.exists());
+        Assert.assertEquals("File size", 1000, file.length());
+        Assert.assertArrayEquals("Data", data, read(buffer));
+        Assert.assertTrue("Released", buffer.release());
+        Assert.assertFalse("File deleted", file.exists());
+    }
+
+    /**
+     * Confirm that data cannot be read before the buffer is closed or written
+     * after it is closed.
+     */
+    @Test
+    public void testClosed() throws Exception
+    {
+        StageDataBuffer buffer = new StageDataBuffer(new File(
+                "testStageDataBuffer3.csv"), 100);
+        buffer.write(1);
+        try
+        {
+            buffer.getInputStream();
+            Assert.fail("Read from open buffer");
+        }
+        catch (IOException e)
+        {
+        }
+
+        buffer.close();
+        try
+        {
+            buffer.write(2);
+            Assert.fail("Write to closed buffer");
+        }
+        catch (IOException e)
+        {
+        }
+        buffer.release();
+    }
+
+    /**
+     * Confirm that CSV staged for PostgreSQL and Greenplum COPY keeps
+     * backslashes as they are and doubles quotes, so that COPY in CSV format
+     * reads back the original values.
+     */
+    @Test
+    public void testCopyCsvRoundTrip() throws Exception
+    {
+        String[] values = {"a\\b", "say \"hi\"", "\\\"", "end\\", "plain"};
+        String expected = "\"a\\b\",\"say \"\"hi\"\"\",\"\\\"\"\",\"end\\\",\"plain\"";
+
+        StageDataBuffer pgBuffer = new StageDataBuffer(new File(
+                "testStageDataBuffer4.csv"), 1024);
+        CsvWriter pgCsv = new PostgreSQLDatabase()
+                .getCsvWriter(new BufferedWriter(new OutputStreamWriter(
+                        pgBuffer, "UTF-8")));
+        writeRow(pgCsv, values);
+        pgBuffer.close();
+        assertCopyCsv(pgBuffer, expected, values);
+        pgBuffer.release();
+
+        StageDataBuffer gpBuffer = new StageDataBuffer(new File(
+                "testStageDataBuffer5.csv"), 1024);
+        CsvWriter gpCsv = new GreenplumDatabase()
+                .getCsvWriter(new BufferedWriter(new OutputStreamWriter(
+                        gpBuffer, "UTF-8")));
+        writeRow(gpCsv, values);
+        gpBuffer.close();
+        assertCopyCsv(gpBuffer, expected, values);
+        gpBuffer.release();
+    }
+
+    // Writes a single row of values.
+    private void writeRow(CsvWriter csv, String[] values) throws Exception
+    {
+        for (int i = 0; i < values.length; i++)
+            csv.addColumnName("c" + i);
+        for (int i = 0; i < values.length; i++)
+            csv.put(i + 1, values[i]);
+        csv.flush();
+    }
+
+    // Checks that the buffer holds the expected line and that COPY CSV
+    // parsing returns the original values.
+    private void assertCopyCsv(StageDataBuffer buffer, String expected,
+            String[] values) throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                buffer.getInputStream(), "UTF-8"));
+        try
+        {
+            String line = reader.readLine();
+            Assert.assertEquals("CSV line", expected, line);
+            Assert.assertNull("Single line", reader.readLine());
+            Assert.assertArrayEquals("Values", values, parseCopyCsv(line));
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    // Parses a line the way COPY in CSV format does with default QUOTE and
+    // ESCAPE: quoted values contain doubled quotes and no other escapes.
+    private String[] parseCopyCsv(String line)
+    {
+        List<String> values = new ArrayList<String>();
+        StringBuffer value = new StringBuffer();
+        boolean inQuotes = false;
+        for (int i = 0; i < line.length(); i++)
+        {
+            char c = line.charAt(i);
+            if (inQuotes)
+            {
+                if (c == '"' && i + 1 < line.length()
+                        && line.charAt(i + 1) == '"')
+                {
+                    value.append('"');
+                    i++;
+                }
+                else if (c == '"')
+                    inQuotes = false;
+                else
+                    value.append(c);
+            }
+            else if (c == '"')
+                inQuotes = true;
+            else if (c == ',')
+            {
+                values.add(value.toString());
+                value.setLength(0);
+            }
+            else
+                value.append(c);
+        }
+        values.add(value.toString());
+        return values.toArray(new String[values.size()]);
+    }
+
+    // Returns a byte array with a recognizable pattern.
+    private byte[] bytes(int length)
+    {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++)
+            data[i] = (byte) (i % 127);
+        return data;
+    }
+
+    // Reads all data from the buffer.
+    private byte[] read(StageDataBuffer buffer) throws IOException
+    {
+        InputStream in = buffer.getInputStream();
+        try
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] block = new byte[64];
+            int len;
+            while ((len = in.read(block)) > 0)
+                out.write(block, 0, len);
+            return out.toByteArray();
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * This class tests the PreparedStatementCache. Statements are dynamic proxies
+ * that record when they are closed, so we can confirm that statements are
+ * closed when they leave the cache.
+ * 
+ * @version 1.0
+ */
+public class TestPreparedStatementCache
+{
+    // Statements that have been closed.
+    private Set<Object> closed = new HashSet<Object>();
+
+    /**
+     * Ensure we can cache and retrieve statements and that hits and misses
+     * are counted.
+     */
+    @Test
+    public void testCacheStatements() throws Exception
+    {
+        PreparedStatementCache psc = new PreparedStatementCache(10);
+        Assert.assertNull("Empty cache", psc.retrieve("a", "x", "sql1"));
+
+        PreparedStatement ps = createStatement();
+        psc.store("a", "x", "sql1", "INSERT 1", ps);
+        PreparedStatementCache.CachedStatement entry = psc.retrieve("a", "x",
+                "sql1");
+        Assert.assertNotNull("Found statement", entry);
+        Assert.assertTrue("Statement is cached", entry.isCached());
+        Assert.assertSame("Same statement", ps, entry.getStatement());
+        Assert.assertEquals("SQL", "INSERT 1", entry.getSql());
+
+        // Different shapes and tables are different statements.
+        Assert.assertNull("Other shape", psc.retrieve("a", "x", "sql2"));
+        Assert.assertNull("Other table", psc.retrieve("a", "y", "sql1"));
+
+        Assert.assertEquals("Hits", 1, psc.getHits());
+        Assert.assertEquals("Misses", 3, psc.getMisses());
+        Assert.assertEquals("Size", 1, psc.size());
+        Assert.assertEquals("Capacity", 10, psc.getCapacity());
+    }
+
+    /**
+     * Ensure statements are closed when evicted or invalidated.
+     */
+    @Test
+    public void testCloseStatements() throws Exception
+    {
+        PreparedStatementCache psc = new PreparedStatementCache(2);
+        PreparedStatement ps1 = createStatement();
+        PreparedStatement ps2 = createStatement();
+        PreparedStatement ps3 = createStatement();
+        psc.store("a", "x", "1", "SQL1", ps1);
+        psc.store("a", "x", "2", "SQL2", ps2);
+        psc.retrieve("a", "x", "1");
+
+        // Adding a third statement evicts the least recently used one.
+        psc.store("a", "x", "3", "SQL3", ps3);
+        Assert.assertEquals("Size", 2, psc.size());
+        Assert.assertTrue("Evicted statement closed", closed.contains(ps2));
+        Assert.assertFalse("Used statement open", closed.contains(ps1));
+
+        // Invalidate a single statement.
+        Assert.assertEquals("Invalidated", 1, psc.invalidate("a", "x", "1"));
+        Assert.assertTrue("Invalidated statement closed", closed.contains(ps1));
+        Assert.assertNull("Statement gone", psc.retrieve("a", "x", "1"));
+
+        // Invalidate everything.
+        psc.invalidateAll();
+        Assert.assertEquals("Size", 0, psc.size());
+        Assert.assertTrue("All statements closed", closed.contains(ps3));
+    }
+
+    /**
+     * Ensure SQL operations invalidate statements for the tables and schemas
+     * they affect, and only those.
+     */
+    @Test
+    public void testInvalidation() throws Exception
+    {
+        PreparedStatementCache psc = populateCache();
+
+        // Drop table a.x, which should not affect a.xy.
+        SqlOperation dropTable = new SqlOperation(SqlOperation.TABLE,
+                SqlOperation.DROP, "a", "x");
+        Assert.assertEquals("Dropped table", 2, psc.invalidate(dropTable, null));
+        Assert.assertNull("Dropped table", psc.retrieve("a", "x", "1"));
+        Assert.assertNotNull("Similar table", psc.retrieve("a", "xy", "1"));
+
+        // Alter table with default schema.
+        SqlOperation alterTable = new SqlOperation(SqlOperation.TABLE,
+                SqlOperation.ALTER, null, "x");
+        Assert.assertEquals("Altered table", 2, psc.invalidate(alterTable, "b"));
+        Assert.assertNull("Altered table", psc.retrieve("b", "x", "1"));
+
+        // Inserts do not invalidate anything.
+        SqlOperation insert = new SqlOperation(SqlOperation.TABLE,
+                SqlOperation.INSERT, "a", "xy");
+        Assert.assertEquals("Insert", 0, psc.invalidate(insert, null));
+
+        // Drop schema a, which should not affect ab.
+        SqlOperation dropSchema = new SqlOperation(SqlOperation.SCHEMA,
+                SqlOperation.DROP, "a", null);
+        Assert.assertEquals("Dropped schema", 2, psc.invalidate(dropSchema,
+                null));
+        Assert.assertNull("Dropped schema", psc.retrieve("a", "xy", "1"));
+        Assert.assertNotNull("Similar schema", psc.retrieve("ab", "x", "1"));
+        Assert.assertEquals("Remaining statements", 4, psc.size());
+    }
+
+    // Store two shapes for each of several tables.
+    private PreparedStatementCache populateCache()
+    {
+        PreparedStatementCache psc = new PreparedStatementCache(100);
+        String[][] tables = { {"a", "x"}, {"a", "xy"}, {"ab", "x"},
+                {"b", "x"}, {"b", "y"}};
+        for (String[] table : tables)
+        {
+            for (String shape : new String[]{"1", "2"})
+                psc.store(table[0], table[1], shape, shape, createStatement());
+        }
+        return psc;
+    }
+
+    // Returns a statement that records when it is closed.
+    private PreparedStatement createStatement()
+    {
+        InvocationHandler handler = new InvocationHandler()
+        {
+            public Object invoke(Object proxy, Method method, Object[] args)
+                    throws Throwable
+            {
+                if ("close".equals(method.getName()))
+                    closed.add(proxy);
+                else if ("hashCode".equals(method.getName()))
+                    return System.identityHashCode(proxy);
+                else if ("equals".equals(method.getName()))
+                    return proxy == args[0];
+                return null;
+            }
+        };
+        return (PreparedStatement) Proxy.newProxyInstance(getClass()
+                .getClassLoader(), new Class[]{PreparedStatement.class},
+                handler);
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+
+package com.continuent.tungsten.replicator.dbms;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.continuent.tungsten.replicator.dbms.OneRowChange.ColumnVal;
+
+/**
+ * Tests storing values in ColumnarRowValues and accessing them through
+ * OneRowChange.
+ * 
+ * @version 1.0
+ */
+public class TestColumnarRowValues
+{
+    /**
+     * Confirm that each kind of value can be set and read back both as a
+     * primitive and as the object that a ColumnVal would hold.
+     */
+    @Test
+    public void testSetAndGet() throws Exception
+    {
+        ColumnarRowValues values = new ColumnarRowValues(8);
+        Assert.assertEquals("New row", 0, values.addRow());
+        byte[] text = "xhello".getBytes();
+
+        values.setInt(0, 0, -7);
+        values.setLong(0, 1, Long.MAX_VALUE);
+        values.setFloat(0, 2, 1.5f);
+        values.setDouble(0, 3, -2.25);
+        values.setString(0, 4, text, 1, 5);
+        values.setBytes(0, 5, text, 0, 2);
+        values.setObject(0, 6, new BigDecimal("12.34"));
+
+        Assert.assertEquals("int", -7, values.getInt(0, 0));
+        Assert.assertEquals("long", Long.MAX_VALUE, values.getLong(0, 1));
+        Assert.assertEquals("float", 1.5f, values.getFloat(0, 2), 0);
+        Assert.assertEquals("double", -2.25, values.getDouble(0, 3), 0);
+        Assert.assertEquals("string length", 5, values.getLength(0, 4));
+
+        Assert.assertEquals("Integer", new Integer(-7), values.getObject(0, 0));
+        Assert.assertEquals("Long", new Long(Long.MAX_VALUE), values
+                .getObject(0, 1));
+        Assert.assertEquals("Float", new Float(1.5f), values.getObject(0, 2));
+        Assert.assertEquals("Double", new Double(-2.25), values.getObject(0, 3));
+        Assert.assertEquals("String", "hello", values.getObject(0, 4));
+        Assert.assertArrayEquals("bytes", new byte[]{'x', 'h'},
+                (byte[]) values.getObject(0, 5));
+        Assert.assertEquals("object", new BigDecimal("12.34"), values
+                .getObject(0, 6));
+        Assert.assertTrue("unset cell is null", values.isNull(0, 7));
+        Assert.assertNull("null object", values.getObject(0, 7));
+
+        // Boxed values are stored as primitives.
+        values.setObject(0, 6, new Long(3));
+        Assert.assertEquals("kind", ColumnarRowValues.LONG, values.getKind(0,
+                6));
+        values.setNull(0, 0);
+        Assert.assertTrue("set null", values.isNull(0, 0));
+    }
+
+    /**
+     * Confirm that rows and the string buffer grow as values are added.
+     */
+    @Test
+    public void testGrowth() throws Exception
+    {
+        ColumnarRowValues values = new ColumnarRowValues(2, 1);
+        for (int row = 0; row < 1000; row++)
+        {
+            Assert.assertEquals("Row index", row, values.addRow());
+            values.setInt(row, 0, row);
+            byte[] text = ("row " + row).getBytes();
+            values.setString(row, 1, text, 0, text.length);
+        }
+        Assert.assertEquals("Row count", 1000, values.getRowCount());
+        for (int row = 0; row < 1000; row++)
+        {
+            Assert.assertEquals("int", row, values.getInt(row, 0));
+            Assert.assertEquals("string", "row " + row, values.getObject(row,
+                    1));
+        }
+    }
+
+    /**
+     * Confirm that OneRowChange converts columnar values to lists when they
+     * are requested and that values stored through the columnar cursor match
+     * values stored in ordinary ColumnVal instances.
+     */
+    @Test
+    public void testOneRowChangeLists() throws Exception
+    {
+        OneRowChange rowChange = new OneRowChange("test", "t",
+                RowChangeData.ActionType.INSERT);
+        ColumnarRowValues values = new ColumnarRowValues(3);
+        rowChange.setColumnarColumnValues(values);
+        Assert.assertTrue("Columnar", rowChange.hasColumnarValues());
+
+        OneRowChange.ColumnarColumnVal cursor = rowChange.new ColumnarColumnVal(
+                values);
+        byte[] text = "abc".getBytes();
+        for (int row = 0; row < 2; row++)
+        {
+            values.addRow();
+            cursor.moveTo(row, 0);
+            cursor.setIntValue(row);
+            cursor.moveTo(row, 1);
+            cursor.setStringValue(text, 0, row + 1);
+            cursor.moveTo(row, 2);
+            cursor.setValueNull();
+        }
+        cursor.moveTo(1, 0);
+        Assert.assertEquals("Cursor value", new Integer(1), cursor.getValue());
+
+        ArrayList<ArrayList<ColumnVal>> lists = rowChange.getColumnValues();
+        Assert.assertFalse("No longer columnar", rowChange.hasColumnarValues());
+        Assert.assertNull("Columnar values released", rowChange
+                .getColumnarColumnValues());
+        Assert.assertEquals("Rows", 2, lists.size());
+        for (int row = 0; row < 2; row++)
+        {
+            ColumnVal intVal = rowChange.new ColumnVal();
+            intVal.setIntValue(row);
+            ColumnVal stringVal = rowChange.new ColumnVal();
+            stringVal.setStringValue(text, 0, row + 1);
+
+            ArrayList<ColumnVal> cols = lists.get(row);
+            Assert.assertEquals("Columns", 3, cols.size());
+            Assert.assertEquals("int", intVal.getValue(), cols.get(0)
+                    .getValue());
+            Assert.assertEquals("string", stringVal.getValue(), cols.get(1)
+                    .getValue());
+            Assert.assertNull("null", cols.get(2).getValue());
+        }
+
+        // Lists are not columnar if the other side holds listed values.
+        OneRowChange mixed = new OneRowChange();
+        mixed.setColumnarKeyValues(new ColumnarRowValues(1));
+        mixed.getColumnValues().add(new ArrayList<ColumnVal>());
+        Assert.assertFalse("Mixed", mixed.hasColumnarValues());
+    }
+}
@@ -0,0 +1,225 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.extractor.mysql;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.continuent.tungsten.replicator.dbms.OneRowChange;
+import com.continuent.tungsten.replicator.dbms.RowChangeData;
+
+/**
+ * Tests the RowsEventDecoder class using write rows events in the MySQL 5.1
+ * binlog format for a table of INT columns.
+ * 
+ * @version 1.0
+ */
+public class RowsEventDecoderTest extends TestCase
+{
+    private static final long         TABLE_ID = 42;
+    private static final int          COLUMNS  = 4;
+
+    private FormatDescriptionLogEvent descriptionEvent;
+    private TableMapLogEvent          tableMap;
+
+    /**
+     * Create a table map for events.
+     */
+    public void setUp() throws Exception
+    {
+        descriptionEvent = new FormatDescriptionLogEvent(4);
+        byte[] buffer = buildTableMapEvent();
+        tableMap = new TableMapLogEvent(buffer, buffer.length,
+                descriptionEvent);
+    }
+
+    /**
+     * Verify that decoding on the calling thread fills row changes
+     * immediately.
+     */
+    public void testSerialDecode() throws Exception
+    {
+        RowsEventDecoder decoder = new RowsEventDecoder(0, "test");
+        assertFalse("Decoder is serial", decoder.isParallel());
+        RowChangeData rowChanges = decoder.decode(buildWriteRowsEvent(7, 3),
+                tableMap);
+        assertEquals("Nothing pending", 0, decoder.getPendingCount());
+        checkRows(rowChanges, 7, 3);
+        decoder.release();
+    }
+
+    /**
+     * Verify that parallel decoding returns the same rows in binlog order
+     * regardless of the order in which decoding finishes and that the number
+     * of pending events stays bounded.
+     */
+    public void testParallelDecode() throws Exception
+    {
+        RowsEventDecoder decoder = new RowsEventDecoder(3, "test");
+        assertTrue("Decoder is parallel", decoder.isParallel());
+
+        for (int pass = 0; pass < 10; pass++)
+        {
+            // Vary event sizes so that events finish out of order.
+            List<RowChangeData> rowChanges = new ArrayList<RowChangeData>();
+            for (int i = 0; i < 50; i++)
+            {
+                rowChanges.add(decoder.decode(
+                        buildWriteRowsEvent(i, 1 + (i * 37) % 200), tableMap));
+                assertTrue("Pending events bounded",
+                        decoder.getPendingCount() <= 12);
+            }
+            decoder.waitForAll();
+            assertEquals("Nothing pending", 0, decoder.getPendingCount());
+
+            for (int i = 0; i < rowChanges.size(); i++)
+                checkRows(rowChanges.get(i), i, 1 + (i * 37) % 200);
+        }
+        decoder.release();
+    }
+
+    /**
+     * Verify that a decoding failure is reported when waiting for events and
+     * that the decoder can be used afterwards.
+     */
+    public void testDecodeFailure() throws Exception
+    {
+        RowsEventDecoder decoder = new RowsEventDecoder(2, "test");
+        decoder.decode(buildWriteRowsEvent(0, 5), tableMap);
+        decoder.decode(buildWriteRowsEvent(1, 5), null);
+        decoder.decode(buildWriteRowsEvent(2, 5), tableMap);
+        try
+        {
+            decoder.waitForAll();
+            fail("Decoding succeeded for an event with no table map");
+        }
+        catch (MySQLExtractException e)
+        {
+        }
+        assertEquals("Nothing pending", 0, decoder.getPendingCount());
+
+        RowChangeData rowChanges = decoder.decode(buildWriteRowsEvent(3, 5),
+                tableMap);
+        decoder.waitForAll();
+        checkRows(rowChanges, 3, 5);
+        decoder.release();
+    }
+
+    // Confirm that a row change has the rows generated for an event.
+    private void checkRows(RowChangeData rowChanges, int event, int rows)
+    {
+        assertEquals("One row change", 1, rowChanges.getRowChanges().size());
+        OneRowChange oneRowChange = rowChanges.getRowChanges().get(0);
+        assertEquals("Table name", "t", oneRowChange.getTableName());
+        assertEquals("Rows", rows, oneRowChange.getColumnValues().size());
+        for (int r = 0; r < rows; r++)
+        {
+            for (int c = 0; c < COLUMNS; c++)
+            {
+                assertEquals("Value: event=" + event + " row=" + r
+                        + " column=" + c, value(event, r, c), oneRowChange
+                        .getColumnValues().get(r).get(c).getValue());
+            }
+        }
+    }
+
+    // Returns the value of a column.
+    private static Integer value(int event, int row, int column)
+    {
+        return new Integer(event * 100000 + row * COLUMNS + column);
+    }
+
+    // Builds a table map event.
+    private byte[] buildTableMapEvent()
+    {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        writeLittleEndian(body, TABLE_ID, 6);
+        writeLittleEndian(body, 0, 2);
+        writeName(body, "test");
+        writeName(body, "t");
+        body.write(COLUMNS);
+        for (int c = 0; c < COLUMNS; c++)
+            body.write(MysqlBinlog.MYSQL_TYPE_LONG);
+        body.write(0);
+        writeBitField(body, COLUMNS, false);
+        return buildEvent(MysqlBinlog.TABLE_MAP_EVENT, body.toByteArray());
+    }
+
+    // Builds a write rows event.
+    private WriteRowsLogEvent buildWriteRowsEvent(int event, int rows)
+            throws Exception
+    {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        writeLittleEndian(body, TABLE_ID, 6);
+        writeLittleEndian(body, 0, 2);
+        body.write(COLUMNS);
+        writeBitField(body, COLUMNS, true);
+        for (int r = 0; r < rows; r++)
+        {
+            writeBitField(body, COLUMNS, false);
+            for (int c = 0; c < COLUMNS; c++)
+                writeLittleEndian(body, value(event, r, c), 4);
+        }
+        byte[] buffer = buildEvent(MysqlBinlog.WRITE_ROWS_EVENT, body
+                .toByteArray());
+        return new WriteRowsLogEvent(buffer, buffer.length, descriptionEvent,
+                false);
+    }
+
+    // Prefixes an event body with the common header.
+    private byte[] buildEvent(int type, byte[] body)
+    {
+        int length = descriptionEvent.commonHeaderLength + body.length;
+        ByteArrayOutputStream event = new ByteArrayOutputStream(length);
+        writeLittleEndian(event, System.currentTimeMillis() / 1000, 4);
+        event.write(type);
+        writeLittleEndian(event, 1, 4);
+        writeLittleEndian(event, length, 4);
+        writeLittleEndian(event, 0, 4);
+        writeLittleEndian(event, 0, 2);
+        event.write(body, 0, body.length);
+        return event.toByteArray();
+    }
+
+    private static void writeName(ByteArrayOutputStream out, String name)
+    {
+        byte[] bytes = name.getBytes();
+        out.write(bytes.length);
+        out.write(bytes, 0, bytes.length);
+        out.write(0);
+    }
+
+    private static void writeBitField(ByteArrayOutputStream out, int bits,
+            boolean set)
+    {
+        for (int i = 0; i < (bits + 7) / 8; i++)
+            out.write(set ? 0xFF : 0);
+    }
+
+    private static void writeLittleEndian(ByteArrayOutputStream out,
+            long value, int bytes)
+    {
+        for (int i = 0; i < bytes; i++)
+            out.write((int) (value >>> (8 * i)) & 0xFF);
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.pipeline;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests block commit decisions and tuning of adaptive block commit.
+ */
+public class BlockCommitControllerTest extends TestCase
+{
+    /**
+     * Verify that the fixed policy commits blocks of the maximum size and
+     * never changes settings.
+     */
+    public void testFixedPolicy() throws Exception
+    {
+        BlockCommitController bc = new BlockCommitController(4, 0, false,
+                1000);
+        assertFalse("Not adaptive", bc.isAdaptive());
+        assertEquals("Block size", 4, bc.getBlockSize());
+        assertEquals("No interval", 0, bc.getIntervalMillis());
+
+        for (int i = 1; i <= 4; i++)
+        {
+            assertFalse("Block not full before event " + i, bc.isBlockFull());
+            bc.addEvent(i);
+        }
+        assertTrue("Block full", bc.isBlockFull());
+        assertFalse("Interval never expires", bc.isIntervalExpired(1000000));
+
+        bc.committed(CommitReason.block, 10, 5000, 100);
+        assertEquals("Block closed", 0, bc.getBlockEvents());
+        assertEquals("Block size unchanged", 4, bc.getBlockSize());
+        assertEquals("Apply time per event", 2.5, bc.getApplyMillisPerEvent(),
+                0.001);
+    }
+
+    /**
+     * Verify that a block expires once it has been open for the commit
+     * interval, measured from its first event.
+     */
+    public void testInterval() throws Exception
+    {
+        BlockCommitController bc = new BlockCommitController(100, 50, false,
+                1000);
+        assertFalse("Empty block does not expire", bc.isIntervalExpired(1000));
+
+        bc.addEvent(1000);
+        bc.addEvent(1040);
+        assertFalse("Not expired", bc.isIntervalExpired(1049));
+        assertTrue("Expired", bc.isIntervalExpired(1050));
+
+        bc.committed(CommitReason.interval, 0, 0, 0);
+        bc.addEvent(2000);
+        assertFalse("New block starts new interval",
+                bc.isIntervalExpired(2049));
+    }
+
+    /**
+     * Verify that adaptive block size doubles up to the maximum while there
+     * is a backlog and halves down to 1 once caught up.
+     */
+    public void testAdaptiveBacklog() throws Exception
+    {
+        BlockCommitController bc = new BlockCommitController(8, 0, true, 1000);
+        assertTrue("Adaptive", bc.isAdaptive());
+        assertEquals("Adaptive starts with small blocks", 1, bc.getBlockSize());
+        assertEquals("Caught up interval is half of target lag", 500,
+                bc.getIntervalMillis());
+
+        int[] expected = {2, 4, 8, 8};
+        for (int size : expected)
+        {
+            fillAndCommit(bc, CommitReason.block, 0, 0, 1000);
+            assertEquals("Block size grows with backlog", size,
+                    bc.getBlockSize());
+            assertEquals("No interval while behind", 0, bc.getIntervalMillis());
+        }
+
+        expected = new int[]{4, 2, 1, 1};
+        for (int size : expected)
+        {
+            fillAndCommit(bc, CommitReason.empty, 0, 0, 0);
+            assertEquals("Block size shrinks when caught up", size,
+                    bc.getBlockSize());
+            assertEquals("Caught up interval", 500, bc.getIntervalMillis());
+        }
+    }
+
+    /**
+     * Verify that adaptive block size grows when apply latency exceeds the
+     * target lag even if the backlog is no larger than a block, and that an
+     * unknown backlog falls back to latency alone.
+     */
+    public void testAdaptiveLag() throws Exception
+    {
+        BlockCommitController bc = new BlockCommitController(16, 0, true,
+                1000);
+        fillAndCommit(bc, CommitReason.block, 0, 2000, 1);
+        assertEquals("Lagging grows blocks", 2, bc.getBlockSize());
+        fillAndCommit(bc, CommitReason.block, 0, 2000, -1);
+        assertEquals("Unknown backlog uses lag", 4, bc.getBlockSize());
+        fillAndCommit(bc, CommitReason.block, 0, 500, -1);
+        assertEquals("Low lag shrinks blocks", 2, bc.getBlockSize());
+        fillAndCommit(bc, CommitReason.empty, 0, 2000, -1);
+        assertEquals("Empty queue means caught up", 1, bc.getBlockSize());
+    }
+
+    /**
+     * Verify that adaptive block size is capped so that a block can be
+     * applied within the commit interval at the observed apply time.
+     */
+    public void testAdaptiveApplyTime() throws Exception
+    {
+        BlockCommitController bc = new BlockCommitController(1000, 100, true,
+                1000);
+        assertEquals("Interval is capped by maximum", 100,
+                bc.getIntervalMillis());
+
+        // Grow without apply time to a block size of 64.
+        for (int i = 0; i < 6; i++)
+            fillAndCommit(bc, CommitReason.block, 0, 0, 100000);
+        assertEquals("Block size", 64, bc.getBlockSize());
+
+        // A block at 10ms per event raises the average apply time per event
+        // from 0 to 2ms, so only 50 events fit in 100ms. Further slow blocks
+        // move the average toward 10ms and shrink blocks toward 10 events.
+        fillAndCommit(bc, CommitReason.block, 640, 0, 100000);
+        assertEquals("Apply time per event", 2.0, bc.getApplyMillisPerEvent(),
+                0.001);
+        assertEquals("Block size limited by apply time", 50,
+                bc.getBlockSize());
+        for (int i = 0; i < 20; i++)
+            fillAndCommit(bc, CommitReason.block, bc.getBlockSize() * 10, 0,
+                    100000);
+        assertTrue("Block size approaches 10", bc.getBlockSize() >= 10
+                && bc.getBlockSize() <= 11);
+    }
+
+    // Adds a full block of events and commits it.
+    private void fillAndCommit(BlockCommitController bc, CommitReason reason,
+            long applyMillis, long lagMillis, long backlog)
+    {
+        int size = bc.getBlockSize();
+        for (int i = 0; i < size; i++)
+            bc.addEvent(0);
+        bc.committed(reason, applyMillis, lagMillis, backlog);
+    }
+}
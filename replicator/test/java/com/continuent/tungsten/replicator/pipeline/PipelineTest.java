@@ -492,6 +492,7 @@ public class PipelineTest extends TestCase
         Future<ReplDBMSHeader> wait = pipeline.watchForAppliedSequenceNumber(9);
         ReplDBMSHeader lastEvent = wait.get(10, TimeUnit.SECONDS);
         assertEquals("Expected 10 sequence numbers", 9, lastEvent.getSeqno());
+        waitForCommit(pipeline, 9);
 
         // Confirm we have 30x2 statements, i.e., two statements for each
         // sequence number.
@@ -547,6 +548,7 @@ public class PipelineTest extends TestCase
             ReplDBMSHeader matchingEvent = future.get(2, TimeUnit.SECONDS);
             assertEquals("Applied sequence number matches", xacts - 1,
                     matchingEvent.getSeqno());
+            waitForCommit(pipeline, xacts - 1);
 
             // Check the number of commits and block size from the single task
             // in our single stage.
@@ -565,6 +567,68 @@ public class PipelineTest extends TestCase
         }
     }
 
+    /**
+     * Verify that adaptive block commit grows blocks up to the maximum block
+     * size while the input queue has a backlog, then commits the remaining
+     * event once the queue is empty. Confirm block size and commit reasons
+     * reported by task progress.
+     */
+    public void testAdaptiveBlockCommit() throws Exception
+    {
+        // Create config with pipeline with input and output queues and a
+        // maximum block size of 8.
+        int xacts = 40;
+        TungstenProperties config = helper.createDoubleQueueRuntime(xacts, 8);
+        config.setString("replicator.stage.stage.blockCommitPolicy",
+                "adaptive");
+        ReplicatorRuntime runtime = new ReplicatorRuntime(config,
+                new MockOpenReplicatorContext(),
+                ReplicatorMonitor.getInstance());
+        runtime.configure();
+        runtime.prepare();
+        Pipeline pipeline = runtime.getPipeline();
+
+        // Load data into the queue and start the pipeline.
+        InMemoryQueueStore input = (InMemoryQueueStore) pipeline
+                .getStore("q1");
+        for (int i = 0; i < xacts; i++)
+        {
+            ReplDBMSEvent event = helper.createEvent(i, "db0");
+            input.put(event);
+        }
+        pipeline.start(new MockEventDispatcher());
+
+        Future<ReplDBMSHeader> future = pipeline
+                .watchForAppliedSequenceNumber(xacts - 1);
+        ReplDBMSHeader matchingEvent = future.get(2, TimeUnit.SECONDS);
+        assertEquals("Applied sequence number matches", xacts - 1,
+                matchingEvent.getSeqno());
+
+        // Wait for the commit and shut down so that the task has finished
+        // accounting for it.
+        waitForCommit(pipeline, xacts - 1);
+        pipeline.shutdown(false);
+
+        // Blocks double from 1 to 8 while the queue holds more than a block,
+        // which covers 39 events. The last event is committed because the
+        // queue is empty. The last full block and the empty queue commit each
+        // halve the block size.
+        Stage stage = pipeline.getStages().get(0);
+        TaskProgress progress = stage.getProgressTracker().getTaskProgress(0);
+        assertEquals("Number of block commits", 8, progress.getBlockCount());
+        assertEquals("Full block commits", 7,
+                progress.getCommitReasonCount(CommitReason.block));
+        assertEquals("Empty queue commits", 1,
+                progress.getCommitReasonCount(CommitReason.empty));
+        assertEquals("Last commit reason", CommitReason.empty,
+                progress.getLastCommitReason());
+        assertEquals("Commit reasons", "block=7,empty=1",
+                progress.getCommitReasons());
+        assertEquals("Block size after catching up", 2,
+                progress.getBlockSize());
+        pipeline.release(runtime);
+    }
+
     /**
      * Verify that we can handle 10M events without problems.
      */
@@ -603,4 +667,18 @@ public class PipelineTest extends TestCase
         pipeline.shutdown(false);
         pipeline.release(runtime);
     }
-}
\ No newline at end of file
+
+    // Waits for the pipeline to commit a seqno. Watches on applied seqnos
+    // match when the last stage processes the event, which is before the
+    // event is applied and committed.
+    private void waitForCommit(Pipeline pipeline, long seqno)
+            throws InterruptedException
+    {
+        long timeout = System.currentTimeMillis() + 10000;
+        while (pipeline.getLastAppliedSeqno() < seqno
+                && System.currentTimeMillis() < timeout)
+        {
+            Thread.sleep(10);
+        }
+    }
+}
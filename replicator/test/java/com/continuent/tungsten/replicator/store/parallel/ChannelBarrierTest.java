@@ -0,0 +1,210 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.store.parallel;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+import com.continuent.tungsten.commons.config.TungstenProperties;
+import com.continuent.tungsten.replicator.dbms.DBMSData;
+import com.continuent.tungsten.replicator.dbms.StatementData;
+import com.continuent.tungsten.replicator.event.DBMSEvent;
+import com.continuent.tungsten.replicator.event.ReplDBMSEvent;
+import com.continuent.tungsten.replicator.event.ReplOptionParams;
+import com.continuent.tungsten.replicator.storage.parallel.ChannelBarrier;
+import com.continuent.tungsten.replicator.storage.parallel.HashPartitioner;
+import com.continuent.tungsten.replicator.storage.parallel.RoundRobinPartitioner;
+
+/**
+ * Tests critical sections that wait only for the channels of the shards that
+ * critical events touch.
+ * 
+ * @version 1.0
+ */
+public class ChannelBarrierTest extends TestCase
+{
+    /**
+     * Verify that parsed statements of a critical event yield the channels of
+     * their schemas and that events on unknown shards touch all channels.
+     */
+    public void testTouchedChannels() throws Exception
+    {
+        ChannelBarrier barrier = new ChannelBarrier(3);
+        HashPartitioner partitioner = new HashPartitioner();
+        partitioner.setPartitions(3);
+        String db0 = findSchema(0, 3);
+        String db2 = findSchema(2, 3);
+
+        ReplDBMSEvent event = createEvent(0, ReplOptionParams.SHARD_ID_UNKNOWN,
+                "insert into " + db0 + ".t values(1)", "delete from " + db2
+                        + ".t");
+        boolean[] touched = barrier.getTouchedChannels(event, partitioner, 0);
+        assertNotNull("shards known", touched);
+        assertTrue("channel 0", touched[0]);
+        assertFalse("channel 1", touched[1]);
+        assertTrue("channel 2", touched[2]);
+
+        ReplDBMSEvent global = createEvent(1,
+                ReplOptionParams.SHARD_ID_UNKNOWN, "insert into " + db0
+                        + ".t values(1)", "flush tables");
+        assertNull("global statement", barrier.getTouchedChannels(global,
+                partitioner, 0));
+
+        ReplDBMSEvent noSchema = createEvent(2,
+                ReplOptionParams.SHARD_ID_UNKNOWN, "insert into t values(1)");
+        assertNull("no schema", barrier.getTouchedChannels(noSchema,
+                partitioner, 0));
+
+        ReplDBMSEvent criticalShard = createEvent(3, db0, "insert into " + db0
+                + ".t values(1)");
+        assertNull("critical by configuration", barrier.getTouchedChannels(
+                criticalShard, partitioner, 0));
+
+        RoundRobinPartitioner roundRobin = new RoundRobinPartitioner();
+        roundRobin.setPartitions(3);
+        assertNull("not a shard partitioner", barrier.getTouchedChannels(
+                event, roundRobin, 0));
+    }
+
+    /**
+     * Verify that a critical event waits only for channels it touches and
+     * that events on those channels then wait for the critical event.
+     */
+    public void testShardBarrier() throws Exception
+    {
+        final ChannelBarrier barrier = new ChannelBarrier(3);
+        barrier.increment(0);
+        barrier.increment(1);
+
+        // A critical event on channel 2 that touches channel 1 ignores
+        // channel 0 but waits for channel 1.
+        final boolean[] touched = new boolean[]{false, true, true};
+        AwaitThread thread = new AwaitThread(barrier, 2, true, touched);
+        thread.start();
+        thread.join(200);
+        assertTrue("waiting for channel 1", thread.isAlive());
+        barrier.decrement(1);
+        thread.join(5000);
+        assertFalse("finished waiting", thread.isAlive());
+        assertTrue("starts critical section", thread.startsSection);
+        barrier.increment(2);
+        assertEquals("critical channel", 2, barrier.getCriticalChannel());
+
+        // Events on channels 0 and 2 proceed at once.
+        assertFalse(barrier.await(0, false, null));
+        assertFalse(barrier.await(2, false, null));
+
+        // An event on channel 1 waits for the critical event.
+        thread = new AwaitThread(barrier, 1, false, null);
+        thread.start();
+        thread.join(200);
+        assertTrue("waiting for critical event", thread.isAlive());
+        barrier.decrement(2);
+        thread.join(5000);
+        assertFalse("finished waiting", thread.isAlive());
+        assertEquals("critical section over", -1, barrier
+                .getCriticalChannel());
+
+        TungstenProperties status = barrier.status();
+        assertEquals("shard barriers", 1, status.getLong("barrier.shard.count"));
+        assertEquals("release barriers", 1, status
+                .getLong("barrier.release.count"));
+        assertEquals("full barriers", 0, status.getLong("barrier.full.count"));
+    }
+
+    /**
+     * Verify that a critical event on unknown shards waits for all channels.
+     */
+    public void testFullBarrier() throws Exception
+    {
+        ChannelBarrier barrier = new ChannelBarrier(2);
+        barrier.increment(0);
+        AwaitThread thread = new AwaitThread(barrier, 1, true, null);
+        thread.start();
+        thread.join(200);
+        assertTrue("waiting for channel 0", thread.isAlive());
+        barrier.decrement(0);
+        thread.join(5000);
+        assertFalse("finished waiting", thread.isAlive());
+        assertEquals("full barriers", 1, barrier.status().getLong(
+                "barrier.full.count"));
+    }
+
+    // Finds a schema name that hashes to a channel.
+    private String findSchema(int channel, int channels) throws Exception
+    {
+        HashPartitioner partitioner = new HashPartitioner();
+        partitioner.setPartitions(channels);
+        for (int i = 0;; i++)
+        {
+            String schema = "db" + i;
+            if (partitioner.partition(createEvent(0, schema), 0)
+                    .getPartition() == channel)
+                return schema;
+        }
+    }
+
+    // Creates an event with statements on a shard.
+    private ReplDBMSEvent createEvent(long seqno, String shardId,
+            String... statements)
+    {
+        ArrayList<DBMSData> data = new ArrayList<DBMSData>();
+        for (String statement : statements)
+            data.add(new StatementData(statement));
+        DBMSEvent dbmsEvent = new DBMSEvent(new Long(seqno).toString(), null,
+                data, true, new Timestamp(System.currentTimeMillis()));
+        ReplDBMSEvent replDbmsEvent = new ReplDBMSEvent(seqno, dbmsEvent);
+        replDbmsEvent.getDBMSEvent().addMetadataOption(
+                ReplOptionParams.SHARD_ID, shardId);
+        return replDbmsEvent;
+    }
+
+    // Waits on a barrier in a separate thread.
+    private class AwaitThread extends Thread
+    {
+        private final ChannelBarrier barrier;
+        private final int            channel;
+        private final boolean        critical;
+        private final boolean[]      touched;
+        private volatile boolean     startsSection;
+
+        AwaitThread(ChannelBarrier barrier, int channel, boolean critical,
+                boolean[] touched)
+        {
+            this.barrier = barrier;
+            this.channel = channel;
+            this.critical = critical;
+            this.touched = touched;
+        }
+
+        public void run()
+        {
+            try
+            {
+                startsSection = barrier.await(channel, critical, touched);
+            }
+            catch (InterruptedException e)
+            {
+            }
+        }
+    }
+}
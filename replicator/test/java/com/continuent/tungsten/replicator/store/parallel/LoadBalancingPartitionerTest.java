@@ -0,0 +1,218 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.store.parallel;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import com.continuent.tungsten.commons.config.TungstenProperties;
+import com.continuent.tungsten.replicator.ReplicatorException;
+import com.continuent.tungsten.replicator.channel.ChannelAssignmentService;
+import com.continuent.tungsten.replicator.dbms.DBMSData;
+import com.continuent.tungsten.replicator.dbms.StatementData;
+import com.continuent.tungsten.replicator.event.DBMSEvent;
+import com.continuent.tungsten.replicator.event.ReplDBMSEvent;
+import com.continuent.tungsten.replicator.event.ReplDBMSHeaderData;
+import com.continuent.tungsten.replicator.event.ReplOptionParams;
+import com.continuent.tungsten.replicator.storage.parallel.LoadBalancingPartitioner;
+
+/**
+ * Tests load balancing of shards across channels.
+ * 
+ * @version 1.0
+ */
+public class LoadBalancingPartitionerTest extends TestCase
+{
+    // Channel assignments held in memory in place of the database table.
+    private Map<String, Integer>     assignments;
+    private ChannelAssignmentService service;
+    private long                     committedSeqno;
+
+    /**
+     * Sets up a channel assignment service that assigns channels round-robin
+     * in memory.
+     */
+    public void setUp() throws Exception
+    {
+        assignments = new HashMap<String, Integer>();
+        service = new ChannelAssignmentService()
+        {
+            public synchronized Integer getChannelAssignment(String shardId)
+            {
+                Integer channel = assignments.get(shardId);
+                if (channel == null)
+                {
+                    channel = assignments.size() % 2;
+                    assignments.put(shardId, channel);
+                }
+                return channel;
+            }
+
+            public synchronized void updateChannelAssignment(String shardId,
+                    int channel)
+            {
+                assignments.put(shardId, channel);
+            }
+        };
+    }
+
+    /**
+     * Verify that a shard without backlog moves from the busiest channel to
+     * the least busy channel, that the move is stored, and that transactions
+     * partitioned before the move keep their channel.
+     */
+    public void testMoveIdleShard() throws Exception
+    {
+        LoadBalancingPartitioner partitioner = createPartitioner();
+
+        // Shards a and c share channel 0 and carry 9 of 10 transactions.
+        loadChannels(partitioner);
+        committedSeqno = 5;
+        partitioner.partition(createEvent(9, "a"), 0);
+
+        assertEquals("shards moved", 1, partitioner.getMoveCount());
+        assertEquals("imbalance", 1.8, partitioner.getImbalance(), 0.001);
+        assertEquals("move stored", new Integer(1), assignments.get("c"));
+
+        // Parallel stores add the same statistics to their status.
+        TungstenProperties status = partitioner.status();
+        assertEquals("status moves", 1,
+                status.getLong("partitioner.moveCount"));
+        assertEquals("status imbalance", 1.8,
+                status.getDouble("partitioner.imbalance"), 0.001);
+
+        // Earlier transactions of c stay on channel 0; later ones go to 1.
+        assertEquals("old transaction", 0, partitioner.partition(
+                createHeader(2, "c"), 1).getPartition());
+        assertEquals("new transaction", 1,
+                partitioner.partition(createEvent(10, "c"), 0).getPartition());
+        assertEquals("hot shard stays", 0,
+                partitioner.partition(createEvent(11, "a"), 0).getPartition());
+    }
+
+    /**
+     * Verify that shards with transactions that are not committed on all
+     * channels do not move.
+     */
+    public void testNoMoveWithBacklog() throws Exception
+    {
+        LoadBalancingPartitioner partitioner = createPartitioner();
+
+        loadChannels(partitioner);
+        committedSeqno = 2;
+        partitioner.partition(createEvent(9, "a"), 0);
+
+        assertEquals("shards moved", 0, partitioner.getMoveCount());
+        assertEquals("assignment unchanged", new Integer(0),
+                assignments.get("c"));
+        assertEquals("channel unchanged", 0,
+                partitioner.partition(createEvent(10, "c"), 0).getPartition());
+    }
+
+    /**
+     * Verify that shards do not move when channel load is balanced.
+     */
+    public void testBalancedChannels() throws Exception
+    {
+        LoadBalancingPartitioner partitioner = createPartitioner();
+        committedSeqno = 100;
+        for (int i = 0; i < 10; i++)
+            partitioner.partition(createEvent(i, (i % 2 == 0) ? "a" : "b"), 0);
+
+        assertEquals("shards moved", 0, partitioner.getMoveCount());
+        assertEquals("imbalance", 1.0, partitioner.getImbalance(), 0.001);
+    }
+
+    /**
+     * Verify that the unknown shard is critical.
+     */
+    public void testCriticalShard() throws Exception
+    {
+        LoadBalancingPartitioner partitioner = createPartitioner();
+        assertTrue("unknown shard critical",
+                partitioner.partition(
+                        createEvent(0, ReplOptionParams.SHARD_ID_UNKNOWN), 0)
+                        .isCritical());
+        assertFalse("named shard not critical",
+                partitioner.partition(createEvent(1, "a"), 0).isCritical());
+    }
+
+    // Returns a partitioner over two channels that checks load every 10
+    // transactions and reads committed seqnos from the test.
+    private LoadBalancingPartitioner createPartitioner()
+    {
+        LoadBalancingPartitioner partitioner = new LoadBalancingPartitioner()
+        {
+            protected long getCommittedSeqno()
+            {
+                return committedSeqno;
+            }
+        };
+        partitioner.setPartitions(2);
+        partitioner.setRebalanceInterval(10);
+        partitioner.setMaxImbalance(1.2);
+        partitioner.setChannelAssignmentService(service);
+        return partitioner;
+    }
+
+    // Partitions 9 transactions: 3 on shard c and 1 on shard b followed by 5
+    // on shard a. Shards a and c are assigned to channel 0 and b to channel 1.
+    // The tenth transaction triggers the load check.
+    private void loadChannels(LoadBalancingPartitioner partitioner)
+            throws ReplicatorException
+    {
+        // Headers assign channels without counting transactions.
+        String[] shardIds = {"c", "b", "a"};
+        for (String shardId : shardIds)
+            partitioner.partition(createHeader(0, shardId), 0);
+
+        for (int seqno = 0; seqno < 3; seqno++)
+            assertEquals(0, partitioner.partition(createEvent(seqno, "c"), 0)
+                    .getPartition());
+        partitioner.partition(createEvent(3, "b"), 0);
+        for (int seqno = 4; seqno < 9; seqno++)
+            partitioner.partition(createEvent(seqno, "a"), 0);
+    }
+
+    // Returns a header as partitioned by THL read tasks.
+    private ReplDBMSHeaderData createHeader(long seqno, String shardId)
+    {
+        return new ReplDBMSHeaderData(seqno, (short) 0, true, "local", 0,
+                "mysql-bin.000001:0000000000000100;0", shardId, new Timestamp(
+                        System.currentTimeMillis()));
+    }
+
+    // Returns a well-formed ReplDBMSEvent with a specified shard ID.
+    private ReplDBMSEvent createEvent(long seqno, String shardId)
+    {
+        ArrayList<DBMSData> t = new ArrayList<DBMSData>();
+        t.add(new StatementData("SELECT 1"));
+        DBMSEvent dbmsEvent = new DBMSEvent(new Long(seqno).toString(), null,
+                t, true, new Timestamp(System.currentTimeMillis()));
+        ReplDBMSEvent replDbmsEvent = new ReplDBMSEvent(seqno, dbmsEvent);
+        replDbmsEvent.getDBMSEvent().addMetadataOption(
+                ReplOptionParams.SHARD_ID, shardId);
+        return replDbmsEvent;
+    }
+}
@@ -34,6 +34,7 @@ import org.junit.After;
 import org.junit.Before;
 
 import com.continuent.tungsten.commons.config.TungstenProperties;
+import com.continuent.tungsten.replicator.ReplicatorException;
 import com.continuent.tungsten.replicator.conf.ReplicatorConf;
 import com.continuent.tungsten.replicator.conf.ReplicatorMonitor;
 import com.continuent.tungsten.replicator.conf.ReplicatorRuntime;
@@ -590,6 +591,78 @@ public class ParallelQueueStoreTest extends TestCase
         }
     }
 
+    /**
+     * Confirm that a parallel queue built on ring buffers delivers events and
+     * control events in the same order as the default queues and rejects an
+     * unknown queue type.
+     */
+    public void testRingBufferQueues() throws Exception
+    {
+        // Configure and prepare store.
+        TungstenProperties conf = generateConfig();
+        PluginContext context = new ReplicatorRuntime(conf,
+                new MockOpenReplicatorContext(),
+                ReplicatorMonitor.getInstance());
+        ParallelQueueStore pqs = new ParallelQueueStore();
+        pqs.setPartitions(3);
+        pqs.setMaxSize(10);
+        pqs.setSyncEnabled(false);
+        pqs.setQueueType("ring");
+        pqs.setWaitStrategy("yield");
+        pqs.configure(context);
+        pqs.prepare(context);
+        assertEquals("Queue type in status", "ring",
+                pqs.status().getString("queueType"));
+
+        // Add a watch event and 6 events spread across queues, followed by a
+        // stop event.
+        pqs.insertWatchSyncEvent(new SeqnoWatchPredicate(3));
+        for (int i = 1; i <= 6; i++)
+            pqs.put(i % 3, createEvent(i));
+        pqs.insertStopEvent();
+
+        // Each queue has 2 events, a sync event, and a stop event.
+        for (int p = 0; p < pqs.getPartitions(); p++)
+        {
+            assertEquals("Each partition has 4 events", 4, pqs.size(p));
+            long lastSeqno = 0;
+            int controlEvents = 0;
+            for (int j = 0; j < 4; j++)
+            {
+                ReplEvent next = pqs.get(p);
+                long curSeqno;
+                if (next instanceof ReplDBMSEvent)
+                    curSeqno = next.getSeqno();
+                else
+                {
+                    curSeqno = ((ReplControlEvent) next).getHeader()
+                            .getSeqno();
+                    controlEvents++;
+                }
+                assertTrue("Sequence number greater/equal on partition",
+                        curSeqno >= lastSeqno);
+                lastSeqno = curSeqno;
+            }
+            assertEquals("Two control events per partition", 2, controlEvents);
+            assertNull("Partition is empty", pqs.peek(p));
+        }
+        pqs.release(context);
+
+        // Confirm that an unknown queue type is rejected.
+        ParallelQueueStore pqs2 = new ParallelQueueStore();
+        pqs2.setQueueType("unknown");
+        pqs2.configure(context);
+        try
+        {
+            pqs2.prepare(context);
+            throw new Exception("Prepare succeeded with unknown queue type");
+        }
+        catch (ReplicatorException e)
+        {
+            logger.info("Caught expected exception: " + e.getMessage());
+        }
+    }
+
     // Generate a stripped-down runtime properties.
     private TungstenProperties generateConfig() throws Exception
     {
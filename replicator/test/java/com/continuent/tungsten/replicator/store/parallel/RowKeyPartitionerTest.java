@@ -0,0 +1,437 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+
+package com.continuent.tungsten.replicator.store.parallel;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+import com.continuent.tungsten.commons.config.TungstenProperties;
+import com.continuent.tungsten.replicator.ReplicatorException;
+import com.continuent.tungsten.replicator.applier.DummyApplier;
+import com.continuent.tungsten.replicator.conf.ReplicatorConf;
+import com.continuent.tungsten.replicator.conf.ReplicatorMonitor;
+import com.continuent.tungsten.replicator.conf.ReplicatorRuntime;
+import com.continuent.tungsten.replicator.dbms.ColumnarRowValues;
+import com.continuent.tungsten.replicator.dbms.DBMSData;
+import com.continuent.tungsten.replicator.dbms.OneRowChange;
+import com.continuent.tungsten.replicator.dbms.OneRowChange.ColumnSpec;
+import com.continuent.tungsten.replicator.dbms.OneRowChange.ColumnVal;
+import com.continuent.tungsten.replicator.dbms.RowChangeData;
+import com.continuent.tungsten.replicator.dbms.RowChangeData.ActionType;
+import com.continuent.tungsten.replicator.dbms.StatementData;
+import com.continuent.tungsten.replicator.event.DBMSEvent;
+import com.continuent.tungsten.replicator.event.ReplDBMSEvent;
+import com.continuent.tungsten.replicator.event.ReplDBMSHeaderData;
+import com.continuent.tungsten.replicator.event.ReplOptionParams;
+import com.continuent.tungsten.replicator.management.MockEventDispatcher;
+import com.continuent.tungsten.replicator.management.MockOpenReplicatorContext;
+import com.continuent.tungsten.replicator.pipeline.Pipeline;
+import com.continuent.tungsten.replicator.pipeline.PipelineConfigBuilder;
+import com.continuent.tungsten.replicator.pipeline.SampleFilter;
+import com.continuent.tungsten.replicator.storage.parallel.ParallelQueueApplier;
+import com.continuent.tungsten.replicator.storage.parallel.ParallelQueueExtractor;
+import com.continuent.tungsten.replicator.storage.parallel.ParallelQueueStore;
+import com.continuent.tungsten.replicator.storage.parallel.PartitionerResponse;
+import com.continuent.tungsten.replicator.storage.parallel.RowKeyPartitioner;
+
+/**
+ * Tests partitioning of transactions by row keys.
+ * 
+ * @version 1.0
+ */
+public class RowKeyPartitionerTest extends TestCase
+{
+    // Seqno committed by each channel, which tests advance by hand.
+    private long[] committed;
+
+    /**
+     * Sets up two channels that have committed nothing.
+     */
+    public void setUp() throws Exception
+    {
+        committed = new long[]{-1, -1};
+    }
+
+    /**
+     * Verify that transactions on a single shard spread across channels by
+     * key and that transactions on the same key stay on one channel.
+     */
+    public void testKeysSpreadShard() throws Exception
+    {
+        RowKeyPartitioner partitioner = createPartitioner();
+        int key0 = findKey(0, 0);
+        int key1 = findKey(1, 0);
+
+        long seqno = 0;
+        for (int i = 0; i < 5; i++)
+        {
+            PartitionerResponse response = partitioner.partition(
+                    createUpdate(seqno++, "a", key0), 0);
+            assertEquals("key 0 channel", 0, response.getPartition());
+            assertFalse("not critical", response.isCritical());
+            response = partitioner.partition(createUpdate(seqno++, "a", key1),
+                    0);
+            assertEquals("key 1 channel", 1, response.getPartition());
+            assertFalse("not critical", response.isCritical());
+        }
+        assertEquals("no conflicts", 0, partitioner.getConflictCount());
+    }
+
+    /**
+     * Verify that a transaction whose keys span channels waits until other
+     * channels commit earlier transactions on its keys and that later
+     * transactions on its keys wait for it in turn.
+     */
+    public void testConflictWaits() throws Exception
+    {
+        final RowKeyPartitioner partitioner = createPartitioner();
+        int key0 = findKey(0, 0);
+        int key1 = findKey(1, 0);
+
+        partitioner.partition(createUpdate(0, "a", key0), 0);
+        partitioner.partition(createUpdate(1, "a", key1), 0);
+
+        // Seqno 2 touches both keys and must wait for channel 1 to commit.
+        final ReplDBMSEvent spanning = createUpdate(2, "a", key0, key1);
+        PartitionerThread thread = new PartitionerThread(partitioner, spanning);
+        thread.start();
+        thread.join(200);
+        assertTrue("waiting for channel 1", thread.isAlive());
+        setCommitted(1, 1);
+        thread.join(5000);
+        assertFalse("finished waiting", thread.isAlive());
+        assertEquals("channel of first key", 0, thread.response.getPartition());
+        assertFalse("not critical", thread.response.isCritical());
+
+        // Seqno 3 on key 1 must wait for channel 0 to commit seqno 2.
+        thread = new PartitionerThread(partitioner, createUpdate(3, "a", key1));
+        thread.start();
+        thread.join(200);
+        assertTrue("waiting for channel 0", thread.isAlive());
+        setCommitted(0, 2);
+        thread.join(5000);
+        assertFalse("finished waiting", thread.isAlive());
+        assertEquals("key 1 channel", 1, thread.response.getPartition());
+        assertEquals("conflicts", 2, partitioner.getConflictCount());
+
+        // Seqno 4 on key 0 does not wait as channel 0 has it.
+        assertEquals("key 0 channel", 0, partitioner.partition(
+                createUpdate(4, "a", key0), 0).getPartition());
+        assertEquals("conflicts", 2, partitioner.getConflictCount());
+    }
+
+    /**
+     * Verify that transactions whose keys are unknown are critical.
+     */
+    public void testUnknownKeysCritical() throws Exception
+    {
+        RowKeyPartitioner partitioner = createPartitioner();
+        int key0 = findKey(0, 0);
+
+        setCommitted(0, 10);
+        setCommitted(1, 10);
+        assertTrue("statement", partitioner.partition(
+                createStatement(0, "a"), 0).isCritical());
+
+        ReplDBMSEvent noKeys = createUpdate(1, "a", key0);
+        OneRowChange rowChange = ((RowChangeData) noKeys.getDBMSEvent()
+                .getData().get(0)).getRowChanges().get(0);
+        rowChange.setKeySpec(new ArrayList<ColumnSpec>());
+        assertTrue("no key columns", partitioner.partition(noKeys, 0)
+                .isCritical());
+
+        ReplDBMSEvent unknownShard = createUpdate(2,
+                ReplOptionParams.SHARD_ID_UNKNOWN, key0);
+        assertTrue("unknown shard", partitioner.partition(unknownShard, 0)
+                .isCritical());
+
+        ReplDBMSEvent fragment = createUpdate(3, "a", key0);
+        fragment = new ReplDBMSEvent(3, (short) 0, false, "NONE", 0,
+                new Timestamp(System.currentTimeMillis()), fragment
+                        .getDBMSEvent());
+        assertTrue("fragment", partitioner.partition(fragment, 0)
+                .isCritical());
+        assertEquals("critical count", 4, partitioner.getCriticalCount());
+
+        try
+        {
+            partitioner.partition(new ReplDBMSHeaderData(4, (short) 0, true,
+                    "NONE", 0, "4", "a", new Timestamp(0)), 0);
+            fail("Partitioned a header");
+        }
+        catch (ReplicatorException e)
+        {
+        }
+    }
+
+    /**
+     * Verify that columnar values partition like lists without being
+     * converted and that after images of changed keys count.
+     */
+    public void testColumnarValues() throws Exception
+    {
+        RowKeyPartitioner partitioner = createPartitioner();
+        int key0 = findKey(0, 0);
+        int key1 = findKey(1, 0);
+
+        ReplDBMSEvent event = createUpdate(0, "a", key0);
+        OneRowChange rowChange = ((RowChangeData) event.getDBMSEvent()
+                .getData().get(0)).getRowChanges().get(0);
+        ColumnarRowValues keyValues = new ColumnarRowValues(1);
+        keyValues.setInt(keyValues.addRow(), 0, key0);
+        rowChange.setColumnarKeyValues(keyValues);
+        ColumnarRowValues columnValues = new ColumnarRowValues(2);
+        int row = columnValues.addRow();
+        columnValues.setInt(row, 0, key0);
+        columnValues.setString(row, 1, "x".getBytes(), 0, 1);
+        rowChange.setColumnarColumnValues(columnValues);
+
+        assertEquals("columnar channel", 0, partitioner.partition(event, 0)
+                .getPartition());
+        assertNotNull("key values not converted", rowChange
+                .getColumnarKeyValues());
+        assertNotNull("column values not converted", rowChange
+                .getColumnarColumnValues());
+
+        // Change the key of the after image to a key that channel 1 has
+        // just updated. The change must wait for channel 1 to commit.
+        PartitionerResponse response = partitioner.partition(createUpdate(1,
+                "a", key1), 0);
+        assertEquals("key 1 channel", 1, response.getPartition());
+        assertEquals("no conflicts", 0, partitioner.getConflictCount());
+        columnValues.setInt(row, 0, key1);
+        setCommitted(1, 1);
+        ReplDBMSEvent event2 = new ReplDBMSEvent(2, event.getDBMSEvent());
+        assertEquals("channel of before image", 0, partitioner.partition(
+                event2, 0).getPartition());
+        assertEquals("conflict on after image", 1, partitioner
+                .getConflictCount());
+    }
+
+    /**
+     * Verify that a transaction waiting for a channel whose last event is
+     * filtered by the applying stage proceeds once that channel commits the
+     * filtered event, rather than waiting for a later event on the channel.
+     */
+    public void testFilteredLastEvent() throws Exception
+    {
+        int key0 = findKey(0, 0);
+        int key1 = findKey(1, 0);
+
+        // Set up a pipeline whose last stage has two channels and filters
+        // seqno 0.
+        PipelineConfigBuilder builder = new PipelineConfigBuilder();
+        builder.setProperty(ReplicatorConf.SERVICE_NAME, "test");
+        builder.setRole("master");
+        builder.setProperty(ReplicatorConf.METADATA_SCHEMA,
+                "testFilteredLastEvent");
+        builder.addPipeline("master", "transfer,apply", "input,output");
+        builder.addStage("transfer", "input-extract", "output-apply", null);
+        builder.addStage("apply", "output-extract", "dummy", "sample-filter");
+        builder.addProperty("stage", "apply", "taskCount", "2");
+        builder.addComponent("extractor", "input-extract",
+                ParallelQueueExtractor.class);
+        builder.addProperty("extractor", "input-extract", "storeName",
+                "input");
+        builder.addComponent("applier", "output-apply",
+                ParallelQueueApplier.class);
+        builder.addProperty("applier", "output-apply", "storeName", "output");
+        builder.addComponent("extractor", "output-extract",
+                ParallelQueueExtractor.class);
+        builder.addProperty("extractor", "output-extract", "storeName",
+                "output");
+        builder.addComponent("applier", "dummy", DummyApplier.class);
+        builder.addComponent("filter", "sample-filter", SampleFilter.class);
+        builder.addProperty("filter", "sample-filter", "skipSeqnoStart", "0");
+        builder.addComponent("store", "input", ParallelQueueStore.class);
+        builder.addProperty("store", "input", "partitions", "1");
+        builder.addComponent("store", "output", ParallelQueueStore.class);
+        builder.addProperty("store", "output", "partitions", "2");
+        builder.addProperty("store", "output", "partitionerClass",
+                RowKeyPartitioner.class.getName());
+        TungstenProperties conf = builder.getConfig();
+
+        ReplicatorRuntime runtime = new ReplicatorRuntime(conf,
+                new MockOpenReplicatorContext(),
+                ReplicatorMonitor.getInstance());
+        runtime.configure();
+        runtime.prepare();
+        Pipeline pipeline = runtime.getPipeline();
+        pipeline.start(new MockEventDispatcher());
+
+        // Seqno 0 goes to channel 0, which filters it. Seqno 1 goes to
+        // channel 1 but must wait for channel 0 as it also touches key 0.
+        ParallelQueueStore input = (ParallelQueueStore) pipeline
+                .getStore("input");
+        input.put(0, createUpdate(0, "a", key0));
+        input.put(0, createUpdate(1, "a", key1, key0));
+
+        long deadline = System.currentTimeMillis() + 10000;
+        long committed0 = -1;
+        long committed1 = -1;
+        while (System.currentTimeMillis() < deadline
+                && (committed0 < 0 || committed1 < 1))
+        {
+            Thread.sleep(10);
+            committed0 = pipeline.getStage("apply").getProgressTracker()
+                    .getCommittedSeqno(0);
+            committed1 = pipeline.getStage("apply").getProgressTracker()
+                    .getCommittedSeqno(1);
+        }
+        assertEquals("filtered event committed", 0, committed0);
+        assertEquals("waiting event committed", 1, committed1);
+
+        pipeline.shutdown(true);
+        pipeline.release(runtime);
+    }
+
+    // Creates a partitioner with two channels whose committed seqnos come
+    // from the test.
+    private RowKeyPartitioner createPartitioner()
+    {
+        RowKeyPartitioner partitioner = new RowKeyPartitioner()
+        {
+            protected long getCommittedSeqno(int channel)
+            {
+                synchronized (committed)
+                {
+                    return committed[channel];
+                }
+            }
+        };
+        partitioner.setPartitions(2);
+        partitioner.setWaitMillis(1);
+        return partitioner;
+    }
+
+    // Sets the seqno committed by a channel.
+    private void setCommitted(int channel, long seqno)
+    {
+        synchronized (committed)
+        {
+            committed[channel] = seqno;
+        }
+    }
+
+    // Finds the first key from a starting value that goes to a channel.
+    private int findKey(int channel, int start) throws Exception
+    {
+        for (int key = start;; key++)
+        {
+            RowKeyPartitioner probe = createPartitioner();
+            PartitionerResponse response = probe.partition(createUpdate(0,
+                    "a", key), 0);
+            if (response.getPartition() == channel)
+                return key;
+        }
+    }
+
+    // Creates an update event on table a.t whose rows keep their keys.
+    private ReplDBMSEvent createUpdate(long seqno, String shardId, int... keys)
+    {
+        OneRowChange rowChange = new OneRowChange("a", "t", ActionType.UPDATE);
+        ColumnSpec keySpec = rowChange.new ColumnSpec();
+        keySpec.setIndex(1);
+        keySpec.setName("id");
+        rowChange.getKeySpec().add(keySpec);
+        ColumnSpec idSpec = rowChange.new ColumnSpec();
+        idSpec.setIndex(1);
+        idSpec.setName("id");
+        ColumnSpec valueSpec = rowChange.new ColumnSpec();
+        valueSpec.setIndex(2);
+        valueSpec.setName("value");
+        rowChange.getColumnSpec().add(idSpec);
+        rowChange.getColumnSpec().add(valueSpec);
+        for (int key : keys)
+        {
+            ArrayList<ColumnVal> keyValues = new ArrayList<ColumnVal>();
+            keyValues.add(createValue(rowChange, key));
+            rowChange.getKeyValues().add(keyValues);
+            ArrayList<ColumnVal> columnValues = new ArrayList<ColumnVal>();
+            columnValues.add(createValue(rowChange, key));
+            columnValues.add(createValue(rowChange, "x"));
+            rowChange.getColumnValues().add(columnValues);
+        }
+        RowChangeData rowChangeData = new RowChangeData();
+        rowChangeData.appendOneRowChange(rowChange);
+        ArrayList<DBMSData> data = new ArrayList<DBMSData>();
+        data.add(rowChangeData);
+        return createEvent(seqno, shardId, data);
+    }
+
+    // Creates a statement event.
+    private ReplDBMSEvent createStatement(long seqno, String shardId)
+    {
+        ArrayList<DBMSData> data = new ArrayList<DBMSData>();
+        data.add(new StatementData("DELETE FROM t"));
+        return createEvent(seqno, shardId, data);
+    }
+
+    // Creates a column value.
+    private ColumnVal createValue(OneRowChange rowChange,
+            Serializable value)
+    {
+        ColumnVal columnVal = rowChange.new ColumnVal();
+        columnVal.setValue(value);
+        return columnVal;
+    }
+
+    // Creates an event with data on a shard.
+    private ReplDBMSEvent createEvent(long seqno, String shardId,
+            ArrayList<DBMSData> data)
+    {
+        DBMSEvent dbmsEvent = new DBMSEvent(new Long(seqno).toString(), null,
+                data, true, new Timestamp(System.currentTimeMillis()));
+        ReplDBMSEvent replDbmsEvent = new ReplDBMSEvent(seqno, dbmsEvent);
+        replDbmsEvent.getDBMSEvent().addMetadataOption(
+                ReplOptionParams.SHARD_ID, shardId);
+        return replDbmsEvent;
+    }
+
+    // Partitions an event in a separate thread.
+    private class PartitionerThread extends Thread
+    {
+        private final RowKeyPartitioner partitioner;
+        private final ReplDBMSEvent     event;
+        private PartitionerResponse     response;
+
+        PartitionerThread(RowKeyPartitioner partitioner, ReplDBMSEvent event)
+        {
+            this.partitioner = partitioner;
+            this.event = event;
+        }
+
+        public void run()
+        {
+            try
+            {
+                response = partitioner.partition(event, 0);
+            }
+            catch (ReplicatorException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -404,6 +404,139 @@ public class THLParallelQueueTest extends TestCase
         runtime.release();
     }
 
+    /**
+     * Verify that a parallel THL queue with a shared reader delivers events to
+     * the correct partitions in order and reports the shared reader in its
+     * status.
+     */
+    public void testSharedReaderMultiChannel() throws Exception
+    {
+        logger.info("##### testSharedReaderMultiChannel #####");
+
+        // Set up and prepare pipeline with a shared reader.
+        TungstenProperties conf = this.generateTHLParallelPipeline(
+                "testSharedReaderMultiChannel", 3, 50, 100);
+        conf.setBoolean("replicator.store.thl-queue.sharedReader", true);
+        ReplicatorRuntime runtime = new ReplicatorRuntime(conf,
+                new MockOpenReplicatorContext(),
+                ReplicatorMonitor.getInstance());
+        runtime.configure();
+        runtime.prepare();
+        Pipeline pipeline = runtime.getPipeline();
+        pipeline.start(new MockEventDispatcher());
+
+        // Fetch references to stores.
+        THL thl = (THL) pipeline.getStore("thl");
+        THLParallelQueue tpq = (THLParallelQueue) pipeline
+                .getStore("thl-queue");
+        InMemoryMultiQueue mq = (InMemoryMultiQueue) pipeline
+                .getStore("multi-queue");
+        assertTrue("Shared reader enabled",
+                tpq.status().getBoolean("sharedReader"));
+
+        // Write events to the THL with three different shard IDs.
+        LogConnection conn = thl.connect(false);
+        for (int i = 0; i < 900; i++)
+        {
+            ReplDBMSEvent rde = this.createEvent(i, "db" + (i % 3));
+            THLEvent thlEvent = new THLEvent(rde.getSourceId(), rde);
+            conn.store(thlEvent, false);
+        }
+        conn.commit();
+        thl.disconnect(conn);
+
+        // Confirm that each partition gets its events in order. The shared
+        // reader feeds all queues, so we read them in turn.
+        long[] seqnos = {-1, -1, -1};
+        for (int i = 0; i < 300; i++)
+        {
+            for (int q = 0; q < 3; q++)
+            {
+                ReplDBMSEvent rde2 = (ReplDBMSEvent) mq.get(q);
+                assertTrue("Seqno increases due to partial order",
+                        rde2.getSeqno() > seqnos[q]);
+                assertEquals("Shard ID matches queue", "db" + q,
+                        rde2.getShardId());
+                seqnos[q] = rde2.getSeqno();
+            }
+        }
+
+        // Close down pipeline.
+        pipeline.shutdown(false);
+        runtime.release();
+    }
+
+    /**
+     * Verify that a shared reader does not let a partition queue grow beyond
+     * its maximum size. Events behind a full partition wait until the client
+     * for that partition catches up, after which all events arrive in order.
+     */
+    public void testSharedReaderLagLimit() throws Exception
+    {
+        logger.info("##### testSharedReaderLagLimit #####");
+
+        // Set up and prepare pipeline with a shared reader and a small
+        // downstream queue so that partition 0 backs up.
+        TungstenProperties conf = this.generateTHLParallelPipeline(
+                "testSharedReaderLagLimit", 2, 1, 10);
+        conf.setBoolean("replicator.store.thl-queue.sharedReader", true);
+        ReplicatorRuntime runtime = new ReplicatorRuntime(conf,
+                new MockOpenReplicatorContext(),
+                ReplicatorMonitor.getInstance());
+        runtime.configure();
+        runtime.prepare();
+        Pipeline pipeline = runtime.getPipeline();
+        pipeline.start(new MockEventDispatcher());
+
+        // Fetch references to stores.
+        THL thl = (THL) pipeline.getStore("thl");
+        THLParallelQueue tpq = (THLParallelQueue) pipeline
+                .getStore("thl-queue");
+        InMemoryMultiQueue mq = (InMemoryMultiQueue) pipeline
+                .getStore("multi-queue");
+
+        // Write 1000 events on db0 followed by 10 on db1.
+        LogConnection conn = thl.connect(false);
+        for (int i = 0; i < 1010; i++)
+        {
+            ReplDBMSEvent rde = this.createEvent(i, (i < 1000) ? "db0"
+                    : "db1");
+            THLEvent thlEvent = new THLEvent(rde.getSourceId(), rde);
+            conn.store(thlEvent, false);
+        }
+        conn.commit();
+        thl.disconnect(conn);
+
+        // Wait for the queue of partition 0 to fill up, then confirm it stays
+        // within bounds and that events for db1 are held back.
+        for (int i = 0; i < 100 && tpq.size(0) < tpq.getMaxSize(); i++)
+            Thread.sleep(100);
+        Thread.sleep(500);
+        assertEquals("Partition 0 queue is full", tpq.getMaxSize(),
+                tpq.size(0));
+        assertEquals("Partition 1 queue is held back", 0, tpq.size(1));
+        assertNull("No events for db1 yet", mq.peek(1));
+
+        // Read all events from both partitions.
+        for (int i = 0; i < 1000; i++)
+        {
+            ReplDBMSEvent rde2 = (ReplDBMSEvent) mq.get(0);
+            assertEquals("Seqno matches expected for this queue", i,
+                    rde2.getSeqno());
+        }
+        for (int i = 1000; i < 1010; i++)
+        {
+            ReplDBMSEvent rde3 = (ReplDBMSEvent) mq.get(1);
+            assertEquals("Seqno matches expected for this queue", i,
+                    rde3.getSeqno());
+            assertEquals("Shard ID matches queue", "db1", rde3.getShardId());
+        }
+
+        // Close down pipeline.
+        pipeline.shutdown(false);
+        runtime.release();
+    }
+
     // Returns the current serialization count from a parallel queue.
     private int getSerializationCount(THLParallelQueue tpq)
     {
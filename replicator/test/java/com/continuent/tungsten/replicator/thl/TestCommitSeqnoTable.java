@@ -0,0 +1,195 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.thl;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.continuent.tungsten.replicator.database.Database;
+import com.continuent.tungsten.replicator.database.DerbyDatabase;
+import com.continuent.tungsten.replicator.database.Table;
+import com.continuent.tungsten.replicator.event.ReplDBMSHeader;
+import com.continuent.tungsten.replicator.event.ReplDBMSHeaderData;
+
+/**
+ * Tests write-behind and batched updates of positions in the trep_commit_seqno
+ * table. Tests run against an embedded Derby database.
+ * 
+ * @version 1.0
+ */
+public class TestCommitSeqnoTable
+{
+    private static String url    = "jdbc:derby:testdb;create=true";
+    private static String schema = "APP";
+
+    private Database      database;
+
+    /**
+     * Loads the Derby driver.
+     */
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception
+    {
+        Class.forName("org.apache.derby.jdbc.EmbeddedDriver");
+    }
+
+    /**
+     * Connects to the database and creates a trep_commit_seqno table
+     * with a default row for task 0.
+     */
+    @Before
+    public void setUp() throws Exception
+    {
+        // Derby support in AbstractDatabase does not generate valid DDL for
+        // the table, so the test creates the table itself.
+        database = new DerbyDatabase()
+        {
+            public void createTable(Table table, boolean replace,
+                    String tungstenTableType)
+            {
+            }
+        };
+        database.setUrl(url);
+        database.connect();
+        try
+        {
+            database.execute("DROP TABLE " + schema + "."
+                    + CommitSeqnoTable.TABLE_NAME);
+        }
+        catch (SQLException e)
+        {
+            // Table does not exist yet.
+        }
+
+        database.execute("CREATE TABLE " + schema + "."
+                + CommitSeqnoTable.TABLE_NAME
+                + " (task_id INT NOT NULL PRIMARY KEY, seqno BIGINT,"
+                + " fragno SMALLINT, last_frag SMALLINT,"
+                + " source_id VARCHAR(128), epoch_number BIGINT,"
+                + " eventid VARCHAR(128), applied_latency INT,"
+                + " update_timestamp TIMESTAMP, shard_id VARCHAR(128),"
+                + " extract_timestamp TIMESTAMP)");
+        database.execute("INSERT INTO " + schema + "."
+                + CommitSeqnoTable.TABLE_NAME
+                + " (task_id, seqno, fragno, last_frag) VALUES (0, -1, 0, 1)");
+    }
+
+    /**
+     * Closes the database connection.
+     */
+    @After
+    public void tearDown() throws Exception
+    {
+        if (database != null)
+            database.close();
+    }
+
+    /**
+     * Verify that positions recorded within the write-behind interval are not
+     * written but are returned as the last commit seqno until flushed, at
+     * which point they are written once.
+     */
+    @Test
+    public void testWriteBehind() throws Exception
+    {
+        CommitSeqnoTable table = new CommitSeqnoTable(database, schema, null,
+                false);
+        table.prepare(0);
+        table.setWriteBehindMillis(3600000);
+        long updates = table.getUpdateCount();
+
+        // The first position is written as no write has occurred yet.
+        table.recordLastCommitSeqno(0, createHeader(1), 0);
+        Assert.assertEquals("first position written", updates + 1,
+                table.getUpdateCount());
+
+        // Further positions within the interval are held.
+        for (int i = 2; i <= 10; i++)
+            table.recordLastCommitSeqno(0, createHeader(i), 0);
+        Assert.assertEquals("held positions not written", updates + 1,
+                table.getUpdateCount());
+        Assert.assertEquals("pending position returned", 10, table
+                .lastCommitSeqno(0).getSeqno());
+
+        // Flush writes the last position exactly once.
+        table.flushLastCommitSeqno();
+        table.flushLastCommitSeqno();
+        Assert.assertEquals("flush writes once", updates + 2,
+                table.getUpdateCount());
+        table.release();
+
+        // A new instance sees the flushed position.
+        CommitSeqnoTable table2 = new CommitSeqnoTable(database, schema, null,
+                false);
+        table2.prepare(0);
+        Assert.assertEquals("flushed position stored", 10, table2
+                .lastCommitSeqno(0).getSeqno());
+        table2.release();
+    }
+
+    /**
+     * Verify that the position update generated for batching contains inlined
+     * values, escapes quotes, and is refused for values with backslashes.
+     */
+    @Test
+    public void testUpdateSQL() throws Exception
+    {
+        CommitSeqnoTable table = new CommitSeqnoTable(database, schema, null,
+                false);
+        table.prepare(0);
+
+        String sql = table.getUpdateLastCommitSeqnoSQL(3, createHeader(42),
+                -5);
+        Assert.assertTrue("seqno inlined: " + sql,
+                sql.indexOf("seqno=42,") > 0);
+        Assert.assertTrue("latency positive: " + sql,
+                sql.indexOf("applied_latency=5,") > 0);
+        Assert.assertTrue("task id: " + sql, sql.endsWith("WHERE task_id=3"));
+
+        ReplDBMSHeader quoted = new ReplDBMSHeaderData(1, (short) 0, true,
+                "src'1", 0, "mysql-bin.000001:0000000000000100;0", "db",
+                new Timestamp(0));
+        sql = table.getUpdateLastCommitSeqnoSQL(0, quoted, 0);
+        Assert.assertTrue("quote escaped: " + sql,
+                sql.indexOf("source_id='src''1'") > 0);
+
+        ReplDBMSHeader escaped = new ReplDBMSHeaderData(1, (short) 0, true,
+                "src\\1", 0, "mysql-bin.000001:0000000000000100;0", "db",
+                new Timestamp(0));
+        Assert.assertNull("backslash refused",
+                table.getUpdateLastCommitSeqnoSQL(0, escaped, 0));
+        table.release();
+    }
+
+    // Returns a header for the given seqno.
+    private ReplDBMSHeader createHeader(long seqno)
+    {
+        return new ReplDBMSHeaderData(seqno, (short) 0, true, "local", 0,
+                "mysql-bin.000001:0000000000000100;0", "db", new Timestamp(
+                        System.currentTimeMillis()));
+    }
+}
@@ -25,6 +25,7 @@ package com.continuent.tungsten.replicator.thl;
 import java.io.File;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -52,6 +53,9 @@ import com.continuent.tungsten.replicator.pipeline.PipelineConfigBuilder;
 import com.continuent.tungsten.replicator.storage.InMemoryQueueAdapter;
 import com.continuent.tungsten.replicator.storage.InMemoryQueueStore;
 import com.continuent.tungsten.replicator.storage.Store;
+import com.continuent.tungsten.replicator.thl.log.DiskLog;
+import com.continuent.tungsten.replicator.thl.log.LogConnection;
+import com.continuent.tungsten.replicator.thl.log.LogEventReplReader;
 
 /**
  * Implements a test of THL. This test implements a practical test of the
@@ -212,6 +216,96 @@ public class TestTHL2 extends TestCase
         serverRuntime.release();
     }
 
+    /**
+     * Verify that chained THLs negotiate the protocol version. With the framed
+     * protocol the client log must contain exactly the records of the server
+     * log, since records are shipped and stored without reserialization.
+     * Clients limited to the serialized protocol must still replicate and
+     * ignore any request for compression.
+     */
+    public void testProtocolVersions() throws Exception
+    {
+        logger.info("##### testProtocolVersions #####");
+
+        // Framed protocol.
+        chainTHLs("testProtocolVersions1", "testProtocolVersions2", 2114,
+                Protocol.VERSION_FRAMED, 0, Protocol.COMPRESSION_NONE);
+        assertLogsIdentical("testProtocolVersions1", "testProtocolVersions2");
+
+        // Serialized protocol.
+        chainTHLs("testProtocolVersions3", "testProtocolVersions4", 2116,
+                Protocol.VERSION_SERIALIZED, 0, Protocol.COMPRESSION_DEFLATE);
+    }
+
+    /**
+     * Verify that a streaming client with a window smaller than the number of
+     * events receives all events and that the server reports throughput and
+     * round trip statistics.
+     */
+    public void testStreamingFlowControl() throws Exception
+    {
+        logger.info("##### testStreamingFlowControl #####");
+
+        TungstenProperties serverStatus = chainTHLs("testStreamingFlowControl1",
+                "testStreamingFlowControl2", 2118, Protocol.VERSION_STREAMING,
+                3, Protocol.COMPRESSION_NONE);
+        assertEquals("Stream clients", 1, serverStatus.getInt("streamClients"));
+        assertTrue("Records per second",
+                serverStatus.getDouble("streamRecordsPerSecond") > 0);
+        assertTrue("Round trip time",
+                serverStatus.getDouble("streamMaxRttMillis") > 0);
+        assertTrue("Average round trip time",
+                serverStatus.getDouble("streamAvgRttMillis") <= serverStatus
+                        .getDouble("streamMaxRttMillis"));
+        assertEquals("Uncompressed", 1.0,
+                serverStatus.getDouble("streamCompressionRatio"));
+    }
+
+    /**
+     * Verify that a client may ask for compression and that compressed
+     * transfer results in identical logs and a compression ratio above 1.
+     */
+    public void testCompressedStreaming() throws Exception
+    {
+        logger.info("##### testCompressedStreaming #####");
+
+        TungstenProperties serverStatus = chainTHLs("testCompressedStreaming1",
+                "testCompressedStreaming2", 2120, Protocol.VERSION_STREAMING,
+                3, Protocol.COMPRESSION_DEFLATE);
+        double ratio = serverStatus.getDouble("streamCompressionRatio");
+        assertTrue("Compression ratio: " + ratio, ratio > 1.0);
+        assertLogsIdentical("testCompressedStreaming1",
+                "testCompressedStreaming2");
+    }
+
+    // Confirm that two logs contain the same 10 records.
+    private void assertLogsIdentical(String serverLogDir, String clientLogDir)
+            throws Exception
+    {
+        DiskLog serverLog = openReadOnlyLog(serverLogDir);
+        DiskLog clientLog = openReadOnlyLog(clientLogDir);
+        LogConnection serverConn = serverLog.connect(true);
+        LogConnection clientConn = clientLog.connect(true);
+        assertTrue("Server seek", serverConn.seek(0));
+        assertTrue("Client seek", clientConn.seek(0));
+        for (long seqno = 0; seqno < 10; seqno++)
+        {
+            LogEventReplReader serverReader = serverConn.nextReader(false);
+            LogEventReplReader clientReader = clientConn.nextReader(false);
+            assertEquals("Server seqno", seqno, serverReader.getSeqno());
+            assertEquals("Client seqno", seqno, clientReader.getSeqno());
+            assertTrue("Records identical: seqno=" + seqno, Arrays.equals(
+                    serverReader.getLogRecord().getData(), clientReader
+                            .getLogRecord().getData()));
+            serverReader.done();
+            clientReader.done();
+        }
+        serverConn.release();
+        clientConn.release();
+        serverLog.release();
+        clientLog.release();
+    }
+
     /**
      * Verify that multiple pipelines work slave pipeline extracts from the
      * master pipeline.
@@ -594,6 +688,112 @@ public class TestTHL2 extends TestCase
         return builder.getConfig();
     }
 
+    // Replicate 10 events from a server THL to a client THL using the given
+    // client protocol version, window, and compression and confirm both THLs
+    // contain all events. Returns the server THL status before shutdown.
+    private TungstenProperties chainTHLs(String serverLogDir,
+            String clientLogDir, int serverPort, int clientProtocolVersion,
+            int clientWindow, String clientCompression) throws Exception
+    {
+        prepareLogDir(serverLogDir);
+        prepareLogDir(clientLogDir);
+        String serverUri = "thl://localhost:" + serverPort + "/";
+
+        // Generate server pipeline from dummy extractor to THL.
+        PipelineConfigBuilder builder = new PipelineConfigBuilder();
+        builder.setProperty(ReplicatorConf.SERVICE_NAME, "test");
+        builder.setRole("master");
+        builder.setProperty(ReplicatorConf.METADATA_SCHEMA, serverLogDir);
+        builder.addPipeline("master", "extract-s", "thl");
+        builder.addStage("extract-s", "dummy", "thl-apply", null);
+        builder.addComponent("extractor", "dummy", DummyExtractor.class);
+        builder.addComponent("applier", "thl-apply", THLStoreApplier.class);
+        builder.addProperty("applier", "thl-apply", "storeName", "thl");
+        builder.addComponent("store", "thl", THL.class);
+        builder.addProperty("store", "thl", "logDir", serverLogDir);
+        builder.addProperty("store", "thl", "storageListenerUri", serverUri);
+        TungstenProperties serverConf = builder.getConfig();
+
+        // Generate client pipeline from remote extractor to THL.
+        PipelineConfigBuilder builder2 = new PipelineConfigBuilder();
+        builder2.setProperty(ReplicatorConf.SERVICE_NAME, "test");
+        builder2.setRole("master");
+        builder2.setProperty(ReplicatorConf.METADATA_SCHEMA, clientLogDir);
+        builder2.setProperty(ReplicatorConf.THL_PROTOCOL_VERSION,
+                Integer.toString(clientProtocolVersion));
+        builder2.setProperty(ReplicatorConf.THL_PROTOCOL_WINDOW,
+                Integer.toString(clientWindow));
+        builder2.setProperty(ReplicatorConf.THL_PROTOCOL_COMPRESSION,
+                clientCompression);
+        builder2.addPipeline("master", "extract-c,apply-c", "thl");
+        builder2.addStage("extract-c", "thl-remote-extractor", "thl-apply",
+                null);
+        builder2.addStage("apply-c", "thl-extract", "dummy", null);
+        builder2.addComponent("extractor", "thl-remote-extractor",
+                RemoteTHLExtractor.class);
+        builder2.addProperty("extractor", "thl-remote-extractor", "connectUri",
+                serverUri);
+        builder2.addComponent("applier", "thl-apply", THLStoreApplier.class);
+        builder2.addProperty("applier", "thl-apply", "storeName", "thl");
+        builder2.addComponent("extractor", "thl-extract",
+                THLStoreExtractor.class);
+        builder2.addProperty("extractor", "thl-extract", "storeName", "thl");
+        builder2.addComponent("applier", "dummy", DummyApplier.class);
+        builder2.addComponent("store", "thl", THL.class);
+        builder2.addProperty("store", "thl", "logDir", clientLogDir);
+        builder2.addProperty("store", "thl", "storageListenerUri",
+                "thl://localhost:" + (serverPort + 1) + "/");
+        TungstenProperties clientConf = builder2.getConfig();
+
+        // Configure and start pipelines.
+        ReplicatorRuntime serverRuntime = new ReplicatorRuntime(serverConf,
+                new MockOpenReplicatorContext(),
+                ReplicatorMonitor.getInstance());
+        serverRuntime.configure();
+        serverRuntime.prepare();
+        Pipeline serverPipeline = serverRuntime.getPipeline();
+        ReplicatorRuntime clientRuntime = new ReplicatorRuntime(clientConf,
+                new MockOpenReplicatorContext(),
+                ReplicatorMonitor.getInstance());
+        clientRuntime.configure();
+        clientRuntime.prepare();
+        Pipeline clientPipeline = clientRuntime.getPipeline();
+        serverPipeline.start(new MockEventDispatcher());
+        clientPipeline.start(new MockEventDispatcher());
+
+        // Wait for both pipelines to finish.
+        Future<ReplDBMSHeader> waitServer = serverPipeline
+                .watchForAppliedSequenceNumber(9);
+        Future<ReplDBMSHeader> waitClient = clientPipeline
+                .watchForAppliedSequenceNumber(9);
+        assertEquals("Expected 10 server events", 9,
+                waitServer.get(5, TimeUnit.SECONDS).getSeqno());
+        assertEquals("Expected 10 client events", 9,
+                waitClient.get(5, TimeUnit.SECONDS).getSeqno());
+        Store thlClient = clientPipeline.getStore("thl");
+        assertEquals("Expected 9 as last client event: protocol version="
+                + clientProtocolVersion, 9, thlClient.getMaxStoredSeqno());
+        TungstenProperties serverStatus = serverPipeline.getStore("thl")
+                .status();
+
+        // Shut down both pipelines.
+        clientPipeline.shutdown(true);
+        serverPipeline.shutdown(true);
+        clientRuntime.release();
+        serverRuntime.release();
+        return serverStatus;
+    }
+
+    // Open an existing log for reading.
+    private DiskLog openReadOnlyLog(String logDir) throws Exception
+    {
+        DiskLog log = new DiskLog();
+        log.setLogDir(logDir);
+        log.setReadOnly(true);
+        log.prepare();
+        return log;
+    }
+
     // Create an empty log directory or if the directory exists remove
     // any files within it.
     private File prepareLogDir(String logDirName)
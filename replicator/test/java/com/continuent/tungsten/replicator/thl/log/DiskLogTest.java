@@ -22,9 +22,14 @@
 
 package com.continuent.tungsten.replicator.thl.log;
 
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.TestCase;
 
@@ -1566,6 +1571,264 @@ public class DiskLogTest extends TestCase
         log.release();
     }
 
+    /**
+     * Confirm that the log writes a sparse seqno index for each log file, that
+     * seeks using the index find the correct events, and that missing indexes
+     * are rebuilt on complete log files.
+     */
+    public void testSeqnoIndex() throws Exception
+    {
+        // Write events across several log files with a dense index.
+        File logDir = prepareLogDir("testSeqnoIndex");
+        DiskLog log = openLog(logDir, false, 50000, 10000, 0, 0, 1000);
+        writeEventsToLog(log, 500);
+        log.validate();
+        String[] logFiles = log.getLogFileNames();
+        assertTrue("More than one log file", logFiles.length > 1);
+        for (String logFile : logFiles)
+        {
+            File indexFile = new File(logDir,
+                    LogSeqnoIndex.indexFileName(logFile));
+            assertTrue("Index exists: " + indexFile.getName(),
+                    indexFile.exists());
+            LogSeqnoIndex seqnoIndex = new LogSeqnoIndex(logDir, logFile, 1000);
+            seqnoIndex.load();
+            assertTrue("Index has multiple entries: " + seqnoIndex,
+                    seqnoIndex.size() > 1);
+        }
+
+        // Seek on every seqno and confirm we find it.
+        seekAndCheck(log, 0, 500);
+        log.release();
+
+        // Remove the indexes, reopen read-only, and confirm seeks still work.
+        // Indexes on complete files are rebuilt.
+        for (String logFile : logFiles)
+            LogSeqnoIndex.delete(logDir, logFile);
+        DiskLog log2 = openLog(logDir, true, 50000, 10000, 0, 0, 1000);
+        seekAndCheck(log2, 0, 500);
+        assertTrue("First index rebuilt", new File(logDir,
+                LogSeqnoIndex.indexFileName(logFiles[0])).exists());
+        log2.release();
+
+        // Overwrite the first index with offsets that do not point to
+        // records. Seeks must fall back to scanning.
+        File badIndex = new File(logDir,
+                LogSeqnoIndex.indexFileName(logFiles[0]));
+        DataOutputStream dos = new DataOutputStream(new FileOutputStream(
+                badIndex));
+        for (int i = 0; i < 10; i++)
+        {
+            dos.writeLong(i * 10);
+            dos.writeLong(100 + i * 997);
+        }
+        dos.close();
+        DiskLog log3 = openLog(logDir, true, 50000, 10000, 0, 0, 1000);
+        seekAndCheck(log3, 0, 500);
+        log3.release();
+    }
+
+    /**
+     * Confirm that truncating the log removes seqno index entries for deleted
+     * events so that later seeks find events written after the truncation.
+     */
+    public void testSeqnoIndexTruncate() throws Exception
+    {
+        File logDir = prepareLogDir("testSeqnoIndexTruncate");
+        DiskLog log = openLog(logDir, false, 1000000, 10000, 0, 0, 500);
+        writeEventsToLog(log, 200);
+
+        // Truncate and write new events that are larger than the old ones
+        // so that offsets no longer line up.
+        LogConnection conn = log.connect(false);
+        conn.delete(new Long(100), null);
+        conn.release();
+        assertEquals("Log truncated", 99, log.getMaxSeqno());
+        LogConnection conn2 = log.connect(false);
+        for (long seqno = 100; seqno < 200; seqno++)
+        {
+            THLEvent e = createTHLEvent(seqno, (short) 0, true,
+                    "a_much_longer_source_id_to_shift_offsets");
+            conn2.store(e, seqno == 199);
+        }
+        conn2.release();
+
+        seekAndCheck(log, 0, 200);
+        log.release();
+
+        // Reopen and check again.
+        DiskLog log2 = openLog(logDir, true, 1000000, 10000, 0, 0, 500);
+        seekAndCheck(log2, 0, 200);
+        log2.release();
+    }
+
+    /**
+     * Confirm that memory-mapped reads of rotated log files return the same
+     * events as buffered reads, and that readers of the active log file, which
+     * is not mapped, see events as they are written.
+     */
+    public void testMemoryMappedReads() throws Exception
+    {
+        // Write events across several log files and read back from a mapped
+        // log.
+        File logDir = prepareLogDir("testMemoryMappedReads");
+        DiskLog log = openLog(logDir, false, 50000, 10000, 0, 0, 1000);
+        log.setMemoryMappedReads(true);
+        writeEventsToLog(log, 500);
+        assertTrue("More than one log file", log.getLogFileNames().length > 1);
+        readBackStoredEvents(log, 0, 500);
+        seekAndCheck(log, 0, 500);
+
+        // Read events as they are written to the active file.
+        LogConnection reader = log.connect(true);
+        assertTrue("Seek to next seqno", reader.seek(500));
+        LogConnection writer = log.connect(false);
+        for (long seqno = 500; seqno < 700; seqno++)
+        {
+            writer.store(createTHLEvent(seqno), true);
+            THLEvent e = reader.next();
+            assertNotNull("Returned event must not be null: seqno=" + seqno,
+                    e);
+            assertEquals("Test expected seqno", seqno, e.getSeqno());
+        }
+        writer.release();
+        reader.release();
+        log.release();
+    }
+
+    /**
+     * Confirm that group commit syncs commits together and that futures
+     * complete once the requested events are durable, including across log
+     * rotations.
+     */
+    public void testGroupCommit() throws Exception
+    {
+        File logDir = prepareLogDir("testGroupCommit");
+        DiskLog log = new DiskLog();
+        log.setReadOnly(false);
+        log.setEventSerializerClass(this.serializer.getName());
+        log.setLogDir(logDir.getAbsolutePath());
+        log.setLogFileSize(10000);
+        log.setGroupCommitWindowMillis(50);
+        log.prepare();
+
+        // Commit without waiting and confirm all futures complete.
+        LogConnection conn = log.connect(false);
+        List<LogSyncFuture> futures = new ArrayList<LogSyncFuture>();
+        for (long seqno = 0; seqno < 200; seqno++)
+        {
+            conn.store(createTHLEvent(seqno), false);
+            if (seqno % 10 == 9)
+                futures.add(conn.commitAsync());
+        }
+        for (int i = 0; i < futures.size(); i++)
+        {
+            LogSyncFuture future = futures.get(i);
+            assertEquals("Future seqno", i * 10 + 9, future.getSeqno());
+            assertEquals("Synced seqno", new Long(future.getSeqno()),
+                    future.get(10, TimeUnit.SECONDS));
+        }
+        assertTrue("Log rotated", log.getLogFileNames().length > 1);
+
+        // Syncs must have been grouped.
+        LogFlushTask task = log.getLogFlushTask();
+        assertTrue("Group syncs occurred", task.getSyncCount() > 0);
+        assertTrue("Fewer syncs than commits: syncs=" + task.getSyncCount(),
+                task.getSyncCount() < futures.size());
+        assertTrue("Multiple records per sync", task.getSyncAvgRecords() > 1);
+
+        // Blocking commits continue to work.
+        for (long seqno = 200; seqno < 220; seqno++)
+            conn.store(createTHLEvent(seqno), true);
+        conn.commit();
+        conn.release();
+
+        readBackStoredEvents(log, 0, 220);
+        log.release();
+    }
+
+    /**
+     * Confirm that rotated log files are compressed in the background, that
+     * clients reading a file while it is compressed continue without errors,
+     * and that compressed files are readable by new clients and after restart.
+     */
+    public void testCompressRotatedFiles() throws Exception
+    {
+        // Write events across several uncompressed log files.
+        File logDir = prepareLogDir("testCompressRotatedFiles");
+        DiskLog log = openLog(logDir, false, 10000, 10000, 0, 0, 1000);
+        writeEventsToLog(log, 500);
+        log.release();
+
+        // Start reading the first file from a separate read-only log.
+        DiskLog reader = openLog(logDir, true, 10000, 10000, 0, 0, 1000);
+        LogConnection conn = reader.connect(true);
+        assertTrue("Seek to first seqno", conn.seek(0));
+        for (long seqno = 0; seqno < 5; seqno++)
+            assertEquals("Reader seqno", seqno, conn.next().getSeqno());
+
+        // Reopen the log with compression and wait for all files but the
+        // last to be compressed.
+        DiskLog log2 = new DiskLog();
+        log2.setReadOnly(false);
+        log2.setEventSerializerClass(this.serializer.getName());
+        log2.setLogDir(logDir.getAbsolutePath());
+        log2.setLogFileSize(10000);
+        log2.setSeqnoIndexIntervalBytes(1000);
+        log2.setCompressRotatedFiles(true);
+        log2.prepare();
+        int fileCount = log2.getLogFileNames().length;
+        assertTrue("More than one log file", fileCount > 1);
+        LogCompressionSummary summary = waitForCompressedFiles(log2,
+                fileCount - 1);
+        assertTrue("Stored bytes less than uncompressed: ratio="
+                + summary.getCompressionRatio(),
+                summary.getCompressionRatio() > 1.0);
+        assertEquals("Compression task counts files", fileCount - 1, log2
+                .getLogCompressTask().getFilesCompressed());
+
+        // The first reader continues through the compressed files.
+        for (long seqno = 5; seqno < 500; seqno++)
+            assertEquals("Reader seqno", seqno, conn.next().getSeqno());
+        conn.release();
+        reader.release();
+
+        // New readers see the same events, including by seeking.
+        readBackStoredEvents(log2, 0, 500);
+        seekAndCheck(log2, 0, 500);
+
+        // Newly rotated files are compressed as well.
+        writeEventsToLog(log2, 500, 500);
+        int newFileCount = log2.getLogFileNames().length;
+        assertTrue("Log rotated", newFileCount > fileCount);
+        waitForCompressedFiles(log2, newFileCount - 1);
+        readBackStoredEvents(log2, 0, 1000);
+        log2.release();
+
+        // Compressed files are readable after restart.
+        DiskLog log3 = openLog(logDir, true, 10000, 10000, 0, 0, 1000);
+        log3.validate();
+        readBackStoredEvents(log3, 0, 1000);
+        seekAndCheck(log3, 0, 1000);
+        log3.release();
+    }
+
+    // Wait for the log to have the expected number of compressed files.
+    private LogCompressionSummary waitForCompressedFiles(DiskLog log,
+            int count) throws Exception
+    {
+        long timeout = System.currentTimeMillis() + 30000;
+        LogCompressionSummary summary = log.getCompressionSummary();
+        while (summary.getCompressedFiles() < count
+                && System.currentTimeMillis() < timeout)
+        {
+            Thread.sleep(100);
+            summary = log.getCompressionSummary();
+        }
+        assertEquals("Compressed files", count, summary.getCompressedFiles());
+        return summary;
+    }
+
     // Create an empty log directory or if the directory exists remove
     // any files within it.
     private File prepareLogDir(String logDirName)
@@ -1589,9 +1852,20 @@ public class DiskLogTest extends TestCase
     private DiskLog openLog(File logDir, boolean readonly, int fileSize,
             int timeoutMillis, int logFileRetainMillis, int flushIntervalMillis)
             throws ReplicatorException, InterruptedException
+    {
+        return openLog(logDir, readonly, fileSize, timeoutMillis,
+                logFileRetainMillis, flushIntervalMillis, 1000000);
+    }
+
+    // Open a new or existing log with a specific seqno index interval.
+    private DiskLog openLog(File logDir, boolean readonly, int fileSize,
+            int timeoutMillis, int logFileRetainMillis,
+            int flushIntervalMillis, int seqnoIndexIntervalBytes)
+            throws ReplicatorException, InterruptedException
     {
         // Create the log directory if this is a new log.
         DiskLog log = new DiskLog();
+        log.setSeqnoIndexIntervalBytes(seqnoIndexIntervalBytes);
         log.setDoChecksum(true);
         log.setReadOnly(readonly);
         log.setEventSerializerClass(this.serializer.getName());
@@ -1672,6 +1946,21 @@ public class DiskLogTest extends TestCase
         }
     }
 
+    // Seek on each seqno in a range and confirm the connection returns it.
+    private void seekAndCheck(DiskLog log, long fromSeqno, long count)
+            throws ReplicatorException, InterruptedException
+    {
+        LogConnection conn = log.connect(true);
+        for (long i = fromSeqno; i < fromSeqno + count; i++)
+        {
+            assertTrue("Looking for seqno=" + i, conn.seek(i));
+            THLEvent e = conn.next(false);
+            assertNotNull("Returned event must not be null: seqno=" + i, e);
+            assertEquals("Test expected seqno", i, e.getSeqno());
+        }
+        conn.release();
+    }
+
     // Create a dummy THL event.
     private THLEvent createTHLEvent(long seqno, short fragno, boolean lastFrag,
             String sourceId)
@@ -148,6 +148,62 @@ public class LogFileTest extends TestCase
         tf2.close();
     }
 
+    /**
+     * Confirm that records written to a compressed file are stored compressed
+     * and read back with their original data and CRC, both through buffered
+     * and memory-mapped reads.
+     */
+    public void testCompressedReadWrite() throws Exception
+    {
+        // Create a compressed file with a dictionary of sample data.
+        String sample = "insert into test.t1 values(1, 'some repetitive text')";
+        byte[] dictionary = sample.getBytes();
+        File logfile = new File("testCompressedReadWrite.dat");
+        logfile.delete();
+        LogFile tf = new LogFile(logfile);
+        tf.create(5, 100000, dictionary);
+        assertTrue("File is compressed", tf.isCompressed());
+
+        // Write records with repetitive content.
+        LogRecord[] records = new LogRecord[100];
+        long rawBytes = 0;
+        for (int i = 0; i < records.length; i++)
+        {
+            String data = "insert into test.t1 values(" + i
+                    + ", 'some repetitive text') /* " + sample + " */";
+            records[i] = new LogRecord(tf.getOffset(), data.getBytes(),
+                    LogRecord.CRC_TYPE_NONE, 0);
+            records[i].storeCrc(LogRecord.CRC_TYPE_32);
+            tf.writeRecord(records[i], 0);
+            rawBytes += records[i].getRecordLength();
+        }
+        tf.flush();
+        tf.close();
+        assertTrue("Records are compressed: file=" + logfile.length()
+                + " raw=" + rawBytes, logfile.length() < rawBytes);
+
+        // Reread using buffered and memory-mapped reads.
+        for (int pass = 0; pass < 2; pass++)
+        {
+            LogFile tf2 = new LogFile(logfile);
+            tf2.setMemoryMapped(pass == 1);
+            tf2.openRead();
+            assertTrue("Reread file is compressed", tf2.isCompressed());
+            assertEquals("Uncompressed length", 100000,
+                    tf2.getUncompressedLength());
+            assertEquals("Base seqno", 5, tf2.getBaseSeqno());
+            for (int i = 0; i < records.length; i++)
+            {
+                LogRecord record = tf2.readRecord(0);
+                assertEquals("Record contents match: " + i, records[i],
+                        record);
+                assertTrue("CRC matches: " + i, record.checkCrc());
+            }
+            assertTrue("End of file", tf2.readRecord(0).isEmpty());
+            tf2.close();
+        }
+    }
+
     /**
      * Confirm that we can detect and repair a truncated file. By truncated we
      * mean that the last record is only partially written.
@@ -22,6 +22,7 @@
 
 package com.continuent.tungsten.replicator.thl.log;
 
+import java.nio.ByteBuffer;
 import java.sql.Timestamp;
 
 import junit.framework.TestCase;
@@ -142,4 +143,29 @@ public class LogRecordTest extends TestCase
 
         tfro.close();
     }
+
+    /**
+     * Confirm that records compare by content whether their data are held in
+     * an array or in a buffer, as for records read from mapped files.
+     */
+    public void testBufferEquality() throws Exception
+    {
+        byte[] bytes = new byte[]{LogRecord.EVENT_REPL, 1, 2, 3};
+        LogRecord arrayRec = new LogRecord(10, bytes.clone(),
+                LogRecord.CRC_TYPE_32, 99);
+        LogRecord bufferRec = new LogRecord(10, ByteBuffer.wrap(bytes
+                .clone()), LogRecord.CRC_TYPE_32, 99);
+        LogRecord otherBufferRec = new LogRecord(10, ByteBuffer
+                .wrap(new byte[]{LogRecord.EVENT_REPL, 1, 2, 4}),
+                LogRecord.CRC_TYPE_32, 99);
+        LogRecord emptyRec = new LogRecord(10, false);
+
+        assertEquals("buffer equals array", bufferRec, arrayRec);
+        assertEquals("array equals buffer", arrayRec, bufferRec);
+        assertFalse("different data", bufferRec.equals(otherBufferRec));
+        assertFalse("different data reversed", otherBufferRec
+                .equals(bufferRec));
+        assertFalse("buffer does not equal empty", bufferRec.equals(emptyRec));
+        assertFalse("empty does not equal buffer", emptyRec.equals(bufferRec));
+    }
 }
@@ -0,0 +1,278 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+
+package com.continuent.tungsten.replicator.thl.serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.continuent.tungsten.replicator.dbms.ColumnarRowValues;
+import com.continuent.tungsten.replicator.dbms.DBMSData;
+import com.continuent.tungsten.replicator.dbms.OneRowChange;
+import com.continuent.tungsten.replicator.dbms.RowChangeData;
+import com.continuent.tungsten.replicator.dbms.OneRowChange.ColumnSpec;
+import com.continuent.tungsten.replicator.dbms.OneRowChange.ColumnVal;
+import com.continuent.tungsten.replicator.event.DBMSEvent;
+import com.continuent.tungsten.replicator.event.ReplDBMSEvent;
+import com.continuent.tungsten.replicator.thl.THLEvent;
+
+/**
+ * Tests that row changes with columnar values serialize to the same bytes as
+ * row changes with values in lists.
+ * 
+ * @version 1.0
+ */
+public class TestProtobufColumnarSerialization
+{
+    private static final Timestamp NOW = new Timestamp(1300000000000L);
+
+    // Column types and lengths of the test table.
+    private static final int[]     TYPES   = {Types.INTEGER, Types.INTEGER,
+            Types.INTEGER, Types.FLOAT, Types.DOUBLE, Types.VARCHAR,
+            Types.VARCHAR, Types.DECIMAL, Types.INTEGER, Types.BIT};
+    private static final int[]     LENGTHS = {4, 8, 0, 0, 0, 0, 0, 0, 4, 0};
+
+    /**
+     * Confirm that a columnar row change serializes exactly like the same row
+     * change in lists and deserializes to the same values.
+     */
+    @Test
+    public void testColumnarMatchesLists() throws Exception
+    {
+        byte[] listBytes = serialize(createRowChange(false));
+        byte[] columnarBytes = serialize(createRowChange(true));
+        Assert.assertArrayEquals("Serialized forms match", body(listBytes),
+                body(columnarBytes));
+
+        THLEvent event = new ProtobufSerializer()
+                .deserializeEvent(new ByteArrayInputStream(columnarBytes));
+        ReplDBMSEvent replEvent = (ReplDBMSEvent) event.getReplEvent();
+        RowChangeData rowData = (RowChangeData) replEvent.getData().get(0);
+        OneRowChange rowChange = rowData.getRowChanges().get(0);
+        OneRowChange expected = createRowChange(false);
+        Assert.assertEquals("Key rows", 3, rowChange.getKeyValues().size());
+        Assert.assertEquals("Column rows", 3, rowChange.getColumnValues()
+                .size());
+        Assert.assertEquals("Table ID", expected.getTableId(), rowChange
+                .getTableId());
+        for (int row = 0; row < 3; row++)
+        {
+            Assert.assertEquals("key", expected.getKeyValues().get(row).get(0)
+                    .getValue(), rowChange.getKeyValues().get(row).get(0)
+                    .getValue());
+            Assert.assertEquals("long", expected.getColumnValues().get(row)
+                    .get(1).getValue(), rowChange.getColumnValues().get(row)
+                    .get(1).getValue());
+            Assert.assertEquals("double", expected.getColumnValues().get(row)
+                    .get(4).getValue(), rowChange.getColumnValues().get(row)
+                    .get(4).getValue());
+        }
+    }
+
+    /**
+     * Confirm that columnar and listed row changes in one event keep their
+     * order and match the serialized form of lists.
+     */
+    @Test
+    public void testMixedRowChanges() throws Exception
+    {
+        RowChangeData listData = new RowChangeData();
+        listData.appendOneRowChange(createRowChange(false));
+        listData.appendOneRowChange(createRowChange(false));
+        RowChangeData mixedData = new RowChangeData();
+        mixedData.appendOneRowChange(createRowChange(false));
+        mixedData.appendOneRowChange(createRowChange(true));
+        mixedData.getRowChanges().get(0).setTableName("first");
+        listData.getRowChanges().get(0).setTableName("first");
+
+        byte[] listBytes = serialize(listData);
+        byte[] mixedBytes = serialize(mixedData);
+        Assert.assertArrayEquals("Serialized forms match", body(listBytes),
+                body(mixedBytes));
+
+        THLEvent event = new ProtobufSerializer()
+                .deserializeEvent(new ByteArrayInputStream(mixedBytes));
+        RowChangeData rowData = (RowChangeData) ((ReplDBMSEvent) event
+                .getReplEvent()).getData().get(0);
+        Assert.assertEquals("Row changes", 2, rowData.getRowChanges().size());
+        Assert.assertEquals("Order kept", "first", rowData.getRowChanges()
+                .get(0).getTableName());
+    }
+
+    /**
+     * Confirm that strings that are not valid UTF-8 are serialized the same
+     * way for columnar values as for lists.
+     */
+    @Test
+    public void testInvalidUtf8String() throws Exception
+    {
+        byte[] bad = new byte[]{'a', (byte) 0xC0, (byte) 0xAF, (byte) 0xED,
+                (byte) 0xA0, (byte) 0x80, 'z'};
+        OneRowChange listed = new OneRowChange("test", "t",
+                RowChangeData.ActionType.INSERT);
+        OneRowChange columnar = new OneRowChange("test", "t",
+                RowChangeData.ActionType.INSERT);
+        for (OneRowChange rowChange : new OneRowChange[]{listed, columnar})
+        {
+            ColumnSpec spec = rowChange.new ColumnSpec();
+            spec.setIndex(1);
+            spec.setType(Types.VARCHAR);
+            rowChange.getColumnSpec().add(spec);
+        }
+        ColumnVal value = listed.new ColumnVal();
+        value.setStringValue(bad, 0, bad.length);
+        ArrayList<ColumnVal> row = new ArrayList<ColumnVal>();
+        row.add(value);
+        listed.getColumnValues().add(row);
+
+        ColumnarRowValues values = new ColumnarRowValues(1);
+        values.addRow();
+        values.setString(0, 0, bad, 0, bad.length);
+        columnar.setColumnarColumnValues(values);
+
+        Assert.assertArrayEquals("Serialized forms match",
+                body(serialize(listed)), body(serialize(columnar)));
+    }
+
+    // Creates a row change with three rows of values of each type.
+    private OneRowChange createRowChange(boolean columnar)
+    {
+        OneRowChange rowChange = new OneRowChange("test", "t",
+                RowChangeData.ActionType.UPDATE);
+        rowChange.setTableId(42);
+        for (int i = 0; i < TYPES.length; i++)
+        {
+            ColumnSpec spec = rowChange.new ColumnSpec();
+            spec.setIndex(i + 1);
+            spec.setType(TYPES[i]);
+            spec.setLength(LENGTHS[i]);
+            rowChange.getColumnSpec().add(spec);
+        }
+        ColumnSpec keySpec = rowChange.new ColumnSpec();
+        keySpec.setIndex(1);
+        keySpec.setType(Types.INTEGER);
+        keySpec.setLength(4);
+        rowChange.getKeySpec().add(keySpec);
+
+        ColumnarRowValues keys = null;
+        ColumnarRowValues columns = null;
+        if (columnar)
+        {
+            keys = new ColumnarRowValues(1);
+            columns = new ColumnarRowValues(TYPES.length);
+            rowChange.setColumnarKeyValues(keys);
+            rowChange.setColumnarColumnValues(columns);
+        }
+
+        byte[] text = "caf\u00E9 text".getBytes();
+        for (int row = 0; row < 3; row++)
+        {
+            ColumnVal[] keyVals = cells(rowChange, keys, row, 1);
+            keyVals[0].setIntValue(row - 1);
+
+            ColumnVal[] vals = cells(rowChange, columns, row, TYPES.length);
+            vals[0].setIntValue(Integer.MIN_VALUE + row);
+            vals[1].setLongValue(Long.MAX_VALUE - row);
+            vals[2].setLongValue(row * 1000000000000L);
+            vals[3].setFloatValue(row / 3.0f);
+            vals[4].setDoubleValue(-row / 7.0);
+            vals[5].setStringValue(text, 0, text.length - row);
+            vals[6].setBytesValue(text, row, 3);
+            vals[7].setValue(new BigDecimal("-123.45").movePointLeft(row));
+            if (row == 1)
+                vals[8].setValueNull();
+            else
+                vals[8].setIntValue(row);
+            vals[9].setIntValue(row % 2);
+        }
+        return rowChange;
+    }
+
+    // Returns cells of a row, which are stored in columnar values if given
+    // and otherwise in lists.
+    private ColumnVal[] cells(OneRowChange rowChange, ColumnarRowValues values,
+            int row, int count)
+    {
+        ColumnVal[] cells = new ColumnVal[count];
+        if (values != null)
+        {
+            values.addRow();
+            for (int i = 0; i < count; i++)
+            {
+                OneRowChange.ColumnarColumnVal cursor = rowChange.new ColumnarColumnVal(
+                        values);
+                cursor.moveTo(row, i);
+                cells[i] = cursor;
+            }
+        }
+        else
+        {
+            ArrayList<ColumnVal> list = new ArrayList<ColumnVal>();
+            for (int i = 0; i < count; i++)
+            {
+                cells[i] = rowChange.new ColumnVal();
+                list.add(cells[i]);
+            }
+            if (count == 1)
+                rowChange.getKeyValues().add(list);
+            else
+                rowChange.getColumnValues().add(list);
+        }
+        return cells;
+    }
+
+    private byte[] serialize(OneRowChange rowChange) throws Exception
+    {
+        RowChangeData rowData = new RowChangeData();
+        rowData.appendOneRowChange(rowChange);
+        return serialize(rowData);
+    }
+
+    private byte[] serialize(RowChangeData rowData) throws Exception
+    {
+        ArrayList<DBMSData> data = new ArrayList<DBMSData>();
+        data.add(rowData);
+        DBMSEvent dbmsEvent = new DBMSEvent("event", data, NOW);
+        ReplDBMSEvent replEvent = new ReplDBMSEvent(1, (short) 0, true,
+                "unittest", 1, NOW, dbmsEvent);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ProtobufSerializer serializer = new ProtobufSerializer();
+        serializer.serializeEvent(new THLEvent("event", replEvent), out);
+        return out.toByteArray();
+    }
+
+    // Returns serialized event data without the header, which holds local
+    // timestamps.
+    private byte[] body(byte[] event) throws Exception
+    {
+        ByteArrayInputStream in = new ByteArrayInputStream(event);
+        new ProtobufSerializer().deserializeHeader(in);
+        byte[] body = new byte[in.available()];
+        in.read(body);
+        return body;
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+
+package com.continuent.tungsten.replicator.thl.serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.continuent.tungsten.replicator.dbms.DBMSData;
+import com.continuent.tungsten.replicator.dbms.OneRowChange;
+import com.continuent.tungsten.replicator.dbms.RowChangeData;
+import com.continuent.tungsten.replicator.dbms.RowIdData;
+import com.continuent.tungsten.replicator.dbms.StatementData;
+import com.continuent.tungsten.replicator.dbms.OneRowChange.ColumnSpec;
+import com.continuent.tungsten.replicator.dbms.OneRowChange.ColumnVal;
+import com.continuent.tungsten.replicator.event.DBMSEvent;
+import com.continuent.tungsten.replicator.event.ReplDBMSEvent;
+import com.continuent.tungsten.replicator.thl.THLEvent;
+
+/**
+ * Tests deserialization of row changes that are decoded one at a time.
+ * 
+ * @version 1.0
+ */
+public class TestStreamingRowChangeData
+{
+    private static final Timestamp NOW = new Timestamp(1300000000000L);
+
+    /**
+     * Confirm that row data is deserialized into streaming row change data
+     * that decodes row changes in order without keeping them, while other
+     * changes and options are deserialized as before.
+     */
+    @Test
+    public void testIterator() throws Exception
+    {
+        ReplDBMSEvent event = deserialize(serialize(createEvent(50)));
+        ArrayList<DBMSData> data = event.getData();
+        Assert.assertEquals("Changes", 3, data.size());
+        Assert.assertEquals("Statement", "create table t (id int)",
+                ((StatementData) data.get(0)).getQuery());
+        Assert.assertEquals("Row ID", 99, ((RowIdData) data.get(2)).getRowId());
+        Assert.assertEquals("Row ID type", RowIdData.INSERT_ID,
+                ((RowIdData) data.get(2)).getType());
+        Assert.assertEquals("Metadata", "value", event.getDBMSEvent()
+                .getMetadataOptionValue("meta"));
+
+        StreamingRowChangeData rowData = (StreamingRowChangeData) data.get(1);
+        Assert.assertTrue("Serialized", rowData.getSerializedLength() > 0);
+        Iterator<OneRowChange> iterator = rowData.rowChangeIterator();
+        for (int i = 0; i < 50; i++)
+        {
+            Assert.assertTrue("Has next", iterator.hasNext());
+            checkRowChange(i, iterator.next());
+        }
+        Assert.assertFalse("At end", iterator.hasNext());
+        Assert.assertFalse("Row changes not kept", rowData.isDecoded());
+
+        // A second pass decodes the same row changes again.
+        Assert.assertEquals("Second pass", "t0", rowData.rowChangeIterator()
+                .next().getTableName());
+    }
+
+    /**
+     * Confirm that asking for the list decodes all row changes and that
+     * changes to the list are serialized again.
+     */
+    @Test
+    public void testList() throws Exception
+    {
+        ReplDBMSEvent event = deserialize(serialize(createEvent(10)));
+        StreamingRowChangeData rowData = (StreamingRowChangeData) event
+                .getData().get(1);
+        ArrayList<OneRowChange> rowChanges = rowData.getRowChanges();
+        Assert.assertTrue("Decoded", rowData.isDecoded());
+        Assert.assertEquals("Serialized bytes released", 0, rowData
+                .getSerializedLength());
+        Assert.assertEquals("Row changes", 10, rowChanges.size());
+        for (int i = 0; i < 10; i++)
+            checkRowChange(i, rowChanges.get(i));
+        Assert.assertSame("Iterator uses list", rowChanges.get(0), rowData
+                .rowChangeIterator().next());
+
+        // Filters may drop row changes.
+        rowChanges.remove(0);
+        ReplDBMSEvent event2 = deserialize(serialize(event));
+        RowChangeData rowData2 = (RowChangeData) event2.getData().get(1);
+        Assert.assertEquals("Row changes", 9, rowData2.getRowChanges().size());
+        checkRowChange(1, rowData2.getRowChanges().get(0));
+    }
+
+    /**
+     * Confirm that empty row data deserializes to no row changes.
+     */
+    @Test
+    public void testEmpty() throws Exception
+    {
+        ReplDBMSEvent event = deserialize(serialize(createEvent(0)));
+        RowChangeData rowData = (RowChangeData) event.getData().get(1);
+        Assert.assertFalse("No rows", rowData.rowChangeIterator().hasNext());
+        Assert.assertEquals("Empty list", 0, rowData.getRowChanges().size());
+    }
+
+    // Creates an event with a statement, row changes and a row ID.
+    private ReplDBMSEvent createEvent(int count)
+    {
+        RowChangeData rowData = new RowChangeData();
+        for (int i = 0; i < count; i++)
+        {
+            OneRowChange rowChange = new OneRowChange("test", "t" + i,
+                    RowChangeData.ActionType.DELETE);
+            ColumnSpec spec = rowChange.new ColumnSpec();
+            spec.setIndex(1);
+            spec.setType(Types.INTEGER);
+            spec.setLength(4);
+            rowChange.getKeySpec().add(spec);
+            for (int row = 0; row < 3; row++)
+            {
+                ColumnVal value = rowChange.new ColumnVal();
+                value.setValue(new Integer(i * 10 + row));
+                ArrayList<ColumnVal> values = new ArrayList<ColumnVal>();
+                values.add(value);
+                rowChange.getKeyValues().add(values);
+            }
+            rowData.appendOneRowChange(rowChange);
+        }
+
+        ArrayList<DBMSData> data = new ArrayList<DBMSData>();
+        data.add(new StatementData("create table t (id int)"));
+        data.add(rowData);
+        data.add(new RowIdData(99, RowIdData.INSERT_ID));
+        DBMSEvent dbmsEvent = new DBMSEvent("event", data, NOW);
+        dbmsEvent.addMetadataOption("meta", "value");
+        return new ReplDBMSEvent(1, (short) 0, true, "unittest", 1, NOW,
+                dbmsEvent);
+    }
+
+    private void checkRowChange(int i, OneRowChange rowChange)
+    {
+        Assert.assertEquals("Table", "t" + i, rowChange.getTableName());
+        Assert.assertEquals("Rows", 3, rowChange.getKeyValues().size());
+        Assert.assertEquals("Key", new Integer(i * 10 + 2), rowChange
+                .getKeyValues().get(2).get(0).getValue());
+    }
+
+    private byte[] serialize(ReplDBMSEvent event) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ProtobufSerializer().serializeEvent(new THLEvent("event", event),
+                out);
+        return out.toByteArray();
+    }
+
+    private ReplDBMSEvent deserialize(byte[] bytes) throws Exception
+    {
+        THLEvent event = new ProtobufSerializer()
+                .deserializeEvent(new ByteArrayInputStream(bytes));
+        return (ReplDBMSEvent) event.getReplEvent();
+    }
+}
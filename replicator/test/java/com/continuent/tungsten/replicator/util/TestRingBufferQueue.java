@@ -0,0 +1,347 @@
+/**
+ * Tungsten Scale-Out Stack
+ * Copyright (C) 2026 Continuent Inc.
+ * Contact: tungsten@continuent.org
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of version 2 of the GNU General Public License as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA
+ */
+
+package com.continuent.tungsten.replicator.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Tests for the RingBufferQueue class. The last case compares throughput of
+ * ring buffers with each wait strategy against LinkedBlockingQueue, which is
+ * the default queue in in-memory stores, by passing events from a single
+ * producer to a single consumer as stage tasks do. Results are logged and not
+ * checked as they depend on the host.
+ *
+ * @version 1.0
+ */
+public class TestRingBufferQueue extends TestCase
+{
+    private static Logger logger = Logger.getLogger(TestRingBufferQueue.class);
+
+    /**
+     * Verify that a queue holds exactly its capacity even when the capacity
+     * is not a power of 2 and that elements come out in order.
+     */
+    public void testCapacityAndOrder() throws Exception
+    {
+        RingBufferQueue<Integer> queue = new RingBufferQueue<Integer>(3);
+        assertNull("Empty queue has no head", queue.peek());
+        assertNull("Empty queue returns null", queue.poll());
+        assertEquals("Empty queue has full capacity", 3,
+                queue.remainingCapacity());
+
+        for (int i = 0; i < 3; i++)
+            assertTrue("Offer succeeds: " + i, queue.offer(i));
+        assertFalse("Offer fails on full queue", queue.offer(3));
+        assertEquals("Queue is full", 3, queue.size());
+        assertEquals("No remaining capacity", 0, queue.remainingCapacity());
+
+        for (int i = 0; i < 3; i++)
+        {
+            assertEquals("Peek returns head", new Integer(i), queue.peek());
+            assertEquals("Poll returns head", new Integer(i), queue.poll());
+        }
+        assertNull("Queue is empty again", queue.poll());
+        assertEquals("Queue size is 0", 0, queue.size());
+    }
+
+    /**
+     * Verify that the queue works across many laps of the underlying buffer
+     * and that iterators return a snapshot of current contents.
+     */
+    public void testWrapAround() throws Exception
+    {
+        RingBufferQueue<Integer> queue = new RingBufferQueue<Integer>(4);
+        int next = 0;
+        for (int lap = 0; lap < 10000; lap++)
+        {
+            // Fill most of the queue, then confirm the iterator sees it.
+            for (int i = 0; i < 3; i++)
+                queue.put(next + i);
+            List<Integer> contents = new ArrayList<Integer>();
+            for (Integer value : queue)
+                contents.add(value);
+            assertEquals("Iterator sees all values", 3, contents.size());
+            assertEquals("Iterator starts at head", new Integer(next),
+                    contents.get(0));
+
+            // Empty the queue in order.
+            for (int i = 0; i < 3; i++)
+                assertEquals("Values in order", new Integer(next++),
+                        queue.take());
+        }
+        assertEquals("Queue is empty", 0, queue.size());
+    }
+
+    /**
+     * Verify that timed operations give up after the timeout and that blocked
+     * threads respond to interrupts.
+     */
+    public void testTimeoutAndInterrupt() throws Exception
+    {
+        final RingBufferQueue<String> queue = new RingBufferQueue<String>(1);
+        assertNull("Poll times out",
+                queue.poll(50, TimeUnit.MILLISECONDS));
+        queue.put("a");
+        assertFalse("Offer times out",
+                queue.offer("b", 50, TimeUnit.MILLISECONDS));
+
+        // Block a thread on a full queue and interrupt it.
+        final boolean[] interrupted = new boolean[1];
+        Thread t = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    queue.put("c");
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted[0] = true;
+                }
+            }
+        };
+        t.start();
+        Thread.sleep(100);
+        t.interrupt();
+        t.join(5000);
+        assertTrue("Blocked put was interrupted", interrupted[0]);
+        assertEquals("Queue still has original value", "a", queue.take());
+    }
+
+    /**
+     * Verify that threads waiting on an empty or full queue with the park
+     * strategy sleep rather than poll, and wake up as soon as the other side
+     * of the queue makes progress.
+     */
+    public void testParkedWaitersWake() throws Exception
+    {
+        final RingBufferQueue<String> queue = new RingBufferQueue<String>(1,
+                RingBufferQueue.WaitStrategy.PARK);
+        final String[] taken = new String[1];
+        final long[] takenNanos = new long[1];
+        Thread taker = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    taken[0] = queue.take();
+                    takenNanos[0] = System.nanoTime();
+                }
+                catch (InterruptedException e)
+                {
+                }
+            }
+        };
+        taker.start();
+        Thread.sleep(200);
+        assertEquals("Taker is parked", Thread.State.TIMED_WAITING,
+                taker.getState());
+        long putNanos = System.nanoTime();
+        queue.put("a");
+        taker.join(5000);
+        assertEquals("Taker received value", "a", taken[0]);
+        assertTrue("Taker woke before the park interval expired",
+                takenNanos[0] - putNanos < TimeUnit.MILLISECONDS.toNanos(90));
+
+        // Fill the queue and confirm a blocked producer wakes on take.
+        queue.put("b");
+        Thread putter = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    queue.put("c");
+                }
+                catch (InterruptedException e)
+                {
+                }
+            }
+        };
+        putter.start();
+        Thread.sleep(200);
+        assertEquals("Putter is parked", Thread.State.TIMED_WAITING,
+                putter.getState());
+        long takeNanos = System.nanoTime();
+        assertEquals("Value in queue", "b", queue.take());
+        putter.join(5000);
+        assertTrue("Putter woke before the park interval expired", System
+                .nanoTime()
+                - takeNanos < TimeUnit.MILLISECONDS.toNanos(90));
+        assertEquals("Putter stored value", "c", queue.take());
+    }
+
+    /**
+     * Verify that concurrent producers and consumers neither lose nor
+     * duplicate elements and that each producer's elements remain in order.
+     */
+    public void testMultiProducerConsumer() throws Exception
+    {
+        final RingBufferQueue<long[]> queue = new RingBufferQueue<long[]>(100,
+                RingBufferQueue.WaitStrategy.YIELD);
+        final int producers = 4;
+        final int consumers = 3;
+        final int count = 50000;
+
+        // Start producers, which put pairs of producer ID and sequence.
+        List<QueueWorker> workers = new ArrayList<QueueWorker>();
+        for (int p = 0; p < producers; p++)
+        {
+            final int id = p;
+            workers.add(new QueueWorker()
+            {
+                void work() throws Exception
+                {
+                    for (long i = 0; i < count; i++)
+                        queue.put(new long[]{id, i});
+                }
+            });
+        }
+
+        // Start consumers, which check per-producer order.
+        final long[] totals = new long[consumers];
+        for (int c = 0; c < consumers; c++)
+        {
+            final int id = c;
+            workers.add(new QueueWorker()
+            {
+                void work() throws Exception
+                {
+                    long[] last = new long[producers];
+                    for (int i = 0; i < producers; i++)
+                        last[i] = -1;
+                    long[] value;
+                    while ((value = queue.poll(2, TimeUnit.SECONDS)) != null)
+                    {
+                        int producer = (int) value[0];
+                        assertTrue("Producer values in order",
+                                value[1] > last[producer]);
+                        last[producer] = value[1];
+                        totals[id]++;
+                    }
+                }
+            });
+        }
+
+        for (QueueWorker worker : workers)
+            worker.start();
+        for (QueueWorker worker : workers)
+        {
+            worker.join(60000);
+            if (worker.throwable != null)
+                throw new Exception("Worker failed", worker.throwable);
+        }
+
+        long total = 0;
+        for (long consumed : totals)
+            total += consumed;
+        assertEquals("All values consumed", producers * count, total);
+        assertEquals("Queue is empty", 0, queue.size());
+    }
+
+    /**
+     * Compare throughput of ring buffers against LinkedBlockingQueue with one
+     * producer and one consumer. Spinning is skipped on hosts with a single
+     * processor where it would starve the other thread.
+     */
+    public void testThroughputComparison() throws Exception
+    {
+        int events = 1000000;
+        int capacity = 100;
+
+        double linked = measureThroughput(new LinkedBlockingQueue<Object>(
+                capacity), events);
+        logger.info("LinkedBlockingQueue: events/sec=" + (long) linked);
+
+        for (RingBufferQueue.WaitStrategy strategy : RingBufferQueue.WaitStrategy
+                .values())
+        {
+            if (strategy == RingBufferQueue.WaitStrategy.SPIN
+                    && Runtime.getRuntime().availableProcessors() < 2)
+            {
+                logger.info("RingBufferQueue: strategy=" + strategy
+                        + " skipped on single processor");
+                continue;
+            }
+            double ring = measureThroughput(new RingBufferQueue<Object>(
+                    capacity, strategy), events);
+            logger.info("RingBufferQueue: strategy=" + strategy
+                    + " events/sec=" + (long) ring + " ratio="
+                    + String.format("%.2f", ring / linked));
+        }
+    }
+
+    // Passes events from a producer thread to the current thread and returns
+    // events per second.
+    private double measureThroughput(final BlockingQueue<Object> queue,
+            final int events) throws Exception
+    {
+        final Object event = new Object();
+        QueueWorker producer = new QueueWorker()
+        {
+            void work() throws Exception
+            {
+                for (int i = 0; i < events; i++)
+                    queue.put(event);
+            }
+        };
+
+        long start = System.nanoTime();
+        producer.start();
+        for (int i = 0; i < events; i++)
+            queue.take();
+        long elapsed = System.nanoTime() - start;
+        producer.join(10000);
+        if (producer.throwable != null)
+            throw new Exception("Producer failed", producer.throwable);
+
+        return events / (elapsed / 1000000000.0);
+    }
+}
+
+// Thread that records any exception from its work.
+abstract class QueueWorker extends Thread
+{
+    volatile Throwable throwable;
+
+    abstract void work() throws Exception;
+
+    public void run()
+    {
+        try
+        {
+            work();
+        }
+        catch (Throwable t)
+        {
+            throwable = t;
+        }
+    }
+}